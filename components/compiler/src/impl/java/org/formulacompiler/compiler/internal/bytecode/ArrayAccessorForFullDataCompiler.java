@@ -99,6 +99,14 @@ public class ArrayAccessorForFullDataCompiler extends ArrayAccessorCompiler
 			reset.visitFieldInsn( Opcodes.PUTFIELD, section().classInternalName(), initName, initDesc );
 		}
 
+		// Same in reset( <input> ) for all inputs the elements depend on.
+		for (GeneratorAdapter reset : section().inputResettersFor(
+				section().engineCompiler().inputDependencies().inputsOf( this.arrayNode ) )) {
+			reset.loadThis();
+			reset.push( false );
+			reset.visitFieldInsn( Opcodes.PUTFIELD, section().classInternalName(), initName, initDesc );
+		}
+
 	}
 
 
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+import org.formulacompiler.compiler.CallFrame;
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.internal.model.CellModel;
+import org.formulacompiler.compiler.internal.model.SectionModel;
+import org.formulacompiler.runtime.ColumnarBatch;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+
+/**
+ * Compiles the input class used for batch computations. It implements the input methods bound in
+ * the model by returning the element of the current row from the corresponding input column.
+ */
+final class BatchInputCompiler extends ClassCompiler
+{
+	static final Type BATCH_CLASS = Type.getType( ColumnarBatch.class );
+	static final String ROW_MEMBER_NAME = "$row";
+	static final String CONSTRUCTOR_DESC = "(" + BATCH_CLASS.getDescriptor() + ")V";
+
+	private final Class userInputClass;
+	private final Type userInputType;
+	private final Collection<Method> inputs = new LinkedHashSet<Method>();
+	private final Collection<Method> outputs = new LinkedHashSet<Method>();
+
+
+	BatchInputCompiler( ByteCodeEngineCompiler _compiler ) throws CompilerException
+	{
+		super( _compiler, ByteCodeEngineCompiler.GEN_BATCH_NAME, false );
+		this.userInputClass = _compiler.getModel().getInputClass();
+		this.userInputType = Type.getType( this.userInputClass );
+		validateInputClass();
+		collectInputsAndOutputs( _compiler.getModel().getRoot() );
+	}
+
+
+	Collection<Method> outputs()
+	{
+		return this.outputs;
+	}
+
+
+	private void validateInputClass() throws CompilerException
+	{
+		final Class cls = this.userInputClass;
+		if (cls.isInterface()) return;
+		if (Modifier.isFinal( cls.getModifiers() )) {
+			throw new CompilerException.BatchNotSupported( "the input class " + cls + " is final." );
+		}
+		try {
+			final Constructor constructor = cls.getDeclaredConstructor();
+			if (!(Modifier.isPublic( constructor.getModifiers() ) || Modifier.isProtected( constructor.getModifiers() ))) {
+				throw new CompilerException.BatchNotSupported( "the default constructor of the input class " + cls
+						+ " is not accessible." );
+			}
+		}
+		catch (NoSuchMethodException e) {
+			throw new CompilerException.BatchNotSupported( "the input class " + cls + " has no default constructor." );
+		}
+	}
+
+	private void collectInputsAndOutputs( SectionModel _root ) throws CompilerException
+	{
+		if (_root.getSections().size() > 0) {
+			throw new CompilerException.BatchNotSupported( "the model contains repeating sections." );
+		}
+		for (CellModel cell : _root.getCells()) {
+			if (cell.isInput()) {
+				final CallFrame call = cell.getCallChainToCall();
+				if (call.getPrev() != null || call.getArgs().length > 0) {
+					throw new CompilerException.BatchNotSupported( "the input " + call
+							+ " is not a call to a parameterless method." );
+				}
+				final Method method = call.getMethod();
+				if (Modifier.isFinal( method.getModifiers() )) {
+					throw new CompilerException.BatchNotSupported( "the input method " + method + " is final." );
+				}
+				this.inputs.add( method );
+			}
+			if (cell.isOutput()) {
+				for (CallFrame call : cell.getCallsToImplement()) {
+					if (call.getArgs().length == 0) {
+						this.outputs.add( call.getMethod() );
+					}
+				}
+			}
+		}
+	}
+
+
+	void compile()
+	{
+		if (this.userInputClass.isInterface()) {
+			initializeClass( null, null, this.userInputType );
+			compileClassRef( this.userInputClass, this.userInputType );
+		}
+		else {
+			initializeClass( this.userInputClass, this.userInputType );
+		}
+		newField( 0, ROW_MEMBER_NAME, Type.INT_TYPE.getDescriptor() );
+		buildConstructor();
+		buildInputMethods();
+		finalizeClass();
+	}
+
+
+	private String columnName( int _index )
+	{
+		return "$col$" + _index;
+	}
+
+	private Type columnType( Method _method )
+	{
+		return Type.getType( "[" + Type.getReturnType( _method ).getDescriptor() );
+	}
+
+
+	private void buildConstructor()
+	{
+		final Type parentType = this.userInputClass.isInterface() ? Type.getType( Object.class ) : this.userInputType;
+		final GeneratorAdapter mv = newMethod( Opcodes.ACC_PUBLIC, "<init>", CONSTRUCTOR_DESC );
+		mv.loadThis();
+		mv.visitMethodInsn( Opcodes.INVOKESPECIAL, parentType.getInternalName(), "<init>", "()V" );
+		int i = 0;
+		for (Method input : this.inputs) {
+			// this.$col$<i> = (<type>[]) _batch.getInputColumn( "<name>" );
+			final Type columnType = columnType( input );
+			newField( Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, columnName( i ), columnType.getDescriptor() );
+			mv.loadThis();
+			mv.loadArg( 0 );
+			mv.push( input.getName() );
+			mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, BATCH_CLASS.getInternalName(), "getInputColumn",
+					"(Ljava/lang/String;)Ljava/lang/Object;" );
+			mv.checkCast( columnType );
+			mv.putField( classType(), columnName( i ), columnType );
+			i++;
+		}
+		mv.visitInsn( Opcodes.RETURN );
+		endMethod( mv );
+	}
+
+	private void buildInputMethods()
+	{
+		int i = 0;
+		for (Method input : this.inputs) {
+			// return this.$col$<i>[ this.$row ];
+			final Type columnType = columnType( input );
+			final GeneratorAdapter mv = newMethod( Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, input.getName(), Type
+					.getMethodDescriptor( input ) );
+			mv.loadThis();
+			mv.getField( classType(), columnName( i ), columnType );
+			mv.loadThis();
+			mv.getField( classType(), ROW_MEMBER_NAME, Type.INT_TYPE );
+			mv.arrayLoad( columnType.getElementType() );
+			mv.returnValue();
+			endMethod( mv );
+			i++;
+		}
+	}
+
+}
@@ -24,9 +24,11 @@ package org.formulacompiler.compiler.internal.bytecode;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.List;
 import java.util.Map;
 
 import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.MethodSizeListener;
 import org.formulacompiler.compiler.SaveableEngine;
 import org.formulacompiler.compiler.internal.engine.AbstractOptimizedModelToEngineCompiler;
 import org.formulacompiler.compiler.internal.engine.OptimizedModelToEngineCompiler;
@@ -34,15 +36,29 @@ import org.formulacompiler.compiler.internal.expressions.DataType;
 import org.formulacompiler.compiler.internal.model.AbstractComputationModelVisitor;
 import org.formulacompiler.compiler.internal.model.CellModel;
 import org.formulacompiler.compiler.internal.model.SectionModel;
+import org.formulacompiler.compiler.internal.model.analysis.IndependentOutputs;
+import org.formulacompiler.compiler.internal.model.analysis.InputDependencies;
+import org.formulacompiler.compiler.internal.model.analysis.MemoCandidates;
+import org.formulacompiler.runtime.BatchComputationFactory;
 import org.formulacompiler.runtime.Computation;
 import org.formulacompiler.runtime.ComputationFactory;
 import org.formulacompiler.runtime.ComputationMode;
 import org.formulacompiler.runtime.Engine;
 import org.formulacompiler.runtime.EngineException;
+import org.formulacompiler.runtime.IncrementallyResettable;
 import org.formulacompiler.runtime.New;
+import org.formulacompiler.runtime.MemoizingComputationFactory;
+import org.formulacompiler.runtime.ParallelComputation;
+import org.formulacompiler.runtime.PooledComputationFactory;
+import org.formulacompiler.runtime.ProfiledComputation;
 import org.formulacompiler.runtime.Resettable;
+import org.formulacompiler.runtime.internal.CellComputer;
+import org.formulacompiler.runtime.internal.ComputationPool;
 import org.formulacompiler.runtime.internal.ComputationTime;
 import org.formulacompiler.runtime.internal.Environment;
+import org.formulacompiler.runtime.internal.MemoCache;
+import org.formulacompiler.runtime.internal.ParallelOutputs;
+import org.formulacompiler.runtime.internal.PoolableComputation;
 import org.formulacompiler.runtime.internal.bytecode.ByteCodeEngine;
 import org.formulacompiler.runtime.spreadsheet.SectionInfo;
 import org.objectweb.asm.ClassWriter;
@@ -57,6 +73,8 @@ public class ByteCodeEngineCompiler extends AbstractOptimizedModelToEngineCompil
 	static final String GEN_ROOT_NAME = "$Root";
 	static final String GEN_ROOT_PATH = GEN_PACKAGE_PATH + GEN_ROOT_NAME;
 	static final String GEN_ROOT_DESC = "L" + GEN_PACKAGE_PATH + GEN_ROOT_NAME + ";";
+	static final String GEN_BATCH_NAME = "$Batch";
+	static final String GEN_BATCH_DESC = "L" + GEN_PACKAGE_PATH + GEN_BATCH_NAME + ";";
 	static final String INPUTS_MEMBER_NAME = "$inputs";
 	static final String PARENT_MEMBER_NAME = "$parent";
 	static final String ROOT_MEMBER_NAME = "$root";
@@ -66,10 +84,21 @@ public class ByteCodeEngineCompiler extends AbstractOptimizedModelToEngineCompil
 
 	static final Type GEN_FACTORY_CLASS = Type.getType( GEN_FACTORY_DESC );
 	static final Type GEN_ROOT_CLASS = Type.getType( GEN_ROOT_DESC );
+	static final Type GEN_BATCH_CLASS = Type.getType( GEN_BATCH_DESC );
 
 	static final Type ENGINE_INTF = Type.getType( Engine.class );
 	static final Type COMPUTATION_INTF = Type.getType( Computation.class );
 	static final Type FACTORY_INTF = Type.getType( ComputationFactory.class );
+	static final Type BATCH_FACTORY_INTF = Type.getType( BatchComputationFactory.class );
+	static final Type POOLED_FACTORY_INTF = Type.getType( PooledComputationFactory.class );
+	static final Type POOLABLE_COMPUTATION_INTF = Type.getType( PoolableComputation.class );
+	static final Type COMPUTATION_POOL_CLASS = Type.getType( ComputationPool.class );
+	static final String POOL_MEMBER_NAME = "$pool";
+	static final Type MEMO_FACTORY_INTF = Type.getType( MemoizingComputationFactory.class );
+	static final Type MEMO_CACHE_CLASS = Type.getType( MemoCache.class );
+	static final String MEMO_MEMBER_NAME = "$memo";
+	static final Type CELL_COMPUTER_INTF = Type.getType( CellComputer.class );
+	static final Type PARALLEL_OUTPUTS_CLASS = Type.getType( ParallelOutputs.class );
 	static final Type MATH_CLASS = Type.getType( Math.class );
 	static final Type BIGDECIMAL_CLASS = Type.getType( BigDecimal.class );
 	static final Type BIGINTEGER_CLASS = Type.getType( BigInteger.class );
@@ -91,12 +120,24 @@ public class ByteCodeEngineCompiler extends AbstractOptimizedModelToEngineCompil
 	static final String COMP_TIME_DESC = COMP_TIME_CLASS.getDescriptor();
 	static final String COMP_TIME_MEMBER_NAME = "$computationTime";
 
+	static final String EPOCH_MEMBER_NAME = "$epoch";
+
+	static final Type PROFILED_COMPUTATION_INTF = Type.getType( ProfiledComputation.class );
+	static final Type PROFILE_ARRAY_TYPE = Type.getType( long[].class );
+	static final String PROFILE_EVALUATIONS_MEMBER_NAME = "$profileEvaluations";
+	static final String PROFILE_COMPUTATIONS_MEMBER_NAME = "$profileComputations";
+	static final String PROFILE_NANOS_MEMBER_NAME = "$profileNanos";
+
 	static final Type ILLEGALARGUMENT_CLASS = Type.getType( IllegalArgumentException.class );
 
 	private final TypeCompilerForNumbers numberCompiler = TypeCompilerForNumbers.compilerFor( this, this
 			.getNumericType() );
 	private final TypeCompiler stringCompiler = new TypeCompilerForStrings( this );
 	private final boolean isResettable;
+	private final boolean isIncrementallyResettable;
+	private final boolean isParallelComputation;
+	private final ScaledLongFastPath scaledLongFastPath;
+	private final String classPrefix;
 
 
 	public static final class Factory implements OptimizedModelToEngineCompiler.Factory
@@ -108,9 +149,37 @@ public class ByteCodeEngineCompiler extends AbstractOptimizedModelToEngineCompil
 	}
 
 	public ByteCodeEngineCompiler( Config _config )
+	{
+		this( _config, null, "" );
+	}
+
+	/**
+	 * @param _scaledLongFastPath non-null if this compiles the scaled long fast path of an engine.
+	 * @param _classPrefix prefixed to the names of all generated classes.
+	 */
+	private ByteCodeEngineCompiler( Config _config, ScaledLongFastPath _scaledLongFastPath, String _classPrefix )
 	{
 		super( _config );
+		this.scaledLongFastPath = _scaledLongFastPath;
+		this.classPrefix = _classPrefix;
 		this.isResettable = Resettable.class.isAssignableFrom( getModel().getRoot().getOutputClass() );
+		this.isIncrementallyResettable = IncrementallyResettable.class.isAssignableFrom( getModel().getRoot()
+				.getOutputClass() );
+		this.isParallelComputation = ParallelComputation.class.isAssignableFrom( getModel().getRoot().getOutputClass() );
+	}
+
+	/**
+	 * Non-null if this compiles the scaled long fast path of an engine. Arithmetic must then be
+	 * checked for overflow, and outputs fall back to the {@link BigDecimal} computation.
+	 */
+	ScaledLongFastPath scaledLongFastPath()
+	{
+		return this.scaledLongFastPath;
+	}
+
+	String classPrefix()
+	{
+		return this.classPrefix;
 	}
 
 	boolean isResettable()
@@ -118,6 +187,114 @@ public class ByteCodeEngineCompiler extends AbstractOptimizedModelToEngineCompil
 		return this.isResettable;
 	}
 
+	boolean isIncrementallyResettable()
+	{
+		return this.isIncrementallyResettable;
+	}
+
+	boolean isParallelComputation()
+	{
+		return this.isParallelComputation;
+	}
+
+	/**
+	 * Computation listeners, profile counters, and the exact computation the scaled long fast path
+	 * creates lazily are not thread-safe, so they rule out computing outputs concurrently.
+	 */
+	boolean isParallelOutputEnabled()
+	{
+		return !isComputationListenerEnabled() && !isCellProfilingEnabled() && null == this.scaledLongFastPath;
+	}
+
+	private IndependentOutputs independentOutputs;
+
+	IndependentOutputs independentOutputs()
+	{
+		if (null == this.independentOutputs) {
+			this.independentOutputs = new IndependentOutputs( getModel().getRoot() );
+		}
+		return this.independentOutputs;
+	}
+
+	/**
+	 * Computation listeners are notified from the computing thread, and subsection cells count into
+	 * the profile counters of the root without synchronization, so both rule out parallel folds.
+	 */
+	boolean isParallelFoldEnabled()
+	{
+		return getParallelFoldThreshold() > 0 && !isComputationListenerEnabled() && !isCellProfilingEnabled();
+	}
+
+
+	/**
+	 * Reports methods exceeding the method size limit to the listener, if any.
+	 */
+	void methodCompiled( ClassCompiler _class, String _methodName, int _codeSize )
+	{
+		final int limit = getMethodSizeLimit();
+		final MethodSizeListener listener = getMethodSizeListener();
+		if (null != listener && limit > 0 && _codeSize > limit) {
+			listener.methodTooLarge( _class.classInternalName().replace( '/', '.' ), _methodName, _codeSize, limit );
+		}
+	}
+
+
+	private InputDependencies inputDependencies;
+
+	InputDependencies inputDependencies()
+	{
+		if (null == this.inputDependencies) {
+			this.inputDependencies = new InputDependencies();
+		}
+		return this.inputDependencies;
+	}
+
+
+	/**
+	 * Computation listeners are notified of every cell computed, so they rule out memoization.
+	 */
+	boolean isMemoizing()
+	{
+		return getMemoCacheSize() > 0 && !isComputationListenerEnabled();
+	}
+
+	private MemoCandidates memoCandidates;
+
+	MemoCandidates memoCandidates()
+	{
+		if (null == this.memoCandidates) {
+			this.memoCandidates = new MemoCandidates( getModel().getRoot(), getMemoCells() );
+		}
+		return this.memoCandidates;
+	}
+
+	private int nextMemoSlot = 0;
+
+	/**
+	 * Allocates the number identifying the given memoized cell in the keys of the memo cache.
+	 */
+	int newMemoSlot()
+	{
+		return this.nextMemoSlot++;
+	}
+
+
+	private final List<String> profiledCellNames = New.list();
+
+	/**
+	 * Allocates the slot of the given cell in the profile counter arrays.
+	 */
+	int newProfileSlot( CellModel _cell )
+	{
+		this.profiledCellNames.add( _cell.getFullName() );
+		return this.profiledCellNames.size() - 1;
+	}
+
+	List<String> profiledCellNames()
+	{
+		return this.profiledCellNames;
+	}
+
 
 	private int nextSubClassNumber = 0;
 
@@ -135,9 +312,47 @@ public class ByteCodeEngineCompiler extends AbstractOptimizedModelToEngineCompil
 
 	@Override
 	public SaveableEngine compile() throws CompilerException, EngineException
+	{
+		if (isScaledLongFastPathEnabled() && null == this.scaledLongFastPath) {
+			final ScaledLongFastPath fastPath = ScaledLongFastPath.forModel( getModel(), getNumericType() );
+			if (null != fastPath) {
+				return compileWithScaledLongFastPath( fastPath );
+			}
+		}
+		final Map<String, byte[]> classNamesAndBytes = New.map();
+		compileClasses( classNamesAndBytes, true );
+		return new SaveableByteCodeEngine( getParentClassLoader(), classNamesAndBytes );
+	}
+
+	/**
+	 * Compiles the model twice into one engine: once as usual, but with all class names prefixed, and
+	 * then again with scaled longs, falling back to the former.
+	 */
+	private SaveableEngine compileWithScaledLongFastPath( ScaledLongFastPath _fastPath ) throws CompilerException,
+			EngineException
 	{
 		final Map<String, byte[]> classNamesAndBytes = New.map();
 
+		final Config exactConfig = config().clone();
+		exactConfig.scaledLongFastPathEnabled = false;
+		exactConfig.batchComputationEnabled = false;
+		exactConfig.computationPoolingEnabled = false;
+		exactConfig.memoCacheSize = 0;
+		new ByteCodeEngineCompiler( exactConfig, null, ScaledLongFastPath.EXACT_CLASS_PREFIX ).compileClasses(
+				classNamesAndBytes, false );
+
+		final Config fastConfig = config().clone();
+		fastConfig.scaledLongFastPathEnabled = false;
+		fastConfig.numericType = _fastPath.fastType();
+		new ByteCodeEngineCompiler( fastConfig, _fastPath, "" ).compileClasses( classNamesAndBytes, true );
+
+		return new SaveableByteCodeEngine( getParentClassLoader(), classNamesAndBytes );
+	}
+
+	private void compileClasses( Map<String, byte[]> _classNamesAndBytes, boolean _withFactory )
+			throws CompilerException
+	{
+		final BatchInputCompiler batchCompiler = isBatchComputationEnabled() ? new BatchInputCompiler( this ) : null;
 		final SectionCompiler rootCompiler = new RootSectionCompiler( this, getModel().getRoot(), isComputationListenerEnabled() );
 		this.rootCompiler = rootCompiler;
 		try {
@@ -145,18 +360,24 @@ public class ByteCodeEngineCompiler extends AbstractOptimizedModelToEngineCompil
 			getModel().traverse( new ElementCreator( rootCompiler ) );
 			getModel().traverse( new ElementCompiler( rootCompiler ) );
 
-			final FactoryCompiler factoryCompiler = new FactoryCompiler( this, getFactoryClass(), getFactoryMethod() );
-			factoryCompiler.compile();
+			if (_withFactory) {
+				final FactoryCompiler factoryCompiler = new FactoryCompiler( this, getFactoryClass(), getFactoryMethod(),
+						batchCompiler );
+				factoryCompiler.compile();
+				factoryCompiler.collectClassNamesAndBytes( _classNamesAndBytes );
+			}
 
-			factoryCompiler.collectClassNamesAndBytes( classNamesAndBytes );
-			rootCompiler.collectClassNamesAndBytes( classNamesAndBytes );
+			rootCompiler.collectClassNamesAndBytes( _classNamesAndBytes );
+
+			if (null != batchCompiler) {
+				batchCompiler.compile();
+				batchCompiler.collectClassNamesAndBytes( _classNamesAndBytes );
+			}
 
 		}
 		finally {
 			this.rootCompiler = null;
 		}
-
-		return new SaveableByteCodeEngine( getParentClassLoader(), classNamesAndBytes );
 	}
 
 
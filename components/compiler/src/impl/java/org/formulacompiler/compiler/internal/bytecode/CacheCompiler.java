@@ -23,6 +23,8 @@
 package org.formulacompiler.compiler.internal.bytecode;
 
 
+import java.util.Set;
+
 import org.formulacompiler.compiler.CompilerException;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Label;
@@ -36,13 +38,17 @@ abstract class CacheCompiler
 	private final GeneratorAdapter mv;
 	private final Type type;
 	private final String cachedIndicatorName;
+	private final String cachedEpochName;
 	private final String cacheName;
+	private final Set<String> inputs;
 
-	CacheCompiler( SectionCompiler _section, GeneratorAdapter _mv, String _baseName, Type _type )
+	CacheCompiler( SectionCompiler _section, GeneratorAdapter _mv, String _baseName, Type _type, Set<String> _inputs )
 	{
 		this.section = _section;
+		this.inputs = _inputs;
 		this.mv = _mv;
 		this.cachedIndicatorName = "h$" + _baseName;
+		this.cachedEpochName = "e$" + _baseName;
 		this.cacheName = "c$" + _baseName;
 		this.type = _type;
 	}
@@ -50,6 +56,24 @@ abstract class CacheCompiler
 	abstract void compileValue() throws CompilerException;
 
 	void compile() throws CompilerException
+	{
+		if (isEpochCaching()) {
+			compileWithEpoch();
+		}
+		else {
+			compileWithIndicator();
+		}
+	}
+
+	/**
+	 * Only the root section is ever reset; subsection instances are dropped on reset anyway.
+	 */
+	private boolean isEpochCaching()
+	{
+		return this.section.engineCompiler().isEpochCachingEnabled() && this.section == this.section.rootSectionCompiler();
+	}
+
+	private void compileWithIndicator() throws CompilerException
 	{
 		// private boolean h$<x>
 		cw().visitField( Opcodes.ACC_PRIVATE, this.cachedIndicatorName, Type.BOOLEAN_TYPE.getDescriptor(), null, null )
@@ -82,11 +106,64 @@ abstract class CacheCompiler
 
 		// In reset(), do:
 		if (this.section.hasReset()) {
-			// h$<x> = false;
-			final GeneratorAdapter r = this.section.resetter();
+			compileReset( this.section.resetter() );
+		}
+
+		// In reset( <input> ), do the same for all inputs the value depends on:
+		for (GeneratorAdapter r : this.section.inputResettersFor( this.inputs )) {
+			compileReset( r );
+		}
+	}
+
+	private void compileReset( GeneratorAdapter _r )
+	{
+		// h$<x> = false;
+		_r.loadThis();
+		_r.push( false );
+		_r.putField( classType(), this.cachedIndicatorName, Type.BOOLEAN_TYPE );
+	}
+
+	private void compileWithEpoch() throws CompilerException
+	{
+		final RootSectionCompiler root = this.section.rootSectionCompiler();
+
+		// private long e$<x>
+		cw().visitField( Opcodes.ACC_PRIVATE, this.cachedEpochName, Type.LONG_TYPE.getDescriptor(), null, null )
+				.visitEnd();
+
+		// private <type> c$<x>
+		cw().visitField( Opcodes.ACC_PRIVATE, this.cacheName, this.type.getDescriptor(), null, null ).visitEnd();
+
+		// if (e$<x> != $epoch) {
+		final Label skipCachedComputation = mv().newLabel();
+		mv().loadThis();
+		mv().getField( classType(), this.cachedEpochName, Type.LONG_TYPE );
+		root.compileEpochAccess( mv() );
+		mv().visitInsn( Opcodes.LCMP );
+		mv().visitJumpInsn( Opcodes.IFEQ, skipCachedComputation );
+
+		// c$<x> = <value>;
+		mv().loadThis();
+		compileValue();
+		mv().putField( classType(), this.cacheName, this.type );
+
+		// e$<x> = $epoch;
+		mv().loadThis();
+		root.compileEpochAccess( mv() );
+		mv().putField( classType(), this.cachedEpochName, Type.LONG_TYPE );
+
+		// }
+		// return c$<x>;
+		mv().mark( skipCachedComputation );
+		mv().loadThis();
+		mv().getField( classType(), this.cacheName, this.type );
+
+		// reset() starts a new epoch; reset( <input> ) still invalidates the values depending on it:
+		for (GeneratorAdapter r : this.section.inputResettersFor( this.inputs )) {
+			// e$<x> = 0;
 			r.loadThis();
-			r.push( false );
-			r.putField( classType(), this.cachedIndicatorName, Type.BOOLEAN_TYPE );
+			r.push( 0L );
+			r.putField( classType(), this.cachedEpochName, Type.LONG_TYPE );
 		}
 	}
 
@@ -23,6 +23,8 @@
 package org.formulacompiler.compiler.internal.bytecode;
 
 import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Set;
 
 import org.formulacompiler.compiler.CallFrame;
 import org.formulacompiler.compiler.CompilerException;
@@ -32,11 +34,19 @@ import org.formulacompiler.compiler.internal.model.CellModel;
 import org.formulacompiler.runtime.spreadsheet.CellAddress;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+import static org.formulacompiler.compiler.internal.bytecode.ByteCodeEngineCompiler.*;
 
 
 final class CellMethodCompiler extends ValueMethodCompiler
 {
+	private static final Type SYSTEM_CLASS = Type.getType( System.class );
+	private static final org.objectweb.asm.commons.Method NANO_TIME_METHOD = org.objectweb.asm.commons.Method
+			.getMethod( "long nanoTime()" );
+
 	private final CellModel cell;
+	private int profileSlot = -1;
 
 
 	CellMethodCompiler( SectionCompiler _section, CellModel _cell ) throws CompilerException
@@ -104,36 +114,57 @@ final class CellMethodCompiler extends ValueMethodCompiler
 		}
 
 		if (this.cell.isInput()) {
+			compileProfiledEvaluation();
 			if (shouldCache( this.cell )) {
-				new CacheCompiler( section(), mv(), methodName(), returnType() )
+				new CacheCompiler( section(), mv(), methodName(), returnType(), inputs() )
 				{
 					@Override
 					void compileValue() throws CompilerException
 					{
-						compileInput( CellMethodCompiler.this.cell.getCallChainToCall() );
+						compileProfiledComputation( new ValueCompiler()
+						{
+							public void compile() throws CompilerException
+							{
+								compileInput( CellMethodCompiler.this.cell.getCallChainToCall() );
+							}
+						} );
 					}
 				}.compile();
 			}
 			else {
-				compileInput( this.cell.getCallChainToCall() );
+				compileProfiledComputation( new ValueCompiler()
+				{
+					public void compile() throws CompilerException
+					{
+						compileInput( CellMethodCompiler.this.cell.getCallChainToCall() );
+					}
+				} );
 			}
 		}
 		else {
 			final ExpressionNode cellExpr = this.cell.getExpression();
 			final ExpressionCompiler ec = expressionCompiler();
 			if (null != cellExpr) {
+				compileProfiledEvaluation();
+				final ValueCompiler exprCompiler = new ValueCompiler()
+				{
+					public void compile() throws CompilerException
+					{
+						compileExpression( cellExpr );
+					}
+				};
 				if (shouldCache( this.cell )) {
-					new CacheCompiler( section(), mv(), methodName(), returnType() )
+					new CacheCompiler( section(), mv(), methodName(), returnType(), inputs() )
 					{
 						@Override
 						void compileValue() throws CompilerException
 						{
-							compileExpression( cellExpr );
+							compileMemoizedComputation( exprCompiler );
 						}
 					}.compile();
 				}
 				else {
-					compileExpression( cellExpr );
+					compileMemoizedComputation( exprCompiler );
 				}
 			}
 			else {
@@ -146,6 +177,99 @@ final class CellMethodCompiler extends ValueMethodCompiler
 	}
 
 
+	private static interface ValueCompiler
+	{
+		void compile() throws CompilerException;
+	}
+
+	private final boolean isProfiled()
+	{
+		return section().engineCompiler().isCellProfilingEnabled();
+	}
+
+	private final boolean isTimed()
+	{
+		return section().engineCompiler().isCellTimingEnabled();
+	}
+
+	private final void compileProfiledEvaluation()
+	{
+		if (isProfiled()) {
+			this.profileSlot = section().engineCompiler().newProfileSlot( this.cell );
+			compileProfileIncrement( PROFILE_EVALUATIONS_MEMBER_NAME );
+		}
+	}
+
+	private final void compileProfiledComputation( ValueCompiler _value ) throws CompilerException
+	{
+		if (isProfiled()) {
+			compileProfileIncrement( PROFILE_COMPUTATIONS_MEMBER_NAME );
+		}
+		if (isTimed()) {
+			final GeneratorAdapter mv = mv();
+
+			// final long start = System.nanoTime();
+			final int startVar = newLocal( 2 );
+			mv.invokeStatic( SYSTEM_CLASS, NANO_TIME_METHOD );
+			mv.visitVarInsn( Opcodes.LSTORE, startVar );
+
+			_value.compile();
+
+			// $profileNanos[ <slot> ] += System.nanoTime() - start;
+			section().compileProfileAccess( mv, PROFILE_NANOS_MEMBER_NAME );
+			mv.push( this.profileSlot );
+			mv.dup2();
+			mv.arrayLoad( Type.LONG_TYPE );
+			mv.invokeStatic( SYSTEM_CLASS, NANO_TIME_METHOD );
+			mv.visitVarInsn( Opcodes.LLOAD, startVar );
+			mv.math( GeneratorAdapter.SUB, Type.LONG_TYPE );
+			mv.math( GeneratorAdapter.ADD, Type.LONG_TYPE );
+			mv.arrayStore( Type.LONG_TYPE );
+		}
+		else {
+			_value.compile();
+		}
+	}
+
+	private final void compileMemoizedComputation( final ValueCompiler _value ) throws CompilerException
+	{
+		final Collection<CellModel> memoInputs = memoInputs();
+		if (null == memoInputs) {
+			compileProfiledComputation( _value );
+		}
+		else {
+			new MemoCompiler( this, memoInputs, returnType() )
+			{
+				@Override
+				void compileValue() throws CompilerException
+				{
+					compileProfiledComputation( _value );
+				}
+			}.compile();
+		}
+	}
+
+	private final Collection<CellModel> memoInputs()
+	{
+		final ByteCodeEngineCompiler engineCompiler = section().engineCompiler();
+		return engineCompiler.isMemoizing() ? engineCompiler.memoCandidates().inputCellsOf( this.cell ) : null;
+	}
+
+	private final void compileProfileIncrement( String _arrayName )
+	{
+		final GeneratorAdapter mv = mv();
+
+		// $profile<x>[ <slot> ]++;
+		section().compileProfileAccess( mv, _arrayName );
+		mv.push( this.profileSlot );
+		mv.dup2();
+		mv.arrayLoad( Type.LONG_TYPE );
+		mv.push( 1L );
+		mv.math( GeneratorAdapter.ADD, Type.LONG_TYPE );
+		mv.arrayStore( Type.LONG_TYPE );
+	}
+
+
 	private final void compileInput( CallFrame _callChainToCall ) throws CompilerException
 	{
 		compileInputGetterCall( _callChainToCall );
@@ -162,6 +286,12 @@ final class CellMethodCompiler extends ValueMethodCompiler
 	}
 
 
+	private final Set<String> inputs()
+	{
+		return section().engineCompiler().inputDependencies().inputsOf( this.cell );
+	}
+
+
 	private final boolean shouldCache( CellModel _cell )
 	{
 		return section().engineCompiler().isFullyCaching() && _cell.isCachingCandidate();
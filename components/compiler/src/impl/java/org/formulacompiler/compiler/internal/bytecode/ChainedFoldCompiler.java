@@ -22,7 +22,10 @@
 
 package org.formulacompiler.compiler.internal.bytecode;
 
+import java.util.List;
+
 import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.internal.expressions.DataType;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForArrayReference;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldApply;
@@ -30,6 +33,10 @@ import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldDe
 import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForSubstitution;
 import org.formulacompiler.compiler.internal.expressions.LetDictionary;
 import org.formulacompiler.compiler.internal.model.ExpressionNodeForSubSectionModel;
+import org.formulacompiler.runtime.New;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
 
 
 @SuppressWarnings( "unqualified-field-access" )
@@ -75,6 +82,16 @@ final class ChainedFoldCompiler
 			throws CompilerException
 	{
 		assert isChainable( fold );
+		final List<ExpressionNode> locals = New.list();
+		for (final ExpressionNode elt : _elts) {
+			if ((elt != _except) && !(elt instanceof ExpressionNodeForSubSectionModel)) {
+				locals.add( elt );
+			}
+		}
+		if (FoldLoopCompiler.isLoopable( locals )) {
+			compileLoopedFoldOverLocalValues( locals );
+			return;
+		}
 		final int reuseLocalsAt = expc.localsOffset();
 		for (final ExpressionNode elt : _elts) {
 			if ((elt != _except) && !(elt instanceof ExpressionNodeForSubSectionModel)) {
@@ -88,6 +105,40 @@ final class ChainedFoldCompiler
 	}
 
 
+	private void compileLoopedFoldOverLocalValues( List<ExpressionNode> _elts ) throws CompilerException
+	{
+		final FoldLoopCompiler loop = new FoldLoopCompiler( expc );
+		final DataType accType = fold.accuInit( 0 ).getDataType();
+		final DataType eltType = _elts.get( 0 ).getDataType();
+		final Type accuType = expc.method().section().engineCompiler().typeCompiler( accType ).type();
+		final GeneratorAdapter mv = expc.mv();
+
+		// acc = <top of stack>;
+		final int accuVar = expc.method().newLocal( accuType.getSize() );
+		mv.visitVarInsn( accuType.getOpcode( Opcodes.ISTORE ), accuVar );
+
+		final int arrayVar = loop.compileElementArray( _elts );
+		loop.compileLoop( _elts.size(), new int[] { arrayVar }, new DataType[] { eltType }, new FoldLoopCompiler.Body()
+		{
+
+			public void compile( Compilable[] _loopElts ) throws CompilerException
+			{
+				// acc = <step>( acc, elts[ i ] );
+				final String eltName = fold.eltName( 0 );
+				mv.visitVarInsn( accuType.getOpcode( Opcodes.ILOAD ), accuVar );
+				letDict.let( eltName, eltType, _loopElts[ 0 ] );
+				expc.compile( fold.accuStep( 0 ) );
+				letDict.unlet( eltName );
+				mv.visitVarInsn( accuType.getOpcode( Opcodes.ISTORE ), accuVar );
+			}
+
+		} );
+
+		// <top of stack> = acc;
+		mv.visitVarInsn( accuType.getOpcode( Opcodes.ILOAD ), accuVar );
+	}
+
+
 	static boolean isChainable( ExpressionNodeForFoldDefinition _fold )
 	{
 		return _fold.accuCount() == 1 && _fold.eltCount() == 1 && !_fold.isIndexed() && !_fold.isCounted();
@@ -22,8 +22,10 @@
 
 package org.formulacompiler.compiler.internal.bytecode;
 
+import java.util.List;
 import java.util.Map;
 
+import org.formulacompiler.runtime.New;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
@@ -47,7 +49,7 @@ abstract class ClassCompiler
 		this.engineCompiler = _compiler;
 		this.classPublic = _public;
 		this.className = _className;
-		this.classInternalName = ByteCodeEngineCompiler.GEN_PACKAGE_PATH + this.className;
+		this.classInternalName = ByteCodeEngineCompiler.GEN_PACKAGE_PATH + _compiler.classPrefix() + this.className;
 		this.classDescriptor = "L" + this.classInternalName + ";";
 		this.classType = Type.getType( this.classDescriptor );
 	}
@@ -83,24 +85,26 @@ abstract class ClassCompiler
 	}
 
 
-	protected Type initializeClass( Class _parentClassOrInterface, Type _parentTypeOrInterface, Type _otherInterface )
+	protected Type initializeClass( Class _parentClassOrInterface, Type _parentTypeOrInterface, Type... _otherInterfaces )
 	{
 		final Type parentType;
-		final String[] interfaces;
+		final List<String> interfaces = New.list();
+		for (Type otherInterface : _otherInterfaces) {
+			interfaces.add( otherInterface.getInternalName() );
+		}
 		if (_parentClassOrInterface == null) {
 			parentType = Type.getType( Object.class );
-			interfaces = new String[] { _otherInterface.getInternalName() };
 		}
 		else if (_parentClassOrInterface.isInterface()) {
 			parentType = Type.getType( Object.class );
-			interfaces = new String[] { _otherInterface.getInternalName(), _parentTypeOrInterface.getInternalName() };
+			interfaces.add( _parentTypeOrInterface.getInternalName() );
 		}
 		else {
 			parentType = _parentTypeOrInterface;
-			interfaces = new String[] { _otherInterface.getInternalName() };
 		}
 		final int access = Opcodes.ACC_FINAL | (this.classPublic ? Opcodes.ACC_PUBLIC : 0);
-		cw().visit( Opcodes.V1_4, access, classInternalName(), null, parentType.getInternalName(), interfaces );
+		cw().visit( Opcodes.V1_4, access, classInternalName(), null, parentType.getInternalName(),
+				interfaces.toArray( new String[ interfaces.size() ] ) );
 
 		if (_parentClassOrInterface != null) {
 			compileClassRef( _parentClassOrInterface, _parentTypeOrInterface );
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+
+/**
+ * Loads an element of an array held in a local, at an index held in another local.
+ */
+final class CompilableArrayElement implements Compilable
+{
+	private final int arrayVar;
+	private final int indexVar;
+	private final Type eltType;
+
+	CompilableArrayElement( int _arrayVar, int _indexVar, Type _eltType )
+	{
+		super();
+		this.arrayVar = _arrayVar;
+		this.indexVar = _indexVar;
+		this.eltType = _eltType;
+	}
+
+	public void compile( ExpressionCompiler _exp ) throws CompilerException
+	{
+		final GeneratorAdapter mv = _exp.mv();
+		mv.visitVarInsn( Opcodes.ALOAD, this.arrayVar );
+		mv.visitVarInsn( Opcodes.ILOAD, this.indexVar );
+		mv.arrayLoad( this.eltType );
+	}
+
+	public boolean isArray()
+	{
+		return false;
+	}
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.util.Set;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.Operator;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForConstantValue;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldDatabase;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldDefinition;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForLetVar;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForOperator;
+import org.formulacompiler.runtime.New;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+
+/**
+ * Compiles a lazy accessor for the sum or count of a database table column over one group of the
+ * rows, grouped by the values of another column as held by a {@link DatabaseIndexCompiler database
+ * index}. It is shared by all conditional folds like {@code SUMIF} or {@code DCOUNT} over the same
+ * columns whose only criterion is equality on the key column, so each group is folded at most once
+ * per computation. Groups are folded only when first asked for, and only the values of their rows
+ * are computed, so rows of other groups cannot raise errors. The results are dropped again by
+ * {@code reset()}. There is an extra last group for keys matching no rows.
+ */
+final class DatabaseAggregateCompiler extends MethodCompiler
+{
+
+	/**
+	 * The folds that can be aggregated by group.
+	 */
+	static enum Kind {
+		SUM, COUNT;
+	}
+
+
+	private final DatabaseIndexCompiler index;
+	private final DatabaseCellCompiler cells;
+	private final ExpressionNodeForFoldDatabase node;
+	private final Type eltType;
+
+
+	DatabaseAggregateCompiler( SectionCompiler _section, String _name, DatabaseIndexCompiler _index,
+			DatabaseCellCompiler _cells, ExpressionNodeForFoldDatabase _node )
+	{
+		super( _section, Opcodes.ACC_FINAL, "$dbagg$" + _name, "(I)" + typeDescriptorOf( _section, _node ) );
+		this.index = _index;
+		this.cells = _cells;
+		this.node = _node;
+		this.eltType = Type.getType( typeDescriptorOf( _section, _node ) );
+	}
+
+	private static String typeDescriptorOf( SectionCompiler _section, ExpressionNodeForFoldDatabase _node )
+	{
+		return _section.engineCompiler().typeCompiler( _node.getDataType() ).typeDescriptor();
+	}
+
+
+	/**
+	 * Returns the kind of the given fold, or {@code null} if it cannot be aggregated by group.
+	 */
+	static Kind kindOf( ExpressionNodeForFoldDefinition _fold )
+	{
+		if (_fold.eltCount() != 1 || _fold.isIndexed() || _fold.getPartiallyFoldedElementCount() != 0) return null;
+		if (_fold.accuCount() == 1 && !_fold.isCounted() && !_fold.isMergedExplicitly() && !_fold.isSpecialWhenEmpty()) {
+			// fold with s = 0 each xi as s = s + xi
+			final ExpressionNode init = _fold.accuInit( 0 );
+			final ExpressionNode step = _fold.accuStep( 0 );
+			if (init instanceof ExpressionNodeForConstantValue
+					&& isZero( ((ExpressionNodeForConstantValue) init).value() )
+					&& step instanceof ExpressionNodeForOperator
+					&& ((ExpressionNodeForOperator) step).getOperator() == Operator.PLUS && step.arguments().size() == 2) {
+				final String s = _fold.accuName( 0 );
+				final String xi = _fold.eltName( 0 );
+				if ((isVar( step.argument( 0 ), s ) && isVar( step.argument( 1 ), xi ))
+						|| (isVar( step.argument( 0 ), xi ) && isVar( step.argument( 1 ), s ))) {
+					return Kind.SUM;
+				}
+			}
+		}
+		else if (_fold.accuCount() == 0 && _fold.isCounted() && _fold.isMergedExplicitly()) {
+			// fold each xi as n into n
+			if (isVar( _fold.merge(), _fold.countName() )) {
+				return Kind.COUNT;
+			}
+		}
+		return null;
+	}
+
+	private static boolean isZero( Object _value )
+	{
+		return _value instanceof Number && ((Number) _value).doubleValue() == 0;
+	}
+
+	private static boolean isVar( ExpressionNode _node, String _name )
+	{
+		return _node instanceof ExpressionNodeForLetVar && ((ExpressionNodeForLetVar) _node).varName().equals( _name );
+	}
+
+
+	@Override
+	protected void compileBody() throws CompilerException
+	{
+		final GeneratorAdapter mv = mv();
+		final String name = methodName();
+		final String doneName = name + "$done";
+		final Type owner = section().classType();
+		final Type arrayType = Type.getType( "[" + this.eltType.getDescriptor() );
+		final Type doneType = Type.getType( boolean[].class );
+
+		final HelperCompilerForDatabaseGroupFold fold = new HelperCompilerForDatabaseGroupFold( section(), this.node,
+				this.cells );
+		fold.compile();
+
+		// private T[] $dbagg$n;
+		// private boolean[] $dbagg$n$done;
+		section().newField( Opcodes.ACC_PRIVATE, name, arrayType.getDescriptor() );
+		section().newField( Opcodes.ACC_PRIVATE, doneName, doneType.getDescriptor() );
+
+		// if (this.done == null) {
+		final Label skipInit = mv.newLabel();
+		mv.loadThis();
+		mv.getField( owner, doneName, doneType );
+		mv.ifNonNull( skipInit );
+
+		// int n = $dbidx$n().groupCount() + 1;
+		mv.loadThis();
+		this.index.compileCall( mv );
+		this.index.compileGroupCount( mv );
+		mv.push( 1 );
+		mv.visitInsn( Opcodes.IADD );
+		final int nVar = newLocal( 1 );
+		mv.visitVarInsn( Opcodes.ISTORE, nVar );
+
+		// this.agg = new T[ n ];
+		mv.loadThis();
+		mv.visitVarInsn( Opcodes.ILOAD, nVar );
+		mv.newArray( this.eltType );
+		mv.putField( owner, name, arrayType );
+
+		// this.done = new boolean[ n ];
+		mv.loadThis();
+		mv.visitVarInsn( Opcodes.ILOAD, nVar );
+		mv.newArray( Type.BOOLEAN_TYPE );
+		mv.putField( owner, doneName, doneType );
+
+		// }
+		mv.mark( skipInit );
+
+		// if (!this.done[ g ]) {
+		final Label skipFold = mv.newLabel();
+		mv.loadThis();
+		mv.getField( owner, doneName, doneType );
+		mv.loadArg( 0 );
+		mv.arrayLoad( Type.BOOLEAN_TYPE );
+		mv.ifZCmp( GeneratorAdapter.NE, skipFold );
+
+		// this.agg[ g ] = fold( $dbidx$n().rowsOfGroup( g ) );
+		mv.loadThis();
+		mv.getField( owner, name, arrayType );
+		mv.loadArg( 0 );
+		mv.loadThis();
+		mv.loadThis();
+		this.index.compileCall( mv );
+		mv.loadArg( 0 );
+		this.index.compileRowsOfGroup( mv );
+		fold.compileCall( mv );
+		mv.arrayStore( this.eltType );
+
+		// this.done[ g ] = true;
+		mv.loadThis();
+		mv.getField( owner, doneName, doneType );
+		mv.loadArg( 0 );
+		mv.push( true );
+		mv.arrayStore( Type.BOOLEAN_TYPE );
+
+		// }
+		// return this.agg[ g ];
+		mv.mark( skipFold );
+		mv.loadThis();
+		mv.getField( owner, name, arrayType );
+		mv.loadArg( 0 );
+		mv.arrayLoad( this.eltType );
+		mv.returnValue();
+
+		if (section().hasReset()) {
+			compileReset( section().resetter(), owner, doneName, doneType );
+		}
+		// Same in reset( <input> ) for all inputs the grouped columns depend on.
+		final Set<String> inputs = New.set();
+		inputs.addAll( this.index.column().inputs() );
+		inputs.addAll( this.cells.inputs() );
+		for (GeneratorAdapter reset : section().inputResettersFor( inputs )) {
+			compileReset( reset, owner, doneName, doneType );
+		}
+	}
+
+	private void compileReset( GeneratorAdapter _reset, Type _owner, String _name, Type _arrayType )
+	{
+		// this.done = null;
+		_reset.loadThis();
+		_reset.visitInsn( Opcodes.ACONST_NULL );
+		_reset.putField( _owner, _name, _arrayType );
+	}
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.util.List;
+import java.util.Set;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.internal.expressions.DataType;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+
+/**
+ * Compiles an accessor for the value of one column of a database table at a given row, for indexed
+ * database folds. Unlike a {@link DatabaseColumnCompiler column}, it computes only the values of the
+ * rows asked for. So folding it over the matching rows raises no errors a scan of the table would
+ * not. Tables longer than {@link #ROWS_PER_METHOD} rows are dispatched to one method per chunk.
+ */
+final class DatabaseCellCompiler extends MethodCompiler
+{
+	static final int ROWS_PER_METHOD = FoldLoopCompiler.ELEMENTS_PER_METHOD;
+
+	private final DataType type;
+	private final List<ExpressionNode> elts;
+	private final int offset;
+
+
+	DatabaseCellCompiler( SectionCompiler _section, String _name, DataType _type, List<ExpressionNode> _elts )
+	{
+		this( _section, "$dbcell$" + _name, _type, _elts, 0 );
+	}
+
+	private DatabaseCellCompiler( SectionCompiler _section, String _methodName, DataType _type,
+			List<ExpressionNode> _elts, int _offset )
+	{
+		super( _section, Opcodes.ACC_FINAL, _methodName, "(I)"
+				+ _section.engineCompiler().typeCompiler( _type ).typeDescriptor() );
+		this.type = _type;
+		this.elts = _elts;
+		this.offset = _offset;
+	}
+
+
+	public DataType dataType()
+	{
+		return this.type;
+	}
+
+	/**
+	 * Returns the inputs the values of this column depend on.
+	 */
+	Set<String> inputs()
+	{
+		return DatabaseColumnCompiler.inputsOf( section(), this.elts );
+	}
+
+	/**
+	 * Calls this accessor for the row held in the given local.
+	 */
+	Compilable cellAt( final int _rowVar )
+	{
+		return new Compilable()
+		{
+
+			public void compile( ExpressionCompiler _exp ) throws CompilerException
+			{
+				final GeneratorAdapter mv = _exp.mv();
+				mv.loadThis();
+				mv.visitVarInsn( Opcodes.ILOAD, _rowVar );
+				compileCall( mv );
+			}
+
+			public boolean isArray()
+			{
+				return false;
+			}
+
+		};
+	}
+
+
+	@Override
+	protected void compileBody() throws CompilerException
+	{
+		if (this.elts.size() <= ROWS_PER_METHOD) {
+			compileRows();
+		}
+		else {
+			compileChunks();
+		}
+	}
+
+	private void compileRows() throws CompilerException
+	{
+		final GeneratorAdapter mv = mv();
+		final int n = this.elts.size();
+		final Label[] labels = new Label[ n ];
+		for (int i = 0; i < n; i++) {
+			labels[ i ] = mv.newLabel();
+		}
+		final Label unknown = mv.newLabel();
+
+		// switch (_row) { case <row>: return <elt>; ... }
+		mv.loadArg( 0 );
+		mv.visitTableSwitchInsn( this.offset, this.offset + n - 1, unknown, labels );
+		final int reuseLocalsAt = localsOffset();
+		for (int i = 0; i < n; i++) {
+			mv.mark( labels[ i ] );
+			resetLocalsTo( reuseLocalsAt );
+			compileExpression( this.elts.get( i ) );
+			mv.returnValue();
+		}
+		mv.mark( unknown );
+		mv.throwException( ByteCodeEngineCompiler.ILLEGALARGUMENT_CLASS, "No such row" );
+	}
+
+	private void compileChunks() throws CompilerException
+	{
+		final GeneratorAdapter mv = mv();
+		final int n = this.elts.size();
+		final int chunks = (n + ROWS_PER_METHOD - 1) / ROWS_PER_METHOD;
+		final Label[] labels = new Label[ chunks ];
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			labels[ chunk ] = mv.newLabel();
+		}
+		final Label unknown = mv.newLabel();
+
+		// switch (_row / <max>) { case <chunk>: return <name>$<chunk>( _row ); ... }
+		mv.loadArg( 0 );
+		mv.push( ROWS_PER_METHOD );
+		mv.math( GeneratorAdapter.DIV, Type.INT_TYPE );
+		mv.visitTableSwitchInsn( 0, chunks - 1, unknown, labels );
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			final int from = chunk * ROWS_PER_METHOD;
+			final DatabaseCellCompiler rows = new DatabaseCellCompiler( section(), methodName() + "$" + chunk, this.type,
+					this.elts.subList( from, Math.min( from + ROWS_PER_METHOD, n ) ), from );
+			rows.compile();
+			mv.mark( labels[ chunk ] );
+			mv.loadThis();
+			mv.loadArg( 0 );
+			rows.compileCall( mv );
+			mv.returnValue();
+		}
+		mv.mark( unknown );
+		mv.throwException( ByteCodeEngineCompiler.ILLEGALARGUMENT_CLASS, "No such row" );
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.util.List;
+import java.util.Set;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.internal.expressions.DataType;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.compiler.internal.model.analysis.InputDependencies;
+import org.formulacompiler.runtime.New;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+
+/**
+ * Compiles a lazy accessor for the values of one column of a database table, for indexed database
+ * folds. The values are computed into an array by {@link FoldLoopCompiler}, so the accessor does
+ * not grow with the size of the table. Columns of constants only are held in a static field, so
+ * they are computed once per engine. Other columns are held in an instance field, so they are
+ * computed once per computation and dropped again by {@code reset()}.
+ */
+final class DatabaseColumnCompiler extends MethodCompiler
+{
+	private final DataType type;
+	private final List<ExpressionNode> elts;
+	private final boolean isStatic;
+	private final Type arrayType;
+
+
+	DatabaseColumnCompiler( SectionCompiler _section, String _name, DataType _type, List<ExpressionNode> _elts )
+	{
+		super( _section, Opcodes.ACC_FINAL, "$dbcol$" + _name, "()[" + typeDescriptorOf( _section, _type ) );
+		this.type = _type;
+		this.elts = _elts;
+		this.isStatic = _section.areAllConstant( _elts );
+		this.arrayType = Type.getType( "[" + typeDescriptorOf( _section, _type ) );
+	}
+
+	private static String typeDescriptorOf( SectionCompiler _section, DataType _type )
+	{
+		return _section.engineCompiler().typeCompiler( _type ).typeDescriptor();
+	}
+
+
+	public DataType dataType()
+	{
+		return this.type;
+	}
+
+	public String elementDescriptor()
+	{
+		return this.arrayType.getElementType().getDescriptor();
+	}
+
+	public Type arrayType()
+	{
+		return this.arrayType;
+	}
+
+	boolean isStatic()
+	{
+		return this.isStatic;
+	}
+
+	/**
+	 * Returns the inputs the values of this column depend on.
+	 */
+	Set<String> inputs()
+	{
+		return inputsOf( section(), this.elts );
+	}
+
+	static Set<String> inputsOf( SectionCompiler _section, List<ExpressionNode> _elts )
+	{
+		final InputDependencies deps = _section.engineCompiler().inputDependencies();
+		final Set<String> result = New.set();
+		for (ExpressionNode elt : _elts) {
+			result.addAll( deps.inputsOf( elt ) );
+		}
+		return result;
+	}
+
+
+	@Override
+	protected void compileBody() throws CompilerException
+	{
+		final GeneratorAdapter mv = mv();
+		final String name = methodName();
+		final Type owner = section().classType();
+
+		// private [static] T[] $dbcol$n;
+		final int access = this.isStatic ? Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC : Opcodes.ACC_PRIVATE;
+		section().newField( access, name, this.arrayType.getDescriptor() );
+
+		// if (this.col == null) {
+		final Label skipInit = mv.newLabel();
+		loadColumn( mv, owner, name );
+		mv.ifNonNull( skipInit );
+
+		// this.col = { <elt>, ... };
+		final int arrayVar = new FoldLoopCompiler( expressionCompiler( this.type ) ).compileElementArray( this.elts );
+		if (this.isStatic) {
+			mv.visitVarInsn( Opcodes.ALOAD, arrayVar );
+			mv.putStatic( owner, name, this.arrayType );
+		}
+		else {
+			mv.loadThis();
+			mv.visitVarInsn( Opcodes.ALOAD, arrayVar );
+			mv.putField( owner, name, this.arrayType );
+		}
+
+		// }
+		// return this.col;
+		mv.mark( skipInit );
+		loadColumn( mv, owner, name );
+		mv.visitInsn( Opcodes.ARETURN );
+
+		if (!this.isStatic) {
+			if (section().hasReset()) {
+				compileReset( section().resetter(), owner, name );
+			}
+			// Same in reset( <input> ) for all inputs the values depend on.
+			for (GeneratorAdapter reset : section().inputResettersFor( inputs() )) {
+				compileReset( reset, owner, name );
+			}
+		}
+	}
+
+	private void compileReset( GeneratorAdapter _reset, Type _owner, String _name )
+	{
+		// this.col = null;
+		_reset.loadThis();
+		_reset.visitInsn( Opcodes.ACONST_NULL );
+		_reset.putField( _owner, _name, this.arrayType );
+	}
+
+	private void loadColumn( GeneratorAdapter _mv, Type _owner, String _name )
+	{
+		if (this.isStatic) {
+			_mv.getStatic( _owner, _name, this.arrayType );
+		}
+		else {
+			_mv.loadThis();
+			_mv.getField( _owner, _name, this.arrayType );
+		}
+	}
+
+}
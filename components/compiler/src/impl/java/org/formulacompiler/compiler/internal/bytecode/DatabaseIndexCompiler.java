@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.runtime.internal.DatabaseIndex;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+
+/**
+ * Compiles a lazy accessor for the hashed {@link DatabaseIndex} over a column returned by a
+ * {@link DatabaseColumnCompiler}. Like the column, the index is held in a static field if the
+ * column is constant, and is otherwise built once per computation and dropped again by
+ * {@code reset()}.
+ */
+final class DatabaseIndexCompiler extends MethodCompiler
+{
+	static final Type INDEX_CLASS = Type.getType( DatabaseIndex.class );
+
+	private final DatabaseColumnCompiler column;
+
+
+	DatabaseIndexCompiler( SectionCompiler _section, String _name, DatabaseColumnCompiler _column )
+	{
+		super( _section, Opcodes.ACC_FINAL, "$dbidx$" + _name, "()" + INDEX_CLASS.getDescriptor() );
+		this.column = _column;
+	}
+
+
+	/**
+	 * Compiles {@code rowsOf( <key> )} on the index, which must be on the stack followed by the key.
+	 * Leaves the {@code int[]} of matching row numbers.
+	 */
+	void compileRowsOf( GeneratorAdapter _mv )
+	{
+		_mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, INDEX_CLASS.getInternalName(), "rowsOf", "("
+				+ this.column.elementDescriptor() + ")[I" );
+	}
+
+
+	/**
+	 * Compiles {@code groupOf( <key> )} on the index, which must be on the stack followed by the key.
+	 * Leaves the {@code int} number of the group of matching rows.
+	 */
+	void compileGroupOf( GeneratorAdapter _mv )
+	{
+		_mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, INDEX_CLASS.getInternalName(), "groupOf", "("
+				+ this.column.elementDescriptor() + ")I" );
+	}
+
+	/**
+	 * Compiles {@code groupCount()} on the index, which must be on the stack.
+	 */
+	void compileGroupCount( GeneratorAdapter _mv )
+	{
+		_mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, INDEX_CLASS.getInternalName(), "groupCount", "()I" );
+	}
+
+	/**
+	 * Compiles {@code rowsOfGroup( <group> )} on the index, which must be on the stack followed by the
+	 * group number. Leaves the {@code int[]} of the group's row numbers.
+	 */
+	void compileRowsOfGroup( GeneratorAdapter _mv )
+	{
+		_mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, INDEX_CLASS.getInternalName(), "rowsOfGroup", "(I)[I" );
+	}
+
+
+	DatabaseColumnCompiler column()
+	{
+		return this.column;
+	}
+
+
+	@Override
+	protected void compileBody() throws CompilerException
+	{
+		final GeneratorAdapter mv = mv();
+		final String name = methodName();
+		final Type owner = section().classType();
+		final boolean isStatic = this.column.isStatic();
+
+		// private [static] DatabaseIndex $dbidx$n;
+		final int access = isStatic ? Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC : Opcodes.ACC_PRIVATE;
+		section().newField( access, name, INDEX_CLASS.getDescriptor() );
+
+		// if (this.idx == null) {
+		final Label skipInit = mv.newLabel();
+		loadIndex( mv, owner, name, isStatic );
+		mv.ifNonNull( skipInit );
+
+		// this.idx = new DatabaseIndex( $dbcol$n() );
+		if (!isStatic) mv.loadThis();
+		mv.newInstance( INDEX_CLASS );
+		mv.dup();
+		mv.loadThis();
+		this.column.compileCall( mv );
+		mv.visitMethodInsn( Opcodes.INVOKESPECIAL, INDEX_CLASS.getInternalName(), "<init>", "("
+				+ this.column.arrayType().getDescriptor() + ")V" );
+		if (isStatic) {
+			mv.putStatic( owner, name, INDEX_CLASS );
+		}
+		else {
+			mv.putField( owner, name, INDEX_CLASS );
+		}
+
+		// }
+		// return this.idx;
+		mv.mark( skipInit );
+		loadIndex( mv, owner, name, isStatic );
+		mv.visitInsn( Opcodes.ARETURN );
+
+		if (!isStatic) {
+			if (section().hasReset()) {
+				compileReset( section().resetter(), owner, name );
+			}
+			// Same in reset( <input> ) for all inputs the column depends on.
+			for (GeneratorAdapter reset : section().inputResettersFor( this.column.inputs() )) {
+				compileReset( reset, owner, name );
+			}
+		}
+	}
+
+	private void compileReset( GeneratorAdapter _reset, Type _owner, String _name )
+	{
+		// this.idx = null;
+		_reset.loadThis();
+		_reset.visitInsn( Opcodes.ACONST_NULL );
+		_reset.putField( _owner, _name, INDEX_CLASS );
+	}
+
+	private void loadIndex( GeneratorAdapter _mv, Type _owner, String _name, boolean _isStatic )
+	{
+		if (_isStatic) {
+			_mv.getStatic( _owner, _name, INDEX_CLASS );
+		}
+		else {
+			_mv.loadThis();
+			_mv.getField( _owner, _name, INDEX_CLASS );
+		}
+	}
+
+}
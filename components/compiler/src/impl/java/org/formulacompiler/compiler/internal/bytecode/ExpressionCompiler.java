@@ -181,6 +181,10 @@ abstract class ExpressionCompiler
 			compileConversionFrom( nodeType );
 		}
 
+		else if (method().isToBeSplitOff( _node )) {
+			compileSplitOff( _node );
+		}
+
 		else if (_node instanceof ExpressionNodeForConstantValue) {
 			compileConst( ((ExpressionNodeForConstantValue) _node).value() );
 		}
@@ -1180,6 +1184,26 @@ abstract class ExpressionCompiler
 	}
 
 
+	private final void compileSplitOff( final ExpressionNode _node ) throws CompilerException
+	{
+		/*
+		 * Move the node into its own method to keep this one below the method size limit.
+		 */
+		final Iterable<LetEntry<Compilable>> closure = closureOf( _node );
+		compileHelpedExpr( new HelperCompiler( sectionInContext(), _node, closure )
+		{
+
+			@Override
+			protected void compileBody() throws CompilerException
+			{
+				compileExpression( _node );
+				mv().returnValue();
+			}
+
+		}, closure );
+	}
+
+
 	protected final void compileRuntimeMethod( String _methodName, String _methodSig )
 	{
 		typeCompiler().compileRuntimeMethod( mv(), _methodName, _methodSig );
@@ -1273,6 +1297,13 @@ abstract class ExpressionCompiler
 
 	private final void compileFoldList( ExpressionNodeForFoldList _node ) throws CompilerException
 	{
+		if (sectionInContext().engineCompiler().isParallelFoldEnabled()) {
+			final Iterable<LetEntry<Compilable>> closure = closureOf( _node );
+			if (HelperCompilerForFoldParallel.isApplicable( _node, closure )) {
+				compileHelpedExpr( new HelperCompilerForFoldParallel( sectionInContext(), _node, closure ), closure );
+				return;
+			}
+		}
 		if (ChainedFoldCompiler.isChainable( _node.fold() )) {
 			if (new ChainedFoldCompiler( this, _node ).compile()) {
 				return;
@@ -295,21 +295,40 @@ abstract class ExpressionCompilerForNumbers_Base extends ExpressionCompilerForAl
 		// Trim trailing nulls. See http://code.google.com/p/formulacompiler/issues/detail?id=29.
 		final ArrayAccessorCompiler acc = section().getArrayAccessorForFullData( arrayNode, true );
 
+		if (type == 0 && section().engineCompiler().isHashedLookupEnabled()) {
+			// return Runtime.fun_MATCH_Exact( val, index );
+			final MatchIndexCompiler idx = section().getMatchIndexFor( acc );
+			valCompiler.compile( valNode );
+			mv().loadThis();
+			idx.compileCall( mv() );
+			valCompiler.compileRuntimeMethod( "fun_MATCH_Exact", "("
+					+ acc.elementDescriptor() + idx.indexDescriptor() + ")I" );
+		}
+		else {
+			compileLinearMatch( valNode, acc, type );
+		}
+
+		if (_node.getFunction() != Function.INTERNAL_MATCH_INT) {
+			numCompiler.compileConversionFromInt();
+		}
+	}
+
+	private void compileLinearMatch( ExpressionNode _valNode, ArrayAccessorCompiler _acc, int _type )
+			throws CompilerException
+	{
+		final ExpressionCompiler valCompiler = method().expressionCompiler( _valNode.getDataType() );
+
 		// return Runtime.fun_MATCH_xy( val, vals [, env] );
-		final boolean needEnv = (valNode.getDataType() == DataType.STRING && type != 0);
+		final boolean needEnv = (_valNode.getDataType() == DataType.STRING && _type != 0);
 		final String envDescriptor = needEnv ? ByteCodeEngineCompiler.ENV_DESC : "";
-		valCompiler.compile( valNode );
+		valCompiler.compile( _valNode );
 		mv().loadThis();
-		acc.compileCall( mv() );
+		_acc.compileCall( mv() );
 		if (needEnv) {
 			compile_environment();
 		}
-		valCompiler.compileRuntimeMethod( "fun_MATCH_" + TYPE_SUFFIXES[ type + 1 ],
-				"(" + acc.elementDescriptor() + acc.arrayDescriptor() + envDescriptor + ")I" );
-
-		if (_node.getFunction() != Function.INTERNAL_MATCH_INT) {
-			numCompiler.compileConversionFromInt();
-		}
+		valCompiler.compileRuntimeMethod( "fun_MATCH_" + TYPE_SUFFIXES[ _type + 1 ],
+				"(" + _acc.elementDescriptor() + _acc.arrayDescriptor() + envDescriptor + ")I" );
 	}
 
 
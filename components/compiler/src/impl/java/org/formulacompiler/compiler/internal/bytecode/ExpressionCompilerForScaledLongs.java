@@ -19,18 +19,142 @@
  * You should have received a copy of the GNU General Public License
  * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
  */
-
 package org.formulacompiler.compiler.internal.bytecode;
 
+import org.formulacompiler.compiler.CompilerException;
 import org.formulacompiler.compiler.NumericType;
+import org.formulacompiler.compiler.Operator;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.runtime.internal.RuntimeLong_v2;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 
 
 final class ExpressionCompilerForScaledLongs extends ExpressionCompilerForScaledLongs_Generated
 {
+	private static final String RUNTIME_NAME = Type.getInternalName( RuntimeLong_v2.class );
+	private static final String J2J = "(J)J";
+	private static final String JJ2J = "(JJ)J";
+	private static final String JJJ2J = "(JJJ)J";
+
+	/**
+	 * Non-null if this compiles the scaled long fast path of a {@code BigDecimal} engine. Arithmetic
+	 * is then checked for overflow and rounded half up, like the {@code BigDecimal} engine rounds.
+	 */
+	private final ScaledLongFastPath fastPath;
 
 	public ExpressionCompilerForScaledLongs( MethodCompiler _methodCompiler, NumericType _numericType )
 	{
 		super( _methodCompiler, _numericType );
+		this.fastPath = typeCompiler().engineCompiler().scaledLongFastPath();
+	}
+
+
+	@Override
+	protected void compileOperatorWithFirstArgOnStack( Operator _operator, ExpressionNode _secondArg )
+			throws CompilerException
+	{
+		if (null != this.fastPath) {
+			if (null == _secondArg) {
+				if (Operator.MINUS == _operator) {
+					compileRuntimeCall( "negateExact", J2J );
+					return;
+				}
+			}
+			else {
+				switch (_operator) {
+					case PLUS:
+						compile( _secondArg );
+						compileRuntimeCall( "addExact", JJ2J );
+						return;
+					case MINUS:
+						compile( _secondArg );
+						compileRuntimeCall( "subtractExact", JJ2J );
+						return;
+					case TIMES:
+						compile( _secondArg );
+						mv().push( this.fastPath.one() );
+						compileRuntimeCall( "multiplyScaledExact", JJJ2J );
+						return;
+					case DIV:
+						compile( _secondArg );
+						mv().push( this.fastPath.one() );
+						compileRuntimeCall( "divideScaledExact", JJJ2J );
+						return;
+				}
+			}
+		}
+		super.compileOperatorWithFirstArgOnStack( _operator, _secondArg );
+	}
+
+
+	@Override
+	protected void compileConst( Object _value ) throws CompilerException
+	{
+		if (null != this.fastPath && _value instanceof Number) {
+			mv().push( this.fastPath.scaledConstant( (Number) _value ).longValue() );
+		}
+		else {
+			super.compileConst( _value );
+		}
+	}
+
+
+	@Override
+	protected void compileConversionFromInt() throws CompilerException
+	{
+		if (null != this.fastPath) {
+			mv().visitInsn( Opcodes.I2L );
+			compileConversionFromLong();
+		}
+		else {
+			super.compileConversionFromInt();
+		}
+	}
+
+	@Override
+	protected void compileConversionFromLong() throws CompilerException
+	{
+		if (null != this.fastPath) {
+			mv().push( this.fastPath.one() );
+			compileRuntimeCall( "scaleUpExact", JJ2J );
+		}
+		else {
+			super.compileConversionFromLong();
+		}
+	}
+
+	@Override
+	protected void compileConversionFromBigDecimal() throws CompilerException
+	{
+		if (null != this.fastPath) {
+			compile_scale();
+			compileRuntimeCall( "fromBigDecimalExact", "(" + ByteCodeEngineCompiler.BIGDECIMAL_CLASS.getDescriptor()
+					+ "I)J" );
+		}
+		else {
+			super.compileConversionFromBigDecimal();
+		}
+	}
+
+	@Override
+	protected void compileConversionToBigDecimal() throws CompilerException
+	{
+		if (null != this.fastPath) {
+			// BigDecimal.valueOf( <value>, <scale> ) has the scale the BigDecimal engine would return.
+			compile_scale();
+			mv().visitMethodInsn( Opcodes.INVOKESTATIC, ByteCodeEngineCompiler.BIGDECIMAL_CLASS.getInternalName(),
+					"valueOf", "(JI)" + ByteCodeEngineCompiler.BIGDECIMAL_CLASS.getDescriptor() );
+		}
+		else {
+			super.compileConversionToBigDecimal();
+		}
+	}
+
+
+	private void compileRuntimeCall( String _name, String _descriptor )
+	{
+		mv().visitMethodInsn( Opcodes.INVOKESTATIC, RUNTIME_NAME, _name, _descriptor );
 	}
 
 }
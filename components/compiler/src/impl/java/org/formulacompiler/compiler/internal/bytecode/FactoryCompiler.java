@@ -23,8 +23,12 @@
 package org.formulacompiler.compiler.internal.bytecode;
 
 import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
 
+import org.formulacompiler.runtime.New;
 import org.formulacompiler.runtime.internal.bytecode.ByteCodeEngine;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.GeneratorAdapter;
@@ -39,9 +43,11 @@ final class FactoryCompiler extends ClassCompiler
 	private final Type userFactoryType;
 	private final Class userInputClass;
 	private final Type userInputType;
+	private final BatchInputCompiler batchCompiler;
 
 
-	FactoryCompiler( ByteCodeEngineCompiler _compiler, Class _factoryClass, Method _factoryMethod )
+	FactoryCompiler( ByteCodeEngineCompiler _compiler, Class _factoryClass, Method _factoryMethod,
+			BatchInputCompiler _batchCompiler )
 	{
 		super( _compiler, ByteCodeEngine.GEN_FACTORY_NAME, true );
 		this.userFactoryClass = _factoryClass;
@@ -49,19 +55,44 @@ final class FactoryCompiler extends ClassCompiler
 		this.userFactoryType = (_factoryClass != null) ? Type.getType( _factoryClass ) : null;
 		this.userInputClass = engineCompiler().getModel().getInputClass();
 		this.userInputType = Type.getType( this.userInputClass );
+		this.batchCompiler = _batchCompiler;
 	}
 
 
 	void compile()
 	{
-		final Type parentType = initializeClass( this.userFactoryClass, this.userFactoryType,
-				ByteCodeEngineCompiler.FACTORY_INTF );
+		final List<Type> intfs = New.list();
+		intfs.add( (this.batchCompiler != null) ? ByteCodeEngineCompiler.BATCH_FACTORY_INTF
+				: ByteCodeEngineCompiler.FACTORY_INTF );
+		if (isPooling()) {
+			intfs.add( ByteCodeEngineCompiler.POOLED_FACTORY_INTF );
+		}
+		if (isMemoizing()) {
+			intfs.add( ByteCodeEngineCompiler.MEMO_FACTORY_INTF );
+		}
+		final Type parentType = initializeClass( this.userFactoryClass, this.userFactoryType, intfs
+				.toArray( new Type[ intfs.size() ] ) );
 		buildEnvironmentField();
+		if (isPooling()) {
+			buildPoolField();
+		}
+		if (isMemoizing()) {
+			buildMemoField();
+		}
 		buildDefaultConstructor( parentType );
 		buildComputationFactoryMethod();
 		if (this.userFactoryMethod != null) {
 			buildUserFactoryMethod();
 		}
+		if (this.batchCompiler != null) {
+			buildBatchComputationMethod();
+		}
+		if (isPooling()) {
+			buildPoolMethods();
+		}
+		if (isMemoizing()) {
+			buildMemoMethods();
+		}
 		finalizeClass();
 	}
 
@@ -73,6 +104,30 @@ final class FactoryCompiler extends ClassCompiler
 	}
 
 
+	private boolean isPooling()
+	{
+		return engineCompiler().isComputationPoolingEnabled();
+	}
+
+	private void buildPoolField()
+	{
+		newField( Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, ByteCodeEngineCompiler.POOL_MEMBER_NAME,
+				ByteCodeEngineCompiler.COMPUTATION_POOL_CLASS.getDescriptor() );
+	}
+
+
+	private boolean isMemoizing()
+	{
+		return engineCompiler().isMemoizing();
+	}
+
+	private void buildMemoField()
+	{
+		newField( Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, ByteCodeEngineCompiler.MEMO_MEMBER_NAME,
+				ByteCodeEngineCompiler.MEMO_CACHE_CLASS.getDescriptor() );
+	}
+
+
 	private void buildDefaultConstructor( Type _parentType )
 	{
 		final GeneratorAdapter mv = newMethod( Opcodes.ACC_PUBLIC, "<init>", ENV_CONSTRUCTOR_SIG );
@@ -82,6 +137,25 @@ final class FactoryCompiler extends ClassCompiler
 		mv.loadThis();
 		mv.loadArg( 0 );
 		mv.putField( this.classType(), ByteCodeEngineCompiler.ENV_MEMBER_NAME, ByteCodeEngineCompiler.ENV_CLASS );
+		if (isPooling()) {
+			// this.pool = new ComputationPool();
+			final Type poolType = ByteCodeEngineCompiler.COMPUTATION_POOL_CLASS;
+			mv.loadThis();
+			mv.newInstance( poolType );
+			mv.dup();
+			mv.visitMethodInsn( Opcodes.INVOKESPECIAL, poolType.getInternalName(), "<init>", "()V" );
+			mv.putField( this.classType(), ByteCodeEngineCompiler.POOL_MEMBER_NAME, poolType );
+		}
+		if (isMemoizing()) {
+			// this.memo = new MemoCache( <size> );
+			final Type memoType = ByteCodeEngineCompiler.MEMO_CACHE_CLASS;
+			mv.loadThis();
+			mv.newInstance( memoType );
+			mv.dup();
+			mv.push( engineCompiler().getMemoCacheSize() );
+			mv.visitMethodInsn( Opcodes.INVOKESPECIAL, memoType.getInternalName(), "<init>", "(I)V" );
+			mv.putField( this.classType(), ByteCodeEngineCompiler.MEMO_MEMBER_NAME, memoType );
+		}
 		mv.visitInsn( Opcodes.RETURN );
 		endMethod( mv );
 	}
@@ -91,6 +165,7 @@ final class FactoryCompiler extends ClassCompiler
 	{
 		final GeneratorAdapter mv = newMethod( "newComputation", "(Ljava/lang/Object;)"
 				+ ByteCodeEngineCompiler.COMPUTATION_INTF.getDescriptor() );
+		compilePooledComputation( mv, null );
 		mv.newInstance( ByteCodeEngineCompiler.GEN_ROOT_CLASS );
 		mv.dup();
 		mv.loadArg( 0 );
@@ -100,6 +175,7 @@ final class FactoryCompiler extends ClassCompiler
 		mv.getField( classType(), ByteCodeEngineCompiler.ENV_MEMBER_NAME, ByteCodeEngineCompiler.ENV_CLASS );
 		mv.visitMethodInsn( Opcodes.INVOKESPECIAL, ByteCodeEngineCompiler.GEN_ROOT_CLASS.getInternalName(), "<init>", "("
 				+ this.userInputType.getDescriptor() + ByteCodeEngineCompiler.ENV_DESC + ")V" );
+		compileMemoBinding( mv );
 		mv.visitInsn( Opcodes.ARETURN );
 		endMethod( mv );
 	}
@@ -109,6 +185,7 @@ final class FactoryCompiler extends ClassCompiler
 	{
 		final GeneratorAdapter mv = newMethod( this.userFactoryMethod.getName(),
 				Type.getMethodDescriptor( this.userFactoryMethod ) );
+		compilePooledComputation( mv, Type.getReturnType( this.userFactoryMethod ) );
 		mv.newInstance( ByteCodeEngineCompiler.GEN_ROOT_CLASS );
 		mv.dup();
 		mv.loadArg( 0 );
@@ -116,11 +193,192 @@ final class FactoryCompiler extends ClassCompiler
 		mv.getField( classType(), ByteCodeEngineCompiler.ENV_MEMBER_NAME, ByteCodeEngineCompiler.ENV_CLASS );
 		mv.visitMethodInsn( Opcodes.INVOKESPECIAL, ByteCodeEngineCompiler.GEN_ROOT_CLASS.getInternalName(), "<init>", "("
 				+ this.userInputType.getDescriptor() + ByteCodeEngineCompiler.ENV_DESC + ")V" );
+		compileMemoBinding( mv );
 		mv.visitInsn( Opcodes.ARETURN );
 		endMethod( mv );
 	}
 
 
+	/**
+	 * Expects the new root computation on the stack and leaves it there.
+	 */
+	private void compileMemoBinding( GeneratorAdapter _mv )
+	{
+		if (!isMemoizing()) return;
+
+		// c.memo = this.memo;
+		final Type memoType = ByteCodeEngineCompiler.MEMO_CACHE_CLASS;
+		_mv.dup();
+		_mv.loadThis();
+		_mv.getField( classType(), ByteCodeEngineCompiler.MEMO_MEMBER_NAME, memoType );
+		_mv.putField( ByteCodeEngineCompiler.GEN_ROOT_CLASS, ByteCodeEngineCompiler.MEMO_MEMBER_NAME, memoType );
+	}
+
+
+	private void compilePooledComputation( GeneratorAdapter _mv, Type _resultType )
+	{
+		if (!isPooling()) return;
+
+		// Computation c = this.pool.acquire( _inputs ); if (c != null) return (<type>) c;
+		final Type poolType = ByteCodeEngineCompiler.COMPUTATION_POOL_CLASS;
+		final Label allocate = _mv.newLabel();
+		_mv.loadThis();
+		_mv.getField( classType(), ByteCodeEngineCompiler.POOL_MEMBER_NAME, poolType );
+		_mv.loadArg( 0 );
+		_mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, poolType.getInternalName(), "acquire", "(Ljava/lang/Object;)"
+				+ ByteCodeEngineCompiler.COMPUTATION_INTF.getDescriptor() );
+		_mv.dup();
+		_mv.ifNull( allocate );
+		if (null != _resultType) {
+			_mv.checkCast( _resultType );
+		}
+		_mv.visitInsn( Opcodes.ARETURN );
+		_mv.mark( allocate );
+		_mv.pop();
+	}
+
+	private void buildPoolMethods()
+	{
+		final Type poolType = ByteCodeEngineCompiler.COMPUTATION_POOL_CLASS;
+		final String computationDesc = ByteCodeEngineCompiler.COMPUTATION_INTF.getDescriptor();
+
+		// public final void releaseComputation( Computation _c ) { this.pool.release( _c ); }
+		GeneratorAdapter mv = newMethod( "releaseComputation", "(" + computationDesc + ")V" );
+		mv.loadThis();
+		mv.getField( classType(), ByteCodeEngineCompiler.POOL_MEMBER_NAME, poolType );
+		mv.loadArg( 0 );
+		mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, poolType.getInternalName(), "release", "(" + computationDesc + ")V" );
+		mv.visitInsn( Opcodes.RETURN );
+		endMethod( mv );
+
+		// public final long getPoolHits() { return this.pool.getHits(); }
+		// public final long getPoolMisses() { return this.pool.getMisses(); }
+		final String[][] getters = { { "getPoolHits", "getHits" }, { "getPoolMisses", "getMisses" } };
+		for (String[] getter : getters) {
+			mv = newMethod( getter[ 0 ], "()J" );
+			mv.loadThis();
+			mv.getField( classType(), ByteCodeEngineCompiler.POOL_MEMBER_NAME, poolType );
+			mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, poolType.getInternalName(), getter[ 1 ], "()J" );
+			mv.visitInsn( Opcodes.LRETURN );
+			endMethod( mv );
+		}
+	}
+
+
+	private void buildMemoMethods()
+	{
+		final Type memoType = ByteCodeEngineCompiler.MEMO_CACHE_CLASS;
+
+		// public final long getMemoHits() { return this.memo.getHits(); }
+		// public final long getMemoMisses() { return this.memo.getMisses(); }
+		final String[][] getters = { { "getMemoHits", "getHits" }, { "getMemoMisses", "getMisses" } };
+		for (String[] getter : getters) {
+			final GeneratorAdapter mv = newMethod( getter[ 0 ], "()J" );
+			mv.loadThis();
+			mv.getField( classType(), ByteCodeEngineCompiler.MEMO_MEMBER_NAME, memoType );
+			mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, memoType.getInternalName(), getter[ 1 ], "()J" );
+			mv.visitInsn( Opcodes.LRETURN );
+			endMethod( mv );
+		}
+	}
+
+
+	private void buildBatchComputationMethod()
+	{
+		final Type batchType = BatchInputCompiler.BATCH_CLASS;
+		final Type batchInputType = ByteCodeEngineCompiler.GEN_BATCH_CLASS;
+		final Type rootType = ByteCodeEngineCompiler.GEN_ROOT_CLASS;
+		final GeneratorAdapter mv = newMethod( "computeBatch", "(" + batchType.getDescriptor() + ")V" );
+
+		// $Batch in = new $Batch( _batch );
+		final int l_in = mv.newLocal( batchInputType );
+		mv.newInstance( batchInputType );
+		mv.dup();
+		mv.loadArg( 0 );
+		mv.visitMethodInsn( Opcodes.INVOKESPECIAL, batchInputType.getInternalName(), "<init>",
+				BatchInputCompiler.CONSTRUCTOR_DESC );
+		mv.storeLocal( l_in );
+
+		// $Root c = new $Root( in, this.environment );
+		final int l_c = mv.newLocal( rootType );
+		mv.newInstance( rootType );
+		mv.dup();
+		mv.loadLocal( l_in );
+		mv.loadThis();
+		mv.getField( classType(), ByteCodeEngineCompiler.ENV_MEMBER_NAME, ByteCodeEngineCompiler.ENV_CLASS );
+		mv.visitMethodInsn( Opcodes.INVOKESPECIAL, rootType.getInternalName(), "<init>", "("
+				+ this.userInputType.getDescriptor() + ByteCodeEngineCompiler.ENV_DESC + ")V" );
+		compileMemoBinding( mv );
+		mv.storeLocal( l_c );
+
+		// <type>[] o<k> = (<type>[]) _batch.getOutputColumn( "<name>" );
+		final Collection<Method> outputs = this.batchCompiler.outputs();
+		final int[] l_os = new int[ outputs.size() ];
+		int k = 0;
+		for (Method output : outputs) {
+			final Type columnType = Type.getType( "[" + Type.getReturnType( output ).getDescriptor() );
+			l_os[ k ] = mv.newLocal( columnType );
+			mv.loadArg( 0 );
+			mv.push( output.getName() );
+			mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, batchType.getInternalName(), "getOutputColumn",
+					"(Ljava/lang/String;)Ljava/lang/Object;" );
+			mv.checkCast( columnType );
+			mv.storeLocal( l_os[ k ] );
+			k++;
+		}
+
+		// int n = _batch.getRowCount();
+		final int l_n = mv.newLocal( Type.INT_TYPE );
+		mv.loadArg( 0 );
+		mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, batchType.getInternalName(), "getRowCount", "()I" );
+		mv.storeLocal( l_n );
+
+		// for (int i = 0; i < n; i++) {
+		final int l_i = mv.newLocal( Type.INT_TYPE );
+		mv.push( 0 );
+		mv.storeLocal( l_i );
+		final Label next = mv.newLabel();
+		final Label done = mv.newLabel();
+		mv.mark( next );
+		mv.loadLocal( l_i );
+		mv.loadLocal( l_n );
+		mv.ifICmp( GeneratorAdapter.GE, done );
+
+		// in.$row = i;
+		mv.loadLocal( l_in );
+		mv.loadLocal( l_i );
+		mv.putField( batchInputType, BatchInputCompiler.ROW_MEMBER_NAME, Type.INT_TYPE );
+
+		// c.reset();
+		mv.loadLocal( l_c );
+		mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, rootType.getInternalName(), "reset", "()V" );
+
+		// if (o<k> != null) o<k>[ i ] = c.<name>();
+		k = 0;
+		for (Method output : outputs) {
+			final Type resultType = Type.getReturnType( output );
+			final Label skip = mv.newLabel();
+			mv.loadLocal( l_os[ k ] );
+			mv.ifNull( skip );
+			mv.loadLocal( l_os[ k ] );
+			mv.loadLocal( l_i );
+			mv.loadLocal( l_c );
+			mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, rootType.getInternalName(), output.getName(), Type
+					.getMethodDescriptor( output ) );
+			mv.arrayStore( resultType );
+			mv.mark( skip );
+			k++;
+		}
+
+		// }
+		mv.iinc( l_i, 1 );
+		mv.goTo( next );
+		mv.mark( done );
+		mv.visitInsn( Opcodes.RETURN );
+		endMethod( mv );
+	}
+
+
 	private GeneratorAdapter newMethod( String _name, String _signature )
 	{
 		final int access = Opcodes.ACC_FINAL | Opcodes.ACC_PUBLIC;
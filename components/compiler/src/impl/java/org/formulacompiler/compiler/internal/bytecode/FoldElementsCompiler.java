@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.util.List;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.internal.expressions.DataType;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.compiler.internal.expressions.LetDictionary.LetEntry;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+
+/**
+ * Compiles a method storing a chunk of the elements of a looped fold into the array given as its
+ * first argument, for {@link FoldLoopCompiler}.
+ */
+final class FoldElementsCompiler extends MethodCompiler
+{
+	private final DataType type;
+	private final List<ExpressionNode> elts;
+	private final int offset;
+
+
+	FoldElementsCompiler( SectionCompiler _section, DataType _type, List<ExpressionNode> _elts, int _offset,
+			Iterable<LetEntry<Compilable>> _closure )
+	{
+		super( _section, Opcodes.ACC_FINAL, _section.newGetterName(), "([" + typeDescriptorOf( _section, _type )
+				+ descriptorOf( _section, _closure ) + ")V" );
+		this.type = _type;
+		this.elts = _elts;
+		this.offset = _offset;
+		addClosureToLetDict( _closure, 1 );
+	}
+
+	private static String typeDescriptorOf( SectionCompiler _section, DataType _type )
+	{
+		return _section.engineCompiler().typeCompiler( _type ).typeDescriptor();
+	}
+
+
+	@Override
+	protected void compileBody() throws CompilerException
+	{
+		final GeneratorAdapter mv = mv();
+		final ExpressionCompiler expc = expressionCompiler( this.type );
+		final Type eltType = expc.type();
+		final int reuseLocalsAt = localsOffset();
+		int i = this.offset;
+		for (ExpressionNode elt : this.elts) {
+			resetLocalsTo( reuseLocalsAt );
+			// _elts[ i ] = <elt>;
+			mv.loadArg( 0 );
+			mv.push( i++ );
+			compileExpression( elt );
+			mv.arrayStore( eltType );
+		}
+		mv.visitInsn( Opcodes.RETURN );
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.util.List;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.internal.expressions.DataType;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.compiler.internal.expressions.LetDictionary.LetEntry;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForSubSectionModel;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+
+/**
+ * Compiles folds over long runs of local elements as a loop instead of unrolling the fold's step
+ * once per element. The elements are first computed into an array by {@link FoldElementsCompiler}
+ * methods of at most {@link #ELEMENTS_PER_METHOD} elements each. The step is then compiled once,
+ * in a loop over the array. So the folding method no longer grows with the size of the range, and
+ * neither do the generated filler methods.
+ * <p>
+ * The elements are computed in their original order before any step is applied. This is safe
+ * because AFC's fold steps do not have side effects.
+ */
+@SuppressWarnings( "unqualified-field-access" )
+final class FoldLoopCompiler
+{
+	static final int LOOP_THRESHOLD = 64;
+	static final int ELEMENTS_PER_METHOD = 128;
+
+	private final ExpressionCompiler expc;
+
+
+	FoldLoopCompiler( ExpressionCompiler _expressionCompiler )
+	{
+		super();
+		this.expc = _expressionCompiler;
+	}
+
+
+	/**
+	 * Long runs of scalar local elements of a single type are folded in a loop.
+	 */
+	static boolean isLoopable( List<ExpressionNode> _elts )
+	{
+		if (_elts.size() < LOOP_THRESHOLD) return false;
+		final DataType type = _elts.get( 0 ).getDataType();
+		if (null == type) return false;
+		for (ExpressionNode elt : _elts) {
+			if (elt instanceof ExpressionNodeForSubSectionModel || ExpressionCompiler.isArray( elt )
+					|| elt.getDataType() != type) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Compiles the computation of all the given elements into a new array, which it leaves in a new
+	 * local.
+	 * 
+	 * @return the number of the local holding the array.
+	 */
+	int compileElementArray( List<ExpressionNode> _elts ) throws CompilerException
+	{
+		final MethodCompiler method = expc.method();
+		final GeneratorAdapter mv = expc.mv();
+		final DataType type = _elts.get( 0 ).getDataType();
+		final Type eltType = method.section().engineCompiler().typeCompiler( type ).type();
+		final int n = _elts.size();
+
+		// T[] elts = new T[ n ];
+		final int arrayVar = method.newLocal( 1 );
+		mv.push( n );
+		mv.newArray( eltType );
+		mv.visitVarInsn( Opcodes.ASTORE, arrayVar );
+
+		// fill$k( elts, <closure> ); for all chunks
+		for (int from = 0; from < n; from += ELEMENTS_PER_METHOD) {
+			final List<ExpressionNode> chunk = _elts.subList( from, Math.min( from + ELEMENTS_PER_METHOD, n ) );
+			final Iterable<LetEntry<Compilable>> closure = method.closureOf( chunk );
+			final FoldElementsCompiler filler = new FoldElementsCompiler( method.sectionInContext(), type, chunk, from,
+					closure );
+			filler.compile();
+			method.compileObjectInContext();
+			mv.visitVarInsn( Opcodes.ALOAD, arrayVar );
+			method.compileClosure( closure );
+			filler.compileCall( mv );
+		}
+		return arrayVar;
+	}
+
+
+	/**
+	 * Body of a fold loop, compiled once.
+	 */
+	static interface Body
+	{
+		/**
+		 * @param _elts loads the current element of each of the arrays.
+		 */
+		void compile( Compilable[] _elts ) throws CompilerException;
+	}
+
+
+	/**
+	 * Compiles a loop over the elements of the given arrays. The loop runs at least once, so locals
+	 * first set in its body are definitely set after it.
+	 */
+	void compileLoop( int _count, int[] _arrayVars, DataType[] _types, Body _body ) throws CompilerException
+	{
+		assert _count > 0;
+		final MethodCompiler method = expc.method();
+		final GeneratorAdapter mv = expc.mv();
+		final Compilable[] elts = new Compilable[ _arrayVars.length ];
+
+		// int i = 0;
+		final int indexVar = method.newLocal( 1 );
+		mv.push( 0 );
+		mv.visitVarInsn( Opcodes.ISTORE, indexVar );
+
+		for (int iVec = 0; iVec < elts.length; iVec++) {
+			final int arrayVar = _arrayVars[ iVec ];
+			final Type eltType = method.section().engineCompiler().typeCompiler( _types[ iVec ] ).type();
+			elts[ iVec ] = new Compilable()
+			{
+
+				public void compile( ExpressionCompiler _exp ) throws CompilerException
+				{
+					final GeneratorAdapter mv = _exp.mv();
+					mv.visitVarInsn( Opcodes.ALOAD, arrayVar );
+					mv.visitVarInsn( Opcodes.ILOAD, indexVar );
+					mv.arrayLoad( eltType );
+				}
+
+				public boolean isArray()
+				{
+					return false;
+				}
+
+			};
+		}
+
+		// do { <body> } while (++i < n);
+		final Label next = mv.mark();
+		_body.compile( elts );
+		mv.iinc( indexVar, 1 );
+		mv.visitVarInsn( Opcodes.ILOAD, indexVar );
+		mv.push( _count );
+		mv.ifICmp( GeneratorAdapter.LT, next );
+	}
+
+}
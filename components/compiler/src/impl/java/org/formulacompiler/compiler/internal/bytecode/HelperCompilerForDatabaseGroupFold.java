@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.util.Collections;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.internal.expressions.DataType;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldDatabase;
+import org.formulacompiler.compiler.internal.expressions.LetDictionary.LetEntry;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+
+/**
+ * Compiles a helper method which folds the values of a database table column at the given rows,
+ * for {@link DatabaseAggregateCompiler}. The rows are those of one group of a
+ * {@link DatabaseIndexCompiler database index}, so they all match and there is no filter to apply.
+ */
+final class HelperCompilerForDatabaseGroupFold extends HelperCompilerForFoldApply
+{
+	private static final Type ROWS_TYPE = Type.getType( int[].class );
+	private static final int ROWS_VAR = 1;
+	private static final Iterable<LetEntry<Compilable>> NO_CLOSURE = Collections.emptyList();
+
+	private final DatabaseCellCompiler cells;
+
+
+	HelperCompilerForDatabaseGroupFold( SectionCompiler _section, ExpressionNodeForFoldDatabase _applyNode,
+			DatabaseCellCompiler _cells )
+	{
+		super( _section, _applyNode, NO_CLOSURE, ROWS_TYPE );
+		this.cells = _cells;
+	}
+
+	@Override
+	protected boolean argumentsAreVectors()
+	{
+		return false;
+	}
+
+
+	@Override
+	protected void compileTraversal() throws CompilerException
+	{
+		final GeneratorAdapter mv = mv();
+		final DataType type = this.cells.dataType();
+
+		// for (int i = 0; i < rows.length; i++) {
+		final int iVar = newLocal( 1 );
+		final int rowVar = newLocal( 1 );
+		mv.push( 0 );
+		mv.visitVarInsn( Opcodes.ISTORE, iVar );
+		final Label test = mv.newLabel();
+		mv.goTo( test );
+		final Label next = mv.mark();
+
+		// int row = rows[ i ];
+		mv.visitVarInsn( Opcodes.ALOAD, ROWS_VAR );
+		mv.visitVarInsn( Opcodes.ILOAD, iVar );
+		mv.arrayLoad( Type.INT_TYPE );
+		mv.visitVarInsn( Opcodes.ISTORE, rowVar );
+
+		// <fold $dbcell$n( row )>;
+		final String eltName = this.fold.eltName( 0 );
+		letDict().let( eltName, type, this.cells.cellAt( rowVar ) );
+		try {
+			compileFoldStepsWithEltsBound();
+		}
+		finally {
+			letDict().unlet( eltName );
+		}
+
+		// }
+		mv.iinc( iVar, 1 );
+		mv.mark( test );
+		mv.visitVarInsn( Opcodes.ILOAD, iVar );
+		mv.visitVarInsn( Opcodes.ALOAD, ROWS_VAR );
+		mv.arrayLength();
+		mv.ifICmp( GeneratorAdapter.LT, next );
+	}
+
+}
@@ -22,6 +22,8 @@
 
 package org.formulacompiler.compiler.internal.bytecode;
 
+import java.util.List;
+
 import org.formulacompiler.compiler.CompilerException;
 import org.formulacompiler.compiler.internal.expressions.DataType;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
@@ -40,9 +42,9 @@ abstract class HelperCompilerForFoldApply extends HelperCompilerForFolds
 	private final boolean mustCount;
 
 	public HelperCompilerForFoldApply( SectionCompiler _section, ExpressionNodeForFoldApply _applyNode,
-			Iterable<LetEntry<Compilable>> _closure )
+			Iterable<LetEntry<Compilable>> _closure, Type... _params )
 	{
-		super( _section, _applyNode, _closure );
+		super( _section, _applyNode, _closure, _params );
 
 		/*
 		 * I really hate the following snippet, but since Java does not allow me to get "vec0" before
@@ -65,7 +67,7 @@ abstract class HelperCompilerForFoldApply extends HelperCompilerForFolds
 
 
 	@Override
-	protected final void compileBody() throws CompilerException
+	protected void compileBody() throws CompilerException
 	{
 		compileSetup();
 		compileTraversal();
@@ -170,6 +172,40 @@ abstract class HelperCompilerForFoldApply extends HelperCompilerForFolds
 		}
 	}
 
+	/**
+	 * Folds the elements of the given parallel vectors, which must be {@link FoldLoopCompiler#isLoopable(List)
+	 * loopable}, in a loop.
+	 */
+	protected final void compileFoldStepsInLoop( List<List<ExpressionNode>> _vectors ) throws CompilerException
+	{
+		final FoldLoopCompiler loop = new FoldLoopCompiler( expressionCompiler() );
+		final int nVecs = _vectors.size();
+		final int count = _vectors.get( 0 ).size();
+		final int[] arrayVars = new int[ nVecs ];
+		final DataType[] types = new DataType[ nVecs ];
+		for (int iVec = 0; iVec < nVecs; iVec++) {
+			final List<ExpressionNode> vector = _vectors.get( iVec );
+			assert vector.size() == count;
+			arrayVars[ iVec ] = loop.compileElementArray( vector );
+			types[ iVec ] = vector.get( 0 ).getDataType();
+		}
+		loop.compileLoop( count, arrayVars, types, new FoldLoopCompiler.Body()
+		{
+
+			public void compile( Compilable[] _elts ) throws CompilerException
+			{
+				for (int iVec = 0; iVec < nVecs; iVec++) {
+					letDict().let( fold.eltName( iVec ), types[ iVec ], _elts[ iVec ] );
+				}
+				compileFoldStepsWithEltsBound();
+				letDict().unlet( nVecs );
+			}
+
+		} );
+		// The loop body was compiled for one element only.
+		staticCount += count - 1;
+	}
+
 	protected final void compileIndexIncrement()
 	{
 		staticCount++;
@@ -26,15 +26,24 @@ import java.util.Collection;
 import java.util.List;
 
 import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.Function;
+import org.formulacompiler.compiler.Operator;
 import org.formulacompiler.compiler.internal.expressions.ArrayDescriptor;
 import org.formulacompiler.compiler.internal.expressions.DataType;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForArrayReference;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForConstantValue;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldDatabase;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFunction;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForLetVar;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForOperator;
 import org.formulacompiler.compiler.internal.expressions.LetDictionary.LetEntry;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForCellModel;
 import org.formulacompiler.compiler.internal.model.ExpressionNodeForSubSectionModel;
+import org.formulacompiler.runtime.New;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.GeneratorAdapter;
 
 final class HelperCompilerForFoldDatabase extends HelperCompilerForFoldApply
@@ -56,6 +65,8 @@ final class HelperCompilerForFoldDatabase extends HelperCompilerForFoldApply
 		this.colNames = _applyNode.filterColumnNames();
 		this.colTypes = _applyNode.filterColumnTypes();
 		this.filterExpr = _applyNode.filter();
+		planIndexedTraversal();
+		planAggregateLookup();
 	}
 
 	@Override
@@ -65,6 +76,18 @@ final class HelperCompilerForFoldDatabase extends HelperCompilerForFoldApply
 	}
 
 
+	@Override
+	protected void compileBody() throws CompilerException
+	{
+		if (null != this.aggregateKind) {
+			compileAggregateLookup();
+		}
+		else {
+			super.compileBody();
+		}
+	}
+
+
 	@Override
 	protected void compileTraversal() throws CompilerException
 	{
@@ -118,6 +141,10 @@ final class HelperCompilerForFoldDatabase extends HelperCompilerForFoldApply
 
 	private final void compileFixedColumnTraversal( int _foldedCol ) throws CompilerException
 	{
+		if (null != this.indexedRows) {
+			compileIndexedTraversal( _foldedCol );
+			return;
+		}
 		final List<ExpressionNode> elts = this.table.arguments();
 		final int nElt = elts.size();
 		int iElt = 0;
@@ -168,9 +195,14 @@ final class HelperCompilerForFoldDatabase extends HelperCompilerForFoldApply
 
 
 	private void compileElementFold( ExpressionNode _foldedElt ) throws CompilerException
+	{
+		compileElementFold( _foldedElt.getDataType(), new CompilableExpressionNode( _foldedElt ) );
+	}
+
+	private void compileElementFold( DataType _type, Compilable _foldedElt ) throws CompilerException
 	{
 		final String eltName = this.db.fold().eltName( 0 );
-		letDict().let( eltName, _foldedElt.getDataType(), new CompilableExpressionNode( _foldedElt ) );
+		letDict().let( eltName, _type, _foldedElt );
 		try {
 			compileFoldStepsWithEltsBound();
 		}
@@ -190,24 +222,316 @@ final class HelperCompilerForFoldDatabase extends HelperCompilerForFoldApply
 				final ExpressionNode elt = _elts.get( _iElt + iCol );
 				letDict().let( this.colNames[ iCol ], this.colTypes[ iCol ], new CompilableExpressionNode( elt ) );
 			}
-			final Iterable<LetEntry<Compilable>> closure = closureOf( this.filterExpr );
-			if (this.matcher == null) {
-				this.matcher = new HelperCompilerForDatabaseMatch( section(), this.filterExpr, closure );
-				this.matcher.compile();
-			}
-			mv().loadThis();
-			compileClosure( closure );
-			this.matcher.compileCall( mv );
+			compileCallToMatcher();
 		}
 		finally {
 			letDict().unlet( nCols );
 		}
 	}
 
+	private void compileCallToMatcher() throws CompilerException
+	{
+		final Iterable<LetEntry<Compilable>> closure = closureOf( this.filterExpr );
+		if (this.matcher == null) {
+			this.matcher = new HelperCompilerForDatabaseMatch( section(), this.filterExpr, closure );
+			this.matcher.compile();
+		}
+		mv().loadThis();
+		compileClosure( closure );
+		this.matcher.compileCall( mv() );
+	}
+
 
 	private void compileSkipFoldIfNoMatch( final Label _noMatch )
 	{
 		mv().ifZCmp( Opcodes.IFEQ, _noMatch );
 	}
 
+
+	/*
+	 * Indexed traversal. If the filter has an equality criterion on a table column, the rows with
+	 * equal values are looked up in a hashed index over that column, and only they are tested and
+	 * folded. The filtered columns are held in arrays so the rows can be visited in a loop. The
+	 * folded column is computed only for the matching rows, as in a scan, so rows that do not match
+	 * cannot raise errors.
+	 */
+
+	private List<List<ExpressionNode>> indexedRows;
+	private boolean[] indexedCols;
+	private int keyCol;
+	private ExpressionNode keyExpr;
+
+	private void planIndexedTraversal()
+	{
+		final ByteCodeEngineCompiler engineCompiler = section().engineCompiler();
+		if (!engineCompiler.isDatabaseIndexingEnabled() && !engineCompiler.isDatabaseAggregateCachingEnabled()) return;
+		if (!findEqualityCriterion( this.filterExpr )) return;
+
+		final List<List<ExpressionNode>> rows = New.list();
+		if (!collectRows( this.table.arguments(), rows ) || rows.isEmpty()) return;
+
+		final boolean[] cols = new boolean[ this.colNames.length ];
+		collectFilterColumns( this.filterExpr, cols );
+		for (int iCol = 0; iCol < cols.length; iCol++) {
+			if (cols[ iCol ] && !isUniformlyTyped( rows, iCol )) return;
+		}
+		final int foldedCol = this.db.staticFoldedColumnIndex();
+		if (foldedCol >= 0) {
+			if (!isUniformlyTyped( rows, foldedCol )) return;
+		}
+		else {
+			for (int key : this.db.foldableColumnKeys()) {
+				if (!isUniformlyTyped( rows, key - 1 )) return; // Keys are 1-based.
+			}
+		}
+
+		this.indexedRows = rows;
+		this.indexedCols = cols;
+	}
+
+	/*
+	 * Aggregate lookup. If the equality criterion is the whole filter and the fold is a plain sum or
+	 * count, the result only depends on the key. So the fold for each key is computed at most once,
+	 * shared by all folds over the same columns, and this fold just looks up its key.
+	 */
+
+	private DatabaseAggregateCompiler.Kind aggregateKind;
+
+	private void planAggregateLookup()
+	{
+		if (null == this.indexedRows) return;
+		if (!section().engineCompiler().isDatabaseAggregateCachingEnabled()) return;
+		if (!(this.filterExpr instanceof ExpressionNodeForOperator)) return;
+		final int foldedCol = this.db.staticFoldedColumnIndex();
+		if (foldedCol < 0) return;
+		final DatabaseAggregateCompiler.Kind kind = DatabaseAggregateCompiler.kindOf( this.fold );
+		if (null == kind) return;
+		if (kind == DatabaseAggregateCompiler.Kind.SUM && this.colTypes[ foldedCol ] != DataType.NUMERIC) return;
+		this.aggregateKind = kind;
+	}
+
+	private void compileAggregateLookup() throws CompilerException
+	{
+		final GeneratorAdapter mv = mv();
+		final DatabaseIndexCompiler index = section().getDatabaseIndexFor( column( this.keyCol ) );
+		final DatabaseAggregateCompiler aggregate = section().getDatabaseAggregate( index,
+				cells( this.db.staticFoldedColumnIndex() ), this.aggregateKind, this.db );
+
+		// return $dbagg$n( $dbidx$n().groupOf( <key> ) );
+		mv.loadThis();
+		mv.loadThis();
+		index.compileCall( mv );
+		expressionCompiler( this.colTypes[ this.keyCol ] ).compile( this.keyExpr );
+		index.compileGroupOf( mv );
+		aggregate.compileCall( mv );
+		mv.returnValue();
+	}
+
+
+	private boolean findEqualityCriterion( ExpressionNode _filter )
+	{
+		if (_filter instanceof ExpressionNodeForFunction) {
+			if (((ExpressionNodeForFunction) _filter).getFunction() == Function.AND) {
+				for (ExpressionNode arg : _filter.arguments()) {
+					if (findEqualityCriterion( arg )) return true;
+				}
+			}
+		}
+		else if (_filter instanceof ExpressionNodeForOperator) {
+			if (((ExpressionNodeForOperator) _filter).getOperator() == Operator.EQUAL && _filter.arguments().size() == 2) {
+				return isEqualityCriterion( _filter.argument( 0 ), _filter.argument( 1 ) )
+						|| isEqualityCriterion( _filter.argument( 1 ), _filter.argument( 0 ) );
+			}
+		}
+		return false;
+	}
+
+	private boolean isEqualityCriterion( ExpressionNode _col, ExpressionNode _key )
+	{
+		final int iCol = columnOf( _col );
+		if (iCol < 0) return false;
+		final DataType type = this.colTypes[ iCol ];
+		if (type != DataType.NUMERIC && type != DataType.STRING) return false;
+		if (type != _key.getDataType()) return false;
+		final boolean[] keyCols = new boolean[ this.colNames.length ];
+		if (collectFilterColumns( _key, keyCols )) return false;
+		this.keyCol = iCol;
+		this.keyExpr = _key;
+		return true;
+	}
+
+	private int columnOf( ExpressionNode _node )
+	{
+		if (_node instanceof ExpressionNodeForLetVar) {
+			final String name = ((ExpressionNodeForLetVar) _node).varName();
+			for (int iCol = 0; iCol < this.colNames.length; iCol++) {
+				if (this.colNames[ iCol ].equals( name )) return iCol;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Marks the table columns referenced by the given expression.
+	 * 
+	 * @return whether any were referenced.
+	 */
+	private boolean collectFilterColumns( ExpressionNode _node, boolean[] _cols )
+	{
+		boolean result = false;
+		final int iCol = columnOf( _node );
+		if (iCol >= 0) {
+			_cols[ iCol ] = true;
+			result = true;
+		}
+		for (ExpressionNode arg : _node.arguments()) {
+			if (null != arg && collectFilterColumns( arg, _cols )) result = true;
+		}
+		return result;
+	}
+
+	/**
+	 * Collects the rows of the table, just like {@link #compileRowTraversal(int, List, int)} visits
+	 * them, if they are all cells or constants local to this section.
+	 */
+	private boolean collectRows( List<ExpressionNode> _elts, List<List<ExpressionNode>> _rows )
+	{
+		final int nCols = this.tableDescriptor.numberOfColumns();
+		final int nElt = _elts.size();
+		int iElt = 0;
+		while (iElt < nElt) {
+			final ExpressionNode elt = _elts.get( iElt );
+			if (elt instanceof ExpressionNodeForArrayReference) {
+				if (!collectRows( elt.arguments(), _rows )) return false;
+				iElt++;
+			}
+			else if (iElt + nCols <= nElt) {
+				final List<ExpressionNode> row = _elts.subList( iElt, iElt + nCols );
+				for (ExpressionNode cell : row) {
+					if (!isLocalScalar( cell )) return false;
+				}
+				_rows.add( row );
+				iElt += nCols;
+			}
+			else {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isLocalScalar( ExpressionNode _elt )
+	{
+		if (_elt instanceof ExpressionNodeForConstantValue) return true;
+		if (_elt instanceof ExpressionNodeForCellModel) {
+			return ((ExpressionNodeForCellModel) _elt).getCellModel().getSection() == section().model();
+		}
+		return false;
+	}
+
+	private boolean isUniformlyTyped( List<List<ExpressionNode>> _rows, int _col )
+	{
+		final DataType type = this.colTypes[ _col ];
+		for (List<ExpressionNode> row : _rows) {
+			if (row.get( _col ).getDataType() != type) return false;
+		}
+		return true;
+	}
+
+	private DatabaseColumnCompiler column( int _col ) throws CompilerException
+	{
+		final List<ExpressionNode> elts = New.list( this.indexedRows.size() );
+		for (List<ExpressionNode> row : this.indexedRows) {
+			elts.add( row.get( _col ) );
+		}
+		return section().getDatabaseColumn( this.colTypes[ _col ], elts );
+	}
+
+
+	private DatabaseCellCompiler cells( int _col ) throws CompilerException
+	{
+		final List<ExpressionNode> elts = New.list( this.indexedRows.size() );
+		for (List<ExpressionNode> row : this.indexedRows) {
+			elts.add( row.get( _col ) );
+		}
+		return section().getDatabaseCells( this.colTypes[ _col ], elts );
+	}
+
+	private Compilable arrayElement( int _arrayVar, int _indexVar, DataType _type )
+	{
+		return new CompilableArrayElement( _arrayVar, _indexVar, section().engineCompiler().typeCompiler( _type ).type() );
+	}
+
+
+	private void compileIndexedTraversal( int _foldedCol ) throws CompilerException
+	{
+		final GeneratorAdapter mv = mv();
+		final int nCols = this.colNames.length;
+
+		final DatabaseCellCompiler foldedCells = cells( _foldedCol );
+
+		// T[] col<i> = $dbcol$n(); for all the filtered columns
+		final int[] colVars = new int[ nCols ];
+		for (int iCol = 0; iCol < nCols; iCol++) {
+			if (this.indexedCols[ iCol ]) {
+				mv.loadThis();
+				column( iCol ).compileCall( mv );
+				colVars[ iCol ] = newLocal( 1 );
+				mv.visitVarInsn( Opcodes.ASTORE, colVars[ iCol ] );
+			}
+		}
+
+		// int[] rows = $dbidx$n().rowsOf( <key> );
+		final DatabaseIndexCompiler index = section().getDatabaseIndexFor( column( this.keyCol ) );
+		mv.loadThis();
+		index.compileCall( mv );
+		expressionCompiler( this.colTypes[ this.keyCol ] ).compile( this.keyExpr );
+		index.compileRowsOf( mv );
+		final int rowsVar = newLocal( 1 );
+		mv.visitVarInsn( Opcodes.ASTORE, rowsVar );
+
+		// for (int i = 0; i < rows.length; i++) {
+		final int iVar = newLocal( 1 );
+		final int rowVar = newLocal( 1 );
+		mv.push( 0 );
+		mv.visitVarInsn( Opcodes.ISTORE, iVar );
+		final Label test = mv.newLabel();
+		mv.goTo( test );
+		final Label next = mv.mark();
+
+		// int row = rows[ i ];
+		mv.visitVarInsn( Opcodes.ALOAD, rowsVar );
+		mv.visitVarInsn( Opcodes.ILOAD, iVar );
+		mv.arrayLoad( Type.INT_TYPE );
+		mv.visitVarInsn( Opcodes.ISTORE, rowVar );
+
+		// if (matches( col0[ row ], ... )) <fold $dbcell$n( row )>;
+		final Label noMatch = mv.newLabel();
+		int nLets = 0;
+		try {
+			for (int iCol = 0; iCol < nCols; iCol++) {
+				if (this.indexedCols[ iCol ]) {
+					letDict().let( this.colNames[ iCol ], this.colTypes[ iCol ],
+							arrayElement( colVars[ iCol ], rowVar, this.colTypes[ iCol ] ) );
+					nLets++;
+				}
+			}
+			compileCallToMatcher();
+			compileSkipFoldIfNoMatch( noMatch );
+			compileElementFold( this.colTypes[ _foldedCol ], foldedCells.cellAt( rowVar ) );
+		}
+		finally {
+			letDict().unlet( nLets );
+		}
+		mv.mark( noMatch );
+
+		// }
+		mv.iinc( iVar, 1 );
+		mv.mark( test );
+		mv.visitVarInsn( Opcodes.ILOAD, iVar );
+		mv.visitVarInsn( Opcodes.ALOAD, rowsVar );
+		mv.arrayLength();
+		mv.ifICmp( GeneratorAdapter.LT, next );
+	}
+
 }
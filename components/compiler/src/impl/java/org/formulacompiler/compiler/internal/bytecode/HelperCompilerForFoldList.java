@@ -23,12 +23,14 @@
 package org.formulacompiler.compiler.internal.bytecode;
 
 import java.util.Collection;
+import java.util.List;
 
 import org.formulacompiler.compiler.CompilerException;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldApply;
 import org.formulacompiler.compiler.internal.expressions.LetDictionary.LetEntry;
 import org.formulacompiler.compiler.internal.model.ExpressionNodeForSubSectionModel;
+import org.formulacompiler.runtime.New;
 
 
 @SuppressWarnings( "unqualified-field-access" )
@@ -58,10 +60,12 @@ final class HelperCompilerForFoldList extends HelperCompilerForFoldApply
 	private void compileTraversalOf( final Iterable<ExpressionNode> _elts ) throws CompilerException
 	{
 		final int reuseLocalsAt = localsOffset();
-		final String eltName = fold.eltName( 0 );
+		List<ExpressionNode> run = New.list();
 		for (ExpressionNode elt : _elts) {
-			resetLocalsTo( reuseLocalsAt );
 			if (elt instanceof ExpressionNodeForSubSectionModel) {
+				compileTraversalOfRun( run, reuseLocalsAt );
+				run = New.list();
+				resetLocalsTo( reuseLocalsAt );
 
 				expressionCompiler().compileSubSectionTraversal( (ExpressionNodeForSubSectionModel) elt,
 						new ExpressionCompiler.SubSectionTraversal()
@@ -77,6 +81,25 @@ final class HelperCompilerForFoldList extends HelperCompilerForFoldApply
 
 			}
 			else {
+				run.add( elt );
+			}
+		}
+		compileTraversalOfRun( run, reuseLocalsAt );
+	}
+
+
+	private void compileTraversalOfRun( List<ExpressionNode> _run, int _reuseLocalsAt ) throws CompilerException
+	{
+		if (FoldLoopCompiler.isLoopable( _run )) {
+			resetLocalsTo( _reuseLocalsAt );
+			final List<List<ExpressionNode>> vectors = New.list();
+			vectors.add( _run );
+			compileFoldStepsInLoop( vectors );
+		}
+		else {
+			final String eltName = fold.eltName( 0 );
+			for (ExpressionNode elt : _run) {
+				resetLocalsTo( _reuseLocalsAt );
 				letDict().let( eltName, elt.getDataType(), new CompilableExpressionNode( elt ) );
 
 				compileFoldStepsWithEltsBound();
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.util.Collection;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.internal.expressions.DataType;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldApply;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldDefinition;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFunction;
+import org.formulacompiler.compiler.internal.expressions.LetDictionary.LetEntry;
+import org.formulacompiler.compiler.internal.model.CellModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForParentSectionModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForSubSectionModel;
+import org.formulacompiler.compiler.internal.model.SectionModel;
+import org.formulacompiler.runtime.internal.ParallelFolds;
+import org.formulacompiler.runtime.internal.RangeFolder;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+
+/**
+ * Compiles chained, rearrangeable folds like {@code SUM} or {@code MIN} over sub-sections so that
+ * sub-sections with at least {@code parallelFoldThreshold} elements are folded concurrently by
+ * {@link ParallelFolds}. Smaller sub-sections are folded sequentially as in
+ * {@link HelperCompilerForFoldChained}.
+ */
+@SuppressWarnings( "unqualified-field-access" )
+final class HelperCompilerForFoldParallel extends HelperCompilerForFolds
+{
+	static final Type RANGE_FOLDER_INTF = Type.getType( RangeFolder.class );
+	private static final Type PARALLEL_FOLDS_CLASS = Type.getType( ParallelFolds.class );
+	private static final Method FOLD_RANGES_METHOD = Method.getMethod( "Object[] foldRanges("
+			+ RangeFolder.class.getName() + ", int, Object[])" );
+
+	private final ChainedFoldCompiler chainedCompiler;
+
+
+	public HelperCompilerForFoldParallel( SectionCompiler _section, ExpressionNodeForFoldApply _applyNode,
+			Iterable<LetEntry<Compilable>> _closure )
+	{
+		super( _section, _applyNode, _closure );
+		this.chainedCompiler = new ChainedFoldCompiler( expressionCompiler(), _applyNode );
+	}
+
+
+	/**
+	 * Parallel folds must combine partial results using their step, and must not touch state shared
+	 * between sub-section elements, like cached cells of outer sections or the computation time.
+	 */
+	static boolean isApplicable( ExpressionNodeForFoldApply _applyNode, Iterable<LetEntry<Compilable>> _closure )
+	{
+		if (_closure.iterator().hasNext()) return false;
+
+		final ExpressionNodeForFoldDefinition fold = _applyNode.fold();
+		if (!ChainedFoldCompiler.isChainable( fold ) || !fold.mayReduceAndRearrange() || fold.isMergedExplicitly()) {
+			return false;
+		}
+		if (fold.accuInit( 0 ).getDataType() != DataType.NUMERIC) return false;
+
+		boolean hasSubSection = false;
+		for (ExpressionNode elt : _applyNode.elements()) {
+			if (elt instanceof ExpressionNodeForSubSectionModel) {
+				final ExpressionNodeForSubSectionModel sub = (ExpressionNodeForSubSectionModel) elt;
+				for (ExpressionNode subElt : sub.arguments()) {
+					if (!isSafeToFoldConcurrently( subElt )) return false;
+				}
+				if (!isSafeToFoldConcurrently( sub.getSectionModel() )) return false;
+				hasSubSection = true;
+			}
+		}
+		return hasSubSection;
+	}
+
+	private static boolean isSafeToFoldConcurrently( SectionModel _section )
+	{
+		for (CellModel cell : _section.getCells()) {
+			final ExpressionNode expr = cell.getExpression();
+			if (null != expr && !isSafeToFoldConcurrently( expr )) return false;
+		}
+		for (SectionModel inner : _section.getSections()) {
+			if (!isSafeToFoldConcurrently( inner )) return false;
+		}
+		return true;
+	}
+
+	private static boolean isSafeToFoldConcurrently( ExpressionNode _expr )
+	{
+		if (_expr instanceof ExpressionNodeForSubSectionModel || _expr instanceof ExpressionNodeForParentSectionModel) {
+			return false;
+		}
+		if (_expr instanceof ExpressionNodeForFunction && ((ExpressionNodeForFunction) _expr).getFunction().isVolatile()) {
+			return false;
+		}
+		for (ExpressionNode arg : _expr.arguments()) {
+			if (null != arg && !isSafeToFoldConcurrently( arg )) return false;
+		}
+		return true;
+	}
+
+
+	@Override
+	protected void compileBody() throws CompilerException
+	{
+		final ExpressionNode initNode = fold.accuInit( 0 );
+		final DataType initType = initNode.getDataType();
+		final Iterable<ExpressionNode> elts = apply.elements();
+		final ExpressionNode initialElt = firstLocalElementIn( elts );
+		final ExpressionNode initial = (null != initialElt) ? initialElt : initNode;
+
+		expressionCompiler().compile( initial );
+
+		final String accName = fold.accuName( 0 );
+		letDict().let( accName, initType, HelperCompilerForFoldChained.TOP_OF_STACK );
+		chainedCompiler.compileFoldOverLocalValues( elts, initialElt );
+		letDict().unlet( accName );
+
+		accuType = section().engineCompiler().typeCompiler( initType ).type();
+		accuVar = newLocal( accuType.getSize() );
+		mv().visitVarInsn( accuType.getOpcode( Opcodes.ISTORE ), accuVar );
+
+		// Without local elements, the fold's value is special if all sub-sections are empty.
+		final boolean trackEmptiness = fold.isSpecialWhenEmpty() && null == initialElt;
+		if (trackEmptiness) {
+			nonEmptyVar = newLocal( 1 );
+			mv().push( 0 );
+			mv().visitVarInsn( Opcodes.ISTORE, nonEmptyVar );
+		}
+
+		final int reuseLocalsAt = localsOffset();
+		for (final ExpressionNode elt : elts) {
+			if (elt instanceof ExpressionNodeForSubSectionModel) {
+				resetLocalsTo( reuseLocalsAt );
+				compileFoldOverSubSection( (ExpressionNodeForSubSectionModel) elt, trackEmptiness );
+			}
+		}
+
+		if (trackEmptiness) {
+			final Label nonEmpty = mv().newLabel();
+			mv().visitVarInsn( Opcodes.ILOAD, nonEmptyVar );
+			mv().ifZCmp( GeneratorAdapter.NE, nonEmpty );
+			expressionCompiler().compile( fold.whenEmpty() );
+			mv().returnValue();
+			mv().mark( nonEmpty );
+		}
+
+		mv().visitVarInsn( accuType.getOpcode( Opcodes.ILOAD ), accuVar );
+		mv().returnValue();
+	}
+
+
+	private Type accuType;
+	private int accuVar;
+	private int nonEmptyVar;
+
+	private void compileFoldOverSubSection( ExpressionNodeForSubSectionModel _sub, boolean _trackEmptiness )
+			throws CompilerException
+	{
+		final GeneratorAdapter mv = mv();
+		final ParallelFoldRangeCompiler range = new ParallelFoldRangeCompiler( section(), apply, _sub );
+		range.compile();
+		final int foldId = section().addParallelFold( range );
+
+		// elts = this.getSectN();
+		final int eltsVar = newLocal( 1 );
+		mv.loadThis();
+		section().compileCallToGetterFor( mv, range.subSection() );
+		mv.visitVarInsn( Opcodes.ASTORE, eltsVar );
+
+		if (_trackEmptiness) {
+			// nonEmpty |= elts.length;
+			mv.visitVarInsn( Opcodes.ALOAD, eltsVar );
+			mv.arrayLength();
+			mv.visitVarInsn( Opcodes.ILOAD, nonEmptyVar );
+			mv.visitInsn( Opcodes.IOR );
+			mv.visitVarInsn( Opcodes.ISTORE, nonEmptyVar );
+		}
+
+		// if (elts.length >= threshold) {
+		final Label sequential = mv.newLabel();
+		final Label done = mv.newLabel();
+		mv.visitVarInsn( Opcodes.ALOAD, eltsVar );
+		mv.arrayLength();
+		mv.push( section().engineCompiler().getParallelFoldThreshold() );
+		mv.ifICmp( GeneratorAdapter.LT, sequential );
+
+		// partials = ParallelFolds.foldRanges( this, id, elts );
+		final int partialsVar = newLocal( 1 );
+		final int indexVar = newLocal( 1 );
+		mv.loadThis();
+		mv.push( foldId );
+		mv.visitVarInsn( Opcodes.ALOAD, eltsVar );
+		mv.invokeStatic( PARALLEL_FOLDS_CLASS, FOLD_RANGES_METHOD );
+		mv.visitVarInsn( Opcodes.ASTORE, partialsVar );
+
+		// for (i = 0; i < partials.length; i++) acc = <step>( acc, partials[ i ] );
+		mv.push( 0 );
+		mv.visitVarInsn( Opcodes.ISTORE, indexVar );
+		final Label next = mv.mark();
+		mv.visitVarInsn( Opcodes.ILOAD, indexVar );
+		mv.visitVarInsn( Opcodes.ALOAD, partialsVar );
+		mv.arrayLength();
+		mv.ifICmp( GeneratorAdapter.GE, done );
+		compileStep( new Compilable()
+		{
+
+			public void compile( ExpressionCompiler _exp ) throws CompilerException
+			{
+				final GeneratorAdapter mv = _exp.mv();
+				mv.visitVarInsn( Opcodes.ALOAD, partialsVar );
+				mv.visitVarInsn( Opcodes.ILOAD, indexVar );
+				mv.visitInsn( Opcodes.AALOAD );
+				mv.unbox( accuType );
+			}
+
+			public boolean isArray()
+			{
+				return false;
+			}
+
+		} );
+		mv.iinc( indexVar, 1 );
+		mv.goTo( next );
+
+		// } else { sequentially as in HelperCompilerForFoldChained }
+		mv.mark( sequential );
+		expressionCompiler().compileSubSectionTraversal( _sub, new ExpressionCompiler.SubSectionTraversal()
+		{
+
+			public void compile( Collection<ExpressionNode> _elements, int _indexLocalOffset )
+					throws CompilerException
+			{
+				mv().visitVarInsn( accuType.getOpcode( Opcodes.ILOAD ), accuVar );
+				letDict().let( fold.accuName( 0 ), fold.accuInit( 0 ).getDataType(),
+						HelperCompilerForFoldChained.TOP_OF_STACK );
+				chainedCompiler.compileFoldOverLocalValues( _elements, null );
+				letDict().unlet( fold.accuName( 0 ) );
+				mv().visitVarInsn( accuType.getOpcode( Opcodes.ISTORE ), accuVar );
+			}
+
+		} );
+		mv.mark( done );
+	}
+
+	private void compileStep( Compilable _elt ) throws CompilerException
+	{
+		final String accName = fold.accuName( 0 );
+		final String eltName = fold.eltName( 0 );
+		mv().visitVarInsn( accuType.getOpcode( Opcodes.ILOAD ), accuVar );
+		letDict().let( accName, fold.accuInit( 0 ).getDataType(), HelperCompilerForFoldChained.TOP_OF_STACK );
+		letDict().let( eltName, fold.accuInit( 0 ).getDataType(), _elt );
+		expressionCompiler().compile( fold.accuStep( 0 ) );
+		letDict().unlet( eltName );
+		letDict().unlet( accName );
+		mv().visitVarInsn( accuType.getOpcode( Opcodes.ISTORE ), accuVar );
+	}
+
+}
@@ -24,12 +24,14 @@ package org.formulacompiler.compiler.internal.bytecode;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import org.formulacompiler.compiler.CompilerException;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldApply;
 import org.formulacompiler.compiler.internal.expressions.LetDictionary.LetEntry;
 import org.formulacompiler.compiler.internal.model.ExpressionNodeForSubSectionModel;
+import org.formulacompiler.runtime.New;
 
 
 @SuppressWarnings( "unqualified-field-access" )
@@ -69,12 +71,15 @@ final class HelperCompilerForFoldVectors extends HelperCompilerForFoldApply
 		final int eltCount = fold.eltCount();
 		final ExpressionNode[] elts = new ExpressionNode[ eltCount ];
 		final int reuseLocalsAt = localsOffset();
+		List<List<ExpressionNode>> run = newRun( eltCount );
 		while (_vecs[ 0 ].hasNext()) {
-			resetLocalsTo( reuseLocalsAt );
 			for (int iVec = 0; iVec < eltCount; iVec++) {
 				elts[ iVec ] = _vecs[ iVec ].next();
 			}
 			if (elts[ 0 ] instanceof ExpressionNodeForSubSectionModel) {
+				compileTraversalOfRun( run, reuseLocalsAt );
+				run = newRun( eltCount );
+				resetLocalsTo( reuseLocalsAt );
 				verifyAllElementsReferenceTheSameSubSection( elts );
 				expressionCompiler().compileSubSectionTraversal( (ExpressionNodeForSubSectionModel) elts[ 0 ],
 						new ExpressionCompiler.SubSectionTraversal()
@@ -91,7 +96,40 @@ final class HelperCompilerForFoldVectors extends HelperCompilerForFoldApply
 			}
 			else {
 				for (int iVec = 0; iVec < eltCount; iVec++) {
-					final ExpressionNode elt = elts[ iVec ];
+					run.get( iVec ).add( elts[ iVec ] );
+				}
+			}
+
+		}
+		compileTraversalOfRun( run, reuseLocalsAt );
+	}
+
+	private List<List<ExpressionNode>> newRun( int _eltCount )
+	{
+		final List<List<ExpressionNode>> result = New.list();
+		for (int iVec = 0; iVec < _eltCount; iVec++) {
+			result.add( New.<ExpressionNode> list() );
+		}
+		return result;
+	}
+
+	private void compileTraversalOfRun( List<List<ExpressionNode>> _run, int _reuseLocalsAt ) throws CompilerException
+	{
+		final int eltCount = _run.size();
+		boolean loopable = true;
+		for (List<ExpressionNode> vector : _run) {
+			loopable &= FoldLoopCompiler.isLoopable( vector );
+		}
+		if (loopable) {
+			resetLocalsTo( _reuseLocalsAt );
+			compileFoldStepsInLoop( _run );
+		}
+		else {
+			final int n = _run.get( 0 ).size();
+			for (int i = 0; i < n; i++) {
+				resetLocalsTo( _reuseLocalsAt );
+				for (int iVec = 0; iVec < eltCount; iVec++) {
+					final ExpressionNode elt = _run.get( iVec ).get( i );
 					letDict().let( fold.eltName( iVec ), elt.getDataType(), new CompilableExpressionNode( elt ) );
 				}
 
@@ -99,7 +137,6 @@ final class HelperCompilerForFoldVectors extends HelperCompilerForFoldApply
 
 				letDict().unlet( eltCount );
 			}
-
 		}
 	}
 
@@ -25,6 +25,8 @@ package org.formulacompiler.compiler.internal.bytecode;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldApply;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldDefinition;
 import org.formulacompiler.compiler.internal.expressions.LetDictionary.LetEntry;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 
 abstract class HelperCompilerForFolds extends HelperCompiler
 {
@@ -32,9 +34,9 @@ abstract class HelperCompilerForFolds extends HelperCompiler
 	protected final ExpressionNodeForFoldDefinition fold;
 
 	public HelperCompilerForFolds( SectionCompiler _section, ExpressionNodeForFoldApply _applyNode,
-			Iterable<LetEntry<Compilable>> _closure )
+			Iterable<LetEntry<Compilable>> _closure, Type... _params )
 	{
-		super( _section, _applyNode, _closure );
+		super( _section, Opcodes.ACC_FINAL, _applyNode, _closure, _params );
 		this.apply = _applyNode;
 		this.fold = _applyNode.fold();
 	}
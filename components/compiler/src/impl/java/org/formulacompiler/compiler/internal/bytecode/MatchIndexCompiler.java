@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.runtime.internal.MatchIndexForBigDecimals;
+import org.formulacompiler.runtime.internal.MatchIndexForDoubles;
+import org.formulacompiler.runtime.internal.MatchIndexForLongs;
+import org.formulacompiler.runtime.internal.MatchIndexForStrings;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+
+/**
+ * Compiles a lazy accessor for the hashed exact-match index over the array returned by an
+ * {@link ArrayAccessorCompiler}. Indexes over constant-only arrays are held in a static field, so
+ * they are built once per engine. Indexes over arrays with input-dependent elements are held in an
+ * instance field, so they are built once per computation and dropped again by {@code reset()}.
+ */
+final class MatchIndexCompiler extends MethodCompiler
+{
+	private final ArrayAccessorCompiler array;
+	private final boolean isStatic;
+	private final Type indexType;
+
+
+	private MatchIndexCompiler( SectionCompiler _section, String _name, ArrayAccessorCompiler _array, Type _indexType )
+	{
+		super( _section, Opcodes.ACC_FINAL, "$matchidx$" + _name, "()" + _indexType.getDescriptor() );
+		this.array = _array;
+		this.isStatic = (_array instanceof ArrayAccessorForConstDataCompiler);
+		this.indexType = _indexType;
+	}
+
+	MatchIndexCompiler( SectionCompiler _section, String _name, ArrayAccessorCompiler _array )
+	{
+		this( _section, _name, _array, indexTypeFor( _array.elementDescriptor() ) );
+	}
+
+
+	private static Type indexTypeFor( String _elementDescriptor )
+	{
+		final Type eltType = Type.getType( _elementDescriptor );
+		switch (eltType.getSort()) {
+			case Type.DOUBLE:
+				return Type.getType( MatchIndexForDoubles.class );
+			case Type.LONG:
+				return Type.getType( MatchIndexForLongs.class );
+			default:
+				if (eltType.equals( ByteCodeEngineCompiler.BIGDECIMAL_CLASS )) {
+					return Type.getType( MatchIndexForBigDecimals.class );
+				}
+				if (eltType.equals( ByteCodeEngineCompiler.STRING_CLASS )) {
+					return Type.getType( MatchIndexForStrings.class );
+				}
+		}
+		throw new IllegalArgumentException( "No hashed match index for element type " + _elementDescriptor );
+	}
+
+
+	public String indexDescriptor()
+	{
+		return this.indexType.getDescriptor();
+	}
+
+
+	@Override
+	protected void compileBody() throws CompilerException
+	{
+		final GeneratorAdapter mv = mv();
+		final String name = methodName();
+		final String desc = indexDescriptor();
+		final Type owner = section().classType();
+
+		// private [static] MatchIndexForXy $matchidx$n;
+		newIndexField();
+
+		// if (this.idx == null) {
+		final Label skipInit = mv.newLabel();
+		loadIndex( mv, owner, name );
+		mv.ifNonNull( skipInit );
+
+		// this.idx = new MatchIndexForXy( $arr$n() );
+		if (!this.isStatic) mv.loadThis();
+		mv.newInstance( this.indexType );
+		mv.dup();
+		mv.loadThis();
+		this.array.compileCall( mv );
+		mv.visitMethodInsn( Opcodes.INVOKESPECIAL, this.indexType.getInternalName(), "<init>", "("
+				+ this.array.arrayDescriptor() + ")V" );
+		if (this.isStatic) {
+			mv.putStatic( owner, name, this.indexType );
+		}
+		else {
+			mv.putField( owner, name, this.indexType );
+		}
+
+		// }
+		// return this.idx;
+		mv.mark( skipInit );
+		loadIndex( mv, owner, name );
+		mv.visitInsn( Opcodes.ARETURN );
+
+		if (!this.isStatic && section().hasReset()) {
+			// this.idx = null;
+			final GeneratorAdapter reset = section().resetter();
+			reset.loadThis();
+			reset.visitInsn( Opcodes.ACONST_NULL );
+			reset.putField( owner, name, this.indexType );
+		}
+
+		if (!this.isStatic) {
+			// Same in reset( <input> ) for all inputs the elements depend on.
+			for (GeneratorAdapter reset : section().inputResettersFor(
+					section().engineCompiler().inputDependencies().inputsOf( this.array.arrayNode ) )) {
+				reset.loadThis();
+				reset.visitInsn( Opcodes.ACONST_NULL );
+				reset.putField( owner, name, this.indexType );
+			}
+		}
+	}
+
+	private void newIndexField()
+	{
+		final int access = this.isStatic ? Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC : Opcodes.ACC_PRIVATE;
+		section().newField( access, methodName(), indexDescriptor() );
+	}
+
+	private void loadIndex( GeneratorAdapter _mv, Type _owner, String _name )
+	{
+		if (this.isStatic) {
+			_mv.getStatic( _owner, _name, this.indexType );
+		}
+		else {
+			_mv.loadThis();
+			_mv.getField( _owner, _name, this.indexType );
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.util.Collection;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.internal.model.CellModel;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+import static org.formulacompiler.compiler.internal.bytecode.ByteCodeEngineCompiler.*;
+
+
+/**
+ * Compiles the lookup of a cell's value in the memo cache the computation factory shares between
+ * its computations. The key is made of the values of the input cells the value depends on, so it
+ * is only used for cells determined by them.
+ * 
+ * @see org.formulacompiler.compiler.internal.model.analysis.MemoCandidates
+ */
+abstract class MemoCompiler
+{
+	private static final Type OBJECT_TYPE = Type.getType( Object.class );
+	private static final Method KEY_OF_METHOD = Method.getMethod( "Object keyOf(int, Object[])" );
+	private static final Method GET_METHOD = Method.getMethod( "Object get(Object)" );
+	private static final Method PUT_METHOD = Method.getMethod( "void put(Object, Object)" );
+
+	private final MethodCompiler method;
+	private final Collection<CellModel> inputs;
+	private final Type type;
+
+	MemoCompiler( MethodCompiler _method, Collection<CellModel> _inputs, Type _type )
+	{
+		this.method = _method;
+		this.inputs = _inputs;
+		this.type = _type;
+	}
+
+	abstract void compileValue() throws CompilerException;
+
+	void compile() throws CompilerException
+	{
+		final GeneratorAdapter mv = this.method.mv();
+		final SectionCompiler section = this.method.section();
+		final ByteCodeEngineCompiler engineCompiler = section.engineCompiler();
+
+		// Object key = MemoCache.keyOf( <slot>, new Object[] { <input>, ... } );
+		mv.push( engineCompiler.newMemoSlot() );
+		mv.push( this.inputs.size() );
+		mv.newArray( OBJECT_TYPE );
+		int i = 0;
+		for (CellModel input : this.inputs) {
+			mv.dup();
+			mv.push( i++ );
+			this.method.expressionCompiler( input.getDataType() ).compileRef( input );
+			mv.box( engineCompiler.typeCompiler( input.getDataType() ).type() );
+			mv.arrayStore( OBJECT_TYPE );
+		}
+		mv.invokeStatic( MEMO_CACHE_CLASS, KEY_OF_METHOD );
+		final int keyVar = this.method.newLocal( 1 );
+		mv.visitVarInsn( Opcodes.ASTORE, keyVar );
+
+		// Object cached = this.memo.get( key );
+		compileMemoAccess( mv, section );
+		mv.visitVarInsn( Opcodes.ALOAD, keyVar );
+		mv.invokeVirtual( MEMO_CACHE_CLASS, GET_METHOD );
+
+		// if (cached == MemoCache.MISSING) {
+		final Label useCached = mv.newLabel();
+		final Label done = mv.newLabel();
+		mv.dup();
+		mv.getStatic( MEMO_CACHE_CLASS, "MISSING", OBJECT_TYPE );
+		mv.ifCmp( OBJECT_TYPE, GeneratorAdapter.NE, useCached );
+		mv.pop();
+
+		// <type> value = <value>;
+		compileValue();
+
+		// this.memo.put( key, value );
+		final int valueVar = this.method.newLocal( 1 );
+		if (this.type.getSize() == 2) {
+			mv.dup2();
+		}
+		else {
+			mv.dup();
+		}
+		mv.box( this.type );
+		mv.visitVarInsn( Opcodes.ASTORE, valueVar );
+		compileMemoAccess( mv, section );
+		mv.visitVarInsn( Opcodes.ALOAD, keyVar );
+		mv.visitVarInsn( Opcodes.ALOAD, valueVar );
+		mv.invokeVirtual( MEMO_CACHE_CLASS, PUT_METHOD );
+		mv.goTo( done );
+
+		// } else value = (<type>) cached;
+		mv.mark( useCached );
+		mv.unbox( this.type );
+		mv.mark( done );
+	}
+
+	private void compileMemoAccess( GeneratorAdapter _mv, SectionCompiler _section )
+	{
+		_mv.loadThis();
+		_mv.getField( _section.classType(), MEMO_MEMBER_NAME, MEMO_CACHE_CLASS );
+	}
+
+}
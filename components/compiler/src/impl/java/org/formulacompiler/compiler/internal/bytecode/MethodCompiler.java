@@ -60,6 +60,7 @@ abstract class MethodCompiler
 
 	private SectionCompiler sectionInContext;
 	private int objectInContext;
+	private Set<ExpressionNode> nodesToSplitOff = Collections.emptySet();
 
 
 	MethodCompiler( SectionCompiler _section, int _access, String _methodName, String _descriptor )
@@ -180,6 +181,7 @@ abstract class MethodCompiler
 		this.mv = section().newMethod( this.access, methodName(), this.methodDescriptor );
 		beginCompilation();
 		compileBody();
+		section().engineCompiler().methodCompiled( section(), methodName(), codeSize() );
 		endCompilation();
 		this.mv = null;
 	}
@@ -342,11 +344,32 @@ abstract class MethodCompiler
 	}
 
 
+	/**
+	 * Size of the bytecode emitted so far.
+	 */
+	final int codeSize()
+	{
+		return mv().mark().getOffset();
+	}
+
+
+	private static final int MIN_SPLIT_BUDGET = 16 * MethodSplitter.CALL_SIZE;
+
 	protected final void compileExpression( ExpressionNode _node ) throws CompilerException
 	{
+		final int limit = section().engineCompiler().getMethodSizeLimit();
+		if (limit > 0) {
+			final int budget = Math.max( limit - codeSize(), MIN_SPLIT_BUDGET );
+			this.nodesToSplitOff = MethodSplitter.nodesToSplitOff( _node, budget );
+		}
 		expressionCompiler( _node.getDataType() ).compile( _node );
 	}
 
+	final boolean isToBeSplitOff( ExpressionNode _node )
+	{
+		return this.nodesToSplitOff.contains( _node );
+	}
+
 
 	protected final Iterable<LetEntry<Compilable>> closureOf( ExpressionNode _node )
 	{
@@ -356,6 +379,14 @@ abstract class MethodCompiler
 		return closure.values();
 	}
 
+	protected final Iterable<LetEntry<Compilable>> closureOf( Iterable<ExpressionNode> _nodes )
+	{
+		// Using sorted map to make engines reproducible.
+		final Map<String, LetEntry<Compilable>> closure = New.sortedMap();
+		addToClosure( closure, _nodes );
+		return closure.values();
+	}
+
 	private void addToClosure( Map<String, LetEntry<Compilable>> _closure, Iterable<ExpressionNode> _nodes )
 	{
 		for (ExpressionNode node : _nodes)
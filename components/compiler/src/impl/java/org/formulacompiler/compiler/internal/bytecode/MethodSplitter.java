@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import org.formulacompiler.compiler.internal.expressions.DataType;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForConstantValue;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldDefinition;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFunction;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForLetVar;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForOperator;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForSwitch;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForSwitchCase;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForCellModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForCount;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForParentSectionModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForSubSectionModel;
+import org.formulacompiler.runtime.New;
+
+
+/**
+ * Decides which subexpressions of a method body are compiled into helper methods of their own, so
+ * the method stays below the method size limit. ASM cannot take back emitted code, so the sizes are
+ * estimated from the expression tree before the body is compiled.
+ * <p>
+ * The plan is made bottom-up. Whenever a node's estimate exceeds the budget, its largest children
+ * are split off until it fits. Every node split off thus fits into a helper method of its own, so
+ * helpers are not split again and do not nest deeply.
+ */
+final class MethodSplitter
+{
+	/**
+	 * Estimated size of a call to a helper: loading the object in context and the closure, and
+	 * invoking the helper.
+	 */
+	static final int CALL_SIZE = 8;
+
+	private final int budget;
+	private final Set<ExpressionNode> splitOff = New.set();
+
+
+	private MethodSplitter( int _budget )
+	{
+		super();
+		this.budget = _budget;
+	}
+
+
+	/**
+	 * Returns the subexpressions of the given root to compile into helper methods so that the
+	 * estimated size of the root's code stays within the given budget.
+	 */
+	static Set<ExpressionNode> nodesToSplitOff( ExpressionNode _root, int _budget )
+	{
+		final MethodSplitter splitter = new MethodSplitter( _budget );
+		splitter.plan( _root );
+		return splitter.splitOff.isEmpty() ? Collections.<ExpressionNode> emptySet() : splitter.splitOff;
+	}
+
+
+	/**
+	 * Plans the given node and returns its estimated size after splitting.
+	 */
+	private int plan( ExpressionNode _node )
+	{
+		if (null == _node) return 1;
+
+		final List<ExpressionNode> args = _node.arguments();
+		final int nArgs = args.size();
+		final int[] argSizes = new int[ nArgs ];
+		int size = ownSizeOf( _node );
+		for (int i = 0; i < nArgs; i++) {
+			argSizes[ i ] = plan( args.get( i ) );
+			size += argSizes[ i ];
+		}
+
+		if (size > this.budget && !(_node instanceof ExpressionNodeForFoldDefinition)) {
+			final Integer[] bySize = new Integer[ nArgs ];
+			for (int i = 0; i < nArgs; i++) {
+				bySize[ i ] = i;
+			}
+			Arrays.sort( bySize, new Comparator<Integer>()
+			{
+				public int compare( Integer _a, Integer _b )
+				{
+					return argSizes[ _b ] - argSizes[ _a ];
+				}
+			} );
+			for (int i = 0; i < nArgs && size > this.budget; i++) {
+				final int iArg = bySize[ i ];
+				final ExpressionNode arg = args.get( iArg );
+				if (argSizes[ iArg ] > 2 * CALL_SIZE && canSplitOff( arg )) {
+					this.splitOff.add( arg );
+					size -= argSizes[ iArg ] - CALL_SIZE;
+				}
+			}
+		}
+		return size;
+	}
+
+
+	/**
+	 * Estimated size of the code for the node itself, not counting its arguments.
+	 */
+	private static int ownSizeOf( ExpressionNode _node )
+	{
+		if (_node instanceof ExpressionNodeForConstantValue) return 3;
+		if (_node instanceof ExpressionNodeForLetVar) return 3;
+		if (_node instanceof ExpressionNodeForCellModel) return 4;
+		if (_node instanceof ExpressionNodeForOperator) return 8 * Math.max( 1, _node.arguments().size() - 1 );
+		if (_node instanceof ExpressionNodeForSwitch) return CALL_SIZE;
+		return 8 + 4 * _node.arguments().size();
+	}
+
+
+	private static boolean canSplitOff( ExpressionNode _node )
+	{
+		final DataType type = _node.getDataType();
+		if (DataType.NUMERIC != type && DataType.STRING != type) return false;
+		if (_node instanceof ExpressionNodeForConstantValue
+				|| _node instanceof ExpressionNodeForLetVar || _node instanceof ExpressionNodeForCellModel
+				|| _node instanceof ExpressionNodeForParentSectionModel || _node instanceof ExpressionNodeForSubSectionModel
+				|| _node instanceof ExpressionNodeForCount || _node instanceof ExpressionNodeForSwitchCase
+				|| _node instanceof ExpressionNodeForFoldDefinition || ExpressionCompiler.isArray( _node )) {
+			return false;
+		}
+		// Conditions are compiled as jumps, not as values.
+		if (_node instanceof ExpressionNodeForOperator) {
+			switch (((ExpressionNodeForOperator) _node).getOperator()) {
+				case EQUAL:
+				case NOTEQUAL:
+				case LESS:
+				case LESSOREQUAL:
+				case GREATER:
+				case GREATEROREQUAL:
+					return false;
+				default:
+					break;
+			}
+		}
+		if (_node instanceof ExpressionNodeForFunction) {
+			switch (((ExpressionNodeForFunction) _node).getFunction()) {
+				case AND:
+				case OR:
+				case NOT:
+					return false;
+				default:
+					break;
+			}
+		}
+		return true;
+	}
+
+}
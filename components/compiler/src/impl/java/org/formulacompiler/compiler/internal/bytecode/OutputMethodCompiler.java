@@ -25,11 +25,16 @@ package org.formulacompiler.compiler.internal.bytecode;
 import java.lang.reflect.Method;
 
 import org.formulacompiler.compiler.CompilerException;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
 
 
 final class OutputMethodCompiler extends TypedMethodCompiler
 {
+	private static final Type ARITHMETIC_EXCEPTION_CLASS = Type.getType( ArithmeticException.class );
+
 	private final Method implementedMethod;
 	private final CellMethodCompiler cellMethodCompiler;
 
@@ -45,9 +50,43 @@ final class OutputMethodCompiler extends TypedMethodCompiler
 
 	@Override
 	protected void compileBody() throws CompilerException
+	{
+		if (null != section().engineCompiler().scaledLongFastPath() && section() instanceof RootSectionCompiler) {
+			compileBodyWithExactFallback( (RootSectionCompiler) section() );
+		}
+		else {
+			compileFastBody();
+		}
+	}
+
+	private void compileFastBody() throws CompilerException
 	{
 		expressionCompiler().compileCallTo( this.cellMethodCompiler );
 		expressionCompiler().compileConversionToResultOf( this.implementedMethod );
 		mv().returnValue();
 	}
+
+	private void compileBodyWithExactFallback( RootSectionCompiler _root ) throws CompilerException
+	{
+		final GeneratorAdapter mv = mv();
+		final Label exact = mv.newLabel();
+
+		// if ($exact != null) goto exact;
+		_root.compileExactAccess( mv );
+		mv.ifNonNull( exact );
+
+		// try { return <fast>; } catch (ArithmeticException e) {}
+		final Label tryStart = mv.mark();
+		compileFastBody();
+		final Label tryEnd = mv.mark();
+		mv.catchException( tryStart, tryEnd, ARITHMETIC_EXCEPTION_CLASS );
+		mv.pop();
+
+		// exact: return $exact().<method>();
+		mv.mark( exact );
+		_root.compileExactCreation( mv );
+		mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, _root.engineCompiler().scaledLongFastPath().exactRootType()
+				.getInternalName(), this.implementedMethod.getName(), Type.getMethodDescriptor( this.implementedMethod ) );
+		mv.returnValue();
+	}
 }
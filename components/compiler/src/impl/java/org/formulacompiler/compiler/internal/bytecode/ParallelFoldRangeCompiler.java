@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.compiler.internal.bytecode;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldApply;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldDefinition;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForSubSectionModel;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+
+/**
+ * Compiles the method folding a range of the elements of a sub-section for
+ * {@link HelperCompilerForFoldParallel}. It starts with the fold's initial value, so partial
+ * results of adjacent ranges can be combined using the fold's step.
+ */
+@SuppressWarnings( "unqualified-field-access" )
+final class ParallelFoldRangeCompiler extends ValueMethodCompiler
+{
+	private final ExpressionNodeForFoldApply apply;
+	private final ExpressionNodeForFoldDefinition fold;
+	private final ExpressionNodeForSubSectionModel sub;
+	private final SubSectionCompiler subSection;
+
+
+	ParallelFoldRangeCompiler( SectionCompiler _section, ExpressionNodeForFoldApply _applyNode,
+			ExpressionNodeForSubSectionModel _sub )
+	{
+		this( _section, _applyNode, _sub, _section.subSectionCompiler( _sub.getSectionModel() ) );
+	}
+
+	private ParallelFoldRangeCompiler( SectionCompiler _section, ExpressionNodeForFoldApply _applyNode,
+			ExpressionNodeForSubSectionModel _sub, SubSectionCompiler _subSection )
+	{
+		super( _section, Opcodes.ACC_FINAL, _section.newGetterName(), _subSection.arrayDescriptor() + "II", _applyNode
+				.fold().accuInit( 0 ).getDataType() );
+		this.apply = _applyNode;
+		this.fold = _applyNode.fold();
+		this.sub = _sub;
+		this.subSection = _subSection;
+	}
+
+
+	SubSectionCompiler subSection()
+	{
+		return this.subSection;
+	}
+
+
+	@Override
+	protected void compileBody() throws CompilerException
+	{
+		final GeneratorAdapter mv = mv();
+		final ExpressionCompiler expc = expressionCompiler();
+		final ChainedFoldCompiler chainedCompiler = new ChainedFoldCompiler( expc, apply );
+		final Type accuType = typeCompiler().type();
+		final String accName = fold.accuName( 0 );
+
+		// acc = <init>;
+		final int accuVar = newLocal( accuType.getSize() );
+		expc.compile( fold.accuInit( 0 ) );
+		mv.visitVarInsn( accuType.getOpcode( Opcodes.ISTORE ), accuVar );
+
+		// for (; _from < _to; _from++) {
+		final int objVar = newLocal( 1 );
+		final Label next = mv.mark();
+		final Label done = mv.newLabel();
+		mv.loadArg( 1 );
+		mv.loadArg( 2 );
+		mv.ifICmp( GeneratorAdapter.GE, done );
+
+		// obj = _elements[ _from ];
+		mv.loadArg( 0 );
+		mv.loadArg( 1 );
+		mv.visitInsn( Opcodes.AALOAD );
+		mv.visitVarInsn( Opcodes.ASTORE, objVar );
+
+		// acc = <step>( acc, <element of obj> ) for all elements
+		final SectionCompiler oldSection = sectionInContext();
+		final int oldObject = objectInContext();
+		try {
+			setObjectInContext( subSection, objVar );
+			mv.visitVarInsn( accuType.getOpcode( Opcodes.ILOAD ), accuVar );
+			letDict().let( accName, fold.accuInit( 0 ).getDataType(), HelperCompilerForFoldChained.TOP_OF_STACK );
+			chainedCompiler.compileFoldOverLocalValues( sub.arguments(), null );
+			letDict().unlet( accName );
+			mv.visitVarInsn( accuType.getOpcode( Opcodes.ISTORE ), accuVar );
+		}
+		finally {
+			setObjectInContext( oldSection, oldObject );
+		}
+
+		// }
+		mv.iinc( 2, 1 );
+		mv.goTo( next );
+		mv.mark( done );
+
+		// return acc;
+		mv.visitVarInsn( accuType.getOpcode( Opcodes.ILOAD ), accuVar );
+		mv.returnValue();
+	}
+
+
+	/**
+	 * Compiles {@code return this.<range method>( (SectN[]) _elements, _from, _to )} with the result
+	 * boxed, for the generated {@code RangeFolder.foldRange}.
+	 */
+	void compileDispatch( GeneratorAdapter _mv )
+	{
+		_mv.loadThis();
+		_mv.loadArg( 1 );
+		_mv.checkCast( subSection.arrayType() );
+		_mv.loadArg( 2 );
+		_mv.loadArg( 3 );
+		compileCall( _mv );
+		_mv.box( returnType() );
+		_mv.returnValue();
+	}
+
+}
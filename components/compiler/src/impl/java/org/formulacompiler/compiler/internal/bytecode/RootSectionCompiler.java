@@ -22,10 +22,20 @@
 
 package org.formulacompiler.compiler.internal.bytecode;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+
 import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.internal.model.CellModel;
 import org.formulacompiler.compiler.internal.model.SectionModel;
+import org.formulacompiler.compiler.internal.model.analysis.IndependentOutputs;
 import org.formulacompiler.runtime.ComputationMode;
+import org.formulacompiler.runtime.ComputationProfile;
+import org.formulacompiler.runtime.New;
+import org.formulacompiler.runtime.internal.Runtime_v2;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.GeneratorAdapter;
 
 import static org.formulacompiler.compiler.internal.bytecode.ByteCodeEngineCompiler.*;
@@ -37,6 +47,26 @@ final class RootSectionCompiler extends SectionCompiler
 			.getMethod( "void <init>()" );
 	private static final org.objectweb.asm.commons.Method RESET_METHOD = org.objectweb.asm.commons.Method
 			.getMethod( "void reset()" );
+	private static final Type RUNTIME_CLASS = Type.getType( Runtime_v2.class );
+	private static final Type PROFILE_CLASS = Type.getType( ComputationProfile.class );
+	private static final org.objectweb.asm.commons.Method NEW_PROFILE_METHOD = new org.objectweb.asm.commons.Method(
+			"newComputationProfile", PROFILE_CLASS, new Type[] { Type.getType( String[].class ), PROFILE_ARRAY_TYPE,
+					PROFILE_ARRAY_TYPE, PROFILE_ARRAY_TYPE } );
+
+	private static final org.objectweb.asm.commons.Method COMPUTE_ALL_METHOD = new org.objectweb.asm.commons.Method(
+			"computeAll", Type.VOID_TYPE, new Type[] { CELL_COMPUTER_INTF, Type.getType( Executor.class ), Type.INT_TYPE,
+					Type.INT_TYPE } );
+
+	/**
+	 * Keeps the string constants holding the profiled cell names well below the class file limit.
+	 */
+	private static final int MAX_NAME_CHUNK = 16 * 1024;
+
+	/**
+	 * Keeps the methods dispatching to the cells computed by {@code computeAll()} well below the method
+	 * size limit.
+	 */
+	private static final int MAX_CELLS_PER_DISPATCH = 2 * 1024;
 
 
 	RootSectionCompiler( ByteCodeEngineCompiler _compiler, SectionModel _model, boolean _computationListenerEnabled )
@@ -57,11 +87,20 @@ final class RootSectionCompiler extends SectionCompiler
 	}
 
 
+	@Override
+	protected boolean isRebindable()
+	{
+		return engineCompiler().isComputationPoolingEnabled();
+	}
+
+
 	@Override
 	protected void buildMembers()
 	{
 		super.buildMembers();
 		buildEnvironmentMember();
+		if (engineCompiler().isCellProfilingEnabled()) buildProfileMembers();
+		if (engineCompiler().isMemoizing()) buildMemoMember();
 	}
 
 	private void buildEnvironmentMember()
@@ -70,12 +109,32 @@ final class RootSectionCompiler extends SectionCompiler
 		newField( Opcodes.ACC_FINAL, ENV_MEMBER_NAME, ENV_DESC );
 	}
 
+	private void buildProfileMembers()
+	{
+		// Package visible so subsections can count into them.
+		newField( Opcodes.ACC_FINAL, PROFILE_EVALUATIONS_MEMBER_NAME, PROFILE_ARRAY_TYPE.getDescriptor() );
+		newField( Opcodes.ACC_FINAL, PROFILE_COMPUTATIONS_MEMBER_NAME, PROFILE_ARRAY_TYPE.getDescriptor() );
+		if (engineCompiler().isCellTimingEnabled()) {
+			newField( Opcodes.ACC_FINAL, PROFILE_NANOS_MEMBER_NAME, PROFILE_ARRAY_TYPE.getDescriptor() );
+		}
+	}
+
+
+	private void buildMemoMember()
+	{
+		// Package visible so the factory can set it.
+		newField( 0, MEMO_MEMBER_NAME, MEMO_CACHE_CLASS.getDescriptor() );
+	}
+
 
 	private MethodCompiler constructor;
 
 	@Override
 	protected void buildConstructorWithInputs() throws CompilerException
 	{
+		if (isRebindable()) {
+			buildRebind();
+		}
 
 		this.constructor = new MethodCompiler( RootSectionCompiler.this, 0, "<init>", "(" + inputType().getDescriptor() + ENV_DESC + ")V" )
 		{
@@ -117,6 +176,13 @@ final class RootSectionCompiler extends SectionCompiler
 					mv.putField( section().classType(), COMP_TIME_MEMBER_NAME, COMP_TIME_CLASS );
 				}
 
+				// this.epoch = 1; so that no cached value is current initially
+				if (RootSectionCompiler.this.epochCompiled) {
+					mv.loadThis();
+					mv.push( 1L );
+					mv.putField( classType(), EPOCH_MEMBER_NAME, Type.LONG_TYPE );
+				}
+
 				if (RootSectionCompiler.this.computationModeCompiled) {
 					mv.loadThis();
 					final ComputationMode computationMode = model().getEngine().getComputationMode();
@@ -124,11 +190,28 @@ final class RootSectionCompiler extends SectionCompiler
 					mv.putField( classType(), COMP_MODE_MEMBER_NAME, COMP_MODE_CLASS );
 				}
 
+				// this.profile<x> = new long[ <cells> ];
+				if (engineCompiler().isCellProfilingEnabled()) {
+					compileProfileArrayCreation( mv, PROFILE_EVALUATIONS_MEMBER_NAME );
+					compileProfileArrayCreation( mv, PROFILE_COMPUTATIONS_MEMBER_NAME );
+					if (engineCompiler().isCellTimingEnabled()) {
+						compileProfileArrayCreation( mv, PROFILE_NANOS_MEMBER_NAME );
+					}
+				}
+
 				mv.visitInsn( Opcodes.RETURN );
 			}
 		};
 	}
 
+	private void compileProfileArrayCreation( GeneratorAdapter _mv, String _arrayName )
+	{
+		_mv.loadThis();
+		_mv.push( engineCompiler().profiledCellNames().size() );
+		_mv.newArray( Type.LONG_TYPE );
+		_mv.putField( classType(), _arrayName, PROFILE_ARRAY_TYPE );
+	}
+
 	@Override
 	protected void finalizeConstructor() throws CompilerException
 	{
@@ -136,6 +219,213 @@ final class RootSectionCompiler extends SectionCompiler
 	}
 
 
+	private void buildRebind() throws CompilerException
+	{
+		if (hasInputs() && null != outputClass() && !outputClass().isInterface()) {
+			try {
+				outputClass().getConstructor( inputClass() );
+				throw new CompilerException.PoolingNotSupported( "the output class "
+						+ outputClass() + " has a constructor receiving the inputs." );
+			}
+			catch (NoSuchMethodException e) {
+				// Good, the inputs only live in $inputs.
+			}
+		}
+
+		// public final void rebind( Object _inputs ) {
+		final GeneratorAdapter mv = newMethod( Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "rebind",
+				"(Ljava/lang/Object;)V" );
+
+		// this.inputs = (<type>) _inputs;
+		if (hasInputs()) {
+			mv.loadThis();
+			mv.loadArg( 0 );
+			mv.checkCast( inputType() );
+			storeInputs( mv );
+		}
+
+		// }
+		mv.visitInsn( Opcodes.RETURN );
+		endMethod( mv );
+	}
+
+
+	@Override
+	void endCompilation() throws CompilerException
+	{
+		if (engineCompiler().isCellProfilingEnabled()) {
+			compileProfileGetter();
+		}
+		if (engineCompiler().isParallelComputation()) {
+			compileComputeAll();
+		}
+		super.endCompilation();
+	}
+
+	private void compileProfileGetter()
+	{
+		// public final ComputationProfile getProfile() {
+		final GeneratorAdapter mv = newMethod( Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "getProfile", "()"
+				+ PROFILE_CLASS.getDescriptor() );
+
+		// return Runtime_v2.newComputationProfile( new String[] { "<names>", ... }, evals, comps, nanos );
+		final List<String> chunks = New.list();
+		final StringBuilder chunk = new StringBuilder();
+		for (String name : engineCompiler().profiledCellNames()) {
+			if (chunk.length() > 0 && chunk.length() + name.length() >= MAX_NAME_CHUNK) {
+				chunks.add( chunk.toString() );
+				chunk.setLength( 0 );
+			}
+			chunk.append( name ).append( '\n' );
+		}
+		chunks.add( chunk.toString() );
+		mv.push( chunks.size() );
+		mv.newArray( STRING_CLASS );
+		for (int i = 0; i < chunks.size(); i++) {
+			mv.dup();
+			mv.push( i );
+			mv.push( chunks.get( i ) );
+			mv.arrayStore( STRING_CLASS );
+		}
+		compileProfileAccess( mv, PROFILE_EVALUATIONS_MEMBER_NAME );
+		compileProfileAccess( mv, PROFILE_COMPUTATIONS_MEMBER_NAME );
+		if (engineCompiler().isCellTimingEnabled()) {
+			compileProfileAccess( mv, PROFILE_NANOS_MEMBER_NAME );
+		}
+		else {
+			mv.visitInsn( Opcodes.ACONST_NULL );
+		}
+		mv.invokeStatic( RUNTIME_CLASS, NEW_PROFILE_METHOD );
+		mv.returnValue();
+
+		// }
+		endMethod( mv );
+	}
+
+
+	private void compileComputeAll() throws CompilerException
+	{
+		if (!engineCompiler().isFullyCaching()) {
+			throw new CompilerException.ParallelComputationNotSupported( "the output type " + outputClass()
+					+ " extends ParallelComputation, but full caching is not enabled." );
+		}
+
+		final IndependentOutputs outputs = engineCompiler().independentOutputs();
+		final List<CellMethodCompiler> cells = New.list();
+		addCellMethodsOf( outputs.sharedCells(), cells );
+		final int sharedCount = cells.size();
+		addCellMethodsOf( outputs.independentOutputs(), cells );
+		compileComputeCell( cells );
+
+		// public final void computeAll( Executor _executor ) {
+		final GeneratorAdapter mv = newMethod( Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "computeAll",
+				"(Ljava/util/concurrent/Executor;)V" );
+
+		// ParallelOutputs.computeAll( this, _executor, <shared>, <count> );
+		mv.loadThis();
+		if (engineCompiler().isParallelOutputEnabled()) {
+			mv.loadArg( 0 );
+		}
+		else {
+			mv.visitInsn( Opcodes.ACONST_NULL );
+		}
+		mv.push( sharedCount );
+		mv.push( cells.size() );
+		mv.invokeStatic( PARALLEL_OUTPUTS_CLASS, COMPUTE_ALL_METHOD );
+
+		// }
+		mv.visitInsn( Opcodes.RETURN );
+		endMethod( mv );
+	}
+
+	private void addCellMethodsOf( List<CellModel> _cells, List<CellMethodCompiler> _methods )
+	{
+		for (CellModel cell : _cells) {
+			final CellMethodCompiler method = cellMethodCompiler( cell );
+			if (null != method) {
+				_methods.add( method );
+			}
+		}
+	}
+
+	private void compileComputeCell( List<CellMethodCompiler> _cells )
+	{
+		final int n = _cells.size();
+		if (n <= MAX_CELLS_PER_DISPATCH) {
+			compileCellDispatch( Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "computeCell", _cells, 0 );
+		}
+		else {
+			final int chunks = (n + MAX_CELLS_PER_DISPATCH - 1) / MAX_CELLS_PER_DISPATCH;
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				final int from = chunk * MAX_CELLS_PER_DISPATCH;
+				final int to = Math.min( from + MAX_CELLS_PER_DISPATCH, n );
+				compileCellDispatch( Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "computeCell$" + chunk, _cells.subList(
+						from, to ), from );
+			}
+
+			// public final void computeCell( int _cellId ) {
+			final GeneratorAdapter mv = newMethod( Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "computeCell", "(I)V" );
+			final Label[] labels = new Label[ chunks ];
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				labels[ chunk ] = mv.newLabel();
+			}
+			final Label unknown = mv.newLabel();
+
+			// switch (_cellId / <max>) { case <chunk>: computeCell$<chunk>( _cellId ); return; ... }
+			mv.loadArg( 0 );
+			mv.push( MAX_CELLS_PER_DISPATCH );
+			mv.math( GeneratorAdapter.DIV, Type.INT_TYPE );
+			mv.visitTableSwitchInsn( 0, chunks - 1, unknown, labels );
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				mv.mark( labels[ chunk ] );
+				mv.loadThis();
+				mv.loadArg( 0 );
+				mv.visitMethodInsn( Opcodes.INVOKESPECIAL, classInternalName(), "computeCell$" + chunk, "(I)V" );
+				mv.visitInsn( Opcodes.RETURN );
+			}
+			mv.mark( unknown );
+			mv.throwException( ILLEGALARGUMENT_CLASS, "No such cell" );
+			endMethod( mv );
+		}
+	}
+
+	private void compileCellDispatch( int _access, String _name, List<CellMethodCompiler> _cells, int _firstId )
+	{
+		// [public] final void <name>( int _cellId ) {
+		final GeneratorAdapter mv = newMethod( _access, _name, "(I)V" );
+		final int n = _cells.size();
+		final Label[] labels = new Label[ n ];
+		for (int i = 0; i < n; i++) {
+			labels[ i ] = mv.newLabel();
+		}
+		final Label unknown = mv.newLabel();
+
+		// switch (_cellId) { case <id>: <cell>(); return; ... }
+		if (n > 0) {
+			mv.loadArg( 0 );
+			mv.visitTableSwitchInsn( _firstId, _firstId + n - 1, unknown, labels );
+		}
+		for (int i = 0; i < n; i++) {
+			final CellMethodCompiler cell = _cells.get( i );
+			mv.mark( labels[ i ] );
+			mv.loadThis();
+			cell.compileCall( mv );
+			if (cell.returnType().getSize() == 2) {
+				mv.pop2();
+			}
+			else {
+				mv.pop();
+			}
+			mv.visitInsn( Opcodes.RETURN );
+		}
+
+		// default: throw new IllegalArgumentException( "No such cell" );
+		mv.mark( unknown );
+		mv.throwException( ILLEGALARGUMENT_CLASS, "No such cell" );
+		endMethod( mv );
+	}
+
+
 	@Override
 	protected void compileEnvironmentAccess( GeneratorAdapter _mv )
 	{
@@ -197,4 +487,129 @@ final class RootSectionCompiler extends SectionCompiler
 		_mv.getField( classType(), COMP_TIME_MEMBER_NAME, COMP_TIME_CLASS );
 	}
 
+
+	private boolean epochCompiled = false;
+
+	private void compileEpoch()
+	{
+		if (!this.epochCompiled) {
+			newField( Opcodes.ACC_PRIVATE, EPOCH_MEMBER_NAME, Type.LONG_TYPE.getDescriptor() );
+			if (hasReset()) {
+				// $epoch++;
+				final GeneratorAdapter mv = resetter();
+				mv.loadThis();
+				mv.dup();
+				mv.getField( classType(), EPOCH_MEMBER_NAME, Type.LONG_TYPE );
+				mv.push( 1L );
+				mv.math( GeneratorAdapter.ADD, Type.LONG_TYPE );
+				mv.putField( classType(), EPOCH_MEMBER_NAME, Type.LONG_TYPE );
+			}
+			this.epochCompiled = true;
+		}
+	}
+
+	/**
+	 * Pushes the current cache epoch. Only cells of the root section use epoch caching.
+	 */
+	void compileEpochAccess( GeneratorAdapter _mv )
+	{
+		compileEpoch();
+		_mv.loadThis();
+		_mv.getField( classType(), EPOCH_MEMBER_NAME, Type.LONG_TYPE );
+	}
+
+
+	private boolean exactCompiled = false;
+
+	private void compileExact()
+	{
+		if (!this.exactCompiled) {
+			final ScaledLongFastPath fastPath = engineCompiler().scaledLongFastPath();
+			final Type exactType = fastPath.exactRootType();
+			newField( Opcodes.ACC_PRIVATE, ScaledLongFastPath.EXACT_MEMBER_NAME, exactType.getDescriptor() );
+
+			// private final $Exact$Root $exact() {
+			final GeneratorAdapter mv = newMethod( Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL,
+					ScaledLongFastPath.EXACT_MEMBER_NAME, "()" + exactType.getDescriptor() );
+
+			// if ($exact == null) $exact = new $Exact$Root( $inputs, $environment );
+			final Label exists = mv.newLabel();
+			mv.loadThis();
+			mv.getField( classType(), ScaledLongFastPath.EXACT_MEMBER_NAME, exactType );
+			mv.ifNonNull( exists );
+			mv.loadThis();
+			mv.newInstance( exactType );
+			mv.dup();
+			if (hasInputs()) {
+				mv.loadThis();
+				mv.getField( classType(), INPUTS_MEMBER_NAME, inputType() );
+			}
+			else {
+				mv.visitInsn( Opcodes.ACONST_NULL );
+			}
+			compileEnvironmentAccess( mv );
+			mv.visitMethodInsn( Opcodes.INVOKESPECIAL, exactType.getInternalName(), "<init>", "("
+					+ inputType().getDescriptor() + ENV_DESC + ")V" );
+			mv.putField( classType(), ScaledLongFastPath.EXACT_MEMBER_NAME, exactType );
+
+			// return $exact; }
+			mv.mark( exists );
+			mv.loadThis();
+			mv.getField( classType(), ScaledLongFastPath.EXACT_MEMBER_NAME, exactType );
+			mv.returnValue();
+			endMethod( mv );
+
+			// In reset() and reset( <input> ), go back to the fast path:
+			if (hasReset()) {
+				compileExactReset( resetter(), exactType );
+			}
+			for (GeneratorAdapter r : inputResettersFor( engineCompiler().inputDependencies().inputsOf( model() ) )) {
+				compileExactReset( r, exactType );
+			}
+			this.exactCompiled = true;
+		}
+	}
+
+	private void compileExactReset( GeneratorAdapter _mv, Type _exactType )
+	{
+		_mv.loadThis();
+		_mv.visitInsn( Opcodes.ACONST_NULL );
+		_mv.putField( classType(), ScaledLongFastPath.EXACT_MEMBER_NAME, _exactType );
+	}
+
+	/**
+	 * Pushes the exact computation this fast path computation has switched to, or {@code null}.
+	 */
+	void compileExactAccess( GeneratorAdapter _mv )
+	{
+		compileExact();
+		_mv.loadThis();
+		_mv.getField( classType(), ScaledLongFastPath.EXACT_MEMBER_NAME, engineCompiler().scaledLongFastPath()
+				.exactRootType() );
+	}
+
+	/**
+	 * Pushes the exact computation, creating it on first use.
+	 */
+	void compileExactCreation( GeneratorAdapter _mv )
+	{
+		compileExact();
+		_mv.loadThis();
+		_mv.visitMethodInsn( Opcodes.INVOKESPECIAL, classInternalName(), ScaledLongFastPath.EXACT_MEMBER_NAME, "()"
+				+ engineCompiler().scaledLongFastPath().exactRootType().getDescriptor() );
+	}
+
+
+	@Override
+	protected void compileProfileAccess( GeneratorAdapter _mv, String _arrayName )
+	{
+		_mv.loadThis();
+		compileProfileAccessGivenThis( _mv, _arrayName );
+	}
+
+	void compileProfileAccessGivenThis( GeneratorAdapter _mv, String _arrayName )
+	{
+		_mv.getField( classType(), _arrayName, PROFILE_ARRAY_TYPE );
+	}
+
 }
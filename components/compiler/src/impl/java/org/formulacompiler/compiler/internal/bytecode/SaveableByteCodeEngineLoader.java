@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.formulacompiler.compiler.SaveableEngine;
+import org.formulacompiler.compiler.internal.engine.SaveableEngineLoader;
+import org.formulacompiler.runtime.EngineException;
+import org.formulacompiler.runtime.EngineLoader;
+import org.formulacompiler.runtime.internal.bytecode.ByteCodeEngineLoader;
+
+
+public final class SaveableByteCodeEngineLoader implements SaveableEngineLoader
+{
+	private final ClassLoader parentClassLoader;
+
+
+	public SaveableByteCodeEngineLoader( EngineLoader.Config _config )
+	{
+		super();
+		this.parentClassLoader = _config.parentClassLoader;
+	}
+
+	public static final class Factory implements SaveableEngineLoader.Factory
+	{
+		public SaveableEngineLoader newInstance( EngineLoader.Config _config )
+		{
+			return new SaveableByteCodeEngineLoader( _config );
+		}
+	}
+
+
+	public SaveableEngine loadEngineData( InputStream _stream ) throws IOException, EngineException
+	{
+		return new SaveableByteCodeEngine( this.parentClassLoader, ByteCodeEngineLoader.readClassNamesAndBytes( _stream ) );
+	}
+
+}
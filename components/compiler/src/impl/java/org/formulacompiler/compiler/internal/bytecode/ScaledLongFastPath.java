@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+import org.formulacompiler.compiler.CallFrame;
+import org.formulacompiler.compiler.FormulaCompiler;
+import org.formulacompiler.compiler.NumericType;
+import org.formulacompiler.compiler.internal.expressions.DataType;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForArrayReference;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForConstantValue;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldApply;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldDefinition;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldList;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFunction;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForLet;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForLetVar;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForOperator;
+import org.formulacompiler.compiler.internal.model.CellModel;
+import org.formulacompiler.compiler.internal.model.ComputationModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForCellModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForCount;
+import org.formulacompiler.compiler.internal.model.SectionModel;
+import org.formulacompiler.runtime.ScaledLongSupport;
+import org.objectweb.asm.Type;
+
+
+/**
+ * Describes how an engine for a scaled {@link BigDecimal} numeric type computes with scaled longs
+ * instead, falling back to a {@link BigDecimal} computation when an operation overflows.
+ * <p>
+ * The fast path must produce exactly the values of the {@link BigDecimal} engine. This holds for
+ * the operations compiled with overflow checks by {@link ExpressionCompilerForScaledLongs}, so only
+ * models restricted to them qualify: addition, subtraction, multiplication, division, comparisons,
+ * {@code IF}, and logical functions, possibly folded over ranges, in a model without repeating
+ * sections. Inputs and outputs must be of types converted exactly.
+ */
+final class ScaledLongFastPath
+{
+	static final String EXACT_CLASS_PREFIX = "$Exact";
+	static final String EXACT_MEMBER_NAME = "$exact";
+
+	private final NumericType exactType;
+	private final NumericType fastType;
+	private final long one;
+	private final Type exactRootType;
+
+
+	private ScaledLongFastPath( NumericType _exactType )
+	{
+		super();
+		this.exactType = _exactType;
+		this.fastType = FormulaCompiler.getNumericType( Long.TYPE, _exactType.scale() );
+		this.one = ScaledLongSupport.ONE[ _exactType.scale() ];
+		this.exactRootType = Type.getObjectType( ByteCodeEngineCompiler.GEN_PACKAGE_PATH
+				+ EXACT_CLASS_PREFIX + ByteCodeEngineCompiler.GEN_ROOT_NAME );
+	}
+
+
+	/**
+	 * Returns the fast path for the given model, or {@code null} if it does not qualify.
+	 */
+	static ScaledLongFastPath forModel( ComputationModel _model, NumericType _type )
+	{
+		if (BigDecimal.class != _type.valueType()) return null;
+		if (NumericType.UNDEFINED_SCALE == _type.scale()) return null;
+		if (_type.scale() < 1 || _type.scale() >= ScaledLongSupport.ONE.length) return null;
+		if (BigDecimal.ROUND_HALF_UP != _type.roundingMode()) return null;
+
+		final ScaledLongFastPath result = new ScaledLongFastPath( _type );
+		return result.isSupported( _model.getRoot() ) ? result : null;
+	}
+
+
+	NumericType exactType()
+	{
+		return this.exactType;
+	}
+
+	NumericType fastType()
+	{
+		return this.fastType;
+	}
+
+	long one()
+	{
+		return this.one;
+	}
+
+	Type exactRootType()
+	{
+		return this.exactRootType;
+	}
+
+
+	/**
+	 * Returns the scaled long for a constant, rounded just like the {@link BigDecimal} engine rounds
+	 * it, or {@code null} if it does not fit.
+	 */
+	Long scaledConstant( Number _value )
+	{
+		final BigDecimal value = (BigDecimal) this.exactType.valueOf( _value );
+		final BigDecimal scaled = value.setScale( this.exactType.scale(), BigDecimal.ROUND_HALF_UP );
+		if (scaled.precision() > 18) return null;
+		return scaled.unscaledValue().longValue();
+	}
+
+
+	private boolean isSupported( SectionModel _section )
+	{
+		if (!_section.getSections().isEmpty()) return false;
+		for (CellModel cell : _section.getCells()) {
+			if (!isSupported( cell )) return false;
+		}
+		return true;
+	}
+
+	private boolean isSupported( CellModel _cell )
+	{
+		if (DataType.STRING == _cell.getDataType()) return false;
+		if (_cell.isInput() && !isSupportedInput( _cell.getCallChainToCall().getReturnType() )) return false;
+		if (_cell.isOutput()) {
+			for (CallFrame frame : _cell.getCallsToImplement()) {
+				if (frame.getArgs().length > 0 || null != frame.getPrev()) return false;
+				if (!isSupportedOutput( frame.getReturnType() )) return false;
+			}
+		}
+		if (null != _cell.getExpression()) {
+			return isSupported( _cell.getExpression() );
+		}
+		return isSupportedConstant( _cell.getConstantValue() );
+	}
+
+	private boolean isSupportedInput( Class _type )
+	{
+		return BigDecimal.class == _type
+				|| Long.TYPE == _type || Long.class == _type || Integer.TYPE == _type || Integer.class == _type
+				|| Short.TYPE == _type || Short.class == _type || Byte.TYPE == _type || Byte.class == _type;
+	}
+
+	private boolean isSupportedOutput( Class _type )
+	{
+		return BigDecimal.class == _type
+				|| Long.TYPE == _type || Long.class == _type || Integer.TYPE == _type || Integer.class == _type
+				|| Boolean.TYPE == _type || Boolean.class == _type;
+	}
+
+	private boolean isSupportedConstant( Object _value )
+	{
+		if (null == _value || _value instanceof Boolean) return true;
+		if (_value instanceof Number) {
+			// Constant arrays are converted without our rounding, so only accept exact constants.
+			final Long scaled = scaledConstant( (Number) _value );
+			return null != scaled
+					&& 0 == BigDecimal.valueOf( scaled, this.exactType.scale() ).compareTo(
+							(BigDecimal) this.exactType.valueOf( (Number) _value ) );
+		}
+		return false;
+	}
+
+	private boolean isSupported( ExpressionNode _node )
+	{
+		if (null == _node) return true;
+		if (DataType.STRING == _node.getDataType()) return false;
+
+		if (_node instanceof ExpressionNodeForConstantValue) {
+			return isSupportedConstant( ((ExpressionNodeForConstantValue) _node).value() );
+		}
+		else if (_node instanceof ExpressionNodeForOperator) {
+			switch (((ExpressionNodeForOperator) _node).getOperator()) {
+				case PLUS:
+				case MINUS:
+				case TIMES:
+				case DIV:
+				case EQUAL:
+				case NOTEQUAL:
+				case LESS:
+				case LESSOREQUAL:
+				case GREATER:
+				case GREATEROREQUAL:
+				case INTERNAL_MIN:
+				case INTERNAL_MAX:
+					return areSupported( _node.arguments() );
+				default:
+					return false;
+			}
+		}
+		else if (_node instanceof ExpressionNodeForFunction) {
+			switch (((ExpressionNodeForFunction) _node).getFunction()) {
+				case IF:
+				case NOT:
+				case AND:
+				case OR:
+					return areSupported( _node.arguments() );
+				default:
+					return false;
+			}
+		}
+		else if (_node instanceof ExpressionNodeForCellModel
+				|| _node instanceof ExpressionNodeForCount || _node instanceof ExpressionNodeForArrayReference
+				|| _node instanceof ExpressionNodeForFoldApply || _node instanceof ExpressionNodeForFoldDefinition
+				|| _node instanceof ExpressionNodeForFoldList || _node instanceof ExpressionNodeForLet
+				|| _node instanceof ExpressionNodeForLetVar) {
+			return areSupported( _node.arguments() );
+		}
+		return false;
+	}
+
+	private boolean areSupported( Collection<ExpressionNode> _nodes )
+	{
+		for (ExpressionNode node : _nodes) {
+			if (!isSupported( node )) return false;
+		}
+		return true;
+	}
+
+}
@@ -25,18 +25,25 @@ package org.formulacompiler.compiler.internal.bytecode;
 import static org.formulacompiler.compiler.internal.bytecode.ByteCodeEngineCompiler.*;
 
 import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.formulacompiler.compiler.CallFrame;
 import org.formulacompiler.compiler.CompilerException;
 import org.formulacompiler.compiler.internal.expressions.ArrayDescriptor;
+import org.formulacompiler.compiler.internal.expressions.DataType;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForArrayReference;
 import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForConstantValue;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldDatabase;
 import org.formulacompiler.compiler.internal.model.CellModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForCellModel;
 import org.formulacompiler.compiler.internal.model.SectionModel;
 import org.formulacompiler.runtime.New;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.GeneratorAdapter;
@@ -159,12 +166,31 @@ abstract class SectionCompiler extends ClassCompiler
 		if (this.compilationStarted) return;
 		this.compilationStarted = true;
 
-		initializeClass( outputClass(), this.outputs, COMPUTATION_INTF );
+		final List<Type> intfs = New.list();
+		intfs.add( COMPUTATION_INTF );
+		if (engineCompiler().isParallelFoldEnabled()) {
+			intfs.add( HelperCompilerForFoldParallel.RANGE_FOLDER_INTF );
+		}
+		if (engineCompiler().isCellProfilingEnabled() && this == rootSectionCompiler()) {
+			intfs.add( PROFILED_COMPUTATION_INTF );
+		}
+		if (engineCompiler().isComputationPoolingEnabled() && this == rootSectionCompiler()) {
+			intfs.add( POOLABLE_COMPUTATION_INTF );
+		}
+		if (engineCompiler().isParallelComputation() && this == rootSectionCompiler()) {
+			intfs.add( CELL_COMPUTER_INTF );
+		}
+		initializeClass( outputClass(), this.outputs, intfs.toArray( new Type[ intfs.size() ] ) );
 		buildMembers();
 		buildConstructorWithInputs();
-		if (engineCompiler().isResettable()) {
+		// Batch and pooled computations reuse computations, resetting them in between.
+		if (engineCompiler().isResettable()
+				|| engineCompiler().isBatchComputationEnabled() || engineCompiler().isComputationPoolingEnabled()) {
 			buildReset();
 		}
+		if (engineCompiler().isIncrementallyResettable()) {
+			buildInputResets();
+		}
 	}
 
 	protected void buildMembers()
@@ -191,6 +217,13 @@ abstract class SectionCompiler extends ClassCompiler
 			r.visitInsn( Opcodes.ACONST_NULL );
 			r.putField( classType(), _sub.getterName(), _sub.arrayType() );
 		}
+
+		// In reset( <input> ), do the same for all inputs the section depends on:
+		for (GeneratorAdapter r : inputResettersFor( engineCompiler().inputDependencies().inputsOf( _sub.model() ) )) {
+			r.loadThis();
+			r.visitInsn( Opcodes.ACONST_NULL );
+			r.putField( classType(), _sub.getterName(), _sub.arrayType() );
+		}
 	}
 
 	public void compileCallToGetterFor( GeneratorAdapter _mv, SubSectionCompiler _sub )
@@ -203,11 +236,44 @@ abstract class SectionCompiler extends ClassCompiler
 	{
 		finalizeConstructor();
 		finalizeOutputDistributors();
+		finalizeInputResets();
 		finalizeReset();
+		finalizeParallelFolds();
 		finalizeClass();
 	}
 
 
+	private final List<ParallelFoldRangeCompiler> parallelFolds = New.list();
+
+	int addParallelFold( ParallelFoldRangeCompiler _range )
+	{
+		this.parallelFolds.add( _range );
+		return this.parallelFolds.size() - 1;
+	}
+
+	private void finalizeParallelFolds()
+	{
+		if (!engineCompiler().isParallelFoldEnabled()) return;
+
+		// public final Object foldRange( int _foldId, Object[] _elements, int _from, int _to ) {
+		final GeneratorAdapter mv = newMethod( Opcodes.ACC_FINAL | Opcodes.ACC_PUBLIC, "foldRange",
+				"(I[Ljava/lang/Object;II)Ljava/lang/Object;" );
+		final int n = this.parallelFolds.size();
+		for (int foldId = 0; foldId < n; foldId++) {
+			// if (_foldId == <id>) return <range method>( ... );
+			final Label next = mv.newLabel();
+			mv.loadArg( 0 );
+			mv.push( foldId );
+			mv.ifICmp( GeneratorAdapter.NE, next );
+			this.parallelFolds.get( foldId ).compileDispatch( mv );
+			mv.mark( next );
+		}
+		// throw new IllegalArgumentException();
+		mv.throwException( ILLEGALARGUMENT_CLASS, "No such parallel fold" );
+		endMethod( mv );
+	}
+
+
 	private GeneratorAdapter resetter;
 
 	private void buildReset()
@@ -236,6 +302,76 @@ abstract class SectionCompiler extends ClassCompiler
 	}
 
 
+	private static final Type STRING_CLASS = Type.getType( String.class );
+	private static final org.objectweb.asm.commons.Method EQUALS_METHOD = org.objectweb.asm.commons.Method
+			.getMethod( "boolean equals(Object)" );
+
+	/**
+	 * Maps input method names to the methods clearing the caches that depend on them. Only the root
+	 * section tracks this. Subsections are discarded as a whole when anything they depend on changes.
+	 */
+	private Map<String, GeneratorAdapter> inputResetters;
+
+	private void buildInputResets()
+	{
+		if (this instanceof RootSectionCompiler) {
+			this.inputResetters = New.sortedMap();
+			for (String input : engineCompiler().inputDependencies().inputsOf( model() )) {
+				final String name = "reset$" + this.inputResetters.size();
+				this.inputResetters.put( input, newMethod( Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, name, "()V" ) );
+			}
+		}
+	}
+
+	private void finalizeInputResets()
+	{
+		if (!engineCompiler().isIncrementallyResettable()) return;
+
+		// public final void reset( String _input ) {
+		final GeneratorAdapter mv = newMethod( Opcodes.ACC_FINAL | Opcodes.ACC_PUBLIC, "reset", "(Ljava/lang/String;)V" );
+		if (null != this.inputResetters) {
+			int i = 0;
+			for (Map.Entry<String, GeneratorAdapter> entry : this.inputResetters.entrySet()) {
+				final GeneratorAdapter r = entry.getValue();
+				r.visitInsn( Opcodes.RETURN );
+				endMethod( r );
+
+				// if ("<input>".equals( _input )) { reset$<n>(); return; }
+				final Label next = mv.newLabel();
+				mv.push( entry.getKey() );
+				mv.loadArg( 0 );
+				mv.invokeVirtual( STRING_CLASS, EQUALS_METHOD );
+				mv.ifZCmp( GeneratorAdapter.EQ, next );
+				mv.loadThis();
+				mv.visitMethodInsn( Opcodes.INVOKESPECIAL, classInternalName(), "reset$" + i, "()V" );
+				mv.visitInsn( Opcodes.RETURN );
+				mv.mark( next );
+				i++;
+			}
+			this.inputResetters = null;
+		}
+		// reset(); }
+		mv.loadThis();
+		mv.visitMethodInsn( Opcodes.INVOKEVIRTUAL, classInternalName(), "reset", "()V" );
+		mv.visitInsn( Opcodes.RETURN );
+		endMethod( mv );
+	}
+
+	/**
+	 * Returns the methods that must clear a cache which depends on the given inputs. Empty unless
+	 * the computation is incrementally resettable.
+	 */
+	Collection<GeneratorAdapter> inputResettersFor( Set<String> _inputs )
+	{
+		if (null == this.inputResetters) return Collections.emptyList();
+		final Collection<GeneratorAdapter> result = New.collection();
+		for (String input : _inputs) {
+			result.add( this.inputResetters.get( input ) );
+		}
+		return result;
+	}
+
+
 	private final Map<Method, OutputDistributorCompiler> outputDistributors = New.map();
 
 	public OutputDistributorCompiler getOutputDistributorFor( Method _method )
@@ -260,7 +396,16 @@ abstract class SectionCompiler extends ClassCompiler
 	private void buildInputMember()
 	{
 		if (!hasInputs()) throw new IllegalStateException();
-		newField( Opcodes.ACC_FINAL + Opcodes.ACC_PRIVATE, INPUTS_MEMBER_NAME, inputType().getDescriptor() );
+		newField( isRebindable() ? Opcodes.ACC_PRIVATE : Opcodes.ACC_FINAL + Opcodes.ACC_PRIVATE, INPUTS_MEMBER_NAME,
+				inputType().getDescriptor() );
+	}
+
+	/**
+	 * Pooled root computations get bound to new inputs when they are reused.
+	 */
+	protected boolean isRebindable()
+	{
+		return false;
 	}
 
 	private void buildSectionInfoMember()
@@ -332,6 +477,7 @@ abstract class SectionCompiler extends ClassCompiler
 	protected abstract void compileEnvironmentAccess( GeneratorAdapter _mv );
 	protected abstract void compileComputationModeAccess( GeneratorAdapter _mv );
 	protected abstract void compileComputationTimeAccess( GeneratorAdapter _mv );
+	protected abstract void compileProfileAccess( GeneratorAdapter _mv, String _arrayName );
 
 	protected void compileSectionInfoAccess( GeneratorAdapter _mv )
 	{
@@ -390,6 +536,117 @@ abstract class SectionCompiler extends ClassCompiler
 		return acc;
 	}
 
+	private final Map<String, MatchIndexCompiler> matchIndexes = New.map();
+	private int nextMatchIndexId = 0;
+
+	public MatchIndexCompiler getMatchIndexFor( ArrayAccessorCompiler _array ) throws CompilerException
+	{
+		final String name = _array.methodName();
+		MatchIndexCompiler idx = this.matchIndexes.get( name );
+		if (null == idx) {
+			final String internalName = Integer.toString( this.nextMatchIndexId++ );
+			idx = new MatchIndexCompiler( this, internalName, _array );
+			idx.compile();
+			this.matchIndexes.put( name, idx );
+		}
+		return idx;
+	}
+
+	private final Map<List<Object>, DatabaseColumnCompiler> databaseColumns = New.map();
+
+	/**
+	 * Returns the accessor for a database table column, shared by all database folds over the same
+	 * column. Columns are identified by their cells rather than by their array descriptors, which are
+	 * not unique for the tables built for conditional folds like {@code SUMIF}.
+	 */
+	public DatabaseColumnCompiler getDatabaseColumn( DataType _type, List<ExpressionNode> _elts )
+			throws CompilerException
+	{
+		final List<Object> key = databaseColumnKeyOf( _type, _elts );
+		DatabaseColumnCompiler col = this.databaseColumns.get( key );
+		if (null == col) {
+			final String internalName = Integer.toString( this.databaseColumns.size() );
+			col = new DatabaseColumnCompiler( this, internalName, _type, _elts );
+			col.compile();
+			this.databaseColumns.put( key, col );
+		}
+		return col;
+	}
+
+	private final Map<List<Object>, DatabaseCellCompiler> databaseCells = New.map();
+
+	/**
+	 * Returns the accessor for the values of a database table column at single rows, shared by all
+	 * database folds over the same column just like {@link #getDatabaseColumn(DataType, List)}.
+	 */
+	public DatabaseCellCompiler getDatabaseCells( DataType _type, List<ExpressionNode> _elts ) throws CompilerException
+	{
+		final List<Object> key = databaseColumnKeyOf( _type, _elts );
+		DatabaseCellCompiler cells = this.databaseCells.get( key );
+		if (null == cells) {
+			final String internalName = Integer.toString( this.databaseCells.size() );
+			cells = new DatabaseCellCompiler( this, internalName, _type, _elts );
+			cells.compile();
+			this.databaseCells.put( key, cells );
+		}
+		return cells;
+	}
+
+	private List<Object> databaseColumnKeyOf( DataType _type, List<ExpressionNode> _elts )
+	{
+		final List<Object> key = New.list( _elts.size() + 1 );
+		key.add( _type );
+		for (ExpressionNode elt : _elts) {
+			if (elt instanceof ExpressionNodeForCellModel) {
+				key.add( ((ExpressionNodeForCellModel) elt).getCellModel() );
+			}
+			else {
+				key.add( elt.toString() );
+			}
+		}
+		return key;
+	}
+
+	private final Map<String, DatabaseIndexCompiler> databaseIndexes = New.map();
+
+	public DatabaseIndexCompiler getDatabaseIndexFor( DatabaseColumnCompiler _column ) throws CompilerException
+	{
+		final String name = _column.methodName();
+		DatabaseIndexCompiler idx = this.databaseIndexes.get( name );
+		if (null == idx) {
+			final String internalName = Integer.toString( this.databaseIndexes.size() );
+			idx = new DatabaseIndexCompiler( this, internalName, _column );
+			idx.compile();
+			this.databaseIndexes.put( name, idx );
+		}
+		return idx;
+	}
+
+	private final Map<List<Object>, DatabaseAggregateCompiler> databaseAggregates = New.map();
+
+	/**
+	 * Returns the accessor for the grouped aggregates of a database table column, shared by all
+	 * folds of the same kind over the same key and folded columns.
+	 */
+	public DatabaseAggregateCompiler getDatabaseAggregate( DatabaseIndexCompiler _index,
+			DatabaseCellCompiler _cells, DatabaseAggregateCompiler.Kind _kind, ExpressionNodeForFoldDatabase _node )
+			throws CompilerException
+	{
+		final List<Object> key = New.list( 4 );
+		key.add( _index.methodName() );
+		key.add( _cells.methodName() );
+		key.add( _kind );
+		key.add( _node.getDataType() );
+		DatabaseAggregateCompiler agg = this.databaseAggregates.get( key );
+		if (null == agg) {
+			final String internalName = Integer.toString( this.databaseAggregates.size() );
+			agg = new DatabaseAggregateCompiler( this, internalName, _index, _cells, _node );
+			agg.compile();
+			this.databaseAggregates.put( key, agg );
+		}
+		return agg;
+	}
+
 	boolean areAllConstant( List<ExpressionNode> _arguments )
 	{
 		for (ExpressionNode arg : _arguments) {
@@ -249,5 +249,14 @@ final class SubSectionCompiler extends SectionCompiler
 		rootSectionCompiler().compileComputationTimeAccessGivenThis( _mv );
 	}
 
+	@Override
+	protected void compileProfileAccess( GeneratorAdapter _mv, String _arrayName )
+	{
+		final Type rootType = rootType();
+		_mv.loadThis();
+		_mv.getField( classType(), ROOT_MEMBER_NAME, rootType );
+		rootSectionCompiler().compileProfileAccessGivenThis( _mv, _arrayName );
+	}
+
 
 }
@@ -23,10 +23,13 @@
 package org.formulacompiler.compiler.internal.engine;
 
 import java.lang.reflect.Method;
+import java.util.Collection;
 
 import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.MethodSizeListener;
 import org.formulacompiler.compiler.NumericType;
 import org.formulacompiler.compiler.SaveableEngine;
+import org.formulacompiler.compiler.internal.model.CellModel;
 import org.formulacompiler.compiler.internal.model.ComputationModel;
 import org.formulacompiler.runtime.EngineException;
 
@@ -88,6 +91,86 @@ public abstract class AbstractOptimizedModelToEngineCompiler implements Optimize
 		return config().computationListenerEnabled;
 	}
 
+	public boolean isHashedLookupEnabled()
+	{
+		return config().hashedLookupEnabled;
+	}
+
+	public boolean isBatchComputationEnabled()
+	{
+		return config().batchComputationEnabled;
+	}
+
+	public int getParallelFoldThreshold()
+	{
+		return config().parallelFoldThreshold;
+	}
+
+	public int getMethodSizeLimit()
+	{
+		return config().methodSizeLimit;
+	}
+
+	public MethodSizeListener getMethodSizeListener()
+	{
+		return config().methodSizeListener;
+	}
+
+	public boolean isCellProfilingEnabled()
+	{
+		return config().cellProfilingEnabled || config().cellTimingEnabled;
+	}
+
+	public boolean isCellTimingEnabled()
+	{
+		return config().cellTimingEnabled;
+	}
+
+	public boolean isEpochCachingEnabled()
+	{
+		return config().epochCachingEnabled;
+	}
+
+	public boolean isComputationPoolingEnabled()
+	{
+		return config().computationPoolingEnabled;
+	}
+
+	public boolean isCommonSubExpressionEliminationEnabled()
+	{
+		return config().commonSubExpressionEliminationEnabled;
+	}
+
+	public boolean isScaledLongFastPathEnabled()
+	{
+		return config().scaledLongFastPathEnabled;
+	}
+
+	public boolean isDatabaseIndexingEnabled()
+	{
+		return config().databaseIndexingEnabled;
+	}
+
+	public boolean isDatabaseAggregateCachingEnabled()
+	{
+		return config().databaseAggregateCachingEnabled;
+	}
+
+	public boolean isTieredCompilationEnabled()
+	{
+		return config().tieredCompilationEnabled;
+	}
+
+	public int getMemoCacheSize()
+	{
+		return config().memoCacheSize;
+	}
+
+	public Collection<CellModel> getMemoCells()
+	{
+		return config().memoCells;
+	}
+
 
 	public abstract SaveableEngine compile() throws CompilerException, EngineException;
 
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.engine;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.formulacompiler.compiler.CallFrame;
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.NumericType;
+import org.formulacompiler.compiler.internal.expressions.DataType;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.compiler.internal.expressions.TypedResult;
+import org.formulacompiler.compiler.internal.model.CellModel;
+import org.formulacompiler.compiler.internal.model.ComputationModel;
+import org.formulacompiler.compiler.internal.model.SectionModel;
+import org.formulacompiler.compiler.internal.model.interpreter.EvalNotPossibleException;
+import org.formulacompiler.compiler.internal.model.interpreter.InterpretedNumericType;
+import org.formulacompiler.compiler.internal.model.optimizer.consteval.CellValues;
+import org.formulacompiler.compiler.internal.model.optimizer.consteval.ConstResult;
+import org.formulacompiler.compiler.internal.model.optimizer.consteval.EvalShadow;
+import org.formulacompiler.runtime.Computation;
+import org.formulacompiler.runtime.ComputationFactory;
+import org.formulacompiler.runtime.New;
+import org.formulacompiler.runtime.Resettable;
+import org.formulacompiler.runtime.internal.Environment;
+import org.formulacompiler.runtime.spreadsheet.CellAddress;
+
+
+/**
+ * Computes the outputs of an optimized computation model by interpreting the expressions of its
+ * cells with the constant evaluator, so computations can be served before the model is compiled to
+ * byte code. Only handles models without sections whose output type is an interface, and whose
+ * inputs and outputs are numbers or strings. Computations delegate to a fallback computation, which
+ * is expected to be compiled, as soon as they meet an output they cannot interpret, like one
+ * depending on the current time or raising an error.
+ * 
+ * @see TieredEngine
+ */
+public final class ComputationInterpreter
+{
+	private final ComputationModel model;
+	private final NumericType numericType;
+	private final boolean fullCaching;
+	private final Map<List<Object>, CellModel> outputCells = New.map();
+
+
+	private ComputationInterpreter( ComputationModel _model, NumericType _numericType, boolean _fullCaching )
+	{
+		super();
+		this.model = _model;
+		this.numericType = _numericType;
+		this.fullCaching = _fullCaching;
+	}
+
+
+	/**
+	 * Returns an interpreter for the model, or {@code null} if it cannot be interpreted.
+	 * 
+	 * @param _fullCaching whether computations keep cell values until they are reset, like the ones
+	 *          of a compiled engine with full caching. Otherwise, they read their inputs again for
+	 *          every output.
+	 */
+	public static ComputationInterpreter newInstance( ComputationModel _model, NumericType _numericType,
+			boolean _fullCaching )
+	{
+		final ComputationInterpreter result = new ComputationInterpreter( _model, _numericType, _fullCaching );
+		return result.bind() ? result : null;
+	}
+
+	private boolean bind()
+	{
+		final Class outputClass = this.model.getOutputClass();
+		if (!outputClass.isInterface()) return false;
+		final Class valueType = this.numericType.valueType();
+		if (valueType != Double.TYPE && valueType != BigDecimal.class) return false;
+
+		final SectionModel root = this.model.getRoot();
+		if (!root.getSections().isEmpty() || root.isInput() || root.isOutput()) return false;
+		for (CellModel cell : root.getCells()) {
+			if (cell.isInput() && !isSupported( cell.getCallChainToCall().getReturnType(), cell.getDataType() )) {
+				return false;
+			}
+			if (cell.isOutput()) {
+				for (CallFrame call : cell.getCallsToImplement()) {
+					if (null != call.getPrev()) return false;
+					if (!isSupported( call.getMethod().getReturnType(), cell.getDataType() )) return false;
+					this.outputCells.put( keyOf( call.getMethod(), call.getArgs() ), cell );
+				}
+			}
+		}
+
+		// Leave unimplemented methods to the byte code compiler to report.
+		for (Method method : outputClass.getMethods()) {
+			if (method.getDeclaringClass() != Resettable.class && !isBound( method )) return false;
+		}
+		return true;
+	}
+
+	private boolean isSupported( Class _type, DataType _dataType )
+	{
+		switch (_dataType) {
+			case NUMERIC:
+				if (_type == Double.TYPE || _type == Double.class) return true;
+				return _type == BigDecimal.class && this.numericType.valueType() == BigDecimal.class;
+			case STRING:
+				return _type == String.class;
+			default:
+				return false;
+		}
+	}
+
+	private boolean isBound( Method _method )
+	{
+		for (List<Object> key : this.outputCells.keySet()) {
+			if (key.get( 0 ).equals( _method )) return true;
+		}
+		return false;
+	}
+
+	private static List<Object> keyOf( Method _method, Object[] _args )
+	{
+		final List<Object> key = New.list( 2 );
+		key.add( _method );
+		key.add( (null == _args) ? Collections.emptyList() : Arrays.asList( _args ) );
+		return key;
+	}
+
+
+	/**
+	 * Returns a factory for interpreted computations.
+	 * 
+	 * @param _config is the environment configuration for the computations, or {@code null}.
+	 * @param _fallback makes the computations used for outputs that cannot be interpreted.
+	 */
+	public ComputationFactory newComputationFactory( Computation.Config _config, final ComputationFactory _fallback )
+	{
+		final Environment env = (null == _config) ? Environment.DEFAULT : Environment.getInstance( _config );
+		final InterpretedNumericType type = InterpretedNumericType.typeFor( this.numericType, this.model
+				.getComputationMode(), env );
+		final Class[] interfaces = { this.model.getOutputClass(), Computation.class };
+		final ClassLoader loader = this.model.getOutputClass().getClassLoader();
+		return new ComputationFactory()
+		{
+
+			public Computation newComputation( Object _inputs )
+			{
+				final InterpretedComputation handler = new InterpretedComputation( _inputs, type, _fallback );
+				return (Computation) Proxy.newProxyInstance( loader, interfaces, handler );
+			}
+
+		};
+	}
+
+
+	private final class InterpretedComputation implements InvocationHandler, CellValues
+	{
+		private final Object inputs;
+		private final InterpretedNumericType type;
+		private final ComputationFactory fallback;
+		private final Map<CellModel, TypedResult> values = New.map();
+		private Object compiled;
+
+		InterpretedComputation( Object _inputs, InterpretedNumericType _type, ComputationFactory _fallback )
+		{
+			super();
+			this.inputs = _inputs;
+			this.type = _type;
+			this.fallback = _fallback;
+		}
+
+
+		public Object invoke( Object _proxy, Method _method, Object[] _args ) throws Throwable
+		{
+			if (_method.getDeclaringClass() == Object.class) {
+				return invokeOnObject( _proxy, _method, _args );
+			}
+			if (null == this.compiled) {
+				if (_method.getDeclaringClass() == Resettable.class) {
+					this.values.clear();
+					return null;
+				}
+				final CellModel cell = outputCells.get( keyOf( _method, _args ) );
+				if (null != cell) {
+					if (!fullCaching) {
+						// Only keep values while computing a single output.
+						this.values.clear();
+					}
+					try {
+						return outputValue( cell, _method.getReturnType() );
+					}
+					catch (EvalNotPossibleException e) {
+						// Leave it to the compiled computation.
+					}
+				}
+				this.compiled = this.fallback.newComputation( this.inputs );
+			}
+			try {
+				return _method.invoke( this.compiled, _args );
+			}
+			catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+		private Object invokeOnObject( Object _proxy, Method _method, Object[] _args )
+		{
+			final String name = _method.getName();
+			if ("equals".equals( name )) return _proxy == _args[ 0 ];
+			if ("hashCode".equals( name )) return System.identityHashCode( _proxy );
+			return "Interpreted " + model.getOutputClass().getName() + "@"
+					+ Integer.toHexString( System.identityHashCode( _proxy ) );
+		}
+
+
+		private Object outputValue( CellModel _cell, Class _returnType ) throws CompilerException
+		{
+			final Object value = valueOf( _cell ).getConstantValue();
+			if (_returnType == String.class) {
+				if (null == value) return "";
+				if (value instanceof String) return value;
+				throw new EvalNotPossibleException();
+			}
+			final Number number;
+			if (null == value) {
+				number = numericType.getZero();
+			}
+			else if (value instanceof Boolean) {
+				number = ((Boolean) value) ? numericType.getOne() : numericType.getZero();
+			}
+			else if (value instanceof Number) {
+				number = (Number) value;
+			}
+			else {
+				throw new EvalNotPossibleException();
+			}
+			if (_returnType == BigDecimal.class) {
+				return numericType.valueOf( number );
+			}
+			return number.doubleValue();
+		}
+
+
+		public TypedResult valueOf( CellModel _cell ) throws CompilerException
+		{
+			TypedResult result = this.values.get( _cell );
+			if (null == result) {
+				result = evaluate( _cell );
+				this.values.put( _cell, result );
+			}
+			return result;
+		}
+
+		private TypedResult evaluate( CellModel _cell ) throws CompilerException
+		{
+			if (_cell.isInput()) {
+				return inputValue( _cell );
+			}
+
+			final Object constantValue = _cell.getConstantValue();
+			if (null != constantValue) {
+				if (constantValue instanceof Boolean) {
+					final boolean bool = ((Boolean) constantValue).booleanValue();
+					return ConstResult.valueOf( this.type.adjustConstantValue( Double.valueOf( bool ? 1 : 0 ) ), _cell
+							.getDataType() );
+				}
+				return _cell;
+			}
+
+			final ExpressionNode expression = _cell.getExpression();
+			if (null != expression) {
+				final Object source = _cell.getSource();
+				final CellAddress cellAddress = source instanceof CellAddress ? (CellAddress) source : null;
+				final TypedResult result = EvalShadow.evaluate( expression, this.type, this, cellAddress );
+				if (!result.hasConstantValue()) {
+					throw new EvalNotPossibleException();
+				}
+				return result;
+			}
+
+			return ConstResult.NULL;
+		}
+
+		private TypedResult inputValue( CellModel _cell )
+		{
+			Object value = this.inputs;
+			for (CallFrame frame : _cell.getCallChainToCall().getFrames()) {
+				final Method method = frame.getMethod();
+				final Object target = Modifier.isStatic( method.getModifiers() ) ? null : value;
+				try {
+					value = method.invoke( target, frame.getArgs() );
+				}
+				catch (InvocationTargetException e) {
+					final Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+					if (cause instanceof Error) throw (Error) cause;
+					throw new IllegalStateException( cause );
+				}
+				catch (IllegalAccessException e) {
+					throw new EvalNotPossibleException();
+				}
+			}
+			if (_cell.getDataType() == DataType.STRING) {
+				if (!(value instanceof String)) throw new EvalNotPossibleException();
+				return ConstResult.valueOf( value, DataType.STRING );
+			}
+			if (!(value instanceof Number)) throw new EvalNotPossibleException();
+			return ConstResult.valueOf( this.type.adjustConstantValue( numericType.valueOf( (Number) value ) ),
+					DataType.NUMERIC );
+		}
+
+	}
+
+}
@@ -57,15 +57,34 @@ public final class ModelToEngineCompilerImpl extends AbstractOptimizedModelToEng
 		mtcfg.numericType = cfg.numericType;
 		mtcfg.constExprCellListenerSupport = cfg.constExprCellListenerSupport;
 		mtcfg.computationListenerEnabled = cfg.computationListenerEnabled;
+		mtcfg.commonSubExpressionEliminationEnabled = cfg.commonSubExpressionEliminationEnabled;
 		final ComputationModelTransformer mt = TRANSFORMER_FACTORY.newInstance( mtcfg );
 		final ComputationModel transformed = mt.destructiveTransform();
 
 		final Config eccfg = cfg.clone();
 		eccfg.model = transformed;
 		final OptimizedModelToEngineCompiler ec = COMPILER_FACTORY.newInstance( eccfg );
+		if (cfg.tieredCompilationEnabled && canInterpret( cfg )) {
+			final ComputationInterpreter interpreter = ComputationInterpreter.newInstance( transformed, cfg.numericType,
+					cfg.fullCaching );
+			if (null != interpreter) {
+				return new TieredEngine( interpreter, ec );
+			}
+		}
 		return ec.compile();
 	}
 
+	/**
+	 * Interpreted computations support none of the options changing what computations look like
+	 * from outside.
+	 */
+	private static boolean canInterpret( Config _cfg )
+	{
+		return null == _cfg.factoryClass
+				&& !_cfg.computationListenerEnabled && !_cfg.cellProfilingEnabled && !_cfg.cellTimingEnabled
+				&& !_cfg.batchComputationEnabled && !_cfg.computationPoolingEnabled && 0 == _cfg.memoCacheSize;
+	}
+
 	private static final ComputationModelTransformer.Factory TRANSFORMER_FACTORY = ImplementationLocator
 			.getInstance( ComputationModelTransformer.Factory.class );
 
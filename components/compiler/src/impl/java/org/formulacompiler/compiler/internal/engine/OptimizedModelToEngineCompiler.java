@@ -23,11 +23,14 @@
 package org.formulacompiler.compiler.internal.engine;
 
 import java.lang.reflect.Method;
+import java.util.Collection;
 
 import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.MethodSizeListener;
 import org.formulacompiler.compiler.NumericType;
 import org.formulacompiler.compiler.SaveableEngine;
 import org.formulacompiler.compiler.internal.Util;
+import org.formulacompiler.compiler.internal.model.CellModel;
 import org.formulacompiler.compiler.internal.model.ComputationModel;
 import org.formulacompiler.compiler.internal.model.ConstantExpressionCellListenerSupport;
 import org.formulacompiler.runtime.EngineException;
@@ -46,6 +49,22 @@ public interface OptimizedModelToEngineCompiler
 		public boolean fullCaching;
 		public boolean compileToReadableCode;
 		public boolean computationListenerEnabled;
+		public boolean hashedLookupEnabled;
+		public boolean batchComputationEnabled;
+		public int parallelFoldThreshold;
+		public int methodSizeLimit;
+		public MethodSizeListener methodSizeListener;
+		public boolean cellProfilingEnabled;
+		public boolean cellTimingEnabled;
+		public boolean epochCachingEnabled;
+		public boolean computationPoolingEnabled;
+		public boolean commonSubExpressionEliminationEnabled;
+		public boolean scaledLongFastPathEnabled;
+		public boolean databaseIndexingEnabled;
+		public boolean databaseAggregateCachingEnabled;
+		public boolean tieredCompilationEnabled;
+		public int memoCacheSize;
+		public Collection<CellModel> memoCells;
 		public ConstantExpressionCellListenerSupport constExprCellListenerSupport;
 
 		public void validate()
@@ -60,7 +79,7 @@ public interface OptimizedModelToEngineCompiler
 		}
 
 		@Override
-		protected Config clone()
+		public Config clone()
 		{
 			try {
 				return (Config) super.clone();
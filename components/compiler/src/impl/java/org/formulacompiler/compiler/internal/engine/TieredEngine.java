@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.SaveableEngine;
+import org.formulacompiler.runtime.Computation;
+import org.formulacompiler.runtime.ComputationFactory;
+import org.formulacompiler.runtime.EngineException;
+
+
+/**
+ * Engine which serves computations right away by interpreting the optimized model, while it is
+ * compiled to byte code on a background thread. Once the compiled engine is ready, new computations
+ * are made by it instead. Computations made before keep interpreting, but switch to a computation of
+ * the compiled engine for outputs they cannot interpret, waiting for the compilation if need be.
+ * Saving the engine waits for the compilation, too. If the compilation fails, its error is thrown by
+ * {@link #getCompiledEngine()}, and new computations are no longer made.
+ */
+public final class TieredEngine implements SaveableEngine
+{
+	private final ComputationInterpreter interpreter;
+	private final FutureTask<SaveableEngine> compilation;
+	private volatile SaveableEngine compiled;
+
+
+	public TieredEngine( ComputationInterpreter _interpreter, final OptimizedModelToEngineCompiler _compiler )
+	{
+		super();
+		this.interpreter = _interpreter;
+		this.compilation = new FutureTask<SaveableEngine>( new Callable<SaveableEngine>()
+		{
+
+			public SaveableEngine call() throws Exception
+			{
+				final SaveableEngine result = _compiler.compile();
+				TieredEngine.this.compiled = result;
+				return result;
+			}
+
+		} );
+		final Thread thread = new Thread( this.compilation, "AFC engine compiler" );
+		thread.setDaemon( true );
+		thread.start();
+	}
+
+
+	/**
+	 * Tells whether the compiled engine is ready, so new computations are compiled ones.
+	 */
+	public boolean isCompiled()
+	{
+		return null != this.compiled;
+	}
+
+	/**
+	 * Tells whether the compilation failed, so {@link #getCompiledEngine()} throws its error.
+	 */
+	public boolean isFailed()
+	{
+		return this.compilation.isDone() && null == this.compiled;
+	}
+
+	/**
+	 * Returns the compiled engine, waiting for the compilation to finish if need be.
+	 */
+	public SaveableEngine getCompiledEngine() throws CompilerException, EngineException
+	{
+		final SaveableEngine result = this.compiled;
+		if (null != result) return result;
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return this.compilation.get();
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof CompilerException) throw (CompilerException) cause;
+			if (cause instanceof EngineException) throw (EngineException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new EngineException( cause );
+		}
+		finally {
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+	}
+
+
+	public ComputationFactory getComputationFactory()
+	{
+		return new TieredComputationFactory( null );
+	}
+
+	public ComputationFactory getComputationFactory( Computation.Config _cfg )
+	{
+		return new TieredComputationFactory( _cfg );
+	}
+
+
+	public void saveTo( OutputStream _stream ) throws IOException
+	{
+		final SaveableEngine engine;
+		try {
+			engine = getCompiledEngine();
+		}
+		catch (Exception e) {
+			final IOException ioe = new IOException( "Engine could not be compiled: " + e.getMessage() );
+			ioe.initCause( e );
+			throw ioe;
+		}
+		engine.saveTo( _stream );
+	}
+
+
+	private final class TieredComputationFactory implements ComputationFactory
+	{
+		private final Computation.Config config;
+		private final ComputationFactory interpreted;
+		private volatile ComputationFactory compiledFactory;
+
+		TieredComputationFactory( Computation.Config _config )
+		{
+			super();
+			this.config = _config;
+			this.interpreted = TieredEngine.this.interpreter.newComputationFactory( _config, new ComputationFactory()
+			{
+
+				public Computation newComputation( Object _inputs )
+				{
+					return compiledFactory( waitForCompiledEngine() ).newComputation( _inputs );
+				}
+
+			} );
+		}
+
+		public Computation newComputation( Object _inputs )
+		{
+			final SaveableEngine engine = TieredEngine.this.compiled;
+			if (null != engine) {
+				return compiledFactory( engine ).newComputation( _inputs );
+			}
+			if (isFailed()) {
+				waitForCompiledEngine(); // throws the compilation's error
+			}
+			return this.interpreted.newComputation( _inputs );
+		}
+
+		private ComputationFactory compiledFactory( SaveableEngine _engine )
+		{
+			ComputationFactory result = this.compiledFactory;
+			if (null == result) {
+				result = (null == this.config) ? _engine.getComputationFactory() : _engine
+						.getComputationFactory( this.config );
+				this.compiledFactory = result;
+			}
+			return result;
+		}
+
+		private SaveableEngine waitForCompiledEngine()
+		{
+			try {
+				return getCompiledEngine();
+			}
+			catch (CompilerException e) {
+				throw new IllegalStateException( "Engine could not be compiled: " + e.getMessage(), e );
+			}
+			catch (EngineException e) {
+				throw new IllegalStateException( "Engine could not be compiled: " + e.getMessage(), e );
+			}
+		}
+
+	}
+
+}
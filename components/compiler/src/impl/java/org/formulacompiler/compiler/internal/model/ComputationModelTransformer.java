@@ -35,6 +35,7 @@ public interface ComputationModelTransformer
 		public ComputationModel model;
 		public NumericType numericType;
 		public boolean computationListenerEnabled;
+		public boolean commonSubExpressionEliminationEnabled;
 		public ConstantExpressionCellListenerSupport constExprCellListenerSupport;
 
 		public void validate()
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.model.analysis;
+
+import java.util.List;
+import java.util.Map;
+
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForArrayReference;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldDatabase;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFunction;
+import org.formulacompiler.compiler.internal.model.CellModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForCellModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForCount;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForParentSectionModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForSectionModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForSubSectionModel;
+import org.formulacompiler.compiler.internal.model.SectionModel;
+import org.formulacompiler.runtime.New;
+
+
+/**
+ * Splits the cells the outputs of the root section depend on into shared cells, which are computed
+ * first and in sequence, and outputs which can then be computed concurrently because they depend
+ * on no cell another output depends on, apart from shared ones. Cells are shared if more than one
+ * output depends on them, if they are inputs, so the inputs are only read by one thread, or if their
+ * own expression uses state that is initialized lazily and may be used by other cells, too. This is
+ * the case for repeating sections, for ranges, which are held by lazily built arrays and indexes,
+ * and for volatile functions, which capture the time of the computation.
+ * 
+ * @see org.formulacompiler.runtime.ParallelComputation
+ */
+public final class IndependentOutputs
+{
+	private static final int SHARED = -1;
+
+	private final SectionModel root;
+	private final Map<CellModel, Integer> owners = New.map();
+	private final List<CellModel> sharedCells = New.list();
+	private final List<CellModel> independentOutputs = New.list();
+
+
+	public IndependentOutputs( SectionModel _root )
+	{
+		super();
+		this.root = _root;
+
+		int output = 0;
+		for (CellModel cell : _root.getCells()) {
+			if (cell.isOutput()) {
+				visit( cell, output++ );
+			}
+		}
+
+		for (CellModel cell : _root.getCells()) {
+			final Integer owner = this.owners.get( cell );
+			if (null == owner) {
+				continue;
+			}
+			if (owner == SHARED || cell.isInput() || usesLazyState( cell.getExpression() )) {
+				this.sharedCells.add( cell );
+			}
+			else if (cell.isOutput()) {
+				this.independentOutputs.add( cell );
+			}
+		}
+	}
+
+
+	/**
+	 * Returns the shared cells in the order of the root section.
+	 */
+	public List<CellModel> sharedCells()
+	{
+		return this.sharedCells;
+	}
+
+	/**
+	 * Returns the output cells that can be computed concurrently once all shared cells are.
+	 */
+	public List<CellModel> independentOutputs()
+	{
+		return this.independentOutputs;
+	}
+
+
+	/**
+	 * Marks the given cell and the cells it depends on as needed by the given output. Cells already
+	 * shared need not be visited again, since all cells they depend on are shared, too.
+	 */
+	private void visit( CellModel _cell, int _output )
+	{
+		final Integer owner = this.owners.get( _cell );
+		if (null == owner) {
+			this.owners.put( _cell, _output );
+		}
+		else if (owner == _output || owner == SHARED) {
+			return;
+		}
+		else {
+			this.owners.put( _cell, SHARED );
+		}
+		final ExpressionNode expr = _cell.getExpression();
+		if (null != expr) {
+			visitReferences( expr, _output );
+		}
+	}
+
+	private void visitReferences( ExpressionNode _expr, int _output )
+	{
+		if (_expr instanceof ExpressionNodeForCellModel) {
+			final CellModel cell = ((ExpressionNodeForCellModel) _expr).getCellModel();
+			if (null != cell && cell.getSection() == this.root) {
+				visit( cell, _output );
+			}
+		}
+		for (ExpressionNode arg : _expr.arguments()) {
+			if (null != arg) {
+				visitReferences( arg, _output );
+			}
+		}
+	}
+
+
+	private static boolean usesLazyState( ExpressionNode _expr )
+	{
+		if (null == _expr) {
+			return false;
+		}
+		if (_expr instanceof ExpressionNodeForArrayReference || _expr instanceof ExpressionNodeForFoldDatabase
+				|| _expr instanceof ExpressionNodeForSubSectionModel || _expr instanceof ExpressionNodeForParentSectionModel
+				|| _expr instanceof ExpressionNodeForSectionModel || _expr instanceof ExpressionNodeForCount) {
+			return true;
+		}
+		if (_expr instanceof ExpressionNodeForFunction && ((ExpressionNodeForFunction) _expr).getFunction().isVolatile()) {
+			return true;
+		}
+		for (ExpressionNode arg : _expr.arguments()) {
+			if (usesLazyState( arg )) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.model.analysis;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.compiler.internal.model.CellModel;
+import org.formulacompiler.compiler.internal.model.ElementModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForCellModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForSubSectionModel;
+import org.formulacompiler.compiler.internal.model.SectionModel;
+import org.formulacompiler.runtime.New;
+
+
+/**
+ * Determines which inputs the value of a cell (or expression, or section) depends on. Inputs are
+ * identified by the name of the final method in their call chain, so all calls to an indexed input
+ * method like {@code getValue(int)} count as one input. The results are the basis for the
+ * generated {@code reset(String)} of incrementally resettable computations.
+ * 
+ * @see org.formulacompiler.runtime.IncrementallyResettable
+ */
+public final class InputDependencies
+{
+	private final Map<CellModel, Set<String>> cellInputs = New.map();
+
+
+	public static String inputNameOf( ElementModel _element )
+	{
+		return _element.getCallChainToCall().getMethod().getName();
+	}
+
+
+	public Set<String> inputsOf( CellModel _cell )
+	{
+		Set<String> result = this.cellInputs.get( _cell );
+		if (null == result) {
+			if (_cell.isInput()) {
+				result = Collections.singleton( inputNameOf( _cell ) );
+			}
+			else if (null != _cell.getExpression()) {
+				result = inputsOf( _cell.getExpression() );
+			}
+			else {
+				result = Collections.emptySet();
+			}
+			this.cellInputs.put( _cell, result );
+		}
+		return result;
+	}
+
+	public Set<String> inputsOf( ExpressionNode _expr )
+	{
+		final Set<String> result = New.sortedSet();
+		collectInputsOf( _expr, result );
+		return result;
+	}
+
+	/**
+	 * Returns the inputs any cell within the given section or its nested sections depends on,
+	 * including the inputs that supply the sections' elements.
+	 */
+	public Set<String> inputsOf( SectionModel _section )
+	{
+		final Set<String> result = New.sortedSet();
+		collectInputsOf( _section, result );
+		return result;
+	}
+
+
+	private void collectInputsOf( ExpressionNode _expr, Set<String> _result )
+	{
+		if (_expr instanceof ExpressionNodeForCellModel) {
+			final CellModel cell = ((ExpressionNodeForCellModel) _expr).getCellModel();
+			if (null != cell) {
+				_result.addAll( inputsOf( cell ) );
+			}
+		}
+		else if (_expr instanceof ExpressionNodeForSubSectionModel) {
+			// The number of elements depends on the input returning them.
+			final SectionModel section = ((ExpressionNodeForSubSectionModel) _expr).getSectionModel();
+			if (section.isInput()) {
+				_result.add( inputNameOf( section ) );
+			}
+		}
+		for (ExpressionNode arg : _expr.arguments()) {
+			if (null != arg) {
+				collectInputsOf( arg, _result );
+			}
+		}
+	}
+
+	private void collectInputsOf( SectionModel _section, Set<String> _result )
+	{
+		if (_section.isInput()) {
+			_result.add( inputNameOf( _section ) );
+		}
+		for (CellModel cell : _section.getCells()) {
+			_result.addAll( inputsOf( cell ) );
+		}
+		for (SectionModel inner : _section.getSections()) {
+			collectInputsOf( inner, _result );
+		}
+	}
+
+}
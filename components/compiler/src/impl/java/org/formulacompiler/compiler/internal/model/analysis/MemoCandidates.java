@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.model.analysis;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.formulacompiler.compiler.Function;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForArrayReference;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFoldApply;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFunction;
+import org.formulacompiler.compiler.internal.model.CellModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForCellModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForCount;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForParentSectionModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForSectionModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForSubSectionModel;
+import org.formulacompiler.compiler.internal.model.SectionModel;
+import org.formulacompiler.runtime.New;
+
+
+/**
+ * Determines which cells are worth memoizing across computations, and the input cells their values
+ * depend on. A cell qualifies if it is designated, and if its value is fully determined by the
+ * values of input cells of the root section. So cells depending on repeating sections or on volatile
+ * functions like {@code NOW()} never qualify. If no cells are designated, cells whose own
+ * expression is expensive are, that is, cells calling an iterative financial function like
+ * {@code IRR}, or folding or referencing a range of at least {@link #MIN_ELEMENTS} values.
+ */
+public final class MemoCandidates
+{
+	public static final int MIN_ELEMENTS = 100;
+
+	private final SectionModel root;
+	private final Collection<CellModel> designated;
+	private final Map<CellModel, Cone> cones = New.map();
+
+
+	/**
+	 * @param _designated are the cells to memoize; {@code null} selects expensive cells.
+	 */
+	public MemoCandidates( SectionModel _root, Collection<CellModel> _designated )
+	{
+		super();
+		this.root = _root;
+		this.designated = _designated;
+	}
+
+
+	/**
+	 * Returns the input cells the value of the given cell depends on if it is worth memoizing, and
+	 * {@code null} otherwise.
+	 */
+	public Collection<CellModel> inputCellsOf( CellModel _cell )
+	{
+		if (_cell.isInput() || null == _cell.getExpression() || _cell.getSection() != this.root) return null;
+		final Cone cone = coneOf( _cell );
+		final boolean wanted = (null == this.designated) ? cone.expensive : this.designated.contains( _cell );
+		return (cone.determined && wanted) ? cone.inputs : null;
+	}
+
+
+	private static final class Cone
+	{
+		final Set<CellModel> inputs = new LinkedHashSet<CellModel>();
+		boolean determined = true;
+		boolean expensive;
+
+		void add( Cone _referenced )
+		{
+			this.inputs.addAll( _referenced.inputs );
+			this.determined &= _referenced.determined;
+		}
+	}
+
+	private Cone coneOf( CellModel _cell )
+	{
+		Cone result = this.cones.get( _cell );
+		if (null == result) {
+			result = new Cone();
+			if (_cell.getSection() != this.root) {
+				result.determined = false;
+			}
+			else if (_cell.isInput()) {
+				result.inputs.add( _cell );
+			}
+			else if (null != _cell.getExpression()) {
+				collect( _cell.getExpression(), result );
+			}
+			this.cones.put( _cell, result );
+		}
+		return result;
+	}
+
+	private void collect( ExpressionNode _expr, Cone _cone )
+	{
+		if (_expr instanceof ExpressionNodeForCellModel) {
+			final CellModel cell = ((ExpressionNodeForCellModel) _expr).getCellModel();
+			if (null != cell) {
+				// Only the referencing cell's own expression counts towards its cost.
+				_cone.add( coneOf( cell ) );
+			}
+		}
+		else if (_expr instanceof ExpressionNodeForSubSectionModel
+				|| _expr instanceof ExpressionNodeForParentSectionModel || _expr instanceof ExpressionNodeForSectionModel
+				|| _expr instanceof ExpressionNodeForCount) {
+			_cone.determined = false;
+		}
+		else if (_expr instanceof ExpressionNodeForFunction) {
+			final Function function = ((ExpressionNodeForFunction) _expr).getFunction();
+			if (function.isVolatile()) {
+				_cone.determined = false;
+			}
+			if (function == Function.IRR || function == Function.XIRR || function == Function.RATE) {
+				_cone.expensive = true;
+			}
+		}
+		else if (_expr instanceof ExpressionNodeForFoldApply) {
+			int n = 0;
+			for (ExpressionNode elt : ((ExpressionNodeForFoldApply) _expr).elements()) {
+				n += numberOfElements( elt );
+			}
+			if (n >= MIN_ELEMENTS) {
+				_cone.expensive = true;
+			}
+		}
+		else if (numberOfElements( _expr ) >= MIN_ELEMENTS) {
+			_cone.expensive = true;
+		}
+		for (ExpressionNode arg : _expr.arguments()) {
+			if (null != arg) {
+				collect( arg, _cone );
+			}
+		}
+	}
+
+	private static int numberOfElements( ExpressionNode _expr )
+	{
+		if (_expr instanceof ExpressionNodeForArrayReference) {
+			return ((ExpressionNodeForArrayReference) _expr).arrayDescriptor().numberOfElements();
+		}
+		return 1;
+	}
+
+}
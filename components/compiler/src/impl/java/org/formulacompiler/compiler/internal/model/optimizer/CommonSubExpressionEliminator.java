@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.model.optimizer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForConstantValue;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFunction;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForOperator;
+import org.formulacompiler.compiler.internal.model.AbstractComputationModelVisitor;
+import org.formulacompiler.compiler.internal.model.CellModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForCellModel;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForCount;
+import org.formulacompiler.compiler.internal.model.ExpressionNodeForSectionModel;
+import org.formulacompiler.compiler.internal.model.SectionModel;
+import org.formulacompiler.runtime.New;
+
+
+/**
+ * Hoists structurally identical subexpressions over the same cells into intermediate cells of
+ * their own, so they are computed once and then cached. Numbers every operator and function node
+ * by its operator or function, its type, and the numbers of its arguments; cell references and
+ * constants number by identity and value. Identical numbers mean identical values.
+ * <p>
+ * Works section by section: subexpressions in different sections refer to different cells. Does not
+ * look into references to parent or sub sections, nor hoist volatile functions or subexpressions
+ * containing anything other than operators, functions, constants, and cell references. Runs after
+ * {@link IntermediateResultsInliner} so it sees the inlined expressions, and sets the reference
+ * counts of the cells it creates itself.
+ */
+final public class CommonSubExpressionEliminator extends AbstractComputationModelVisitor
+{
+	/**
+	 * Hoisting a single cheap operation would cost more in cell access than it saves.
+	 */
+	static final int MIN_OPERATIONS = 2;
+
+	private static final String CELL_NAME_PREFIX = "CSE";
+
+	private int nextCellNumber = 1;
+
+
+	@Override
+	protected boolean visitSection( SectionModel _section ) throws CompilerException
+	{
+		new SectionEliminator( _section ).eliminate();
+		return true;
+	}
+
+
+	private final class SectionEliminator
+	{
+		private final SectionModel section;
+		private final Map<List<Object>, Integer> numbers = New.map();
+		private final Map<ExpressionNode, Integer> numberOfNode = new IdentityHashMap<ExpressionNode, Integer>();
+		private final Map<Integer, Integer> occurrences = New.map();
+		private final Map<Integer, CellModel> hoisted = New.map();
+		private final Map<CellModel, Integer> uses = New.map();
+
+
+		SectionEliminator( SectionModel _section )
+		{
+			super();
+			this.section = _section;
+		}
+
+
+		void eliminate()
+		{
+			final CellModel[] cells = this.section.getCells().toArray( new CellModel[ this.section.getCells().size() ] );
+			for (CellModel cell : cells) {
+				final ExpressionNode expr = cell.getExpression();
+				if (null != expr) {
+					number( expr );
+				}
+			}
+			if (this.occurrences.isEmpty()) return;
+
+			for (CellModel cell : cells) {
+				final ExpressionNode expr = cell.getExpression();
+				if (null != expr) {
+					cell.setExpression( hoist( expr ) );
+				}
+			}
+			if (this.hoisted.isEmpty()) return;
+
+			// Subexpressions only repeated within a single hoisted one end up being used just once.
+			for (CellModel cell : this.section.getCells()) {
+				final ExpressionNode expr = cell.getExpression();
+				if (null != expr) {
+					cell.setExpression( inlineSingleUses( expr ) );
+				}
+			}
+			for (Map.Entry<CellModel, Integer> use : this.uses.entrySet()) {
+				final CellModel cell = use.getKey();
+				if (use.getValue() > 1) {
+					for (int i = 0; i < use.getValue(); i++) {
+						cell.addReference();
+					}
+				}
+				else {
+					this.section.getCells().remove( cell );
+				}
+			}
+		}
+
+
+		/**
+		 * Numbers the node and all its arguments. Returns the number, or -1 if the node cannot be
+		 * hoisted. Counts the occurrences of hoistable nodes.
+		 */
+		private int number( ExpressionNode _node )
+		{
+			if (null == _node || _node instanceof ExpressionNodeForSectionModel || _node instanceof ExpressionNodeForCount) {
+				return -1;
+			}
+
+			final List<ExpressionNode> args = _node.arguments();
+			final Integer[] argNumbers = new Integer[ args.size() ];
+			boolean argsHoistable = true;
+			for (int i = 0; i < argNumbers.length; i++) {
+				argNumbers[ i ] = number( args.get( i ) );
+				argsHoistable &= argNumbers[ i ] >= 0;
+			}
+			if (!argsHoistable) return -1;
+
+			final Object kind;
+			if (_node instanceof ExpressionNodeForCellModel) {
+				kind = ((ExpressionNodeForCellModel) _node).getCellModel();
+			}
+			else if (_node instanceof ExpressionNodeForConstantValue) {
+				kind = Collections.singletonList( _node.getConstantValue() );
+			}
+			else if (_node instanceof ExpressionNodeForOperator) {
+				kind = ((ExpressionNodeForOperator) _node).getOperator();
+			}
+			else if (_node instanceof ExpressionNodeForFunction
+					&& !((ExpressionNodeForFunction) _node).getFunction().isVolatile()) {
+				kind = ((ExpressionNodeForFunction) _node).getFunction();
+			}
+			else {
+				return -1;
+			}
+
+			final List<Object> key = New.list( argNumbers.length + 3 );
+			key.add( kind );
+			key.add( _node.getDataType() );
+			key.add( _node.getDeclaredDataType() );
+			key.addAll( Arrays.asList( argNumbers ) );
+			Integer number = this.numbers.get( key );
+			if (null == number) {
+				number = this.numbers.size();
+				this.numbers.put( key, number );
+			}
+			if (isWorthHoisting( _node )) {
+				this.numberOfNode.put( _node, number );
+				final Integer count = this.occurrences.get( number );
+				this.occurrences.put( number, (null == count) ? 1 : count + 1 );
+			}
+			return number;
+		}
+
+		private boolean isWorthHoisting( ExpressionNode _node )
+		{
+			return (_node instanceof ExpressionNodeForOperator || _node instanceof ExpressionNodeForFunction)
+					&& operationsIn( _node ) >= MIN_OPERATIONS && referencesCell( _node );
+		}
+
+		private int operationsIn( ExpressionNode _node )
+		{
+			int result = (_node instanceof ExpressionNodeForOperator || _node instanceof ExpressionNodeForFunction) ? 1 : 0;
+			for (ExpressionNode arg : _node.arguments()) {
+				result += operationsIn( arg );
+			}
+			return result;
+		}
+
+		private boolean referencesCell( ExpressionNode _node )
+		{
+			if (_node instanceof ExpressionNodeForCellModel) return true;
+			for (ExpressionNode arg : _node.arguments()) {
+				if (referencesCell( arg )) return true;
+			}
+			return false;
+		}
+
+
+		/**
+		 * Replaces the node, or the largest repeated subexpressions within it, by references to
+		 * intermediate cells.
+		 */
+		private ExpressionNode hoist( ExpressionNode _node )
+		{
+			final Integer number = this.numberOfNode.get( _node );
+			if (null != number && this.occurrences.get( number ) > 1) {
+				CellModel cell = this.hoisted.get( number );
+				if (null == cell) {
+					cell = new CellModel( this.section, CELL_NAME_PREFIX + (CommonSubExpressionEliminator.this.nextCellNumber++) );
+					cell.setDataType( _node.getDataType() );
+					this.hoisted.put( number, cell );
+					this.uses.put( cell, 0 );
+					cell.setExpression( hoistFromArgumentsOf( _node ) );
+				}
+				return refTo( cell );
+			}
+			return hoistFromArgumentsOf( _node );
+		}
+
+		private ExpressionNode hoistFromArgumentsOf( ExpressionNode _node )
+		{
+			if (null == _node || _node instanceof ExpressionNodeForSectionModel || _node instanceof ExpressionNodeForCount) {
+				return _node;
+			}
+			final List<ExpressionNode> args = _node.arguments();
+			for (int i = 0; i < args.size(); i++) {
+				args.set( i, hoist( args.get( i ) ) );
+			}
+			return _node;
+		}
+
+		private ExpressionNode refTo( CellModel _cell )
+		{
+			this.uses.put( _cell, this.uses.get( _cell ) + 1 );
+			final ExpressionNode ref = new ExpressionNodeForCellModel( _cell );
+			ref.setDataType( _cell.getDataType() );
+			return ref;
+		}
+
+
+		private ExpressionNode inlineSingleUses( ExpressionNode _node )
+		{
+			if (_node instanceof ExpressionNodeForCellModel) {
+				final CellModel cell = ((ExpressionNodeForCellModel) _node).getCellModel();
+				final Integer uses = this.uses.get( cell );
+				if (null != uses && uses == 1) {
+					return inlineSingleUses( cell.getExpression() );
+				}
+				return _node;
+			}
+			if (null == _node || _node instanceof ExpressionNodeForSectionModel || _node instanceof ExpressionNodeForCount) {
+				return _node;
+			}
+			final List<ExpressionNode> args = _node.arguments();
+			for (int i = 0; i < args.size(); i++) {
+				args.set( i, inlineSingleUses( args.get( i ) ) );
+			}
+			return _node;
+		}
+
+	}
+
+}
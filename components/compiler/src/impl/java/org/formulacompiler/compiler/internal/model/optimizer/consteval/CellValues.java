@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.model.optimizer.consteval;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.internal.expressions.TypedResult;
+import org.formulacompiler.compiler.internal.model.CellModel;
+
+
+/**
+ * Supplies the values of the cells referenced by an expression being evaluated, instead of their
+ * constant values or expressions in the model. Used to interpret computations with given inputs.
+ * 
+ * @see EvalShadow#evaluate(org.formulacompiler.compiler.internal.expressions.ExpressionNode,
+ *      org.formulacompiler.compiler.internal.model.interpreter.InterpretedNumericType, CellValues,
+ *      org.formulacompiler.runtime.spreadsheet.CellAddress)
+ */
+public interface CellValues
+{
+
+	/**
+	 * Returns the value of the given cell, which must be constant.
+	 * 
+	 * @throws org.formulacompiler.compiler.internal.model.interpreter.EvalNotPossibleException if the
+	 *            value cannot be determined.
+	 */
+	TypedResult valueOf( CellModel _cell ) throws CompilerException;
+
+}
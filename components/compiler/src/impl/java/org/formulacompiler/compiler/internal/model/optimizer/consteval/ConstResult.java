@@ -39,6 +39,11 @@ public final class ConstResult implements TypedResult
 		return _value ? TRUE : FALSE;
 	}
 
+	public static ConstResult valueOf( Object _value, DataType _type )
+	{
+		return new ConstResult( _value, _type );
+	}
+
 	protected ConstResult( Object _value, DataType _type )
 	{
 		super();
@@ -47,6 +47,17 @@ public abstract class EvalShadow<E extends ExpressionNode> extends ExpressionNod
 		return shadow.evalIn( new EvalShadowContext( _cellAddress ) );
 	}
 
+	/**
+	 * Evaluates the expression with the values of the cells it references supplied by
+	 * {@code _values}. The model itself is left untouched.
+	 */
+	public static TypedResult evaluate( ExpressionNode _expr, InterpretedNumericType _type, CellValues _values,
+			CellAddress _cellAddress ) throws CompilerException
+	{
+		final EvalShadow shadow = ExpressionNodeShadow.shadow( _expr, new EvalShadowBuilder( _type, _values ) );
+		return shadow.evalIn( new EvalShadowContext( _cellAddress ) );
+	}
+
 	private static EvalShadow shadow( ExpressionNode _expr, InterpretedNumericType _type )
 	{
 		return ExpressionNodeShadow.shadow( _expr, new EvalShadowBuilder( _type ) );
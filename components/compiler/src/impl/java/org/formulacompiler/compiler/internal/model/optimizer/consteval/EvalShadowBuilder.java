@@ -48,11 +48,18 @@ import org.formulacompiler.compiler.internal.model.interpreter.InterpretedNumeri
 public class EvalShadowBuilder implements ExpressionNodeShadow.Builder<EvalShadow<? extends ExpressionNode>>
 {
 	private final InterpretedNumericType type;
+	private final CellValues cellValues;
 
 	public EvalShadowBuilder( InterpretedNumericType _type )
+	{
+		this( _type, null );
+	}
+
+	public EvalShadowBuilder( InterpretedNumericType _type, CellValues _cellValues )
 	{
 		super();
 		this.type = _type;
+		this.cellValues = _cellValues;
 	}
 
 	public EvalShadow<? extends ExpressionNode> shadow( ExpressionNode _node )
@@ -64,7 +71,7 @@ public class EvalShadowBuilder implements ExpressionNodeShadow.Builder<EvalShado
 		else if (_node instanceof ExpressionNodeForArrayReference) return new EvalRangeValue( (ExpressionNodeForArrayReference) _node, this.type );
 		else if (_node instanceof ExpressionNodeForOperator) return new EvalOperator( (ExpressionNodeForOperator) _node, this.type );
 		else if (_node instanceof ExpressionNodeForFunction) return newEvalFunction( (ExpressionNodeForFunction) _node );
-		else if (_node instanceof ExpressionNodeForCellModel) return new EvalCell( (ExpressionNodeForCellModel) _node, this.type );
+		else if (_node instanceof ExpressionNodeForCellModel) return newEvalCell( (ExpressionNodeForCellModel) _node );
 		else if (_node instanceof ExpressionNodeForParentSectionModel) return new EvalPassthrough( (ExpressionNodeForParentSectionModel) _node );
 		else if (_node instanceof ExpressionNodeForSubstitution) return new EvalSubstitution( (ExpressionNodeForSubstitution) _node );
 		else if (_node instanceof ExpressionNodeForLet) return new EvalLet( (ExpressionNodeForLet) _node, this.type );
@@ -80,6 +87,14 @@ public class EvalShadowBuilder implements ExpressionNodeShadow.Builder<EvalShado
 		// DO NOT REFORMAT ABOVE THIS LINE
 	}
 
+	private EvalShadow<ExpressionNodeForCellModel> newEvalCell( ExpressionNodeForCellModel _node )
+	{
+		if (null != this.cellValues) {
+			return new EvalBoundCell( _node, this.type, this.cellValues );
+		}
+		return new EvalCell( _node, this.type );
+	}
+
 	private EvalFunction newEvalFunction( ExpressionNodeForFunction _node )
 	{
 		switch (_node.getFunction()) {
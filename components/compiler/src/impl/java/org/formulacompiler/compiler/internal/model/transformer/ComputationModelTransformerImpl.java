@@ -32,6 +32,7 @@ import org.formulacompiler.compiler.internal.model.analysis.CircularReferencesCh
 import org.formulacompiler.compiler.internal.model.analysis.ModelIsTypedChecker;
 import org.formulacompiler.compiler.internal.model.analysis.TypeAnnotator;
 import org.formulacompiler.compiler.internal.model.interpreter.InterpretedNumericType;
+import org.formulacompiler.compiler.internal.model.optimizer.CommonSubExpressionEliminator;
 import org.formulacompiler.compiler.internal.model.optimizer.ConstantSubExpressionEliminator;
 import org.formulacompiler.compiler.internal.model.optimizer.IntermediateResultsInliner;
 import org.formulacompiler.compiler.internal.model.rewriting.ModelRewriter;
@@ -45,6 +46,7 @@ public final class ComputationModelTransformerImpl implements ComputationModelTr
 	private final NumericType numericType;
 	private final ConstantExpressionCellListenerSupport constExprCellListenerSupport;
 	private final boolean computationListenerEnabled;
+	private final boolean commonSubExpressionEliminationEnabled;
 
 	public ComputationModelTransformerImpl( Config _config )
 	{
@@ -54,6 +56,7 @@ public final class ComputationModelTransformerImpl implements ComputationModelTr
 		this.numericType = _config.numericType;
 		this.constExprCellListenerSupport = _config.constExprCellListenerSupport;
 		this.computationListenerEnabled = _config.computationListenerEnabled;
+		this.commonSubExpressionEliminationEnabled = _config.commonSubExpressionEliminationEnabled;
 	}
 
 	public static final class Factory implements ComputationModelTransformer.Factory
@@ -93,6 +96,11 @@ public final class ComputationModelTransformerImpl implements ComputationModelTr
 		inlineIntermediateResults();
 		assert modelIsFullyTyped(): "Cell inlining should leave the model fully typed";
 
+		if (this.commonSubExpressionEliminationEnabled) {
+			eliminateCommonSubExpressions();
+			assert modelIsFullyTyped(): "Common subexpression elimination should leave the model fully typed";
+		}
+
 		inlineSubstitutions();
 		assert modelIsFullyTyped(): "Substitution inlining should leave the model fully typed";
 
@@ -132,6 +140,11 @@ public final class ComputationModelTransformerImpl implements ComputationModelTr
 		this.model.traverse( new IntermediateResultsInliner() );
 	}
 
+	private void eliminateCommonSubExpressions() throws CompilerException
+	{
+		this.model.traverse( new CommonSubExpressionEliminator() );
+	}
+
 	private void inlineSubstitutions() throws CompilerException
 	{
 		this.model.traverse( new SubstitutionInliner() );
@@ -400,4 +400,51 @@ public class CompilerException extends FormulaCompilerException
 	}
 
 
+	/**
+	 * You enabled batch computation for a model AFC cannot compute in batches. Batch computation
+	 * requires a model without repeating sections whose inputs are all parameterless methods of an
+	 * input type AFC can subclass or implement.
+	 */
+	public static class BatchNotSupported extends CompilerException
+	{
+
+		public BatchNotSupported( String _message )
+		{
+			super( "Batch computation is not supported: " + _message );
+		}
+
+	}
+
+
+	/**
+	 * You enabled computation pooling for a model AFC cannot pool. Pooled computations are rebound
+	 * to new inputs, so the output class must not receive the inputs in its constructor.
+	 */
+	public static class PoolingNotSupported extends CompilerException
+	{
+
+		public PoolingNotSupported( String _message )
+		{
+			super( "Computation pooling is not supported: " + _message );
+		}
+
+	}
+
+
+	/**
+	 * Your output type extends {@link org.formulacompiler.runtime.ParallelComputation}, but the engine
+	 * does not cache values, so there is nothing {@code computeAll()} could compute in advance. Enable
+	 * full caching for such engines.
+	 */
+	public static class ParallelComputationNotSupported extends CompilerException
+	{
+
+		public ParallelComputationNotSupported( String _message )
+		{
+			super( "Parallel computation is not supported: " + _message );
+		}
+
+	}
+
+
 }
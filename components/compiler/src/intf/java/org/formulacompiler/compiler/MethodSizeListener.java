@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler;
+
+import java.util.EventListener;
+
+
+/**
+ * Is told about generated methods whose bytecode exceeds the method size limit even after the
+ * compiler split off what it could. JVMs may refuse to compile such methods to native code; HotSpot,
+ * for example, only interprets methods of more than 8000 bytes of bytecode.
+ *
+ * @see org.formulacompiler.spreadsheet.EngineBuilder#setMethodSizeListener(MethodSizeListener)
+ */
+public interface MethodSizeListener extends EventListener
+{
+
+	/**
+	 * Is invoked at compile time for every generated method exceeding the limit.
+	 *
+	 * @param _className is the name of the generated class declaring the method.
+	 * @param _methodName is the name of the generated method.
+	 * @param _codeSize is the size of the method's bytecode in bytes.
+	 * @param _limit is the method size limit the method exceeds.
+	 */
+	void methodTooLarge( String _className, String _methodName, int _codeSize, int _limit );
+
+}
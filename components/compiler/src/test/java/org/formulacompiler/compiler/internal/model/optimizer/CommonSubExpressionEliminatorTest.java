@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.model.optimizer;
+
+import org.formulacompiler.compiler.FormulaCompiler;
+import org.formulacompiler.compiler.Function;
+import org.formulacompiler.compiler.Operator;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForFunction;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNodeForOperator;
+import org.formulacompiler.compiler.internal.model.CellModel;
+import org.formulacompiler.compiler.internal.model.analysis.TypeAnnotator;
+import org.formulacompiler.compiler.internal.model.interpreter.InterpretedNumericType;
+import org.formulacompiler.compiler.internal.model.rewriting.ModelRewriter;
+
+
+public class CommonSubExpressionEliminatorTest extends AbstractOptimizerTest
+{
+
+	@SuppressWarnings( "unqualified-field-access" )
+	protected final void optimize() throws Exception
+	{
+		model.traverse( new ModelRewriter( InterpretedNumericType.typeFor( FormulaCompiler.DOUBLE ) ) );
+		model.traverse( new TypeAnnotator() );
+		model.traverse( new ConstantSubExpressionEliminator( FormulaCompiler.DOUBLE ) );
+		model.traverse( new IntermediateResultsInliner() );
+		model.traverse( new CommonSubExpressionEliminator() );
+	}
+
+
+	@SuppressWarnings( "unqualified-field-access" )
+	public void testHoistsRepeatedSubExpression() throws Exception
+	{
+		makeConstCellInput();
+		final CellModel a = newOutput( "A", "getA", times( common(), ref( constCell ) ) );
+		final CellModel b = newOutput( "B", "getB", plus( common(), cst( 5.0 ) ) );
+
+		optimize();
+
+		final CellModel hoisted = findCell( "CSE1" );
+		assertExpr( "((Inputs.getOne() * 2.0) + 3.0)", hoisted );
+		assertRefs( 2, hoisted );
+		assertExpr( "(CSE1 * Inputs.getOne())", a );
+		assertExpr( "(CSE1 + 5.0)", b );
+		assertNull( findCell( "CSE2" ) );
+	}
+
+	@SuppressWarnings( "unqualified-field-access" )
+	public void testKeepsSingleOccurrences() throws Exception
+	{
+		makeConstCellInput();
+		final CellModel a = newOutput( "A", "getA", times( common(), ref( constCell ) ) );
+		final CellModel b = newOutput( "B", "getB", plus( times( ref( constCell ), cst( 3.0 ) ), cst( 3.0 ) ) );
+
+		optimize();
+
+		assertNull( findCell( "CSE1" ) );
+		assertExpr( "(((Inputs.getOne() * 2.0) + 3.0) * Inputs.getOne())", a );
+		assertExpr( "((Inputs.getOne() * 3.0) + 3.0)", b );
+	}
+
+	@SuppressWarnings( "unqualified-field-access" )
+	public void testDoesNotHoistCheapOperations() throws Exception
+	{
+		makeConstCellInput();
+		final CellModel a = newOutput( "A", "getA", plus( times( ref( constCell ), cst( 2.0 ) ), cst( 1.0 ) ) );
+		final CellModel b = newOutput( "B", "getB", plus( times( ref( constCell ), cst( 2.0 ) ), cst( 5.0 ) ) );
+
+		optimize();
+
+		assertNull( findCell( "CSE1" ) );
+		assertExpr( "((Inputs.getOne() * 2.0) + 1.0)", a );
+		assertExpr( "((Inputs.getOne() * 2.0) + 5.0)", b );
+	}
+
+	@SuppressWarnings( "unqualified-field-access" )
+	public void testNestedRepetitionsWithinHoistedExpressionStayInline() throws Exception
+	{
+		makeConstCellInput();
+		final CellModel a = newOutput( "A", "getA", times( plus( common(), common() ), cst( 2.0 ) ) );
+		final CellModel b = newOutput( "B", "getB", minus( plus( common(), common() ), cst( 1.0 ) ) );
+
+		optimize();
+
+		final CellModel outer = findCell( "CSE1" );
+		final CellModel inner = findCell( "CSE2" );
+		assertRefs( 2, outer );
+		assertRefs( 2, inner );
+		assertExpr( "(CSE2 + CSE2)", outer );
+		assertExpr( "((Inputs.getOne() * 2.0) + 3.0)", inner );
+		assertExpr( "(CSE1 * 2.0)", a );
+		assertExpr( "(CSE1 - 1.0)", b );
+	}
+
+	@SuppressWarnings( "unqualified-field-access" )
+	public void testDoesNotHoistVolatileFunctions() throws Exception
+	{
+		makeConstCellInput();
+		newOutput( "A", "getA", plus( times( rand(), ref( constCell ) ), cst( 1.0 ) ) );
+		newOutput( "B", "getB", plus( times( rand(), ref( constCell ) ), cst( 1.0 ) ) );
+
+		optimize();
+
+		assertNull( findCell( "CSE1" ) );
+	}
+
+
+	private ExpressionNode common()
+	{
+		return plus( times( ref( this.constCell ), cst( 2.0 ) ), cst( 3.0 ) );
+	}
+
+	private ExpressionNode times( ExpressionNode _a, ExpressionNode _b )
+	{
+		return new ExpressionNodeForOperator( Operator.TIMES, _a, _b );
+	}
+
+	private ExpressionNode minus( ExpressionNode _a, ExpressionNode _b )
+	{
+		return new ExpressionNodeForOperator( Operator.MINUS, _a, _b );
+	}
+
+	private ExpressionNode rand()
+	{
+		return new ExpressionNodeForFunction( Function.RAND );
+	}
+
+	private CellModel newOutput( String _name, String _method, ExpressionNode _expr ) throws Exception
+	{
+		final CellModel result = new CellModel( this.root, _name );
+		result.setExpression( _expr );
+		result.makeOutput( getOutput( _method ) );
+		return result;
+	}
+
+	private CellModel findCell( String _name )
+	{
+		for (CellModel cell : this.root.getCells()) {
+			if (_name.equals( cell.getSource() )) return cell;
+		}
+		return null;
+	}
+
+}
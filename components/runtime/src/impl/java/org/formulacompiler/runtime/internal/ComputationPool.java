@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.formulacompiler.runtime.Computation;
+import org.formulacompiler.runtime.New;
+
+
+/**
+ * Keeps released computations of a pooled computation factory in per-thread pools. Threads never
+ * share a pool, so acquiring and releasing a computation needs no locking, except when a thread
+ * releases its first computation and its pool is created.
+ * <p>
+ * Only this object holds the pools strongly. The threads merely reference them weakly, so once the
+ * factory is dropped, its pooled computations, and with them the engine's classes and class
+ * loader, can be garbage collected while the threads live on.
+ */
+public final class ComputationPool
+{
+	/**
+	 * A thread rarely holds more than a few computations of the same engine at a time.
+	 */
+	private static final int MAX_POOLED_PER_THREAD = 4;
+
+	private final ThreadLocal<WeakReference<List<PoolableComputation>>> pools =
+			new ThreadLocal<WeakReference<List<PoolableComputation>>>();
+	private final Map<Thread, List<PoolableComputation>> poolsByThread =
+			new WeakHashMap<Thread, List<PoolableComputation>>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+
+	/**
+	 * Returns a pooled computation bound to the given inputs, or {@code null} if the calling thread's
+	 * pool is empty.
+	 */
+	public Computation acquire( Object _inputs )
+	{
+		final List<PoolableComputation> pool = pool( false );
+		final int n = (null == pool) ? 0 : pool.size();
+		if (n == 0) {
+			this.misses.incrementAndGet();
+			return null;
+		}
+		final PoolableComputation computation = pool.remove( n - 1 );
+		computation.rebind( _inputs );
+		this.hits.incrementAndGet();
+		return (Computation) computation;
+	}
+
+	/**
+	 * Resets and unbinds the given computation and keeps it for reuse by the calling thread. Releasing
+	 * a computation which is already in the calling thread's pool is ignored.
+	 */
+	public void release( Computation _computation )
+	{
+		final PoolableComputation computation = (PoolableComputation) _computation;
+		final List<PoolableComputation> pool = pool( true );
+		for (PoolableComputation pooled : pool) {
+			// Pooling it twice would hand out the same computation to two callers.
+			if (pooled == computation) return;
+		}
+		computation.reset();
+		computation.rebind( null );
+		if (pool.size() < MAX_POOLED_PER_THREAD) {
+			pool.add( computation );
+		}
+	}
+
+	private List<PoolableComputation> pool( boolean _create )
+	{
+		final WeakReference<List<PoolableComputation>> ref = this.pools.get();
+		final List<PoolableComputation> existing = (null == ref) ? null : ref.get();
+		if (null != existing || !_create) {
+			return existing;
+		}
+		final List<PoolableComputation> pool = New.list( MAX_POOLED_PER_THREAD );
+		synchronized (this.poolsByThread) {
+			this.poolsByThread.put( Thread.currentThread(), pool );
+		}
+		this.pools.set( new WeakReference<List<PoolableComputation>>( pool ) );
+		return pool;
+	}
+
+	public long getHits()
+	{
+		return this.hits.get();
+	}
+
+	public long getMisses()
+	{
+		return this.misses.get();
+	}
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime.internal;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Hashed index over a column of a database table (for DSUM, DCOUNT, etc.) with equality criteria on
+ * that column. Maps each distinct value to the ascending 0-based numbers of the rows holding it, so
+ * a database fold only visits the rows that can match. Keys are normalized so that values equal
+ * according to the compiled comparison also hash equally. The fold still applies its full filter to
+ * the rows returned. The rows with equal values are also numbered as groups, so a fold that only
+ * tests for equality can be computed once per group and then looked up.
+ */
+public final class DatabaseIndex
+{
+	private static final int[] NO_ROWS = new int[ 0 ];
+
+	private final Map<Object, Integer> groups;
+	private final int[][] rowsOfGroup;
+
+
+	public DatabaseIndex( double[] _xs )
+	{
+		this( keysOf( _xs ) );
+	}
+
+	public DatabaseIndex( long[] _xs )
+	{
+		this( keysOf( _xs ) );
+	}
+
+	public DatabaseIndex( BigDecimal[] _xs )
+	{
+		this( keysOf( _xs ) );
+	}
+
+	public DatabaseIndex( String[] _xs )
+	{
+		this( keysOf( _xs ) );
+	}
+
+	private DatabaseIndex( Object[] _keys )
+	{
+		super();
+
+		// Number the distinct keys in order of appearance and count their rows first, so each row
+		// list is allocated only once.
+		this.groups = new HashMap<Object, Integer>();
+		final int[] groupOfRow = new int[ _keys.length ];
+		int[] counts = new int[ 16 ];
+		for (int i = 0; i < _keys.length; i++) {
+			final Object key = _keys[ i ];
+			if (null == key) {
+				groupOfRow[ i ] = -1;
+			}
+			else {
+				Integer group = this.groups.get( key );
+				if (null == group) {
+					group = this.groups.size();
+					this.groups.put( key, group );
+					if (group == counts.length) {
+						final int[] grown = new int[ counts.length * 2 ];
+						System.arraycopy( counts, 0, grown, 0, counts.length );
+						counts = grown;
+					}
+				}
+				groupOfRow[ i ] = group;
+				counts[ group ]++;
+			}
+		}
+
+		final int nGroups = this.groups.size();
+		this.rowsOfGroup = new int[ nGroups + 1 ][];
+		for (int g = 0; g < nGroups; g++) {
+			this.rowsOfGroup[ g ] = new int[ counts[ g ] ];
+			counts[ g ] = 0;
+		}
+		this.rowsOfGroup[ nGroups ] = NO_ROWS;
+		for (int i = 0; i < _keys.length; i++) {
+			final int g = groupOfRow[ i ];
+			if (g >= 0) {
+				this.rowsOfGroup[ g ][ counts[ g ]++ ] = i;
+			}
+		}
+	}
+
+
+	private static Object[] keysOf( double[] _xs )
+	{
+		final Object[] keys = new Object[ _xs.length ];
+		for (int i = 0; i < keys.length; i++) {
+			final double x = _xs[ i ];
+			// NaN never matches, not even itself.
+			keys[ i ] = (x == x) ? keyOf( x ) : null;
+		}
+		return keys;
+	}
+
+	private static Object[] keysOf( long[] _xs )
+	{
+		final Object[] keys = new Object[ _xs.length ];
+		for (int i = 0; i < keys.length; i++) {
+			keys[ i ] = _xs[ i ];
+		}
+		return keys;
+	}
+
+	private static Object[] keysOf( BigDecimal[] _xs )
+	{
+		final Object[] keys = new Object[ _xs.length ];
+		for (int i = 0; i < keys.length; i++) {
+			final BigDecimal x = _xs[ i ];
+			keys[ i ] = (null == x) ? null : keyOf( x );
+		}
+		return keys;
+	}
+
+	private static Object[] keysOf( String[] _xs )
+	{
+		final Object[] keys = new Object[ _xs.length ];
+		for (int i = 0; i < keys.length; i++) {
+			final String x = _xs[ i ];
+			keys[ i ] = (null == x) ? null : keyOf( x );
+		}
+		return keys;
+	}
+
+
+	/**
+	 * Returns the ascending 0-based numbers of the rows whose value equals {@code _x}.
+	 */
+	public int[] rowsOf( double _x )
+	{
+		return this.rowsOfGroup[ groupOf( _x ) ];
+	}
+
+	/**
+	 * Returns the ascending 0-based numbers of the rows whose value equals {@code _x}.
+	 */
+	public int[] rowsOf( long _x )
+	{
+		return this.rowsOfGroup[ groupOf( _x ) ];
+	}
+
+	/**
+	 * Returns the ascending 0-based numbers of the rows whose value equals {@code _x} according to
+	 * {@link BigDecimal#compareTo(BigDecimal)}.
+	 */
+	public int[] rowsOf( BigDecimal _x )
+	{
+		return this.rowsOfGroup[ groupOf( _x ) ];
+	}
+
+	/**
+	 * Returns the ascending 0-based numbers of the rows whose value equals {@code _x} ignoring case.
+	 */
+	public int[] rowsOf( String _x )
+	{
+		return this.rowsOfGroup[ groupOf( _x ) ];
+	}
+
+
+	/**
+	 * Returns the number of distinct values in the column. Groups are numbered in the order their
+	 * values first appear.
+	 */
+	public int groupCount()
+	{
+		return this.groups.size();
+	}
+
+	/**
+	 * Returns the number of the group of rows whose value equals {@code _x}, or {@link #groupCount()}
+	 * if there are none.
+	 */
+	public int groupOf( double _x )
+	{
+		if (_x != _x) return groupCount();
+		return groupOfKey( keyOf( _x ) );
+	}
+
+	/**
+	 * See {@link #groupOf(double)}.
+	 */
+	public int groupOf( long _x )
+	{
+		return groupOfKey( _x );
+	}
+
+	/**
+	 * See {@link #groupOf(double)}.
+	 */
+	public int groupOf( BigDecimal _x )
+	{
+		if (null == _x) return groupCount();
+		return groupOfKey( keyOf( _x ) );
+	}
+
+	/**
+	 * See {@link #groupOf(double)}.
+	 */
+	public int groupOf( String _x )
+	{
+		if (null == _x) return groupCount();
+		return groupOfKey( keyOf( _x ) );
+	}
+
+	private int groupOfKey( Object _key )
+	{
+		final Integer result = this.groups.get( _key );
+		return (null == result) ? groupCount() : result;
+	}
+
+	/**
+	 * Returns the ascending 0-based numbers of the rows in the given group, which is empty for
+	 * {@link #groupCount()}.
+	 */
+	public int[] rowsOfGroup( int _group )
+	{
+		return this.rowsOfGroup[ _group ];
+	}
+
+
+	private static Object keyOf( double _x )
+	{
+		// -0.0 == 0.0 in the comparison, but not in Double.equals().
+		return (_x == 0.0) ? 0.0 : _x;
+	}
+
+	private static Object keyOf( BigDecimal _x )
+	{
+		// Not stripTrailingZeros() alone, which leaves zeros with a scale on older JREs.
+		return (0 == _x.signum()) ? BigDecimal.ZERO : _x.stripTrailingZeros();
+	}
+
+	private static Object keyOf( String _x )
+	{
+		final int n = _x.length();
+		final char[] folded = new char[ n ];
+		for (int i = 0; i < n; i++) {
+			folded[ i ] = Character.toLowerCase( Character.toUpperCase( _x.charAt( i ) ) );
+		}
+		return new String( folded );
+	}
+
+}
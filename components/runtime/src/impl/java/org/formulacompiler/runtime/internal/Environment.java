@@ -26,7 +26,6 @@ import java.nio.charset.Charset;
 import java.text.Collator;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
-import java.text.NumberFormat;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
@@ -46,6 +45,7 @@ public final class Environment
 	private final TimeZone timeZone;
 	private final Charset charset;
 	private final CellComputationListener cellComputationListener;
+	private volatile LocaleConversions conversions;
 
 	static {
 		// different codepages for languages: "az", "uz" and "sr" now realized only for Cyrillic, not for Latin
@@ -154,13 +154,12 @@ public final class Environment
 
 	public DecimalFormat decimalFormat()
 	{
-		return (DecimalFormat) NumberFormat.getNumberInstance( locale() );
+		return conversions().newDecimalFormat();
 	}
 
 	public DecimalFormatSymbols decimalFormatSymbols()
 	{
-		return (null != this.decimalFormatSymbols) ? this.decimalFormatSymbols : decimalFormat()
-				.getDecimalFormatSymbols();
+		return (null != this.decimalFormatSymbols) ? this.decimalFormatSymbols : conversions().decimalFormatSymbols();
 	}
 
 	public TimeZone timeZone()
@@ -170,7 +169,23 @@ public final class Environment
 
 	public Collator newCollator()
 	{
-		return Collator.getInstance( locale() );
+		return (Collator) conversions().collator().clone();
+	}
+
+	/**
+	 * Returns the locale's formats and collator, prepared once per environment. They are rebuilt
+	 * only when the effective locale changes, which can happen when no explicit locale is configured
+	 * and the default locale is changed.
+	 */
+	LocaleConversions conversions()
+	{
+		final Locale loc = locale();
+		LocaleConversions result = this.conversions;
+		if (null == result || !result.locale().equals( loc )) {
+			result = new LocaleConversions( loc, this.decimalFormatSymbols );
+			this.conversions = result;
+		}
+		return result;
 	}
 
 	private Charset getAnsiCodePage( Locale loc )
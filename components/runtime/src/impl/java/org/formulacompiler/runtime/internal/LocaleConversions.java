@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime.internal;
+
+import java.text.Collator;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+
+/**
+ * Locale-dependent conversion state of an {@link Environment}, built once so conversions do not
+ * have to look up formats and collators again on every call. Formats are mutable, so callers get
+ * clones of the prepared prototypes. Plain decimal numbers, the usual case, are scanned by hand
+ * without any formatter at all; everything the scanner is unsure about is left to the formats.
+ */
+final class LocaleConversions
+{
+	private static final int MAX_SCANNED_DIGITS = 15;
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private final Locale locale;
+	private final DecimalFormat decimalFormat;
+	private final DecimalFormat numberFormat;
+	private final DecimalFormat percentFormat;
+	private final DecimalFormat percentSuffixFormat;
+	private final DecimalFormat scientificFormat;
+	private final Collator collator;
+
+	private final boolean scannable;
+	private final char minusSign;
+	private final char decimalSeparator;
+	private final boolean groupingUsed;
+	private final char groupingSeparator;
+	private final char spaceGroupingSeparator;
+
+
+	LocaleConversions( Locale _locale, DecimalFormatSymbols _symbols )
+	{
+		super();
+		this.locale = _locale;
+		this.decimalFormat = (DecimalFormat) NumberFormat.getNumberInstance( _locale );
+
+		final DecimalFormatSymbols symbols = (null != _symbols) ? _symbols : this.decimalFormat.getDecimalFormatSymbols();
+		this.numberFormat = (DecimalFormat) NumberFormat.getInstance( _locale );
+		this.numberFormat.setDecimalFormatSymbols( symbols );
+		this.percentFormat = (DecimalFormat) NumberFormat.getPercentInstance( _locale );
+		this.percentFormat.setDecimalFormatSymbols( symbols );
+		this.percentSuffixFormat = (DecimalFormat) this.numberFormat.clone();
+		this.percentSuffixFormat.setPositiveSuffix( "%" );
+		this.percentSuffixFormat.setNegativeSuffix( "%" );
+		this.percentSuffixFormat.setMultiplier( 100 );
+		this.scientificFormat = new DecimalFormat( "#0.###E0", symbols );
+		this.collator = Collator.getInstance( _locale );
+
+		final DecimalFormat f = this.numberFormat;
+		final DecimalFormatSymbols s = f.getDecimalFormatSymbols();
+		this.decimalSeparator = s.getDecimalSeparator();
+		this.groupingUsed = f.isGroupingUsed();
+		this.groupingSeparator = s.getGroupingSeparator();
+		this.spaceGroupingSeparator = Character.isSpaceChar( this.groupingSeparator ) ? ' ' : this.groupingSeparator;
+		this.minusSign = (f.getNegativePrefix().length() == 1) ? f.getNegativePrefix().charAt( 0 ) : '0';
+		this.scannable = s.getZeroDigit() == '0'
+				&& !f.isParseIntegerOnly() && !f.isParseBigDecimal() && f.getMultiplier() == 1
+				&& f.getPositivePrefix().length() == 0 && f.getPositiveSuffix().length() == 0
+				&& f.getNegativeSuffix().length() == 0 && !isDigit( this.minusSign )
+				&& !isDigit( this.decimalSeparator ) && !isDigit( this.groupingSeparator )
+				&& isCaseInvariant( this.minusSign ) && isCaseInvariant( this.decimalSeparator )
+				&& isCaseInvariant( this.groupingSeparator ) && this.minusSign != this.decimalSeparator
+				&& this.minusSign != this.groupingSeparator && this.minusSign != this.spaceGroupingSeparator
+				&& this.decimalSeparator != this.spaceGroupingSeparator;
+	}
+
+	private static boolean isDigit( char _c )
+	{
+		return Character.isDigit( _c );
+	}
+
+	private static boolean isCaseInvariant( char _c )
+	{
+		return Character.toUpperCase( _c ) == _c;
+	}
+
+
+	Locale locale()
+	{
+		return this.locale;
+	}
+
+	DecimalFormat newDecimalFormat()
+	{
+		return (DecimalFormat) this.decimalFormat.clone();
+	}
+
+	DecimalFormatSymbols decimalFormatSymbols()
+	{
+		return this.decimalFormat.getDecimalFormatSymbols();
+	}
+
+	NumberFormat newNumberFormat()
+	{
+		return (NumberFormat) this.numberFormat.clone();
+	}
+
+	NumberFormat newPercentFormat()
+	{
+		return (NumberFormat) this.percentFormat.clone();
+	}
+
+	NumberFormat newPercentSuffixFormat()
+	{
+		return (NumberFormat) this.percentSuffixFormat.clone();
+	}
+
+	NumberFormat newScientificFormat()
+	{
+		return (NumberFormat) this.scientificFormat.clone();
+	}
+
+	/**
+	 * Shared collator. Collators synchronize their comparisons internally, so this one must not be
+	 * reconfigured by callers.
+	 */
+	Collator collator()
+	{
+		return this.collator;
+	}
+
+
+	/**
+	 * Scans a plain decimal number like {@code -1,234.5}, using the locale's separators, exactly the
+	 * way the default number format would parse it. Returns {@code null} for anything else, including
+	 * exponents, percentages, dates, and numbers with too many digits to be converted exactly here.
+	 * The caller must then fall back to the formats.
+	 */
+	Number scanNumber( String _text )
+	{
+		if (!this.scannable) return null;
+		final int len = _text.length();
+		int pos = 0;
+		boolean negative = false;
+		if (pos < len && _text.charAt( pos ) == this.minusSign) {
+			negative = true;
+			pos++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		int fractionZeros = 0;
+		boolean sawDigit = false;
+		boolean sawDecimal = false;
+		char grouping = 0;
+		boolean afterGrouping = false;
+		while (pos < len) {
+			final char c = _text.charAt( pos++ );
+			if (c >= '0' && c <= '9') {
+				sawDigit = true;
+				afterGrouping = false;
+				final int d = c - '0';
+				if (sawDecimal) {
+					fractionDigits++;
+					if (d == 0) {
+						fractionZeros++;
+						continue;
+					}
+					// Flush the zeros skipped so far now that they are no longer trailing.
+					while (fractionZeros > 0) {
+						if (mantissa != 0) {
+							if (++digits > MAX_SCANNED_DIGITS) return null;
+							mantissa *= 10;
+						}
+						fractionZeros--;
+					}
+				}
+				if (mantissa == 0 && d == 0) continue;
+				if (++digits > MAX_SCANNED_DIGITS) return null;
+				mantissa = mantissa * 10 + d;
+			}
+			else if (c == this.decimalSeparator && !sawDecimal && !afterGrouping) {
+				sawDecimal = true;
+			}
+			else if (this.groupingUsed && (c == this.groupingSeparator || c == this.spaceGroupingSeparator)
+					&& sawDigit && !sawDecimal && !afterGrouping && (grouping == 0 || grouping == c)) {
+				grouping = c;
+				afterGrouping = true;
+			}
+			else {
+				return null;
+			}
+		}
+		if (!sawDigit || afterGrouping) return null;
+
+		final int scale = fractionDigits - fractionZeros;
+		if (scale == 0) {
+			if (negative && mantissa == 0) return Double.valueOf( -0.0 );
+			return Long.valueOf( negative ? -mantissa : mantissa );
+		}
+		if (scale >= POWERS_OF_TEN.length) return null;
+		// Both operands are exact, so the quotient is correctly rounded, just like the formats' result.
+		final double value = mantissa / POWERS_OF_TEN[ scale ];
+		return Double.valueOf( negative ? -value : value );
+	}
+
+}
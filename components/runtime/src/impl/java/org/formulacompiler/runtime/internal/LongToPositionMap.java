@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime.internal;
+
+
+/**
+ * Open-addressing hash table from primitive {@code long} keys to the 1-based position at which
+ * they first occur. Used by the hashed exact-match indexes. Only ever filled during construction of
+ * its owning index, so it is effectively immutable afterwards.
+ */
+final class LongToPositionMap
+{
+	private final long[] keys;
+	private final int[] positions;
+	private final int mask;
+
+
+	LongToPositionMap( int _expectedSize )
+	{
+		super();
+		int capacity = 4;
+		while (capacity < _expectedSize * 2) {
+			capacity <<= 1;
+		}
+		this.keys = new long[ capacity ];
+		this.positions = new int[ capacity ];
+		this.mask = capacity - 1;
+	}
+
+
+	/**
+	 * Records the position for the key unless the key is already present, so the first occurrence
+	 * wins as it does with a linear scan.
+	 */
+	void putIfAbsent( long _key, int _position )
+	{
+		assert _position > 0: "Positions are 1-based";
+		int i = slotOf( _key );
+		while (this.positions[ i ] != 0) {
+			if (this.keys[ i ] == _key) return;
+			i = (i + 1) & this.mask;
+		}
+		this.keys[ i ] = _key;
+		this.positions[ i ] = _position;
+	}
+
+	/**
+	 * Returns the 1-based position of the key, or 0 if it is not present.
+	 */
+	int get( long _key )
+	{
+		int i = slotOf( _key );
+		int pos;
+		while ((pos = this.positions[ i ]) != 0) {
+			if (this.keys[ i ] == _key) return pos;
+			i = (i + 1) & this.mask;
+		}
+		return 0;
+	}
+
+
+	private int slotOf( long _key )
+	{
+		final long h = _key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & this.mask;
+	}
+
+}
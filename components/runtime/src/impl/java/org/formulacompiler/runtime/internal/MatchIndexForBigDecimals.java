@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime.internal;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Hashed index over a {@code BigDecimal[]} for exact-match lookups. Uses
+ * {@link BigDecimal#equals(Object)}, just like
+ * {@link RuntimeBigDecimal_v2#fun_MATCH_Exact(BigDecimal, BigDecimal[])}. See
+ * {@link MatchIndexForDoubles}.
+ */
+public final class MatchIndexForBigDecimals
+{
+	private final Map<BigDecimal, Integer> map;
+
+
+	public MatchIndexForBigDecimals( BigDecimal[] _xs )
+	{
+		super();
+		final int n = _xs.length;
+		this.map = new HashMap<BigDecimal, Integer>( n * 2 );
+		for (int i = n - 1; i >= 0; i--) {
+			final BigDecimal x = _xs[ i ];
+			// Iterating backwards lets the first occurrence win.
+			if (null != x) {
+				this.map.put( x, i + 1 ); // Excel is 1-based
+			}
+		}
+	}
+
+
+	/**
+	 * Returns the 1-based position of the first element equal to {@code _x}, or 0 if there is none.
+	 */
+	public int positionOf( BigDecimal _x )
+	{
+		final Integer pos = this.map.get( _x );
+		return (null == pos) ? 0 : pos;
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime.internal;
+
+
+/**
+ * Hashed index over a {@code double[]} for exact-match lookups (MATCH with type 0, and the
+ * H/VLOOKUP and LOOKUP variants rewritten to it). Built once per constant range or once per
+ * computation for ranges with inputs, and then answers each lookup in constant time instead of the
+ * linear scan of {@link RuntimeDouble_v2#fun_MATCH_Exact(double, double[])}.
+ */
+public final class MatchIndexForDoubles
+{
+	private final LongToPositionMap map;
+
+
+	public MatchIndexForDoubles( double[] _xs )
+	{
+		super();
+		final int n = _xs.length;
+		this.map = new LongToPositionMap( n );
+		for (int i = 0; i < n; i++) {
+			final double x = _xs[ i ];
+			// NaN never matches, not even itself, in the linear scan.
+			if (x == x) {
+				this.map.putIfAbsent( keyOf( x ), i + 1 ); // Excel is 1-based
+			}
+		}
+	}
+
+
+	/**
+	 * Returns the 1-based position of the first element equal to {@code _x}, or 0 if there is none.
+	 */
+	public int positionOf( double _x )
+	{
+		if (_x != _x) return 0;
+		return this.map.get( keyOf( _x ) );
+	}
+
+
+	private static long keyOf( double _x )
+	{
+		// Folds -0.0 onto 0.0 since they compare equal with ==.
+		return (_x == 0.0) ? 0L : Double.doubleToLongBits( _x );
+	}
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime.internal;
+
+
+/**
+ * Hashed index over a {@code long[]} (scaled longs) for exact-match lookups. See
+ * {@link MatchIndexForDoubles}.
+ */
+public final class MatchIndexForLongs
+{
+	private final LongToPositionMap map;
+
+
+	public MatchIndexForLongs( long[] _xs )
+	{
+		super();
+		final int n = _xs.length;
+		this.map = new LongToPositionMap( n );
+		for (int i = 0; i < n; i++) {
+			this.map.putIfAbsent( _xs[ i ], i + 1 ); // Excel is 1-based
+		}
+	}
+
+
+	/**
+	 * Returns the 1-based position of the first element equal to {@code _x}, or 0 if there is none.
+	 */
+	public int positionOf( long _x )
+	{
+		return this.map.get( _x );
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Hashed index over a {@code String[]} for exact-match lookups. Keys are folded the same way
+ * {@link String#compareToIgnoreCase(String)} compares characters, so lookups agree with
+ * {@link Runtime_v2#fun_MATCH_Exact(String, String[])}. Wildcard patterns, and arrays containing
+ * {@code null} elements, are not indexed and must be answered by the linear scan over
+ * {@link #elements()}. See {@link MatchIndexForDoubles}.
+ */
+public final class MatchIndexForStrings
+{
+	private final String[] elements;
+	private final Map<String, Integer> map;
+
+
+	public MatchIndexForStrings( String[] _xs )
+	{
+		super();
+		final int n = _xs.length;
+		this.elements = _xs;
+		Map<String, Integer> map = new HashMap<String, Integer>( n * 2 );
+		for (int i = n - 1; i >= 0; i--) {
+			final String x = _xs[ i ];
+			if (null == x) {
+				map = null;
+				break;
+			}
+			// Iterating backwards lets the first occurrence win.
+			map.put( keyOf( x ), i + 1 ); // Excel is 1-based
+		}
+		this.map = map;
+	}
+
+
+	public String[] elements()
+	{
+		return this.elements;
+	}
+
+	/**
+	 * Tells whether {@code _x} has to be looked up by a linear scan over {@link #elements()}.
+	 */
+	public boolean isScanNeededFor( String _x )
+	{
+		return null == this.map || _x.indexOf( '*' ) >= 0 || _x.indexOf( '?' ) >= 0;
+	}
+
+	/**
+	 * Returns the 1-based position of the first element equal to {@code _x} (ignoring case), or 0
+	 * if there is none. Only valid if {@link #isScanNeededFor(String)} is {@code false}.
+	 */
+	public int positionOf( String _x )
+	{
+		final Integer pos = this.map.get( keyOf( _x ) );
+		return (null == pos) ? 0 : pos;
+	}
+
+
+	private static String keyOf( String _x )
+	{
+		final int n = _x.length();
+		final char[] folded = new char[ n ];
+		for (int i = 0; i < n; i++) {
+			folded[ i ] = Character.toLowerCase( Character.toUpperCase( _x.charAt( i ) ) );
+		}
+		return new String( folded );
+	}
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime.internal;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Keeps the values of expensive cells across the computations of a memoizing computation factory,
+ * keyed by the cell and the values of the inputs it depends on. The cache is split into stripes by
+ * the hash of the key. Each stripe has its own lock and drops its least recently used values when
+ * full, so computations on different threads rarely contend. Small caches have a single stripe.
+ */
+public final class MemoCache
+{
+	/**
+	 * Returned by {@link #get(Object)} for keys without a cached value.
+	 */
+	public static final Object MISSING = new Object();
+
+	private static final Object NULL = new Object();
+	private static final int MAX_STRIPES = 16;
+	private static final int MIN_STRIPE_CAPACITY = 64;
+
+	private final Stripe[] stripes;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+
+	public MemoCache( int _capacity )
+	{
+		super();
+		final int n = Math.max( 1, Math.min( MAX_STRIPES, _capacity / MIN_STRIPE_CAPACITY ) );
+		final int capacityPerStripe = Math.max( 1, (_capacity + n - 1) / n );
+		this.stripes = new Stripe[ n ];
+		for (int i = 0; i < n; i++) {
+			this.stripes[ i ] = new Stripe( capacityPerStripe );
+		}
+	}
+
+
+	/**
+	 * Returns the key for the value of the given cell for the given input values.
+	 * 
+	 * @param _cell identifies the cell within the engine.
+	 * @param _inputs are the values of the inputs the cell depends on, in a fixed order; boxed if
+	 *           primitive.
+	 */
+	public static Object keyOf( int _cell, Object[] _inputs )
+	{
+		return new Key( _cell, _inputs );
+	}
+
+	/**
+	 * Returns the cached value for the given key, or {@link #MISSING}.
+	 */
+	public Object get( Object _key )
+	{
+		final Stripe stripe = stripeOf( _key );
+		final Object value;
+		synchronized (stripe) {
+			value = stripe.get( _key );
+		}
+		if (null == value) {
+			this.misses.incrementAndGet();
+			return MISSING;
+		}
+		this.hits.incrementAndGet();
+		return (NULL == value) ? null : value;
+	}
+
+	/**
+	 * Caches the given value for the given key.
+	 */
+	public void put( Object _key, Object _value )
+	{
+		final Stripe stripe = stripeOf( _key );
+		synchronized (stripe) {
+			stripe.put( _key, (null == _value) ? NULL : _value );
+		}
+	}
+
+	public long getHits()
+	{
+		return this.hits.get();
+	}
+
+	public long getMisses()
+	{
+		return this.misses.get();
+	}
+
+
+	private Stripe stripeOf( Object _key )
+	{
+		final int h = _key.hashCode();
+		return this.stripes[ ((h ^ (h >>> 16)) & 0x7fffffff) % this.stripes.length ];
+	}
+
+
+	private static final class Stripe extends LinkedHashMap<Object, Object>
+	{
+		private final int capacity;
+
+		Stripe( int _capacity )
+		{
+			super( 16, 0.75f, true );
+			this.capacity = _capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry( Map.Entry<Object, Object> _eldest )
+		{
+			return size() > this.capacity;
+		}
+	}
+
+
+	private static final class Key
+	{
+		private final int cell;
+		private final Object[] inputs;
+		private final int hash;
+
+		Key( int _cell, Object[] _inputs )
+		{
+			super();
+			this.cell = _cell;
+			this.inputs = _inputs;
+			this.hash = 31 * _cell + Arrays.hashCode( _inputs );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals( Object _other )
+		{
+			if (!(_other instanceof Key)) return false;
+			final Key other = (Key) _other;
+			return this.cell == other.cell && this.hash == other.hash && Arrays.equals( this.inputs, other.inputs );
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.runtime.internal;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+
+/**
+ * Splits the elements of a repeating section into chunks, one per available processor, and folds
+ * them concurrently on a shared pool of daemon threads. The caller folds the first chunk itself and
+ * then combines the partial results, which are returned in element order. Folds started from within
+ * a pool thread, as for nested sections, run sequentially so the pool cannot deadlock on itself.
+ */
+public final class ParallelFolds
+{
+	private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+
+	private ParallelFolds()
+	{
+		super();
+	}
+
+
+	public static Object[] foldRanges( final RangeFolder _folder, final int _foldId, final Object[] _elements )
+	{
+		final int n = _elements.length;
+		final int chunks = (Thread.currentThread() instanceof Worker) ? 1 : Math.min( PARALLELISM, n );
+		if (chunks <= 1) {
+			return new Object[] { _folder.foldRange( _foldId, _elements, 0, n ) };
+		}
+
+		final ExecutorService executor = Pool.EXECUTOR;
+		final Object[] partials = new Object[ chunks ];
+		final Future<?>[] futures = new Future<?>[ chunks ];
+		for (int i = 1; i < chunks; i++) {
+			final int chunk = i;
+			final int from = boundary( chunk, chunks, n );
+			final int to = boundary( chunk + 1, chunks, n );
+			futures[ chunk ] = executor.submit( new Runnable()
+			{
+				public void run()
+				{
+					partials[ chunk ] = _folder.foldRange( _foldId, _elements, from, to );
+				}
+			} );
+		}
+		partials[ 0 ] = _folder.foldRange( _foldId, _elements, 0, boundary( 1, chunks, n ) );
+		for (int i = 1; i < chunks; i++) {
+			await( futures[ i ] );
+		}
+		return partials;
+	}
+
+	private static int boundary( int _chunk, int _chunks, int _n )
+	{
+		return (int) ((long) _n * _chunk / _chunks);
+	}
+
+	private static void await( Future<?> _future )
+	{
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					_future.get();
+					return;
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+				catch (ExecutionException e) {
+					final Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+					if (cause instanceof Error) throw (Error) cause;
+					throw new IllegalStateException( cause );
+				}
+			}
+		}
+		finally {
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+	}
+
+
+	private static final class Worker extends Thread
+	{
+
+		Worker( Runnable _target, String _name )
+		{
+			super( _target, _name );
+			setDaemon( true );
+		}
+
+	}
+
+
+	/**
+	 * Holds the pool, so it is only created when the first parallel fold runs.
+	 */
+	private static final class Pool
+	{
+		static final ExecutorService EXECUTOR = Executors.newFixedThreadPool( PARALLELISM, new ThreadFactory()
+		{
+			private int next = 0;
+
+			public synchronized Thread newThread( Runnable _target )
+			{
+				return new Worker( _target, "AFC parallel fold " + (this.next++) );
+			}
+		} );
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime.internal;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Computes the cells of a {@link CellComputer} in two phases. The shared cells, which are numbered
+ * first, are computed in order on the calling thread. The remaining cells must not share any state
+ * that is not yet initialized. They are claimed one by one by tasks run on an executor and by the
+ * calling thread, which then waits only for the cells other threads have claimed. So an executor
+ * that is busy, or runs tasks on the calling thread, cannot stall the computation. All cells are
+ * computed on the calling thread if there is no executor, or if a shared cell fails, since the
+ * state it leaves behind may then still be initialized by later cells.
+ * <p>
+ * Errors raised by formulas are dropped, since the output methods raise them again. Other errors
+ * are rethrown on the calling thread.
+ */
+public final class ParallelOutputs
+{
+	private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+
+	private ParallelOutputs()
+	{
+		super();
+	}
+
+
+	public static void computeAll( CellComputer _cells, Executor _executor, int _sharedCount, int _count )
+	{
+		boolean failed = false;
+		for (int cellId = 0; cellId < _sharedCount; cellId++) {
+			if (!computeCell( _cells, cellId )) failed = true;
+		}
+		if (failed || null == _executor || _count - _sharedCount < 2) {
+			for (int cellId = _sharedCount; cellId < _count; cellId++) {
+				computeCell( _cells, cellId );
+			}
+		}
+		else {
+			new Run( _cells, _sharedCount, _count ).runOn( _executor );
+		}
+	}
+
+	/**
+	 * Returns {@code false} if the cell raised an error.
+	 */
+	static boolean computeCell( CellComputer _cells, int _cellId )
+	{
+		try {
+			_cells.computeCell( _cellId );
+			return true;
+		}
+		catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+
+	private static final class Run implements Runnable
+	{
+		private final CellComputer cells;
+		private final int count;
+		private final AtomicInteger next;
+		private final CountDownLatch done;
+		private final AtomicReference<Error> error = new AtomicReference<Error>();
+
+		Run( CellComputer _cells, int _from, int _to )
+		{
+			super();
+			this.cells = _cells;
+			this.count = _to;
+			this.next = new AtomicInteger( _from );
+			this.done = new CountDownLatch( _to - _from );
+		}
+
+		void runOn( Executor _executor )
+		{
+			// The calling thread computes cells, too.
+			final int tasks = Math.min( this.count - this.next.get() - 1, PARALLELISM );
+			for (int i = 0; i < tasks; i++) {
+				try {
+					_executor.execute( this );
+				}
+				catch (RejectedExecutionException e) {
+					break;
+				}
+			}
+			run();
+			await();
+			final Error e = this.error.get();
+			if (null != e) throw e;
+		}
+
+		public void run()
+		{
+			int cellId;
+			while ((cellId = this.next.getAndIncrement()) < this.count) {
+				try {
+					computeCell( this.cells, cellId );
+				}
+				catch (Error e) {
+					this.error.compareAndSet( null, e );
+				}
+				finally {
+					this.done.countDown();
+				}
+			}
+		}
+
+		private void await()
+		{
+			boolean interrupted = false;
+			try {
+				while (true) {
+					try {
+						this.done.await();
+						return;
+					}
+					catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			finally {
+				if (interrupted) Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+}
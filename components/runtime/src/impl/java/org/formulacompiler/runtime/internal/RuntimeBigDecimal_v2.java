@@ -1094,6 +1094,13 @@ public abstract class RuntimeBigDecimal_v2 extends Runtime_v2
 		throw new NotAvailableException();
 	}
 
+	public static int fun_MATCH_Exact( BigDecimal _x, MatchIndexForBigDecimals _xs )
+	{
+		final int pos = _xs.positionOf( _x );
+		if (pos == 0) throw new NotAvailableException();
+		return pos;
+	}
+
 	public static int fun_MATCH_Ascending( BigDecimal _x, BigDecimal[] _xs )
 	{
 		return fun_MATCH_Sorted( _xs, _x );
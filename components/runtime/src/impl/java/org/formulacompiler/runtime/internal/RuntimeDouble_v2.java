@@ -1701,6 +1701,13 @@ public final class RuntimeDouble_v2 extends Runtime_v2
 		throw new NotAvailableException();
 	}
 
+	public static int fun_MATCH_Exact( double _x, MatchIndexForDoubles _xs )
+	{
+		final int pos = _xs.positionOf( _x );
+		if (pos == 0) throw new NotAvailableException();
+		return pos;
+	}
+
 	public static int fun_MATCH_Ascending( double _x, double[] _xs )
 	{
 		if (_xs[ 0 ] > _x) throw new NotAvailableException();
@@ -275,6 +275,97 @@ public final class RuntimeLong_v2 extends Runtime_v2
 	}
 
 
+
+	// ---- Overflow checked arithmetic
+
+	/*
+	 * Used by engines that compute scaled BigDecimal models with scaled longs. Every operation either
+	 * yields exactly what BigDecimal arithmetic rounded HALF_UP to the same scale would, or throws an
+	 * ArithmeticException so the engine can redo the computation with BigDecimals.
+	 */
+
+	public static long addExact( final long a, final long b )
+	{
+		final long r = a + b;
+		if (((a ^ r) & (b ^ r)) < 0) {
+			throw new ArithmeticException( "long overflow" );
+		}
+		return r;
+	}
+
+	public static long subtractExact( final long a, final long b )
+	{
+		final long r = a - b;
+		if (((a ^ b) & (a ^ r)) < 0) {
+			throw new ArithmeticException( "long overflow" );
+		}
+		return r;
+	}
+
+	public static long negateExact( final long a )
+	{
+		if (a == Long.MIN_VALUE) {
+			throw new ArithmeticException( "long overflow" );
+		}
+		return -a;
+	}
+
+	public static long multiplyExact( final long a, final long b )
+	{
+		final long r = a * b;
+		final long aa = Math.abs( a );
+		final long ab = Math.abs( b );
+		if ((aa | ab) >>> 31 != 0) {
+			if ((b != 0 && r / b != a) || (a == Long.MIN_VALUE && b == -1)) {
+				throw new ArithmeticException( "long overflow" );
+			}
+		}
+		return r;
+	}
+
+	public static long multiplyScaledExact( final long a, final long b, final long _one )
+	{
+		final long p = multiplyExact( a, b );
+		return divideRoundedHalfUp( p, _one );
+	}
+
+	public static long divideScaledExact( final long a, final long b, final long _one )
+	{
+		if (b == 0 || b == Long.MIN_VALUE) {
+			throw new ArithmeticException( "Division undefined" );
+		}
+		final long n = multiplyExact( a, _one );
+		return divideRoundedHalfUp( n, b );
+	}
+
+	private static long divideRoundedHalfUp( final long n, final long d )
+	{
+		final long q = n / d;
+		final long r = Math.abs( n % d );
+		if (r >= Math.abs( d ) - r) {
+			return ((n < 0) == (d < 0)) ? q + 1 : q - 1;
+		}
+		return q;
+	}
+
+	public static long scaleUpExact( final long a, final long _one )
+	{
+		return multiplyExact( a, _one );
+	}
+
+	public static long fromBigDecimalExact( final BigDecimal _val, final int _scale )
+	{
+		if (_val == null) {
+			return 0L;
+		}
+		final BigDecimal scaled = _val.setScale( _scale, BigDecimal.ROUND_HALF_UP );
+		if (scaled.precision() > 18 && scaled.unscaledValue().bitLength() > 63) {
+			throw new ArithmeticException( "long overflow" );
+		}
+		return scaled.unscaledValue().longValue();
+	}
+
+
 	public static String toExcelString( long _val, Context _cx, Environment _environment )
 	{
 		return toExcelString( _val, _cx.scale, _environment );
@@ -985,6 +1076,13 @@ public final class RuntimeLong_v2 extends Runtime_v2
 		throw new NotAvailableException();
 	}
 
+	public static int fun_MATCH_Exact( long _x, MatchIndexForLongs _xs )
+	{
+		final int pos = _xs.positionOf( _x );
+		if (pos == 0) throw new NotAvailableException();
+		return pos;
+	}
+
 	public static int fun_MATCH_Ascending( long _x, long[] _xs )
 	{
 		if (_xs[ 0 ] > _x) throw new NotAvailableException();
@@ -38,6 +38,7 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Currency;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 import java.util.Random;
 import java.util.TimeZone;
@@ -45,7 +46,9 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.formulacompiler.runtime.ComputationMode;
+import org.formulacompiler.runtime.ComputationProfile;
 import org.formulacompiler.runtime.FormulaException;
+import org.formulacompiler.runtime.New;
 import org.formulacompiler.runtime.NotAvailableException;
 
 
@@ -148,10 +151,19 @@ public abstract class Runtime_v2
 
 	static Number parseNumber( String _text, boolean _parseBigDecimal, Environment _environment, boolean _dateExcelCompatible )
 	{
+		final LocaleConversions conversions = _environment.conversions();
+
+		if (!_parseBigDecimal) {
+			final Number result = conversions.scanNumber( _text );
+			if (result != null) {
+				return result;
+			}
+		}
+
 		final String text = _text.toUpperCase( _environment.locale() );
 
 		{
-			final NumberFormat numberFormat = getNumberFormat( _environment );
+			final NumberFormat numberFormat = conversions.newNumberFormat();
 			final Number result = parseNumber( text, numberFormat, _parseBigDecimal );
 			if (result != null) {
 				return result;
@@ -159,7 +171,7 @@ public abstract class Runtime_v2
 		}
 
 		{
-			final NumberFormat percentFormat = getPercentFormat( _environment );
+			final NumberFormat percentFormat = conversions.newPercentFormat();
 			final Number result = parseNumber( text, percentFormat, _parseBigDecimal );
 			if (result != null) {
 				return result;
@@ -167,22 +179,15 @@ public abstract class Runtime_v2
 		}
 
 		{
-			final NumberFormat percentFormat = getNumberFormat( _environment );
-			if (percentFormat instanceof DecimalFormat) {
-				final DecimalFormat decimalFormat = (DecimalFormat) percentFormat;
-				decimalFormat.setPositiveSuffix( "%" );
-				decimalFormat.setNegativeSuffix( "%" );
-				decimalFormat.setMultiplier( 100 );
-				final Number result = parseNumber( text, decimalFormat, _parseBigDecimal );
-				if (result != null) {
-					return result;
-				}
+			final NumberFormat percentFormat = conversions.newPercentSuffixFormat();
+			final Number result = parseNumber( text, percentFormat, _parseBigDecimal );
+			if (result != null) {
+				return result;
 			}
 		}
 
 		{
-			final DecimalFormatSymbols formatSymbols = getDecimalFormatSymbols( _environment );
-			final DecimalFormat scientificFormat = new DecimalFormat( "#0.###E0", formatSymbols );
+			final NumberFormat scientificFormat = conversions.newScientificFormat();
 			final Number result = parseNumber( text, scientificFormat, _parseBigDecimal );
 			if (result != null) {
 				return result;
@@ -278,27 +283,9 @@ public abstract class Runtime_v2
 		return msSinceUTC1970FromDouble( numValue, _environment.timeZone(), _computationMode == ComputationMode.EXCEL );
 	}
 
-	private static NumberFormat getPercentFormat( final Environment _environment )
-	{
-		final NumberFormat format = NumberFormat.getPercentInstance( _environment.locale() );
-		setDecimalFormatSymbols( format, _environment );
-		return format;
-	}
-
 	private static NumberFormat getNumberFormat( final Environment _environment )
 	{
-		final NumberFormat format = NumberFormat.getInstance( _environment.locale() );
-		setDecimalFormatSymbols( format, _environment );
-		return format;
-	}
-
-	private static void setDecimalFormatSymbols( final NumberFormat _format, final Environment _environment )
-	{
-		final DecimalFormatSymbols envSymbols = _environment.decimalFormatSymbols();
-		if (envSymbols != null && _format instanceof DecimalFormat) {
-			final DecimalFormat decimalFormat = (DecimalFormat) _format;
-			decimalFormat.setDecimalFormatSymbols( envSymbols );
-		}
+		return _environment.conversions().newNumberFormat();
 	}
 
 	private static void setParseBigDecimal( final NumberFormat _format, final boolean _parseBigDecimal )
@@ -1025,9 +1012,19 @@ public abstract class Runtime_v2
 		throw new NotAvailableException();
 	}
 
+	public static int fun_MATCH_Exact( String _x, MatchIndexForStrings _xs )
+	{
+		if (_xs.isScanNeededFor( _x )) {
+			return fun_MATCH_Exact( _x, _xs.elements() );
+		}
+		final int pos = _xs.positionOf( _x );
+		if (pos == 0) throw new NotAvailableException();
+		return pos;
+	}
+
 	public static int fun_MATCH_Ascending( final String _x, String[] _xs, Environment _env )
 	{
-		final Collator c = _env.newCollator();
+		final Collator c = _env.conversions().collator();
 		return fun_MATCH_Sorted( _xs, c, new Comparable<String>()
 		{
 
@@ -1041,7 +1038,7 @@ public abstract class Runtime_v2
 
 	public static int fun_MATCH_Descending( final String _x, String[] _xs, Environment _env )
 	{
-		final Collator c = _env.newCollator();
+		final Collator c = _env.conversions().collator();
 		return fun_MATCH_Sorted( _xs, c, new Comparable<String>()
 		{
 
@@ -1298,6 +1295,27 @@ public abstract class Runtime_v2
 		return r;
 	}
 
+	/**
+	 * Builds the profile of a profiled computation. The cell names come as newline-separated
+	 * chunks, because a single string constant in a class file is limited in length.
+	 */
+	public static ComputationProfile newComputationProfile( String[] _cellNameChunks, long[] _evaluations,
+			long[] _computations, long[] _nanos )
+	{
+		final StringBuilder names = new StringBuilder();
+		for (String chunk : _cellNameChunks) {
+			names.append( chunk );
+		}
+		final List<String> cellNames = New.list( _evaluations.length );
+		int at = 0;
+		while (cellNames.size() < _evaluations.length) {
+			final int end = names.indexOf( "\n", at );
+			cellNames.add( names.substring( at, end ) );
+			at = end + 1;
+		}
+		return new ComputationProfile( cellNames, _evaluations, _computations, _nanos );
+	}
+
 	private static interface DateOrTimeVisitor<T>
 	{
 		T visitDate( Date _date );
@@ -26,6 +26,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 
 import org.formulacompiler.runtime.Computation;
 import org.formulacompiler.runtime.ComputationFactory;
@@ -41,6 +42,8 @@ public class ByteCodeEngine implements Engine
 	public static final String GEN_FACTORY_NAME = "$Factory";
 
 	private final Map<String, byte[]> classNamesAndBytes = New.map();
+	private final Set<String> classNames;
+	private final boolean retainClassBytes;
 	private final Class<ComputationFactory> factoryClass;
 	private final Constructor<ComputationFactory> factoryConstructor;
 	private final ComputationFactory defaultFactory;
@@ -54,10 +57,30 @@ public class ByteCodeEngine implements Engine
 			super( _parent );
 		}
 
+		/**
+		 * Engine classes are always loaded from this context, overriding similarly named classes in
+		 * the parent class loader, even when they are only defined on first use.
+		 */
+		@Override
+		protected synchronized Class<?> loadClass( String _name, boolean _resolve ) throws ClassNotFoundException
+		{
+			if (!ByteCodeEngine.this.classNames.contains( _name )) {
+				return super.loadClass( _name, _resolve );
+			}
+			Class<?> result = findLoadedClass( _name );
+			if (result == null) {
+				result = findClass( _name );
+			}
+			if (_resolve) {
+				resolveClass( result );
+			}
+			return result;
+		}
+
 		@Override
 		public Class<?> findClass( String _name ) throws ClassNotFoundException
 		{
-			final byte[] bytes = getClassNamesAndBytes().get( _name );
+			final byte[] bytes = classBytesToDefine( _name );
 			if (bytes != null) {
 				return defineClass( _name, bytes, 0, bytes.length );
 			}
@@ -69,23 +92,37 @@ public class ByteCodeEngine implements Engine
 	}
 
 
-	@SuppressWarnings( "unchecked" )
 	public ByteCodeEngine( ClassLoader _parentClassLoader, Map<String, byte[]> _classNamesAndBytes )
 			throws EngineException
+	{
+		this( _parentClassLoader, _classNamesAndBytes, false, true );
+	}
+
+	/**
+	 * @param _lazyClassDefinition if {@code true}, classes are defined only when first used, else
+	 *           all of them are defined right away.
+	 * @param _retainClassBytes if {@code false}, the byte code of each class is dropped once it is
+	 *           defined, so {@link #getClassNamesAndBytes()} is no longer available.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public ByteCodeEngine( ClassLoader _parentClassLoader, Map<String, byte[]> _classNamesAndBytes,
+			boolean _lazyClassDefinition, boolean _retainClassBytes ) throws EngineException
 	{
 		super();
 		assert _classNamesAndBytes != null;
 		this.classNamesAndBytes.putAll( _classNamesAndBytes );
+		final Set<String> classNames = New.set();
+		classNames.addAll( _classNamesAndBytes.keySet() );
+		this.classNames = Collections.unmodifiableSet( classNames );
+		this.retainClassBytes = _retainClassBytes;
 
 		final EngineClassLoader classLoader = new EngineClassLoader( _parentClassLoader );
 		try {
 
-			/*
-			 * Force all classes to be loaded from this context, overriding similarly named classes in
-			 * the parent class loader.
-			 */
-			for (String className : _classNamesAndBytes.keySet()) {
-				classLoader.findClass( className );
+			if (!_lazyClassDefinition) {
+				for (String className : this.classNames) {
+					classLoader.loadClass( className );
+				}
 			}
 
 			final String factoryClassName = GEN_PACKAGE_NAME + GEN_FACTORY_NAME;
@@ -115,6 +152,14 @@ public class ByteCodeEngine implements Engine
 	}
 
 
+	private byte[] classBytesToDefine( String _name )
+	{
+		synchronized (this.classNamesAndBytes) {
+			return this.retainClassBytes ? this.classNamesAndBytes.get( _name ) : this.classNamesAndBytes.remove( _name );
+		}
+	}
+
+
 	public ComputationFactory getComputationFactory()
 	{
 		return this.defaultFactory;
@@ -142,8 +187,15 @@ public class ByteCodeEngine implements Engine
 	}
 
 
+	/**
+	 * @throws IllegalStateException if the engine was loaded without retaining the byte code of its
+	 *            classes.
+	 */
 	public Map<String, byte[]> getClassNamesAndBytes()
 	{
+		if (!this.retainClassBytes) {
+			throw new IllegalStateException( "The byte code of this engine's classes was not retained." );
+		}
 		return Collections.unmodifiableMap( this.classNamesAndBytes );
 	}
 
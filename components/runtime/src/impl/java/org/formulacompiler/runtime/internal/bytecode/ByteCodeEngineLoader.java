@@ -38,12 +38,16 @@ import org.formulacompiler.runtime.EngineLoader;
 public final class ByteCodeEngineLoader implements EngineLoader
 {
 	private final ClassLoader parentClassLoader;
+	private final boolean lazyClassDefinition;
+	private final boolean retainClassBytes;
 
 
 	public ByteCodeEngineLoader( EngineLoader.Config _config )
 	{
 		super();
 		this.parentClassLoader = _config.parentClassLoader;
+		this.lazyClassDefinition = _config.lazyClassDefinition;
+		this.retainClassBytes = _config.retainClassBytes;
 	}
 
 	public static final class Factory implements EngineLoader.Factory
@@ -56,6 +60,16 @@ public final class ByteCodeEngineLoader implements EngineLoader
 
 
 	public Engine loadEngineData( InputStream _stream ) throws IOException, EngineException
+	{
+		return new ByteCodeEngine( this.parentClassLoader, readClassNamesAndBytes( _stream ), this.lazyClassDefinition,
+				this.retainClassBytes );
+	}
+
+
+	/**
+	 * Reads the classes of an engine saved as a .jar file.
+	 */
+	public static Map<String, byte[]> readClassNamesAndBytes( InputStream _stream ) throws IOException
 	{
 		final Map<String, byte[]> classNamesAndBytes = new HashMap<String, byte[]>();
 
@@ -80,7 +94,7 @@ public final class ByteCodeEngineLoader implements EngineLoader
 			jarStream.close();
 		}
 
-		return new ByteCodeEngine( this.parentClassLoader, classNamesAndBytes );
+		return classNamesAndBytes;
 	}
 
 }
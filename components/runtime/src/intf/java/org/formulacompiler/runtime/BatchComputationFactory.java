@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.runtime;
+
+/**
+ * Interface implemented by computation factories compiled with batch computation enabled. Such
+ * factories can compute many rows of input values, given column-wise in arrays, with a single
+ * reused computation and no allocations per row.
+ * 
+ * @see ColumnarBatch
+ */
+public interface BatchComputationFactory extends ComputationFactory
+{
+
+	/**
+	 * Computes the outputs for all rows of the given batch. For every row, the computation reads its
+	 * inputs from the corresponding element of the input columns and writes the values of the output
+	 * methods to the corresponding element of the output columns. Output methods for which the batch
+	 * has no column are not computed. This method is thread-safe as long as concurrent calls do not
+	 * share columns they write to.
+	 * 
+	 * @param _batch supplies the input columns and receives the output values.
+	 * @throws IllegalArgumentException if the batch lacks an input column needed by the computation.
+	 * @throws ClassCastException if a column is not an array of the method's return type.
+	 */
+	public void computeBatch( ColumnarBatch _batch );
+
+}
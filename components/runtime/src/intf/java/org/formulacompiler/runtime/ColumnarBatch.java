@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.runtime;
+
+import java.lang.reflect.Array;
+import java.util.Map;
+
+
+/**
+ * Holds the columns of input and output values for a call to
+ * {@link BatchComputationFactory#computeBatch(ColumnarBatch)}. Columns are arrays whose element
+ * type is the return type of the input or output method they stand for, so a column for an input
+ * method {@code double getPrice()} must be a {@code double[]}. Each column must hold at least as
+ * many elements as the batch has rows.
+ */
+public final class ColumnarBatch
+{
+	private final int rowCount;
+	private final Map<String, Object> inputColumns = New.map();
+	private final Map<String, Object> outputColumns = New.map();
+
+
+	/**
+	 * @param _rowCount is the number of rows to compute.
+	 */
+	public ColumnarBatch( int _rowCount )
+	{
+		if (_rowCount < 0) throw new IllegalArgumentException( "Row count must not be negative." );
+		this.rowCount = _rowCount;
+	}
+
+
+	public int getRowCount()
+	{
+		return this.rowCount;
+	}
+
+
+	/**
+	 * Sets the values returned by the given input method for all rows.
+	 * 
+	 * @param _inputMethodName is the name of the parameterless input method.
+	 * @param _column is an array of the return type of the method.
+	 * @return this batch, to chain calls.
+	 */
+	public ColumnarBatch setInputColumn( String _inputMethodName, Object _column )
+	{
+		this.inputColumns.put( _inputMethodName, checkColumn( _column ) );
+		return this;
+	}
+
+	/**
+	 * Sets the array to receive the values computed by the given output method for all rows.
+	 * 
+	 * @param _outputMethodName is the name of the parameterless output method.
+	 * @param _column is an array of the return type of the method.
+	 * @return this batch, to chain calls.
+	 */
+	public ColumnarBatch setOutputColumn( String _outputMethodName, Object _column )
+	{
+		this.outputColumns.put( _outputMethodName, checkColumn( _column ) );
+		return this;
+	}
+
+
+	/**
+	 * Called by generated code once per batch.
+	 * 
+	 * @throws IllegalArgumentException if there is no column for the input method.
+	 */
+	public Object getInputColumn( String _inputMethodName )
+	{
+		final Object result = this.inputColumns.get( _inputMethodName );
+		if (null == result) {
+			throw new IllegalArgumentException( "No input column given for " + _inputMethodName + "()." );
+		}
+		return result;
+	}
+
+	/**
+	 * Called by generated code once per batch.
+	 * 
+	 * @return {@code null} if the output method's values are not wanted.
+	 */
+	public Object getOutputColumn( String _outputMethodName )
+	{
+		return this.outputColumns.get( _outputMethodName );
+	}
+
+
+	private Object checkColumn( Object _column )
+	{
+		if (null == _column || !_column.getClass().isArray()) {
+			throw new IllegalArgumentException( "A column must be an array." );
+		}
+		if (Array.getLength( _column ) < this.rowCount) {
+			throw new IllegalArgumentException( "A column must hold at least " + this.rowCount + " elements." );
+		}
+		return _column;
+	}
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Snapshot of the per-cell counters of a {@link ProfiledComputation}. It lists all cells compiled
+ * to a method of their own. Cells the compiler inlined into the cells referencing them are not
+ * listed. All cells of a repeating section share one entry, counting over all its instances.
+ */
+public final class ComputationProfile
+{
+	private final String[] cellNames;
+	private final long[] evaluations;
+	private final long[] computations;
+	private final long[] nanos;
+
+
+	/**
+	 * Creates a profile from the given counters, copying them.
+	 * 
+	 * @param _cellNames are the names of the profiled cells.
+	 * @param _evaluations are the number of times each cell's value was requested.
+	 * @param _computations are the number of times each cell's value was actually computed, rather
+	 *           than taken from its cache.
+	 * @param _nanos are the nanoseconds spent computing each cell's value, including the time spent
+	 *           on the cells it references; {@code null} if the engine was not compiled with timers.
+	 */
+	public ComputationProfile( List<String> _cellNames, long[] _evaluations, long[] _computations, long[] _nanos )
+	{
+		super();
+		final int n = _cellNames.size();
+		if (_evaluations.length != n || _computations.length != n || (null != _nanos && _nanos.length != n)) {
+			throw new IllegalArgumentException( "Counters do not match cells." );
+		}
+		this.cellNames = _cellNames.toArray( new String[ n ] );
+		this.evaluations = _evaluations.clone();
+		this.computations = _computations.clone();
+		this.nanos = (null == _nanos) ? null : _nanos.clone();
+	}
+
+
+	/**
+	 * Returns the number of profiled cells.
+	 */
+	public int getCellCount()
+	{
+		return this.cellNames.length;
+	}
+
+	/**
+	 * Returns the name of the given cell, for example {@code B3} or {@code B3(Result)}.
+	 */
+	public String getCellName( int _cell )
+	{
+		return this.cellNames[ _cell ];
+	}
+
+	/**
+	 * Returns the index of the cell with the given name, or -1.
+	 */
+	public int indexOf( String _cellName )
+	{
+		for (int i = 0; i < this.cellNames.length; i++) {
+			if (this.cellNames[ i ].equals( _cellName )) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the number of times the value of the given cell was requested.
+	 */
+	public long getEvaluations( int _cell )
+	{
+		return this.evaluations[ _cell ];
+	}
+
+	/**
+	 * Returns the number of times the value of the given cell was actually computed. This is less
+	 * than {@link #getEvaluations(int)} for cells whose value was taken from the cache.
+	 */
+	public long getComputations( int _cell )
+	{
+		return this.computations[ _cell ];
+	}
+
+	/**
+	 * Returns the fraction of the evaluations of the given cell served from the cache.
+	 */
+	public double getCacheHitRatio( int _cell )
+	{
+		final long evals = this.evaluations[ _cell ];
+		return (0 == evals) ? 0.0 : 1.0 - (double) this.computations[ _cell ] / evals;
+	}
+
+	/**
+	 * Tells whether the profile contains timings.
+	 */
+	public boolean isTimed()
+	{
+		return null != this.nanos;
+	}
+
+	/**
+	 * Returns the nanoseconds spent computing the given cell, including the cells it references, or
+	 * 0 if the profile is not timed.
+	 */
+	public long getNanos( int _cell )
+	{
+		return (null == this.nanos) ? 0 : this.nanos[ _cell ];
+	}
+
+
+	/**
+	 * Returns a profile with the counters of this one and the given one added up. Both must come
+	 * from computations of the same engine.
+	 */
+	public ComputationProfile plus( ComputationProfile _other )
+	{
+		if (!Arrays.equals( this.cellNames, _other.cellNames )) {
+			throw new IllegalArgumentException( "Profiles are for different engines." );
+		}
+		final int n = this.cellNames.length;
+		final long[] evals = new long[ n ];
+		final long[] comps = new long[ n ];
+		final long[] times = (isTimed() && _other.isTimed()) ? new long[ n ] : null;
+		for (int i = 0; i < n; i++) {
+			evals[ i ] = this.evaluations[ i ] + _other.evaluations[ i ];
+			comps[ i ] = this.computations[ i ] + _other.computations[ i ];
+			if (null != times) times[ i ] = this.nanos[ i ] + _other.nanos[ i ];
+		}
+		return new ComputationProfile( Arrays.asList( this.cellNames ), evals, comps, times );
+	}
+
+
+	@Override
+	public String toString()
+	{
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < this.cellNames.length; i++) {
+			sb.append( this.cellNames[ i ] ).append( ": " ).append( this.evaluations[ i ] ).append( " evaluations, " )
+					.append( this.computations[ i ] ).append( " computations" );
+			if (null != this.nanos) {
+				sb.append( ", " ).append( this.nanos[ i ] ).append( " ns" );
+			}
+			sb.append( '\n' );
+		}
+		return sb.toString();
+	}
+
+}
@@ -51,6 +51,19 @@ public interface EngineLoader
 		 */
 		public ClassLoader parentClassLoader = Thread.currentThread().getContextClassLoader();
 
+		/**
+		 * If {@code true}, the classes of the loaded engine are defined only when they are first used,
+		 * not all of them while loading. This speeds up loading engines of which only a few sections
+		 * are ever computed.
+		 */
+		public boolean lazyClassDefinition = false;
+
+		/**
+		 * If {@code false}, the byte code of the engine's classes is dropped once they are defined,
+		 * which saves heap when many engines are loaded. Such engines cannot be decompiled.
+		 */
+		public boolean retainClassBytes = true;
+
 		/**
 		 * Validates the configuration for missing or improperly set values.
 		 * 
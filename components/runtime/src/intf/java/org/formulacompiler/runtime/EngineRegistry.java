@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.runtime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * A size-bounded registry of loaded engines which can be shared by all threads of an application,
+ * so each engine is loaded only once. When the registry is full, registering another engine unloads
+ * the least recently used one. Unloading only drops the registry's reference to the engine; its
+ * classes are reclaimed by the garbage collector once none of its factories or computations are in
+ * use anymore.
+ * 
+ * @see EngineLoader.Config#lazyClassDefinition
+ * @see EngineLoader.Config#retainClassBytes
+ */
+public final class EngineRegistry
+{
+	private final int maximumSize;
+	private final Map<Object, Engine> engines;
+
+
+	/**
+	 * @param _maximumSize is the maximum number of engines kept in the registry.
+	 */
+	public EngineRegistry( int _maximumSize )
+	{
+		if (_maximumSize < 1) throw new IllegalArgumentException( "Maximum size must be positive." );
+		this.maximumSize = _maximumSize;
+		this.engines = new LeastRecentlyUsedMap( _maximumSize );
+	}
+
+
+	public int getMaximumSize()
+	{
+		return this.maximumSize;
+	}
+
+
+	/**
+	 * Returns the number of engines currently registered.
+	 */
+	public synchronized int size()
+	{
+		return this.engines.size();
+	}
+
+
+	/**
+	 * Returns the engine registered for the given key, or {@code null} if there is none, or if it has
+	 * been unloaded.
+	 */
+	public synchronized Engine get( Object _key )
+	{
+		return this.engines.get( _key );
+	}
+
+
+	/**
+	 * Registers an engine, unloading the least recently used engine if the registry is full.
+	 * 
+	 * @return the engine previously registered for the key, if any.
+	 */
+	public synchronized Engine register( Object _key, Engine _engine )
+	{
+		if (null == _engine) throw new IllegalArgumentException( "Engine must not be null." );
+		return this.engines.put( _key, _engine );
+	}
+
+
+	/**
+	 * Returns the engine registered for the given key, loading and registering it first if there is
+	 * none. The engine is loaded outside of the registry's lock, so when two threads load the same key
+	 * concurrently, both get the engine registered first.
+	 * 
+	 * @see FormulaRuntime#loadEngine(EngineLoader.Config, InputStream)
+	 */
+	public Engine load( Object _key, EngineLoader.Config _config, InputStream _stream ) throws IOException,
+			EngineException
+	{
+		final Engine registered = get( _key );
+		if (null != registered) {
+			return registered;
+		}
+		final Engine loaded = FormulaRuntime.loadEngine( _config, _stream );
+		synchronized (this) {
+			final Engine concurrentlyRegistered = this.engines.get( _key );
+			if (null != concurrentlyRegistered) {
+				return concurrentlyRegistered;
+			}
+			this.engines.put( _key, loaded );
+			return loaded;
+		}
+	}
+
+
+	/**
+	 * Removes the engine registered for the given key.
+	 * 
+	 * @return the removed engine, or {@code null} if there was none.
+	 */
+	public synchronized Engine unload( Object _key )
+	{
+		return this.engines.remove( _key );
+	}
+
+
+	/**
+	 * Removes all engines.
+	 */
+	public synchronized void clear()
+	{
+		this.engines.clear();
+	}
+
+
+	private static final class LeastRecentlyUsedMap extends LinkedHashMap<Object, Engine>
+	{
+		private static final long serialVersionUID = 1L;
+		private final int maximumSize;
+
+		LeastRecentlyUsedMap( int _maximumSize )
+		{
+			super( 16, 0.75f, true );
+			this.maximumSize = _maximumSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry( Map.Entry<Object, Engine> _eldest )
+		{
+			return size() > this.maximumSize;
+		}
+	}
+
+}
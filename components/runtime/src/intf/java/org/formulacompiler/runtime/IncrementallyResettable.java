@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime;
+
+// The following comment is a source code citation marker for JCite. Please leave it as is.
+// ---- incrementallyresettable
+/**
+ * Interface that must be implemented by an output class (or extended by an output interface) of
+ * computations that need to reset only those internal caches of values that depend on a particular
+ * input - typically for reuse in interactive applications where a single input changes at a time.
+ */
+public interface IncrementallyResettable extends Resettable
+{
+
+	/**
+	 * Clears all internal caches of the computation that depend on the given input so it can be
+	 * reused after the value returned by this input has changed. Inputs are identified by the name of
+	 * the input method that returns them, for example {@code "getPrice"}. For chained input calls,
+	 * this is the last method in the chain. Indexed inputs such as {@code getValue(int)} are treated
+	 * as a single input for all indexes. If no cell of the computation is bound to the given method
+	 * name, all caches are reset. Caches of values that do not depend on the given input, as well as
+	 * the time captured for {@code NOW()} and {@code TODAY()}, are retained. You do not need to
+	 * implement this method yourself. As long as you declare it, AFC will implement it for you.
+	 * 
+	 * @param _inputMethodName is the name of the input method whose value has changed.
+	 */
+	void reset( String _inputMethodName );
+
+}
+// ---- incrementallyresettable
+// The comment above is a source code citation marker for JCite. Please leave it as is.
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime;
+
+/**
+ * Interface implemented by computation factories compiled with a memo cache. Such factories keep
+ * the values of expensive cells, like ones computing an internal rate of return or folding large
+ * ranges, across the computations they make. The values are keyed by the values of the inputs the
+ * cells depend on, so computations on repeated inputs skip computing them again. When the cache is
+ * full, the least recently used values are dropped.
+ * 
+ * <p>
+ * The cache is thread-safe. Each factory has its own, so obtain the factory once and keep it.
+ */
+public interface MemoizingComputationFactory extends ComputationFactory
+{
+
+	/**
+	 * Returns the number of times a computation took a cell's value from the cache.
+	 */
+	public long getMemoHits();
+
+	/**
+	 * Returns the number of times a computation had to compute a cell's value because it was not
+	 * cached.
+	 */
+	public long getMemoMisses();
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime;
+
+import java.util.concurrent.Executor;
+
+
+/**
+ * Interface that must be implemented by an output class (or extended by an output interface) of
+ * computations that should compute the values of independent outputs concurrently. Engines for
+ * such computations must be compiled with full caching, which retains the values so computed.
+ */
+public interface ParallelComputation
+{
+
+	/**
+	 * Computes the values of all outputs of the root section, so that subsequent calls to the output
+	 * methods return them right away. Inputs, values shared by more than one output, and values
+	 * involving repeating sections, ranges or volatile functions like {@code NOW()} are computed first
+	 * on the calling thread. Outputs whose remaining cells are independent of each other are then
+	 * computed by tasks run by the given executor. The calling thread computes outputs, too, until
+	 * all have been started, so it never waits for tasks the executor has not yet run. Errors are not
+	 * reported here; the output methods raise them again. With computation listeners or profiling, or
+	 * with the scaled long fast path, all outputs are computed on the calling thread. You do not need
+	 * to implement this method yourself. As long as you declare it, AFC will implement it for you.
+	 * 
+	 * @param _executor runs the tasks computing independent outputs.
+	 */
+	void computeAll( Executor _executor );
+
+}
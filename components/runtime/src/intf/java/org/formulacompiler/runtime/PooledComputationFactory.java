@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime;
+
+/**
+ * Interface implemented by computation factories compiled with computation pooling enabled. Such
+ * factories keep released computations in small per-thread pools and hand them out again, bound
+ * to new inputs, instead of allocating new ones. This suits request-scoped use, where each request
+ * creates a computation, reads a few outputs, and drops it again.
+ * 
+ * <p>
+ * The pools belong to the factory. Once the factory is no longer referenced, its pooled
+ * computations can be garbage collected together with the engine, even while the threads that
+ * released them keep running.
+ * <p>
+ * Never use a computation after releasing it, nor release it twice.
+ */
+public interface PooledComputationFactory extends ComputationFactory
+{
+
+	/**
+	 * Returns a computation bound to the given inputs, taking it from the calling thread's pool if
+	 * possible. This method is thread-safe.
+	 * 
+	 * @param _inputs defines the instance which gets called to obtain values for input cells in the
+	 *           computation.
+	 * @return a computation instance, which is not thread-safe.
+	 */
+	public Computation newComputation( Object _inputs );
+
+	/**
+	 * Resets the given computation, unbinds it from its inputs, and returns it to the calling
+	 * thread's pool. If the pool is full, the computation is left to the garbage collector. Releasing
+	 * a computation again while it is still in the calling thread's pool has no effect. This method is
+	 * thread-safe.
+	 * 
+	 * @param _computation must have been obtained from this factory.
+	 */
+	public void releaseComputation( Computation _computation );
+
+	/**
+	 * Returns the number of times {@link #newComputation(Object)} returned a pooled computation.
+	 */
+	public long getPoolHits();
+
+	/**
+	 * Returns the number of times {@link #newComputation(Object)} had to allocate a new computation.
+	 */
+	public long getPoolMisses();
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime;
+
+
+/**
+ * Implemented by computations of engines compiled with cell profiling enabled. Cast a computation
+ * to this interface to read the counters it has accumulated. The counters are plain fields of the
+ * computation, so counting costs no allocation and no synchronization. Use one computation per
+ * thread, as usual, and combine their profiles with {@link ComputationProfile#plus}.
+ */
+public interface ProfiledComputation
+{
+
+	/**
+	 * Returns a snapshot of the counters this computation has accumulated since it was created.
+	 * Resetting the computation does not reset its counters.
+	 */
+	ComputationProfile getProfile();
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.runtime;
+
+import junit.framework.TestCase;
+
+
+public class EngineRegistryTest extends TestCase
+{
+
+	public void testRegisterAndGet() throws Exception
+	{
+		final EngineRegistry registry = new EngineRegistry( 2 );
+		final Engine a = new StubEngine();
+		assertNull( registry.register( "a", a ) );
+		assertSame( a, registry.get( "a" ) );
+		assertNull( registry.get( "b" ) );
+		assertEquals( 1, registry.size() );
+	}
+
+	public void testEvictsLeastRecentlyUsed() throws Exception
+	{
+		final EngineRegistry registry = new EngineRegistry( 2 );
+		final Engine a = new StubEngine();
+		final Engine b = new StubEngine();
+		final Engine c = new StubEngine();
+		registry.register( "a", a );
+		registry.register( "b", b );
+		registry.get( "a" );
+		registry.register( "c", c );
+		assertEquals( 2, registry.size() );
+		assertSame( a, registry.get( "a" ) );
+		assertNull( registry.get( "b" ) );
+		assertSame( c, registry.get( "c" ) );
+	}
+
+	public void testUnload() throws Exception
+	{
+		final EngineRegistry registry = new EngineRegistry( 2 );
+		final Engine a = new StubEngine();
+		registry.register( "a", a );
+		assertSame( a, registry.unload( "a" ) );
+		assertNull( registry.unload( "a" ) );
+		assertNull( registry.get( "a" ) );
+		assertEquals( 0, registry.size() );
+	}
+
+	public void testInvalidMaximumSize() throws Exception
+	{
+		try {
+			new EngineRegistry( 0 );
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+
+	private static final class StubEngine implements Engine
+	{
+
+		public ComputationFactory getComputationFactory()
+		{
+			return null;
+		}
+
+		public ComputationFactory getComputationFactory( Computation.Config _cfg )
+		{
+			return null;
+		}
+
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime.internal;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+import java.util.Locale;
+
+import org.formulacompiler.runtime.Computation;
+
+import junit.framework.TestCase;
+
+public class LocaleConversionsTest extends TestCase
+{
+	private static final String[] NUMBERS = { "0", "-0", "0.0", "-0.0", "1", "-1", "12", "007", "1.5", "-1.5", "1.",
+			".5", "-.5", "0.05", "1.50", "1.0", "1,234", "1,234.5", "-1,234.567", "1,2,3", "1 234", "1\u00a0234",
+			"1\u00a0234,5", "1'234.5", "1,5", "-1,5", "3.14159265358979", "0.000000000000000000001",
+			"123456789012345", "1234567890123456", "12345678901234567890", "0.1234567890123456", "1e3", "1E3", "10%",
+			"-", "", ".", ",", "1,", ",1", "1,,2", "1.2.3", "1..2", "+1", "--1", "1-", "12/31/2009", "12:30", "abc",
+			"1 234\u00a0567", "1.234,5", "1'234" };
+
+	private static final Locale[] LOCALES = { Locale.US, Locale.GERMANY, Locale.FRANCE, new Locale( "de", "CH" ),
+			new Locale( "ru", "RU" ), new Locale( "pl", "PL" ) };
+
+
+	public void testScannerMatchesFormat() throws Exception
+	{
+		for (Locale locale : LOCALES) {
+			final Environment env = Environment.getInstance( new Computation.Config( locale ) );
+			final LocaleConversions conversions = env.conversions();
+			for (String text : NUMBERS) {
+				final Number scanned = conversions.scanNumber( text );
+				if (scanned != null) {
+					final Number parsed = parseWithFormat( text, locale, null );
+					assertEquals( locale + ": " + text, parsed, scanned );
+				}
+			}
+		}
+	}
+
+	public void testScannerHandlesPlainNumbers() throws Exception
+	{
+		final LocaleConversions us = Environment.getInstance( new Computation.Config( Locale.US ) ).conversions();
+		assertEquals( Long.valueOf( 1234 ), us.scanNumber( "1,234" ) );
+		assertEquals( Double.valueOf( -1234.5 ), us.scanNumber( "-1,234.50" ) );
+		assertEquals( Double.valueOf( -0.0 ), us.scanNumber( "-0" ) );
+		assertNull( us.scanNumber( "1E3" ) );
+		assertNull( us.scanNumber( "12345678901234567890" ) );
+
+		final LocaleConversions fr = Environment.getInstance( new Computation.Config( Locale.FRANCE ) ).conversions();
+		assertEquals( Double.valueOf( 1234.5 ), fr.scanNumber( "1 234,5" ) );
+	}
+
+	public void testCustomSymbols() throws Exception
+	{
+		final DecimalFormatSymbols symbols = new DecimalFormatSymbols( Locale.US );
+		symbols.setDecimalSeparator( ',' );
+		symbols.setGroupingSeparator( '\'' );
+		final Environment env = Environment.getInstance( new Computation.Config( Locale.US, symbols ) );
+		final LocaleConversions conversions = env.conversions();
+		for (String text : NUMBERS) {
+			final Number scanned = conversions.scanNumber( text );
+			if (scanned != null) {
+				assertEquals( text, parseWithFormat( text, Locale.US, symbols ), scanned );
+			}
+		}
+		assertEquals( Double.valueOf( 1234.5 ), conversions.scanNumber( "1'234,5" ) );
+	}
+
+	public void testDefaultLocaleChange() throws Exception
+	{
+		final Locale oldDefault = Locale.getDefault();
+		try {
+			final Environment env = Environment.getInstance( new Computation.Config() );
+			Locale.setDefault( Locale.US );
+			assertEquals( Double.valueOf( 1.5 ), env.conversions().scanNumber( "1.5" ) );
+			Locale.setDefault( Locale.GERMANY );
+			assertEquals( Double.valueOf( 1.5 ), env.conversions().scanNumber( "1,5" ) );
+		}
+		finally {
+			Locale.setDefault( oldDefault );
+		}
+	}
+
+
+	/**
+	 * Reference parse the way the runtime did it before the scanner: the locale's number format,
+	 * retried with a plain space as the grouping separator if the locale uses some other space.
+	 */
+	private static Number parseWithFormat( String _text, Locale _locale, DecimalFormatSymbols _symbols )
+	{
+		final DecimalFormat format = (DecimalFormat) NumberFormat.getInstance( _locale );
+		if (null != _symbols) {
+			format.setDecimalFormatSymbols( _symbols );
+		}
+		final Number result = parseFully( _text, format );
+		if (result == null) {
+			final DecimalFormatSymbols symbols = format.getDecimalFormatSymbols();
+			if (Character.isSpaceChar( symbols.getGroupingSeparator() )) {
+				symbols.setGroupingSeparator( ' ' );
+				format.setDecimalFormatSymbols( symbols );
+				return parseFully( _text, format );
+			}
+		}
+		return result;
+	}
+
+	private static Number parseFully( String _text, NumberFormat _format )
+	{
+		final ParsePosition pos = new ParsePosition( 0 );
+		final Number result = _format.parse( _text, pos );
+		return (pos.getIndex() == _text.length()) ? result : null;
+	}
+
+}
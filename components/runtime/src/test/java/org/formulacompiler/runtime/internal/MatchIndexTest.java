@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.runtime.internal;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.formulacompiler.runtime.NotAvailableException;
+
+import junit.framework.TestCase;
+
+public class MatchIndexTest extends TestCase
+{
+	private static final int N = 2000;
+
+
+	public void testDoubles()
+	{
+		final Random rnd = new Random( 4711 );
+		final double[] xs = new double[ N ];
+		for (int i = 0; i < N; i++) {
+			xs[ i ] = rnd.nextInt( N / 2 ) / 4.0;
+		}
+		xs[ 10 ] = -0.0;
+		xs[ 11 ] = Double.NaN;
+		final MatchIndexForDoubles idx = new MatchIndexForDoubles( xs );
+		for (int i = -10; i < N / 2 + 10; i++) {
+			final double x = i / 4.0;
+			assertEquals( Double.toString( x ), linear( x, xs ), hashed( x, idx ) );
+		}
+		assertEquals( linear( 0.0, xs ), hashed( -0.0, idx ) );
+		assertEquals( 0, hashed( Double.NaN, idx ) );
+	}
+
+	private int linear( double _x, double[] _xs )
+	{
+		try {
+			return RuntimeDouble_v2.fun_MATCH_Exact( _x, _xs );
+		}
+		catch (NotAvailableException e) {
+			return 0;
+		}
+	}
+
+	private int hashed( double _x, MatchIndexForDoubles _xs )
+	{
+		try {
+			return RuntimeDouble_v2.fun_MATCH_Exact( _x, _xs );
+		}
+		catch (NotAvailableException e) {
+			return 0;
+		}
+	}
+
+
+	public void testLongs()
+	{
+		final Random rnd = new Random( 4711 );
+		final long[] xs = new long[ N ];
+		for (int i = 0; i < N; i++) {
+			xs[ i ] = rnd.nextInt( N / 2 ) * 10000L;
+		}
+		xs[ 20 ] = Long.MIN_VALUE;
+		xs[ 21 ] = Long.MAX_VALUE;
+		final MatchIndexForLongs idx = new MatchIndexForLongs( xs );
+		for (int i = -10; i < N / 2 + 10; i++) {
+			assertEquals( linear( i * 10000L, xs ), hashed( i * 10000L, idx ) );
+		}
+		assertEquals( linear( Long.MIN_VALUE, xs ), hashed( Long.MIN_VALUE, idx ) );
+		assertEquals( linear( Long.MAX_VALUE, xs ), hashed( Long.MAX_VALUE, idx ) );
+	}
+
+	private int linear( long _x, long[] _xs )
+	{
+		try {
+			return RuntimeLong_v2.fun_MATCH_Exact( _x, _xs );
+		}
+		catch (NotAvailableException e) {
+			return 0;
+		}
+	}
+
+	private int hashed( long _x, MatchIndexForLongs _xs )
+	{
+		try {
+			return RuntimeLong_v2.fun_MATCH_Exact( _x, _xs );
+		}
+		catch (NotAvailableException e) {
+			return 0;
+		}
+	}
+
+
+	public void testBigDecimals()
+	{
+		final Random rnd = new Random( 4711 );
+		final BigDecimal[] xs = new BigDecimal[ N ];
+		for (int i = 0; i < N; i++) {
+			xs[ i ] = BigDecimal.valueOf( rnd.nextInt( N / 2 ), 2 );
+		}
+		xs[ 30 ] = null;
+		final MatchIndexForBigDecimals idx = new MatchIndexForBigDecimals( xs );
+		for (int i = -10; i < N / 2 + 10; i++) {
+			final BigDecimal x = BigDecimal.valueOf( i, 2 );
+			assertEquals( x.toString(), linear( x, xs ), hashed( x, idx ) );
+			// Different scale never matches with equals().
+			final BigDecimal y = x.setScale( 3 );
+			assertEquals( y.toString(), linear( y, xs ), hashed( y, idx ) );
+		}
+	}
+
+	private int linear( BigDecimal _x, BigDecimal[] _xs )
+	{
+		try {
+			return RuntimeBigDecimal_v2.fun_MATCH_Exact( _x, _xs );
+		}
+		catch (NotAvailableException e) {
+			return 0;
+		}
+	}
+
+	private int hashed( BigDecimal _x, MatchIndexForBigDecimals _xs )
+	{
+		try {
+			return RuntimeBigDecimal_v2.fun_MATCH_Exact( _x, _xs );
+		}
+		catch (NotAvailableException e) {
+			return 0;
+		}
+	}
+
+
+	public void testStrings()
+	{
+		final String[] xs = { "Alpha", "beta", "GAMMA", "Stra\u00dfe", "ALPHA", "", "delta", "\u00c4rger" };
+		final String[] probes = { "alpha", "BETA", "Gamma", "STRASSE", "straße", "STRAßE", "", "DELTA", "äRGER",
+				"a*", "*ta", "g?mma", "epsilon" };
+		final MatchIndexForStrings idx = new MatchIndexForStrings( xs );
+		for (String x : probes) {
+			assertEquals( x, linear( x, xs ), hashed( x, idx ) );
+		}
+	}
+
+	public void testStringsWithNulls()
+	{
+		final String[] xs = { "Alpha", null, "beta" };
+		final MatchIndexForStrings idx = new MatchIndexForStrings( xs );
+		assertTrue( idx.isScanNeededFor( "alpha" ) );
+		assertEquals( 1, hashed( "ALPHA", idx ) );
+	}
+
+	private int linear( String _x, String[] _xs )
+	{
+		try {
+			return Runtime_v2.fun_MATCH_Exact( _x, _xs );
+		}
+		catch (NotAvailableException e) {
+			return 0;
+		}
+	}
+
+	private int hashed( String _x, MatchIndexForStrings _xs )
+	{
+		try {
+			return Runtime_v2.fun_MATCH_Exact( _x, _xs );
+		}
+		catch (NotAvailableException e) {
+			return 0;
+		}
+	}
+
+}
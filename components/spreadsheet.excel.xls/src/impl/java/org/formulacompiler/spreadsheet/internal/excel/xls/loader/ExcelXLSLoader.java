@@ -22,6 +22,9 @@
 
 package org.formulacompiler.spreadsheet.internal.excel.xls.loader;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.TimeZone;
@@ -49,6 +52,7 @@ import org.formulacompiler.spreadsheet.internal.loader.builder.SpreadsheetBuilde
 import org.formulacompiler.spreadsheet.internal.parser.LazySpreadsheetExpressionParser;
 import org.formulacompiler.spreadsheet.internal.parser.SpreadsheetExpressionParserA1OOXML;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.DateUtil;
@@ -84,7 +88,7 @@ public final class ExcelXLSLoader implements SpreadsheetLoader
 	}
 
 
-	private final Config config;
+	final Config config;
 
 	private ExcelXLSLoader( Config _config )
 	{
@@ -92,9 +96,28 @@ public final class ExcelXLSLoader implements SpreadsheetLoader
 	}
 
 
+	public Spreadsheet loadFrom( File _file ) throws IOException, SpreadsheetException
+	{
+		final InputStream stream = new BufferedInputStream( new FileInputStream( _file ) );
+		try {
+			return loadFrom( _file.getName(), stream );
+		}
+		finally {
+			stream.close();
+		}
+	}
+
 	public Spreadsheet loadFrom( String _originalFileName, InputStream _stream ) throws IOException, SpreadsheetException
 	{
-		final Workbook xlsWorkbook = new HSSFWorkbook( _stream );
+		final POIFSFileSystem fileSystem = new POIFSFileSystem( _stream );
+		if (this.config.streamingEnabled) {
+			final BaseSpreadsheet spreadsheet = new ExcelXLSRecordLoader( this ).loadFrom( fileSystem );
+			if (null != spreadsheet) {
+				return spreadsheet;
+			}
+		}
+
+		final Workbook xlsWorkbook = new HSSFWorkbook( fileSystem );
 		loadConfig( xlsWorkbook );
 		final SpreadsheetBuilder spreadsheetBuilder = new SpreadsheetBuilder( ComputationMode.EXCEL );
 
@@ -141,17 +164,19 @@ public final class ExcelXLSLoader implements SpreadsheetLoader
 			final Name name = _xlsWorkbook.getNameAt( nameIndex );
 			if (name.isFunctionName()) continue;
 
-			final String cellRangeAddress = name.getRefersToFormula();
-			final String rangeName = name.getNameName();
+			loadName( name.getNameName(), name.getRefersToFormula(), _spreadsheet );
+		}
+	}
 
-			final ExpressionParser parser = new SpreadsheetExpressionParserA1OOXML( cellRangeAddress, _spreadsheet );
-			try {
-				final CellRange cellRange = (CellRange) parser.rangeOrCellRefA1();
-				_spreadsheet.defineModelRangeName( rangeName, cellRange );
-			}
-			catch (ParseException e) {
-				// Ignore all non 'named range' names
-			}
+	static void loadName( String _rangeName, String _cellRangeAddress, BaseSpreadsheet _spreadsheet )
+	{
+		final ExpressionParser parser = new SpreadsheetExpressionParserA1OOXML( _cellRangeAddress, _spreadsheet );
+		try {
+			final CellRange cellRange = (CellRange) parser.rangeOrCellRefA1();
+			_spreadsheet.defineModelRangeName( _rangeName, cellRange );
+		}
+		catch (ParseException e) {
+			// Ignore all non 'named range' names
 		}
 	}
 
@@ -207,15 +232,11 @@ public final class ExcelXLSLoader implements SpreadsheetLoader
 		}
 	}
 
-	private boolean isTime( Cell cell )
+	private static boolean isTime( String _format )
 	{
-		final CellStyle style = cell.getCellStyle();
-		if (style != null) {
-			final String format = cell.getCellStyle().getDataFormatString();
-			if (format != null) {
-				final Matcher dtMatcher = TIME_PATTERN.matcher( format );
-				return dtMatcher.find();
-			}
+		if (_format != null) {
+			final Matcher dtMatcher = TIME_PATTERN.matcher( _format );
+			return dtMatcher.find();
 		}
 		return false;
 	}
@@ -257,48 +278,60 @@ public final class ExcelXLSLoader implements SpreadsheetLoader
 			_rowBuilder.addCellWithConstant( _xlsCell.getStringCellValue() );
 		}
 		else if (xlsType == Cell.CELL_TYPE_ERROR) {
-			final int errorCode = _xlsCell.getErrorCellValue();
-			switch (errorCode) {
-				case 7:
-					_rowBuilder.addCellWithError( CellWithError.DIV0 );
-					break;
-				case 15:
-					_rowBuilder.addCellWithError( CellWithError.VALUE );
-					break;
-				case 23:
-					_rowBuilder.addCellWithError( CellWithError.REF );
-					break;
-				case 36:
-					_rowBuilder.addCellWithError( CellWithError.NUM );
-					break;
-				case 42:
-					_rowBuilder.addCellWithError( CellWithError.NA );
-					break;
-				default:
-					_rowBuilder.addCellWithError( "#ERR:" + errorCode );
-			}
+			addCellWithError( _xlsCell.getErrorCellValue(), _rowBuilder );
+		}
+	}
+
+	static void addCellWithError( int _errorCode, RowBuilder _rowBuilder )
+	{
+		switch (_errorCode) {
+			case 7:
+				_rowBuilder.addCellWithError( CellWithError.DIV0 );
+				break;
+			case 15:
+				_rowBuilder.addCellWithError( CellWithError.VALUE );
+				break;
+			case 23:
+				_rowBuilder.addCellWithError( CellWithError.REF );
+				break;
+			case 36:
+				_rowBuilder.addCellWithError( CellWithError.NUM );
+				break;
+			case 42:
+				_rowBuilder.addCellWithError( CellWithError.NA );
+				break;
+			default:
+				_rowBuilder.addCellWithError( "#ERR:" + _errorCode );
 		}
 	}
 
 	private Object getNumberValue( Cell _xlsCell )
 	{
 		final double value = _xlsCell.getNumericCellValue();
-		final boolean isDate = DateUtil.isCellDateFormatted( _xlsCell );
-		final boolean isTime = isTime( _xlsCell );
+		final CellStyle style = _xlsCell.getCellStyle();
+		if (null == style) {
+			return value;
+		}
+		return getNumberValue( value, style.getDataFormat(), style.getDataFormatString() );
+	}
+
+	Object getNumberValue( double _value, int _formatIndex, String _format )
+	{
+		final boolean isDate = DateUtil.isValidExcelDate( _value ) && DateUtil.isADateFormat( _formatIndex, _format );
+		final boolean isTime = isTime( _format );
 		if (isDate || isTime) {
-			if (null != this.globalTimeFormat
-					&& this.globalTimeFormat.equals( _xlsCell.getCellStyle().getDataFormatString() )) {
-				return RuntimeDouble_v2.dateFromNum( _xlsCell.getNumericCellValue(), this.globalTimeZone, ComputationMode.EXCEL );
+			if (null != this.globalTimeFormat && this.globalTimeFormat.equals( _format )) {
+				return RuntimeDouble_v2.dateFromNum( _value, this.globalTimeZone, ComputationMode.EXCEL );
 			}
-			if ((isDate && value < 1) || (isTime && value < 365)) {
-				return new Duration( value );
+			if ((isDate && _value < 1) || (isTime && _value < 365)) {
+				return new Duration( _value );
 			}
 			else {
-				return new LocalDate( value );
+				return new LocalDate( _value );
 			}
 		}
 		else {
-			return value;
+			return _value;
 		}
 	}
 }
@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.spreadsheet.internal.excel.xls.loader;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.formulacompiler.compiler.internal.expressions.parser.CellRefFormat;
+import org.formulacompiler.runtime.ComputationMode;
+import org.formulacompiler.spreadsheet.SpreadsheetException;
+import org.formulacompiler.spreadsheet.internal.BaseSpreadsheet;
+import org.formulacompiler.spreadsheet.internal.loader.builder.RowBuilder;
+import org.formulacompiler.spreadsheet.internal.loader.builder.SheetBuilder;
+import org.formulacompiler.spreadsheet.internal.loader.builder.SpreadsheetBuilder;
+import org.formulacompiler.spreadsheet.internal.parser.LazySpreadsheetExpressionParser;
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.model.HSSFFormulaParser;
+import org.apache.poi.hssf.model.InternalWorkbook;
+import org.apache.poi.hssf.record.ArrayRecord;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.NameRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SharedFormulaRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.record.TableRecord;
+import org.apache.poi.hssf.record.formula.Ptg;
+import org.apache.poi.hssf.usermodel.HSSFDataFormat;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.hssf.util.CellReference;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Cell;
+
+
+/**
+ * Streaming variant of the .xls loader. Instead of building POI's {@code HSSFWorkbook} object
+ * model of all sheets, it listens to the BIFF records as POI's event API decodes them and pushes
+ * cells, shared formulas and names straight into the spreadsheet builder. Only the workbook
+ * globals (formats, string table, names, sheet names) are kept, as a sheetless workbook, so that
+ * formulas can be rendered to text exactly as the object model would.
+ * <p>
+ * The streaming load gives up on content it does not handle (array and table formulas, sheets
+ * other than worksheets, cells out of order, and the global time format settings read by
+ * {@link ExcelXLSLoader}) and returns {@code null}, in which case the caller loads the file the
+ * regular way.
+ */
+final class ExcelXLSRecordLoader extends AbortableHSSFListener
+{
+	private static final String WORKBOOK_ENTRY = "Workbook";
+	private static final short CONTINUE = 0;
+
+	private final ExcelXLSLoader loader;
+	private final SpreadsheetBuilder spreadsheetBuilder = new SpreadsheetBuilder( ComputationMode.EXCEL );
+
+	private int depth = 0;
+	private List<Record> globalRecords;
+	private InternalWorkbook internalWorkbook;
+	private HSSFWorkbook workbook;
+	private HSSFDataFormat dataFormat;
+	private final Map<Short, String> formats = new HashMap<Short, String>();
+	private int sheetIndex = 0;
+
+	private SheetBuilder sheetBuilder;
+	private RowBuilder rowBuilder;
+	private int nextRowIndex;
+	private int nextColumnIndex;
+	private int lastRowIndex;
+	private final Map<Integer, SharedFormulaRecord> sharedFormulas = new HashMap<Integer, SharedFormulaRecord>();
+	private FormulaRecord pendingFormula;
+
+
+	ExcelXLSRecordLoader( ExcelXLSLoader _loader )
+	{
+		this.loader = _loader;
+	}
+
+
+	/**
+	 * Loads the workbook in the given file system.
+	 * 
+	 * @return the loaded spreadsheet, or {@code null} if the file contains something the streaming
+	 *         load does not handle.
+	 */
+	public BaseSpreadsheet loadFrom( POIFSFileSystem _fileSystem ) throws IOException, SpreadsheetException
+	{
+		final InputStream stream;
+		try {
+			stream = _fileSystem.createDocumentInputStream( WORKBOOK_ENTRY );
+		}
+		catch (FileNotFoundException e) {
+			// Older formats name the entry differently; leave them to the object model.
+			return null;
+		}
+		try {
+			final HSSFRequest request = new HSSFRequest();
+			request.addListenerForAllRecords( this );
+			new HSSFEventFactory().abortableProcessEvents( request, stream );
+		}
+		catch (Unsupported e) {
+			return null;
+		}
+		catch (HSSFUserException e) {
+			throw new SpreadsheetException.LoadError( e.getMessage(), e );
+		}
+		finally {
+			stream.close();
+		}
+		if (null == this.workbook || this.sheetIndex != this.internalWorkbook.getNumSheets() || 0 != this.depth) {
+			return null;
+		}
+
+		final BaseSpreadsheet spreadsheet = this.spreadsheetBuilder.getSpreadsheet();
+		loadNames( spreadsheet );
+		return spreadsheet;
+	}
+
+
+	@Override
+	public short abortableProcessRecord( Record _record ) throws HSSFUserException
+	{
+		if (_record instanceof BOFRecord) {
+			beginSubstream( (BOFRecord) _record );
+		}
+		else if (null != this.globalRecords) {
+			this.globalRecords.add( _record );
+			if (_record instanceof EOFRecord) {
+				endGlobals();
+			}
+		}
+		else if (1 == this.depth && null != this.sheetBuilder) {
+			processSheetRecord( _record );
+		}
+		else if (_record instanceof EOFRecord) {
+			this.depth--;
+		}
+		return CONTINUE;
+	}
+
+
+	private void beginSubstream( BOFRecord _bof ) throws HSSFUserException
+	{
+		this.depth++;
+		if (1 != this.depth) {
+			// Embedded charts and the like.
+			return;
+		}
+		if (BOFRecord.TYPE_WORKBOOK == _bof.getType()) {
+			if (null != this.workbook) throw new Unsupported();
+			this.globalRecords = new ArrayList<Record>();
+			this.globalRecords.add( _bof );
+		}
+		else if (BOFRecord.TYPE_WORKSHEET == _bof.getType()) {
+			if (null == this.workbook || this.sheetIndex >= this.internalWorkbook.getNumSheets()) throw new Unsupported();
+			this.sheetBuilder = this.spreadsheetBuilder.beginSheet( this.internalWorkbook.getSheetName( this.sheetIndex++ ) );
+			this.rowBuilder = null;
+			this.nextRowIndex = 0;
+			this.lastRowIndex = -1;
+			this.sharedFormulas.clear();
+		}
+		else {
+			throw new Unsupported();
+		}
+	}
+
+	private void endGlobals() throws HSSFUserException
+	{
+		this.internalWorkbook = InternalWorkbook.createWorkbook( this.globalRecords );
+		this.workbook = HSSFWorkbook.create( this.internalWorkbook );
+		this.dataFormat = this.workbook.createDataFormat();
+		this.globalRecords = null;
+		this.depth--;
+
+		final int numberOfNames = this.internalWorkbook.getNumNames();
+		for (int nameIndex = 0; nameIndex < numberOfNames; nameIndex++) {
+			final String name = this.internalWorkbook.getNameRecord( nameIndex ).getNameText();
+			if ("GlobalTimeFormat".equalsIgnoreCase( name ) || "GlobalTimeZoneName".equalsIgnoreCase( name )) {
+				throw new Unsupported();
+			}
+		}
+	}
+
+	private void endSheet() throws HSSFUserException
+	{
+		flushFormula();
+		endRow();
+		while (this.nextRowIndex <= this.lastRowIndex) {
+			this.sheetBuilder.beginRow();
+			this.sheetBuilder.endRow();
+			this.nextRowIndex++;
+		}
+		this.sheetBuilder.endSheet();
+		this.sheetBuilder = null;
+		this.depth--;
+	}
+
+
+	private void processSheetRecord( Record _record ) throws HSSFUserException
+	{
+		if (null != this.pendingFormula) {
+			// A formula may be followed by the shared formula it belongs to and by its string value.
+			if (_record instanceof SharedFormulaRecord) {
+				final SharedFormulaRecord shared = (SharedFormulaRecord) _record;
+				this.sharedFormulas.put( cellKey( shared.getFirstRow(), shared.getFirstColumn() ), shared );
+				return;
+			}
+			if (_record instanceof StringRecord) {
+				flushFormula( ((StringRecord) _record).getString() );
+				return;
+			}
+			flushFormula();
+		}
+
+		if (_record instanceof EOFRecord) {
+			endSheet();
+		}
+		else if (_record instanceof RowRecord) {
+			this.lastRowIndex = Math.max( this.lastRowIndex, ((RowRecord) _record).getRowNumber() );
+		}
+		else if (_record instanceof FormulaRecord) {
+			this.pendingFormula = (FormulaRecord) _record;
+		}
+		else if (_record instanceof NumberRecord) {
+			final NumberRecord number = (NumberRecord) _record;
+			moveTo( number ).addCellWithConstant( getNumberValue( number.getValue(), number.getXFIndex() ) );
+		}
+		else if (_record instanceof LabelSSTRecord) {
+			final LabelSSTRecord label = (LabelSSTRecord) _record;
+			final String value = this.internalWorkbook.getSSTString( label.getSSTIndex() ).getString();
+			moveTo( label ).addCellWithConstant( value );
+		}
+		else if (_record instanceof LabelRecord) {
+			final LabelRecord label = (LabelRecord) _record;
+			moveTo( label ).addCellWithConstant( label.getValue() );
+		}
+		else if (_record instanceof BoolErrRecord) {
+			final BoolErrRecord boolErr = (BoolErrRecord) _record;
+			if (boolErr.isBoolean()) {
+				moveTo( boolErr ).addCellWithConstant( boolErr.getBooleanValue() );
+			}
+			else {
+				ExcelXLSLoader.addCellWithError( boolErr.getErrorValue(), moveTo( boolErr ) );
+			}
+		}
+		else if (_record instanceof BlankRecord) {
+			moveTo( (BlankRecord) _record ).addEmptyCell();
+		}
+		else if (_record instanceof MulBlankRecord) {
+			final MulBlankRecord blanks = (MulBlankRecord) _record;
+			for (int col = blanks.getFirstColumn(); col <= blanks.getLastColumn(); col++) {
+				moveTo( blanks.getRow(), col ).addEmptyCell();
+			}
+		}
+		else if (_record instanceof ArrayRecord || _record instanceof TableRecord) {
+			throw new Unsupported();
+		}
+	}
+
+	private void flushFormula() throws HSSFUserException
+	{
+		flushFormula( "" );
+	}
+
+	private void flushFormula( String _stringValue ) throws HSSFUserException
+	{
+		final FormulaRecord formula = this.pendingFormula;
+		if (null == formula) return;
+		this.pendingFormula = null;
+
+		final Ptg[] ptgs;
+		final CellReference master = formula.getFormula().getExpReference();
+		if (null == master) {
+			ptgs = formula.getParsedExpression();
+		}
+		else {
+			final SharedFormulaRecord shared = this.sharedFormulas.get( cellKey( master.getRow(), master.getCol() ) );
+			if (null == shared) throw new Unsupported();
+			ptgs = shared.getFormulaTokens( formula );
+		}
+		final String expression = HSSFFormulaParser.toFormulaString( this.workbook, ptgs );
+
+		final RowBuilder rowBuilder = moveTo( formula );
+		rowBuilder.addCellWithExpression( new LazySpreadsheetExpressionParser( expression, CellRefFormat.A1 ) );
+
+		if (this.loader.config.loadAllCellValues) {
+			final int cachedFormulaResultType = formula.getCachedResultType();
+			if (Cell.CELL_TYPE_NUMERIC == cachedFormulaResultType) {
+				rowBuilder.setValue( getNumberValue( formula.getValue(), formula.getXFIndex() ) );
+			}
+			else if (Cell.CELL_TYPE_BOOLEAN == cachedFormulaResultType) {
+				rowBuilder.setValue( formula.getCachedBooleanValue() );
+			}
+			else if (Cell.CELL_TYPE_STRING == cachedFormulaResultType) {
+				rowBuilder.setValue( _stringValue );
+			}
+		}
+	}
+
+	private static Integer cellKey( int _row, int _col )
+	{
+		// .xls sheets have at most 256 columns.
+		return (_row << 8) | _col;
+	}
+
+
+	private RowBuilder moveTo( CellValueRecordInterface _cell ) throws HSSFUserException
+	{
+		return moveTo( _cell.getRow(), _cell.getColumn() );
+	}
+
+	/**
+	 * Opens the row of the given cell, padding with empty rows and cells as the object model
+	 * based loader does.
+	 */
+	private RowBuilder moveTo( int _row, int _col ) throws HSSFUserException
+	{
+		if (null != this.rowBuilder && _row == this.nextRowIndex - 1) {
+			if (_col < this.nextColumnIndex) throw new Unsupported();
+		}
+		else {
+			if (_row < this.nextRowIndex) throw new Unsupported();
+			endRow();
+			while (_row > this.nextRowIndex) {
+				this.sheetBuilder.beginRow();
+				this.sheetBuilder.endRow();
+				this.nextRowIndex++;
+			}
+			this.rowBuilder = this.sheetBuilder.beginRow();
+			this.nextRowIndex++;
+			this.nextColumnIndex = 0;
+		}
+		while (_col > this.nextColumnIndex) {
+			this.rowBuilder.addEmptyCell();
+			this.nextColumnIndex++;
+		}
+		this.nextColumnIndex++;
+		return this.rowBuilder;
+	}
+
+	private void endRow()
+	{
+		if (null != this.rowBuilder) {
+			this.rowBuilder.endRow();
+			this.rowBuilder = null;
+		}
+	}
+
+
+	private Object getNumberValue( double _value, short _xfIndex )
+	{
+		final short formatIndex = this.internalWorkbook.getExFormatAt( _xfIndex ).getFormatIndex();
+		String format = this.formats.get( formatIndex );
+		if (null == format) {
+			format = (-1 == formatIndex) ? "General" : this.dataFormat.getFormat( formatIndex );
+			this.formats.put( formatIndex, format );
+		}
+		return this.loader.getNumberValue( _value, formatIndex, format );
+	}
+
+
+	private void loadNames( BaseSpreadsheet _spreadsheet )
+	{
+		final int numberOfNames = this.internalWorkbook.getNumNames();
+		for (int nameIndex = 0; nameIndex < numberOfNames; nameIndex++) {
+			final NameRecord name = this.internalWorkbook.getNameRecord( nameIndex );
+			if (name.isFunctionName()) continue;
+
+			final Ptg[] definition = name.getNameDefinition();
+			if (definition.length < 1) continue;
+
+			final String cellRangeAddress = HSSFFormulaParser.toFormulaString( this.workbook, definition );
+			ExcelXLSLoader.loadName( name.getNameText(), cellRangeAddress, _spreadsheet );
+		}
+	}
+
+
+	/**
+	 * Aborts the streaming load.
+	 */
+	private static final class Unsupported extends HSSFUserException
+	{
+
+		public Unsupported()
+		{
+			super();
+		}
+
+	}
+
+}
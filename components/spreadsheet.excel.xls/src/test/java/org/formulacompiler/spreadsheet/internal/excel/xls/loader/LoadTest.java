@@ -24,8 +24,10 @@ package org.formulacompiler.spreadsheet.internal.excel.xls.loader;
 
 import java.io.File;
 
+import org.formulacompiler.compiler.internal.Yamlizable;
 import org.formulacompiler.spreadsheet.Spreadsheet;
 import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.spreadsheet.SpreadsheetLoader;
 import org.formulacompiler.spreadsheet.Spreadsheet.Row;
 import org.formulacompiler.spreadsheet.Spreadsheet.Sheet;
 import org.formulacompiler.tests.utils.AbstractSpreadsheetTestCase;
@@ -64,4 +66,19 @@ public class LoadTest extends AbstractSpreadsheetTestCase
 		assertYaml( path, base, spreadsheet, name );
 	}
 
+
+	public void testStreamingLoadMatchesObjectModel() throws Exception
+	{
+		final File path = new File( "src/test/data" );
+		final String[] names = { "LoadTest.xls", "UnicodeTest.xls" };
+		for (final String name : names) {
+			final SpreadsheetLoader.Config config = new SpreadsheetLoader.Config();
+			config.loadAllCellValues = true;
+			final Spreadsheet regular = SpreadsheetCompiler.loadSpreadsheet( new File( path, name ), config );
+			config.streamingEnabled = true;
+			final Spreadsheet streamed = SpreadsheetCompiler.loadSpreadsheet( new File( path, name ), config );
+			assertEquals( name, ((Yamlizable) regular).toYaml(), ((Yamlizable) streamed).toYaml() );
+		}
+	}
+
 }
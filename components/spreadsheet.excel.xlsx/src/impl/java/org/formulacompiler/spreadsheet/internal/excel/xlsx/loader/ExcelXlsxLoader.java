@@ -22,6 +22,7 @@
 
 package org.formulacompiler.spreadsheet.internal.excel.xlsx.loader;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import javax.xml.stream.XMLStreamException;
@@ -64,13 +65,29 @@ public class ExcelXlsxLoader implements SpreadsheetLoader
 		this.config = _config;
 	}
 
+	public Spreadsheet loadFrom( final File _file ) throws IOException, SpreadsheetException
+	{
+		final PackageLoader loader = new PackageLoader( _file );
+		try {
+			return loadFrom( _file.getName(), loader );
+		}
+		finally {
+			loader.close();
+		}
+	}
+
 	public Spreadsheet loadFrom( final String _originalFileName, final InputStream _stream ) throws IOException,
 			SpreadsheetException
 	{
-		PackageLoader loader = new PackageLoader( _stream );
+		return loadFrom( _originalFileName, new PackageLoader( _stream ) );
+	}
+
+	private Spreadsheet loadFrom( final String _originalFileName, final PackageLoader _loader ) throws IOException,
+			SpreadsheetException
+	{
 		try {
 			final String workbook;
-			final InputStream input = loader.getRelationship( "" );
+			final InputStream input = _loader.getRelationship( "" );
 			try {
 				final RelationshipParser parser = new RelationshipParser( input, "" );
 				workbook = parser.findByType( XMLConstants.WORKBOOK_RELATIONSHIP_TYPE );
@@ -81,7 +98,7 @@ public class ExcelXlsxLoader implements SpreadsheetLoader
 				input.close();
 			}
 
-			final WorkbookParser parser = new WorkbookParser( loader, workbook, this.config );
+			final WorkbookParser parser = new WorkbookParser( _loader, workbook, this.config );
 			try {
 				final SpreadsheetImpl spreadsheet = new SpreadsheetImpl();
 				parser.parse( spreadsheet );
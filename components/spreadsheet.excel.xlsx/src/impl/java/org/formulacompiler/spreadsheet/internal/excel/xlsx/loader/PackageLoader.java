@@ -23,10 +23,13 @@
 package org.formulacompiler.spreadsheet.internal.excel.xlsx.loader;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import org.formulacompiler.runtime.New;
@@ -34,34 +37,99 @@ import org.formulacompiler.spreadsheet.internal.excel.xlsx.Relationship;
 
 
 /**
+ * Gives access to the parts of an OOXML package. When constructed from a file, the package is
+ * read with random access and each part is only inflated while it is being parsed. When
+ * constructed from a stream, the parts are read into memory up front, except for binary parts and
+ * parts like drawings and themes which the loader never parses.
+ * 
  * @author Igor Didyuk
  */
 public final class PackageLoader
 {
-	private final Map<String, byte[]> entries = New.hashMap();
+	private static final String[] SKIPPED_FOLDERS = { "/media/", "/embeddings/", "/drawings/", "/charts/",
+			"/theme/", "/printerSettings/", "/activeX/" };
+
+	private final Map<String, byte[]> entries;
+	private final ZipFile zipFile;
 
 	public PackageLoader( final InputStream _stream ) throws IOException
 	{
+		this.entries = New.hashMap();
+		this.zipFile = null;
 		final ZipInputStream zipInputStream = new ZipInputStream( _stream );
 		ZipEntry zipEntry;
 		while ((zipEntry = zipInputStream.getNextEntry()) != null) {
-			final byte[] bytes = IOUtil.readBytes( zipInputStream );
-			this.entries.put( zipEntry.getName(), bytes );
+			final String name = zipEntry.getName();
+			if (isParsed( name )) {
+				final byte[] bytes = IOUtil.readBytes( zipInputStream );
+				this.entries.put( name, bytes );
+			}
+		}
+	}
+
+	public PackageLoader( final File _file ) throws IOException
+	{
+		this.entries = null;
+		this.zipFile = new ZipFile( _file );
+	}
+
+	private static boolean isParsed( final String _entryPath )
+	{
+		if (!_entryPath.endsWith( ".xml" ) && !_entryPath.endsWith( ".rels" )) {
+			return false;
 		}
+		final String path = "/" + _entryPath;
+		for (final String folder : SKIPPED_FOLDERS) {
+			if (path.contains( folder )) {
+				return false;
+			}
+		}
+		return true;
 	}
 
-	public InputStream getEntry( final String _entryPath )
+	public InputStream getEntry( final String _entryPath ) throws IOException
 	{
-		return new ByteArrayInputStream( this.entries.get( _entryPath ) );
+		if (this.zipFile != null) {
+			final ZipEntry zipEntry = this.zipFile.getEntry( _entryPath );
+			if (zipEntry == null) {
+				throw new FileNotFoundException( "Package part " + _entryPath + " is missing" );
+			}
+			return this.zipFile.getInputStream( zipEntry );
+		}
+		return new ByteArrayInputStream( getEntryBytes( _entryPath ) );
 	}
 
-	public byte[] getEntryBytes( final String _entryPath )
+	public byte[] getEntryBytes( final String _entryPath ) throws IOException
 	{
-		return this.entries.get( _entryPath );
+		if (this.zipFile != null) {
+			final InputStream input = getEntry( _entryPath );
+			try {
+				return IOUtil.readBytes( input );
+			}
+			finally {
+				input.close();
+			}
+		}
+		final byte[] bytes = this.entries.get( _entryPath );
+		if (bytes == null) {
+			throw new FileNotFoundException( "Package part " + _entryPath + " is missing" );
+		}
+		return bytes;
 	}
 
-	public InputStream getRelationship( final String _entryPath )
+	public InputStream getRelationship( final String _entryPath ) throws IOException
 	{
 		return getEntry( Relationship.getRelationshipPath( _entryPath ) );
 	}
+
+	/**
+	 * Releases the package file, if any. Streams returned by {@link #getEntry(String)} cannot be
+	 * read any more afterwards.
+	 */
+	public void close() throws IOException
+	{
+		if (this.zipFile != null) {
+			this.zipFile.close();
+		}
+	}
 }
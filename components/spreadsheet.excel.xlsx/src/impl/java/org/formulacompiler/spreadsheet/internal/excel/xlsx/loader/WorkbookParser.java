@@ -53,7 +53,7 @@ final class WorkbookParser extends XmlParser
 	private final SpreadsheetLoader.Config config;
 
 	WorkbookParser( final PackageLoader _loader, final String _entryPath,
-			final SpreadsheetLoader.Config _config ) throws XMLStreamException
+			final SpreadsheetLoader.Config _config ) throws XMLStreamException, IOException
 	{
 		super( _loader.getEntry( _entryPath ) );
 		this.loader = _loader;
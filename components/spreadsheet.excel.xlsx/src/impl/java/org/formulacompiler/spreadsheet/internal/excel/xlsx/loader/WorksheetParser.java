@@ -22,6 +22,7 @@
 
 package org.formulacompiler.spreadsheet.internal.excel.xlsx.loader;
 
+import java.io.IOException;
 import java.util.Map;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
@@ -62,7 +63,7 @@ final class WorksheetParser extends XmlParser
 
 	WorksheetParser( final PackageLoader _loader, final String _entryPath,
 			final StylesheetParser _stylesheet, final SharedStringsParser _sharedStrings,
-			final SpreadsheetLoader.Config _config ) throws XMLStreamException
+			final SpreadsheetLoader.Config _config ) throws XMLStreamException, IOException
 	{
 		super( _loader.getEntry( _entryPath ) );
 		this.stylesheet = _stylesheet;
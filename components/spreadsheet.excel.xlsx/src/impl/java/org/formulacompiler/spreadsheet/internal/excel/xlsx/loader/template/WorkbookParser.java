@@ -43,7 +43,7 @@ final class WorkbookParser extends XmlParser
 
 	private StylesheetParser stylesheet = null;
 
-	WorkbookParser( final PackageLoader _loader, final String _entryPath ) throws XMLStreamException
+	WorkbookParser( final PackageLoader _loader, final String _entryPath ) throws XMLStreamException, IOException
 	{
 		super( _loader.getEntry( _entryPath ) );
 		this.loader = _loader;
@@ -22,6 +22,7 @@
 
 package org.formulacompiler.spreadsheet.internal.excel.xlsx.loader.template;
 
+import java.io.IOException;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.Attribute;
 import javax.xml.stream.events.StartElement;
@@ -37,7 +38,7 @@ final class WorksheetParser extends XmlParser
 {
 	private final StylesheetParser stylesheet;
 
-	WorksheetParser( final PackageLoader _loader, final String _entryPath, final StylesheetParser _stylesheet ) throws XMLStreamException
+	WorksheetParser( final PackageLoader _loader, final String _entryPath, final StylesheetParser _stylesheet ) throws XMLStreamException, IOException
 	{
 		super( _loader.getEntry( _entryPath ) );
 		this.stylesheet = _stylesheet;
@@ -22,11 +22,15 @@
 
 package org.formulacompiler.spreadsheet.internal.excel.xlsx.loader;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.Map;
 
 import org.formulacompiler.compiler.internal.Duration;
 import org.formulacompiler.compiler.internal.LocalDate;
+import org.formulacompiler.compiler.internal.Yamlizable;
 import org.formulacompiler.spreadsheet.Spreadsheet;
 import org.formulacompiler.spreadsheet.Spreadsheet.Cell;
 import org.formulacompiler.spreadsheet.Spreadsheet.Row;
@@ -155,6 +159,19 @@ public class LoadTest extends AbstractSpreadsheetTestCase
 		assertEquals( "#REF!#REF!#REF!", rangeNames.get( "Range2" ).toString() );
 	}
 
+	public void testStreamAndFileLoadAlike() throws Exception
+	{
+		final File dataFile = new File( TEST_FILES_DIR, FILE_NAME + FILE_EXTENSION );
+		final InputStream stream = new BufferedInputStream( new FileInputStream( dataFile ) );
+		try {
+			final Spreadsheet fromStream = SpreadsheetCompiler.loadSpreadsheet( dataFile.getName(), stream );
+			assertEquals( ((Yamlizable) this.spreadsheet).toYaml(), ((Yamlizable) fromStream).toYaml() );
+		}
+		finally {
+			stream.close();
+		}
+	}
+
 	public void testYaml() throws Exception
 	{
 		assertYaml( new File( "src/test/data" ), FILE_NAME, this.spreadsheet, FILE_NAME + FILE_EXTENSION );
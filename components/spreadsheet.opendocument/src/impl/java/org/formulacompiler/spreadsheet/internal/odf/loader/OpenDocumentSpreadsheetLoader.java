@@ -22,10 +22,12 @@
 
 package org.formulacompiler.spreadsheet.internal.odf.loader;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import javax.xml.stream.XMLStreamException;
 
@@ -82,6 +84,21 @@ public class OpenDocumentSpreadsheetLoader implements SpreadsheetLoader
 		throw new SpreadsheetException.LoadError( "<content.xml> is missing in <" + _originalFileName + ">" );
 	}
 
+	public Spreadsheet loadFrom( final File _file ) throws IOException, SpreadsheetException
+	{
+		final ZipFile zipFile = new ZipFile( _file );
+		try {
+			final ZipEntry zipEntry = zipFile.getEntry( "content.xml" );
+			if (zipEntry == null) {
+				throw new SpreadsheetException.LoadError( "<content.xml> is missing in <" + _file.getName() + ">" );
+			}
+			return readContent( _file.getName(), zipFile.getInputStream( zipEntry ) );
+		}
+		finally {
+			zipFile.close();
+		}
+	}
+
 	private Spreadsheet readContent( String _fileName, InputStream _inputStream ) throws SpreadsheetException
 	{
 		final SpreadsheetBuilder spreadsheetBuilder = new SpreadsheetBuilder( ComputationMode.OPEN_OFFICE_CALC );
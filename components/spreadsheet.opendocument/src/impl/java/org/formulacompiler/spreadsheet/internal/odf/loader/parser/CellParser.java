@@ -138,6 +138,10 @@ class CellParser implements ElementListener
 	private void createCell()
 	{
 		final int numberColumnsRepeated = this.tableCell.numberColumnsRepeated;
+		if (this.tableCell.formula == null && getValue() == null) {
+			this.rowBuilder.addEmptyCells( numberColumnsRepeated );
+			return;
+		}
 		for (int i = 0; i < numberColumnsRepeated; i++) {
 			String formula = this.tableCell.formula;
 			if (formula != null) {
@@ -36,6 +36,11 @@ public class CellWithSharedExpression extends CellWithExpression
 		this.baseExpression = _expression;
 	}
 
+	public CellWithExpression getBaseExpression()
+	{
+		return this.baseExpression;
+	}
+
 	@Override
 	public ExpressionNode getExpression() throws SpreadsheetException
 	{
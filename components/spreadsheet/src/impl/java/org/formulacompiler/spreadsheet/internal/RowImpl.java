@@ -24,35 +24,53 @@ package org.formulacompiler.spreadsheet.internal;
 
 import java.util.List;
 
-import org.formulacompiler.runtime.New;
-
 
 public final class RowImpl extends BaseRow
 {
-	private final List<CellInstance> cells;
+	private final SparseList<CellInstance> cells;
 
 	public RowImpl( SheetImpl _sheet )
 	{
 		super( _sheet, _sheet.getRowList().size() );
+		this.cells = new SparseList<CellInstance>();
 		_sheet.getRowList().add( this );
-		this.cells = New.list();
 	}
 
-	public void copy()
+	/**
+	 * Creates a row of a run-length entry of its sheet's row list, as a copy of the repeated row, if
+	 * any. Does not add it to the list.
+	 */
+	RowImpl( SheetImpl _sheet, int _rowIndex, RowImpl _template )
 	{
-		final RowImpl row = new RowImpl( (SheetImpl) getSheet() );
-		for (CellInstance cell : this.cells) {
-			if (cell != null) cell.copyTo( row );
-			else row.getCellList().add( null );
+		super( _sheet, _rowIndex );
+		this.cells = new SparseList<CellInstance>();
+		if (null != _template) {
+			for (CellInstance cell : _template.cells) {
+				if (cell != null) cell.copyTo( this );
+				else this.cells.add( null );
+			}
 		}
 	}
 
+	public void addEmptyCells( int _count )
+	{
+		this.cells.addNulls( _count );
+	}
+
 	@Override
 	public List<CellInstance> getCellList()
 	{
 		return this.cells;
 	}
 
+	boolean hasCells()
+	{
+		for (CellInstance cell : this.cells) {
+			if (cell != null) return true;
+		}
+		return false;
+	}
+
 	void trim()
 	{
 		boolean canRemove = true;
@@ -65,6 +83,7 @@ public final class RowImpl extends BaseRow
 				else canRemove = false;
 			}
 		}
+		this.cells.trimToSize();
 	}
 
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.spreadsheet.internal;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.formulacompiler.runtime.New;
+
+
+/**
+ * The rows of a sheet. Loaders can append runs of empty rows and repeat the last row any number of
+ * times without creating the rows. Such rows are run-length entries which are only created, as
+ * empty rows or as copies of the repeated row, when they are first accessed. So a sheet's cost is
+ * proportional to its distinct content, not its extent, as long as nothing walks all of its rows.
+ * <p>
+ * A loaded sheet may be read from several threads, as the parallel pre-parse does. Since reads
+ * create rows, {@link #get(int)} is synchronized. Loading itself is single-threaded.
+ */
+final class RowList extends AbstractList<RowImpl> implements RandomAccess
+{
+	private final SheetImpl sheet;
+	private final SparseList<RowImpl> rows = new SparseList<RowImpl>();
+	private final List<Repeat> repeats = New.list();
+
+
+	RowList( SheetImpl _sheet )
+	{
+		super();
+		this.sheet = _sheet;
+	}
+
+
+	@Override
+	public int size()
+	{
+		return this.rows.size();
+	}
+
+
+	@Override
+	public synchronized RowImpl get( int _index )
+	{
+		final RowImpl row = this.rows.get( _index );
+		return (null != row) ? row : materialize( _index );
+	}
+
+
+	@Override
+	public boolean add( RowImpl _row )
+	{
+		if (null != _row && _row.getRowIndex() != size()) throw new IllegalArgumentException();
+		return this.rows.add( _row );
+	}
+
+
+	/**
+	 * Appends the given number of empty rows.
+	 */
+	void addEmptyRows( int _count )
+	{
+		addRepeat( _count, null );
+	}
+
+	/**
+	 * Appends the given number of copies of the last row.
+	 */
+	void repeatLastRow( int _count )
+	{
+		if (_count <= 0) return;
+		addRepeat( _count, get( size() - 1 ) );
+	}
+
+	private void addRepeat( int _count, RowImpl _template )
+	{
+		if (_count <= 0) return;
+		this.repeats.add( new Repeat( size(), _count, _template ) );
+		this.rows.addNulls( _count );
+	}
+
+
+	/**
+	 * Removes trailing rows without cells and releases unused capacity.
+	 */
+	void trim()
+	{
+		int newSize = size();
+		while (newSize > 0) {
+			final RowImpl row = this.rows.get( newSize - 1 );
+			if (null != row) {
+				row.trim();
+				if (0 != row.getCellList().size()) break;
+			}
+			else {
+				final Repeat repeat = repeatOf( newSize - 1 );
+				if (null != repeat && null != repeat.template && repeat.template.hasCells()) break;
+			}
+			newSize--;
+		}
+		this.rows.truncate( newSize );
+		while (!this.repeats.isEmpty()) {
+			final Repeat last = this.repeats.get( this.repeats.size() - 1 );
+			if (last.first < newSize) {
+				last.count = Math.min( last.count, newSize - last.first );
+				break;
+			}
+			this.repeats.remove( this.repeats.size() - 1 );
+		}
+		for (int i = 0; i < newSize; i++) {
+			final RowImpl row = this.rows.get( i );
+			if (null != row) row.trim();
+		}
+		this.rows.trimToSize();
+	}
+
+
+	/**
+	 * Passes all rows to the visitor. Runs are passed as such, without creating their rows.
+	 */
+	synchronized void visit( SheetImpl.RowVisitor _visitor )
+	{
+		final int size = size();
+		int index = 0;
+		while (index < size) {
+			final Repeat repeat = repeatOf( index );
+			if (null != repeat) {
+				final int end = Math.min( repeat.first + repeat.count, size );
+				_visitor.visitRun( index, end - index, repeat.template );
+				index = end;
+			}
+			else {
+				_visitor.visitRow( index, this.rows.get( index ) );
+				index++;
+			}
+		}
+	}
+
+
+	private RowImpl materialize( int _index )
+	{
+		final Repeat repeat = repeatOf( _index );
+		if (null == repeat) {
+			// Explicitly added null row.
+			return null;
+		}
+		final RowImpl row = new RowImpl( this.sheet, _index, repeat.template );
+		this.rows.set( _index, row );
+		return row;
+	}
+
+	private Repeat repeatOf( int _index )
+	{
+		final List<Repeat> reps = this.repeats;
+		int lo = 0;
+		int hi = reps.size() - 1;
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			final Repeat rep = reps.get( mid );
+			if (_index < rep.first) hi = mid - 1;
+			else if (_index >= rep.first + rep.count) lo = mid + 1;
+			else return rep;
+		}
+		return null;
+	}
+
+
+	/**
+	 * A run of rows which are copies of the template row, or empty if there is none.
+	 */
+	private static final class Repeat
+	{
+		final int first;
+		int count;
+		final RowImpl template;
+
+		Repeat( int _first, int _count, RowImpl _template )
+		{
+			super();
+			this.first = _first;
+			this.count = _count;
+			this.template = _template;
+		}
+
+	}
+
+}
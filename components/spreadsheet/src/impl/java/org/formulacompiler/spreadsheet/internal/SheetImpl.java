@@ -24,12 +24,10 @@ package org.formulacompiler.spreadsheet.internal;
 
 import java.util.List;
 
-import org.formulacompiler.runtime.New;
-
 
 public final class SheetImpl extends BaseSheet
 {
-	private final List<RowImpl> rows = New.list();
+	private final RowList rows = new RowList( this );
 
 	public SheetImpl( SpreadsheetImpl _spreadsheet )
 	{
@@ -48,18 +46,48 @@ public final class SheetImpl extends BaseSheet
 		return this.rows;
 	}
 
+	/**
+	 * Appends the given number of empty rows. They are only created when accessed.
+	 */
+	public void addEmptyRows( int _count )
+	{
+		this.rows.addEmptyRows( _count );
+	}
+
+	/**
+	 * Appends the given number of copies of the last row. They are only created when accessed.
+	 */
+	public void repeatLastRow( int _count )
+	{
+		this.rows.repeatLastRow( _count );
+	}
+
+	/**
+	 * Passes all rows to the visitor without creating the rows of runs appended by
+	 * {@link #addEmptyRows(int)} and {@link #repeatLastRow(int)}.
+	 */
+	public void visitRows( RowVisitor _visitor )
+	{
+		this.rows.visit( _visitor );
+	}
+
 	void trim()
 	{
-		boolean canRemove = true;
-		for (int i = this.rows.size() - 1; i >= 0; i--) {
-			RowImpl row = this.rows.get( i );
-			row.trim();
-			if (canRemove) {
-				if (row.getCellList().size() == 0) {
-					this.rows.remove( i );
-				}
-				else canRemove = false;
-			}
-		}
+		this.rows.trim();
+	}
+
+
+	public static interface RowVisitor
+	{
+		/**
+		 * Receives a row which is not part of a run; {@code null} if it was added as such.
+		 */
+		void visitRow( int _index, RowImpl _row );
+
+		/**
+		 * Receives a run of rows which are copies of the template row, or empty if there is none.
+		 */
+		void visitRun( int _first, int _count, RowImpl _template );
 	}
+
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.spreadsheet.internal;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+
+/**
+ * List which only stores its non-null elements, together with their indexes in a primitive
+ * array. Rows of large, sparse sheets therefore cost nothing for their empty columns. Lookups
+ * are binary searches, with a fast path for the sequential access patterns of loaders and
+ * iterators.
+ * <p>
+ * Supports appending elements (including runs of {@code null}), replacing elements, and removing
+ * elements.
+ */
+final class SparseList<E> extends AbstractList<E> implements RandomAccess
+{
+	private static final int[] NO_INDEXES = new int[ 0 ];
+	private static final Object[] NO_ELEMENTS = new Object[ 0 ];
+
+	private int[] indexes = NO_INDEXES;
+	private Object[] elements = NO_ELEMENTS;
+	private int count;
+	private int size;
+	private int lastPosition;
+
+
+	@Override
+	public int size()
+	{
+		return this.size;
+	}
+
+
+	@Override
+	@SuppressWarnings( "unchecked" )
+	public E get( int _index )
+	{
+		checkIndex( _index );
+		final int pos = positionOf( _index );
+		return (pos < 0) ? null : (E) this.elements[ pos ];
+	}
+
+
+	@Override
+	public boolean add( E _element )
+	{
+		if (null != _element) {
+			insertAt( this.count, this.size, _element );
+		}
+		this.size++;
+		this.modCount++;
+		return true;
+	}
+
+
+	@Override
+	@SuppressWarnings( "unchecked" )
+	public E set( int _index, E _element )
+	{
+		checkIndex( _index );
+		final int pos = positionOf( _index );
+		if (pos >= 0) {
+			final E old = (E) this.elements[ pos ];
+			if (null != _element) {
+				this.elements[ pos ] = _element;
+			}
+			else {
+				removeAt( pos );
+			}
+			return old;
+		}
+		if (null != _element) {
+			insertAt( -pos - 1, _index, _element );
+		}
+		return null;
+	}
+
+
+	@Override
+	@SuppressWarnings( "unchecked" )
+	public E remove( int _index )
+	{
+		checkIndex( _index );
+		final int pos = positionOf( _index );
+		E old = null;
+		int next = -pos - 1;
+		if (pos >= 0) {
+			old = (E) this.elements[ pos ];
+			removeAt( pos );
+			next = pos;
+		}
+		for (int i = next; i < this.count; i++) {
+			this.indexes[ i ]--;
+		}
+		this.size--;
+		this.modCount++;
+		return old;
+	}
+
+
+	/**
+	 * Appends the given number of {@code null} elements, which cost no storage.
+	 */
+	void addNulls( int _count )
+	{
+		if (_count > 0) {
+			this.size += _count;
+			this.modCount++;
+		}
+	}
+
+
+	/**
+	 * Removes all elements from the given index on.
+	 */
+	void truncate( int _size )
+	{
+		if (_size >= this.size) return;
+		int cnt = this.count;
+		while (cnt > 0 && this.indexes[ cnt - 1 ] >= _size) {
+			this.elements[ --cnt ] = null;
+		}
+		this.count = cnt;
+		this.size = Math.max( _size, 0 );
+		this.modCount++;
+	}
+
+
+	/**
+	 * Releases unused capacity.
+	 */
+	void trimToSize()
+	{
+		if (this.count < this.indexes.length) {
+			resize( this.count );
+		}
+	}
+
+
+	private void checkIndex( int _index )
+	{
+		if (_index < 0 || _index >= this.size) {
+			throw new IndexOutOfBoundsException( "Index: " + _index + ", Size: " + this.size );
+		}
+	}
+
+	/**
+	 * Returns the position of the element with the given index, or {@code -(insertion point) - 1}.
+	 */
+	private int positionOf( int _index )
+	{
+		final int[] idx = this.indexes;
+		final int cnt = this.count;
+		// Reads and writes of the hint need no synchronization. It is verified before use.
+		final int hint = this.lastPosition;
+		if (hint < cnt && idx[ hint ] == _index) {
+			return hint;
+		}
+		if (hint + 1 < cnt && idx[ hint + 1 ] == _index) {
+			this.lastPosition = hint + 1;
+			return hint + 1;
+		}
+		int lo = 0;
+		int hi = cnt - 1;
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			final int midIndex = idx[ mid ];
+			if (midIndex < _index) lo = mid + 1;
+			else if (midIndex > _index) hi = mid - 1;
+			else {
+				this.lastPosition = mid;
+				return mid;
+			}
+		}
+		return -(lo + 1);
+	}
+
+	private void insertAt( int _pos, int _index, Object _element )
+	{
+		if (this.count == this.indexes.length) {
+			resize( Math.max( 4, this.count + (this.count >> 1) ) );
+		}
+		System.arraycopy( this.indexes, _pos, this.indexes, _pos + 1, this.count - _pos );
+		System.arraycopy( this.elements, _pos, this.elements, _pos + 1, this.count - _pos );
+		this.indexes[ _pos ] = _index;
+		this.elements[ _pos ] = _element;
+		this.count++;
+	}
+
+	private void resize( int _capacity )
+	{
+		final int[] newIndexes = new int[ _capacity ];
+		final Object[] newElements = new Object[ _capacity ];
+		System.arraycopy( this.indexes, 0, newIndexes, 0, this.count );
+		System.arraycopy( this.elements, 0, newElements, 0, this.count );
+		this.indexes = newIndexes;
+		this.elements = newElements;
+	}
+
+	private void removeAt( int _pos )
+	{
+		System.arraycopy( this.indexes, _pos + 1, this.indexes, _pos, this.count - _pos - 1 );
+		System.arraycopy( this.elements, _pos + 1, this.elements, _pos, this.count - _pos - 1 );
+		this.count--;
+		this.elements[ this.count ] = null;
+	}
+
+}
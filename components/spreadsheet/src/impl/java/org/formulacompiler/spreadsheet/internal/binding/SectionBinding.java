@@ -32,6 +32,8 @@ import java.util.SortedSet;
 import org.formulacompiler.compiler.CallFrame;
 import org.formulacompiler.compiler.CompilerException;
 import org.formulacompiler.compiler.internal.Util;
+import org.formulacompiler.runtime.IncrementallyResettable;
+import org.formulacompiler.runtime.ParallelComputation;
 import org.formulacompiler.runtime.New;
 import org.formulacompiler.runtime.Resettable;
 import org.formulacompiler.spreadsheet.Orientation;
@@ -302,6 +304,12 @@ public abstract class SectionBinding extends ElementBinding
 			if (Resettable.class.isAssignableFrom( this.outputClass )) {
 				abstractMethods.remove( "reset()V" );
 			}
+			if (IncrementallyResettable.class.isAssignableFrom( this.outputClass )) {
+				abstractMethods.remove( "reset(Ljava/lang/String;)V" );
+			}
+			if (ParallelComputation.class.isAssignableFrom( this.outputClass )) {
+				abstractMethods.remove( "computeAll(Ljava/util/concurrent/Executor;)V" );
+			}
 			for (CallFrame cf : SectionBinding.this.outputs.keySet()) {
 				abstractMethods.remove( Util.nameAndSignatureOf( cf.getMethod() ) );
 			}
@@ -23,18 +23,27 @@
 package org.formulacompiler.spreadsheet.internal.compiler;
 
 import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.concurrent.Executor;
 
 import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.MethodSizeListener;
 import org.formulacompiler.compiler.NumericType;
 import org.formulacompiler.compiler.SaveableEngine;
 import org.formulacompiler.compiler.internal.engine.ModelToEngineCompiler;
 import org.formulacompiler.compiler.internal.engine.ModelToEngineCompilerImpl;
+import org.formulacompiler.compiler.internal.model.CellModel;
 import org.formulacompiler.compiler.internal.model.ComputationModel;
 import org.formulacompiler.runtime.ComputationMode;
 import org.formulacompiler.runtime.EngineException;
+import org.formulacompiler.runtime.New;
 import org.formulacompiler.spreadsheet.ConstantExpressionOptimizationListener;
+import org.formulacompiler.spreadsheet.Spreadsheet;
 import org.formulacompiler.spreadsheet.SpreadsheetBinding;
 import org.formulacompiler.spreadsheet.SpreadsheetToEngineCompiler;
+import org.formulacompiler.spreadsheet.internal.BaseSpreadsheet;
+import org.formulacompiler.spreadsheet.internal.CellIndex;
+import org.formulacompiler.spreadsheet.internal.binding.WorkbookBinding;
 
 public final class SpreadsheetToEngineCompilerImpl implements SpreadsheetToEngineCompiler
 {
@@ -47,6 +56,23 @@ public final class SpreadsheetToEngineCompilerImpl implements SpreadsheetToEngin
 	private final ClassLoader parentClassLoader;
 	private final boolean compileToReadableCode;
 	private final boolean computationListenerEnabled;
+	private final boolean hashedLookupEnabled;
+	private final boolean batchComputationEnabled;
+	private final int parallelFoldThreshold;
+	private final Executor compileExecutor;
+	private final int methodSizeLimit;
+	private final MethodSizeListener methodSizeListener;
+	private final boolean cellProfilingEnabled;
+	private final boolean cellTimingEnabled;
+	private final boolean epochCachingEnabled;
+	private final boolean computationPoolingEnabled;
+	private final boolean commonSubExpressionEliminationEnabled;
+	private final boolean scaledLongFastPathEnabled;
+	private final boolean databaseIndexingEnabled;
+	private final boolean databaseAggregateCachingEnabled;
+	private final boolean tieredCompilationEnabled;
+	private final int memoCacheSize;
+	private final Spreadsheet.Cell[] memoCells;
 	private final ConstantExpressionOptimizationListener constExprOptListener;
 
 
@@ -65,6 +91,23 @@ public final class SpreadsheetToEngineCompilerImpl implements SpreadsheetToEngin
 		this.parentClassLoader = _config.parentClassLoader;
 		this.compileToReadableCode = _config.compileToReadableCode;
 		this.computationListenerEnabled = _config.computationListenerEnabled;
+		this.hashedLookupEnabled = _config.hashedLookupEnabled;
+		this.batchComputationEnabled = _config.batchComputationEnabled;
+		this.parallelFoldThreshold = _config.parallelFoldThreshold;
+		this.compileExecutor = _config.compileExecutor;
+		this.methodSizeLimit = _config.methodSizeLimit;
+		this.methodSizeListener = _config.methodSizeListener;
+		this.cellProfilingEnabled = _config.cellProfilingEnabled;
+		this.cellTimingEnabled = _config.cellTimingEnabled;
+		this.epochCachingEnabled = _config.epochCachingEnabled;
+		this.computationPoolingEnabled = _config.computationPoolingEnabled;
+		this.commonSubExpressionEliminationEnabled = _config.commonSubExpressionEliminationEnabled;
+		this.scaledLongFastPathEnabled = _config.scaledLongFastPathEnabled;
+		this.databaseIndexingEnabled = _config.databaseIndexingEnabled;
+		this.databaseAggregateCachingEnabled = _config.databaseAggregateCachingEnabled;
+		this.tieredCompilationEnabled = _config.tieredCompilationEnabled;
+		this.memoCacheSize = _config.memoCacheSize;
+		this.memoCells = _config.memoCells;
 		this.constExprOptListener = _config.constantExpressionOptimizationListener;
 	}
 
@@ -79,6 +122,11 @@ public final class SpreadsheetToEngineCompilerImpl implements SpreadsheetToEngin
 
 	public SaveableEngine compile() throws CompilerException, EngineException
 	{
+		if (this.compileExecutor != null && this.binding instanceof WorkbookBinding) {
+			final BaseSpreadsheet workbook = ((WorkbookBinding) this.binding).getWorkbook();
+			new ParallelExpressionParser( this.compileExecutor ).parseAll( workbook );
+		}
+
 		final SpreadsheetToModelCompiler cc = new SpreadsheetToModelCompiler( this.binding, this.numericType,
 				this.computationMode, this.compileToReadableCode || this.computationListenerEnabled );
 		ComputationModel cm = cc.compile();
@@ -92,6 +140,24 @@ public final class SpreadsheetToEngineCompilerImpl implements SpreadsheetToEngin
 		ecc.fullCaching = this.fullCaching;
 		ecc.compileToReadableCode = this.compileToReadableCode;
 		ecc.computationListenerEnabled = this.computationListenerEnabled;
+		ecc.hashedLookupEnabled = this.hashedLookupEnabled;
+		ecc.batchComputationEnabled = this.batchComputationEnabled;
+		ecc.parallelFoldThreshold = this.parallelFoldThreshold;
+		ecc.methodSizeLimit = this.methodSizeLimit;
+		ecc.methodSizeListener = this.methodSizeListener;
+		ecc.cellProfilingEnabled = this.cellProfilingEnabled;
+		ecc.cellTimingEnabled = this.cellTimingEnabled;
+		ecc.epochCachingEnabled = this.epochCachingEnabled;
+		ecc.computationPoolingEnabled = this.computationPoolingEnabled;
+		ecc.commonSubExpressionEliminationEnabled = this.commonSubExpressionEliminationEnabled;
+		ecc.scaledLongFastPathEnabled = this.scaledLongFastPathEnabled;
+		ecc.databaseIndexingEnabled = this.databaseIndexingEnabled;
+		ecc.databaseAggregateCachingEnabled = this.databaseAggregateCachingEnabled;
+		ecc.tieredCompilationEnabled = this.tieredCompilationEnabled;
+		ecc.memoCacheSize = this.memoCacheSize;
+		if (this.memoCells != null) {
+			ecc.memoCells = memoCellModels( cc );
+		}
 		if (this.constExprOptListener != null) {
 			ecc.constExprCellListenerSupport = new ConstantExpressionCellListenerSupportImpl( this.constExprOptListener );
 		}
@@ -100,4 +166,16 @@ public final class SpreadsheetToEngineCompilerImpl implements SpreadsheetToEngin
 		return ec.compile();
 	}
 
+	private Collection<CellModel> memoCellModels( SpreadsheetToModelCompiler _compiler )
+	{
+		final Collection<CellModel> result = New.list( this.memoCells.length );
+		for (Spreadsheet.Cell cell : this.memoCells) {
+			final CellModel model = _compiler.getCellModel( (CellIndex) cell );
+			if (null != model) {
+				result.add( model );
+			}
+		}
+		return result;
+	}
+
 }
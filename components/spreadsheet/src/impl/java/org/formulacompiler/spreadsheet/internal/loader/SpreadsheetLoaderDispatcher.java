@@ -22,6 +22,7 @@
 
 package org.formulacompiler.spreadsheet.internal.loader;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
@@ -57,6 +58,18 @@ public final class SpreadsheetLoaderDispatcher implements SpreadsheetLoader
 		throw new SpreadsheetException.UnsupportedFormat( "No loader found for file " + _originalFileName );
 	}
 
+	public Spreadsheet loadFrom( File _file ) throws IOException, SpreadsheetException
+	{
+		final String fileName = _file.getName();
+		for (Factory factory : FACTORIES) {
+			if (factory.canHandle( fileName )) {
+				SpreadsheetLoader loader = factory.newInstance( this.config );
+				return loader.loadFrom( _file );
+			}
+		}
+		throw new SpreadsheetException.UnsupportedFormat( "No loader found for file " + fileName );
+	}
+
 
 	/**
 	 * Interface that must be implemented by spreadsheet file loader factories to be able to
@@ -23,7 +23,6 @@
 package org.formulacompiler.spreadsheet.internal.loader.builder;
 
 import java.text.NumberFormat;
-import java.util.List;
 
 import org.formulacompiler.spreadsheet.internal.CellInstance;
 import org.formulacompiler.spreadsheet.internal.CellWithConstant;
@@ -73,6 +72,13 @@ public class RowBuilder
 		return this;
 	}
 
+	public RowBuilder addEmptyCells( int _count )
+	{
+		this.lastAddedCell = null;
+		this.emptyCells += _count;
+		return this;
+	}
+
 	public RowBuilder applyNumberFormat( NumberFormat _numberFormat )
 	{
 		if (this.lastAddedCell != null) this.lastAddedCell.applyNumberFormat( _numberFormat );
@@ -96,19 +102,16 @@ public class RowBuilder
 		return this.row == null;
 	}
 
-	void copy()
+	void repeat( int _count )
 	{
-		this.row.copy();
+		this.sheetBuilder.getSheet().repeatLastRow( _count );
 	}
 
 	private RowImpl getRow()
 	{
 		if (this.row == null) this.row = new RowImpl( this.sheetBuilder.getSheet() );
 
-		final List<CellInstance> cellList = this.row.getCellList();
-		for (int i = 0; i < this.emptyCells; i++) {
-			cellList.add( null );
-		}
+		this.row.addEmptyCells( this.emptyCells );
 		this.emptyCells = 0;
 
 		return this.row;
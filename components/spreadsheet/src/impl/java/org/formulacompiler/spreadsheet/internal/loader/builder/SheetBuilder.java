@@ -22,7 +22,6 @@
 
 package org.formulacompiler.spreadsheet.internal.loader.builder;
 
-import org.formulacompiler.spreadsheet.internal.RowImpl;
 import org.formulacompiler.spreadsheet.internal.SheetImpl;
 
 /**
@@ -71,7 +70,7 @@ public class SheetBuilder
 			this.emptyRows += numberRowsRepeated;
 		}
 		else {
-			for (int i = 1; i < numberRowsRepeated; i++) this.rowBuilder.copy();
+			this.rowBuilder.repeat( numberRowsRepeated - 1 );
 		}
 
 		this.rowBuilder = null;
@@ -87,9 +86,7 @@ public class SheetBuilder
 
 	SheetImpl getSheet()
 	{
-		for (int i = 0; i < this.emptyRows; i++) {
-			new RowImpl( this.sheet );
-		}
+		this.sheet.addEmptyRows( this.emptyRows );
 		this.emptyRows = 0;
 
 		return this.sheet;
@@ -55,6 +55,12 @@ public class LazySpreadsheetExpressionParser extends AbstractDescribable impleme
 	}
 
 
+	public CellRefFormat getFormat()
+	{
+		return this.format;
+	}
+
+
 	@Override
 	public void describeTo( DescriptionBuilder _to )
 	{
@@ -23,21 +23,24 @@
 package org.formulacompiler.spreadsheet.internal.util;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.concurrent.Executor;
 
 import org.formulacompiler.compiler.CallFrame;
 import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.MethodSizeListener;
 import org.formulacompiler.compiler.NumericType;
 import org.formulacompiler.compiler.SaveableEngine;
+import org.formulacompiler.compiler.internal.engine.TieredEngine;
 import org.formulacompiler.runtime.Computation;
 import org.formulacompiler.runtime.ComputationMode;
 import org.formulacompiler.runtime.EngineException;
 import org.formulacompiler.spreadsheet.ConstantExpressionOptimizationListener;
 import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.EngineCache;
 import org.formulacompiler.spreadsheet.Spreadsheet;
 import org.formulacompiler.spreadsheet.SpreadsheetBinder;
 import org.formulacompiler.spreadsheet.SpreadsheetByNameBinder;
@@ -65,7 +68,25 @@ public class EngineBuilderImpl implements EngineBuilder
 	private ClassLoader parentClassLoaderForEngine = ClassLoader.getSystemClassLoader();
 	private boolean compileToReadableCode = false;
 	private boolean computationListenerEnabled = false;
+	private boolean hashedLookupEnabled = false;
+	private boolean batchComputationEnabled = false;
+	private int parallelFoldThreshold = 0;
+	private Executor compileExecutor;
+	private int methodSizeLimit = 8000;
+	private MethodSizeListener methodSizeListener;
+	private boolean cellProfilingEnabled = false;
+	private boolean cellTimingEnabled = false;
+	private boolean epochCachingEnabled = false;
+	private boolean computationPoolingEnabled = false;
+	private boolean commonSubExpressionEliminationEnabled = false;
+	private boolean scaledLongFastPathEnabled = false;
+	private boolean databaseIndexingEnabled = false;
+	private boolean databaseAggregateCachingEnabled = false;
+	private boolean tieredCompilationEnabled = false;
+	private int memoCacheSize = 0;
+	private Spreadsheet.Cell[] memoCells = null;
 	private ConstantExpressionOptimizationListener constExprOptListener;
+	private EngineCache engineCache;
 
 
 	public static final class Factory implements EngineBuilder.Factory
@@ -132,7 +153,7 @@ public class EngineBuilderImpl implements EngineBuilder
 	{
 		final SpreadsheetLoader.Config cfg = new SpreadsheetLoader.Config();
 		cfg.loadAllCellValues = this.loadAllCellValues;
-		setSpreadsheet( SpreadsheetCompiler.loadSpreadsheet( _file.getName(), new FileInputStream( _file ), cfg ) );
+		setSpreadsheet( SpreadsheetCompiler.loadSpreadsheet( _file, cfg ) );
 	}
 
 
@@ -441,6 +462,192 @@ public class EngineBuilderImpl implements EngineBuilder
 	}
 
 
+	public boolean getHashedLookupEnabled()
+	{
+		return this.hashedLookupEnabled;
+	}
+
+	public void setHashedLookupEnabled( boolean _enabled )
+	{
+		this.hashedLookupEnabled = _enabled;
+	}
+
+
+	public boolean getBatchComputationEnabled()
+	{
+		return this.batchComputationEnabled;
+	}
+
+	public void setBatchComputationEnabled( boolean _enabled )
+	{
+		this.batchComputationEnabled = _enabled;
+	}
+
+
+	public int getParallelFoldThreshold()
+	{
+		return this.parallelFoldThreshold;
+	}
+
+	public void setParallelFoldThreshold( int _threshold )
+	{
+		this.parallelFoldThreshold = _threshold;
+	}
+
+
+	public Executor getCompileExecutor()
+	{
+		return this.compileExecutor;
+	}
+
+	public void setCompileExecutor( Executor _executor )
+	{
+		this.compileExecutor = _executor;
+	}
+
+
+	public int getMethodSizeLimit()
+	{
+		return this.methodSizeLimit;
+	}
+
+	public void setMethodSizeLimit( int _limit )
+	{
+		this.methodSizeLimit = _limit;
+	}
+
+
+	public MethodSizeListener getMethodSizeListener()
+	{
+		return this.methodSizeListener;
+	}
+
+	public void setMethodSizeListener( MethodSizeListener _listener )
+	{
+		this.methodSizeListener = _listener;
+	}
+
+
+	public boolean getCellProfilingEnabled()
+	{
+		return this.cellProfilingEnabled;
+	}
+
+	public void setCellProfilingEnabled( boolean _enabled )
+	{
+		this.cellProfilingEnabled = _enabled;
+	}
+
+
+	public boolean getCellTimingEnabled()
+	{
+		return this.cellTimingEnabled;
+	}
+
+	public void setCellTimingEnabled( boolean _enabled )
+	{
+		this.cellTimingEnabled = _enabled;
+	}
+
+
+	public boolean getEpochCachingEnabled()
+	{
+		return this.epochCachingEnabled;
+	}
+
+	public void setEpochCachingEnabled( boolean _enabled )
+	{
+		this.epochCachingEnabled = _enabled;
+	}
+
+
+	public boolean getComputationPoolingEnabled()
+	{
+		return this.computationPoolingEnabled;
+	}
+
+	public void setComputationPoolingEnabled( boolean _enabled )
+	{
+		this.computationPoolingEnabled = _enabled;
+	}
+
+
+	public boolean getCommonSubExpressionEliminationEnabled()
+	{
+		return this.commonSubExpressionEliminationEnabled;
+	}
+
+	public void setCommonSubExpressionEliminationEnabled( boolean _enabled )
+	{
+		this.commonSubExpressionEliminationEnabled = _enabled;
+	}
+
+
+	public boolean getScaledLongFastPathEnabled()
+	{
+		return this.scaledLongFastPathEnabled;
+	}
+
+	public void setScaledLongFastPathEnabled( boolean _enabled )
+	{
+		this.scaledLongFastPathEnabled = _enabled;
+	}
+
+
+	public boolean getDatabaseIndexingEnabled()
+	{
+		return this.databaseIndexingEnabled;
+	}
+
+	public void setDatabaseIndexingEnabled( boolean _enabled )
+	{
+		this.databaseIndexingEnabled = _enabled;
+	}
+
+
+	public boolean getDatabaseAggregateCachingEnabled()
+	{
+		return this.databaseAggregateCachingEnabled;
+	}
+
+	public void setDatabaseAggregateCachingEnabled( boolean _enabled )
+	{
+		this.databaseAggregateCachingEnabled = _enabled;
+	}
+
+
+	public boolean getTieredCompilationEnabled()
+	{
+		return this.tieredCompilationEnabled;
+	}
+
+	public void setTieredCompilationEnabled( boolean _enabled )
+	{
+		this.tieredCompilationEnabled = _enabled;
+	}
+
+
+	public int getMemoCacheSize()
+	{
+		return this.memoCacheSize;
+	}
+
+	public void setMemoCacheSize( int _size )
+	{
+		this.memoCacheSize = _size;
+	}
+
+	public Spreadsheet.Cell[] getMemoCells()
+	{
+		return this.memoCells;
+	}
+
+	public void setMemoCells( Spreadsheet.Cell... _cells )
+	{
+		this.memoCells = _cells;
+	}
+
+
 	public ConstantExpressionOptimizationListener getConstantExpressionOptimizationListener()
 	{
 		return this.constExprOptListener;
@@ -452,6 +659,17 @@ public class EngineBuilderImpl implements EngineBuilder
 	}
 
 
+	public EngineCache getEngineCache()
+	{
+		return this.engineCache;
+	}
+
+	public void setEngineCache( EngineCache _cache )
+	{
+		this.engineCache = _cache;
+	}
+
+
 	public SaveableEngine compile() throws CompilerException, EngineException
 	{
 		final SpreadsheetToEngineCompiler.Config cfg = new SpreadsheetToEngineCompiler.Config();
@@ -464,8 +682,58 @@ public class EngineBuilderImpl implements EngineBuilder
 		cfg.parentClassLoader = this.parentClassLoaderForEngine;
 		cfg.compileToReadableCode = this.compileToReadableCode;
 		cfg.computationListenerEnabled = this.computationListenerEnabled;
+		cfg.hashedLookupEnabled = this.hashedLookupEnabled;
+		cfg.batchComputationEnabled = this.batchComputationEnabled;
+		cfg.parallelFoldThreshold = this.parallelFoldThreshold;
+		cfg.compileExecutor = this.compileExecutor;
+		cfg.methodSizeLimit = this.methodSizeLimit;
+		cfg.methodSizeListener = this.methodSizeListener;
+		cfg.cellProfilingEnabled = this.cellProfilingEnabled;
+		cfg.cellTimingEnabled = this.cellTimingEnabled;
+		cfg.epochCachingEnabled = this.epochCachingEnabled;
+		cfg.computationPoolingEnabled = this.computationPoolingEnabled;
+		cfg.commonSubExpressionEliminationEnabled = this.commonSubExpressionEliminationEnabled;
+		cfg.scaledLongFastPathEnabled = this.scaledLongFastPathEnabled;
+		cfg.databaseIndexingEnabled = this.databaseIndexingEnabled;
+		cfg.databaseAggregateCachingEnabled = this.databaseAggregateCachingEnabled;
+		cfg.tieredCompilationEnabled = this.tieredCompilationEnabled;
+		cfg.memoCacheSize = this.memoCacheSize;
+		cfg.memoCells = this.memoCells;
 		cfg.constantExpressionOptimizationListener = this.constExprOptListener;
-		return SpreadsheetCompiler.newSpreadsheetCompiler( cfg ).compile();
+		if (null == this.engineCache) {
+			return SpreadsheetCompiler.newSpreadsheetCompiler( cfg ).compile();
+		}
+		return compileCached( cfg );
+	}
+
+	public SaveableEngine awaitCompiledEngine( SaveableEngine _engine ) throws CompilerException, EngineException
+	{
+		if (_engine instanceof TieredEngine) {
+			return ((TieredEngine) _engine).getCompiledEngine();
+		}
+		return _engine;
+	}
+
+	private SaveableEngine compileCached( SpreadsheetToEngineCompiler.Config _cfg ) throws CompilerException,
+			EngineException
+	{
+		try {
+			final String key = EngineCacheKey.keyOf( _cfg );
+			if (null != key) {
+				final SaveableEngine cached = this.engineCache.get( key, _cfg.parentClassLoader );
+				if (null != cached) {
+					return cached;
+				}
+			}
+			final SaveableEngine engine = SpreadsheetCompiler.newSpreadsheetCompiler( _cfg ).compile();
+			if (null != key) {
+				this.engineCache.put( key, engine );
+			}
+			return engine;
+		}
+		catch (IOException e) {
+			throw new EngineException( e );
+		}
 	}
 
 
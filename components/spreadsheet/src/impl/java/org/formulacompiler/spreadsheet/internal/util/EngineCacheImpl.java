@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.spreadsheet.internal.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.formulacompiler.compiler.SaveableEngine;
+import org.formulacompiler.compiler.internal.engine.SaveableEngineLoader;
+import org.formulacompiler.runtime.EngineException;
+import org.formulacompiler.runtime.EngineLoader;
+import org.formulacompiler.runtime.ImplementationLocator;
+import org.formulacompiler.spreadsheet.EngineCache;
+
+
+/**
+ * Stores each engine as {@code <key>.jar} in the cache directory. New files are written to a
+ * temporary file first and then renamed, so concurrent readers never see partial engines. The last
+ * modification time of a file doubles as its last use time for eviction.
+ */
+public class EngineCacheImpl implements EngineCache
+{
+	private static final String SUFFIX = ".jar";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final File directory;
+	private final long maximumSize;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+
+	public EngineCacheImpl( Config _config )
+	{
+		super();
+		_config.validate();
+		this.directory = _config.directory;
+		this.maximumSize = _config.maximumSize;
+	}
+
+
+	public static final class Factory implements EngineCache.Factory
+	{
+		public EngineCache newInstance( Config _config )
+		{
+			return new EngineCacheImpl( _config );
+		}
+	}
+
+
+	public SaveableEngine get( String _key, ClassLoader _parentClassLoader ) throws IOException, EngineException
+	{
+		final File file = fileFor( _key );
+		final InputStream stream;
+		try {
+			stream = new BufferedInputStream( new FileInputStream( file ) );
+		}
+		catch (IOException e) {
+			this.misses.incrementAndGet();
+			return null;
+		}
+		final SaveableEngine engine;
+		try {
+			final EngineLoader.Config cfg = new EngineLoader.Config();
+			cfg.parentClassLoader = _parentClassLoader;
+			engine = LOADER_FACTORY.newInstance( cfg ).loadEngineData( stream );
+		}
+		catch (Exception e) {
+			// Truncated or corrupt entry, so drop it and let the engine be compiled again.
+			stream.close();
+			file.delete();
+			this.misses.incrementAndGet();
+			return null;
+		}
+		finally {
+			stream.close();
+		}
+		file.setLastModified( System.currentTimeMillis() );
+		this.hits.incrementAndGet();
+		return engine;
+	}
+
+	private static final SaveableEngineLoader.Factory LOADER_FACTORY = ImplementationLocator
+			.getInstance( SaveableEngineLoader.Factory.class );
+
+
+	public void put( String _key, SaveableEngine _engine ) throws IOException
+	{
+		if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+			throw new IOException( "Cannot create engine cache directory " + this.directory );
+		}
+		final File temp = File.createTempFile( _key, TEMP_SUFFIX, this.directory );
+		try {
+			final OutputStream stream = new BufferedOutputStream( new FileOutputStream( temp ) );
+			try {
+				_engine.saveTo( stream );
+			}
+			finally {
+				stream.close();
+			}
+			final File file = fileFor( _key );
+			if (!temp.renameTo( file )) {
+				// Some platforms cannot rename onto an existing file.
+				file.delete();
+				if (!temp.renameTo( file )) {
+					throw new IOException( "Cannot store cached engine " + file );
+				}
+			}
+		}
+		finally {
+			temp.delete();
+		}
+		evict();
+	}
+
+
+	public void clear() throws IOException
+	{
+		for (File file : cachedFiles()) {
+			file.delete();
+		}
+	}
+
+
+	public long getHitCount()
+	{
+		return this.hits.get();
+	}
+
+	public long getMissCount()
+	{
+		return this.misses.get();
+	}
+
+
+	private File fileFor( String _key )
+	{
+		return new File( this.directory, _key + SUFFIX );
+	}
+
+	private File[] cachedFiles()
+	{
+		final File[] files = this.directory.listFiles( new FileFilter()
+		{
+			public boolean accept( File _file )
+			{
+				return _file.isFile() && _file.getName().endsWith( SUFFIX );
+			}
+		} );
+		return (null == files) ? new File[ 0 ] : files;
+	}
+
+	private void evict()
+	{
+		final File[] files = cachedFiles();
+		long size = 0;
+		for (File file : files) {
+			size += file.length();
+		}
+		if (size <= this.maximumSize) return;
+
+		final long[] lastUsed = new long[ files.length ];
+		for (int i = 0; i < files.length; i++) {
+			lastUsed[ i ] = files[ i ].lastModified();
+		}
+		final Integer[] order = new Integer[ files.length ];
+		for (int i = 0; i < order.length; i++) {
+			order[ i ] = i;
+		}
+		Arrays.sort( order, new Comparator<Integer>()
+		{
+			public int compare( Integer _a, Integer _b )
+			{
+				final long a = lastUsed[ _a ], b = lastUsed[ _b ];
+				return (a < b) ? -1 : (a > b) ? +1 : 0;
+			}
+		} );
+		for (int i = 0; i < order.length && size > this.maximumSize; i++) {
+			final File file = files[ order[ i ] ];
+			final long length = file.length();
+			if (file.delete()) {
+				size -= length;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.spreadsheet.internal.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.formulacompiler.compiler.FormulaCompiler;
+import org.formulacompiler.runtime.New;
+import org.formulacompiler.runtime.internal.Environment;
+import org.formulacompiler.spreadsheet.SpreadsheetToEngineCompiler;
+import org.formulacompiler.spreadsheet.internal.CellInstance;
+import org.formulacompiler.spreadsheet.internal.CellRange;
+import org.formulacompiler.spreadsheet.internal.CellWithLazilyParsedExpression;
+import org.formulacompiler.spreadsheet.internal.CellWithSharedExpression;
+import org.formulacompiler.spreadsheet.internal.LazyExpressionParser;
+import org.formulacompiler.spreadsheet.internal.RowImpl;
+import org.formulacompiler.spreadsheet.internal.SheetImpl;
+import org.formulacompiler.spreadsheet.internal.SpreadsheetImpl;
+import org.formulacompiler.spreadsheet.internal.binding.ElementBinding;
+import org.formulacompiler.spreadsheet.internal.binding.SectionBinding;
+import org.formulacompiler.spreadsheet.internal.binding.SubSectionBinding;
+import org.formulacompiler.spreadsheet.internal.binding.WorkbookBinding;
+import org.formulacompiler.spreadsheet.internal.parser.LazySpreadsheetExpressionParser;
+
+
+/**
+ * Computes the key under which an {@link org.formulacompiler.spreadsheet.EngineCache} stores the
+ * engine compiled from a given compiler configuration. The key is a SHA-1 hash over the content of
+ * the spreadsheet model (not the raw file bytes, so spreadsheets built in code are covered too), the
+ * bindings, the compile-time environment, the bytecode of all bound classes, all public options in
+ * {@link SpreadsheetToEngineCompiler.Config}, and the compiler version.
+ * <p>
+ * Lazily parsed formulas contribute their source text, so computing the key parses nothing. Runs
+ * of repeated or empty rows contribute their extent and template row, so no rows are created.
+ */
+final class EngineCacheKey
+{
+	private static final String FORMAT_VERSION = "1";
+
+	private final MessageDigest digest;
+
+
+	private EngineCacheKey()
+	{
+		try {
+			this.digest = MessageDigest.getInstance( "SHA-1" );
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException( e );
+		}
+	}
+
+
+	/**
+	 * Returns the key for the given configuration, or {@code null} if an engine compiled from it
+	 * must not be cached.
+	 */
+	static String keyOf( SpreadsheetToEngineCompiler.Config _config ) throws IOException
+	{
+		if (null != _config.constantExpressionOptimizationListener) return null;
+		if (null != _config.methodSizeListener) return null;
+		if (!(_config.binding instanceof WorkbookBinding)) return null;
+		final WorkbookBinding binding = (WorkbookBinding) _config.binding;
+		if (!(binding.getWorkbook() instanceof SpreadsheetImpl)) return null;
+		if (null != binding.getEnvironment().computationListener()) return null;
+
+		final EngineCacheKey key = new EngineCacheKey();
+		key.add( "format", FORMAT_VERSION );
+		key.add( "compiler", compilerVersion() );
+		key.addSpreadsheet( (SpreadsheetImpl) binding.getWorkbook() );
+		key.addEnvironment( binding.getEnvironment() );
+		key.addSection( binding.getRoot() );
+		key.addBindings( "input", binding.getInputs().values() );
+		key.addBindings( "output", binding.getOutputs() );
+		key.addConfig( _config );
+		return key.toHex();
+	}
+
+
+	private static String compilerVersion() throws IOException
+	{
+		final String version = FormulaCompiler.class.getPackage().getImplementationVersion();
+		if (null != version) {
+			return version;
+		}
+		// Development build without a manifest, so use the time the compiler was built.
+		final URL url = FormulaCompiler.class.getResource( "FormulaCompiler.class" );
+		return (null == url) ? "" : Long.toString( url.openConnection().getLastModified() );
+	}
+
+
+	private void addSpreadsheet( SpreadsheetImpl _spreadsheet )
+	{
+		add( "mode", String.valueOf( _spreadsheet.getComputationMode() ) );
+		for (SheetImpl sheet : _spreadsheet.getSheetList()) {
+			add( "sheet", sheet.getName() );
+			sheet.visitRows( new SheetImpl.RowVisitor()
+			{
+				public void visitRow( int _index, RowImpl _row )
+				{
+					add( "row", Integer.toString( _index ) );
+					if (null != _row) {
+						addCells( _row );
+					}
+				}
+
+				public void visitRun( int _first, int _count, RowImpl _template )
+				{
+					add( "run", _first + "+" + _count );
+					add( "template", (null == _template) ? "" : Integer.toString( _template.getRowIndex() ) );
+				}
+			} );
+		}
+		final Map<String, CellRange> names = New.sortedMap();
+		names.putAll( _spreadsheet.getModelRangeNames() );
+		for (Map.Entry<String, CellRange> name : names.entrySet()) {
+			add( "name", name.getKey() );
+			add( "ref", name.getValue().toString() );
+		}
+	}
+
+	private void addCells( RowImpl _row )
+	{
+		final List<CellInstance> cells = _row.getCellList();
+		for (int i = 0; i < cells.size(); i++) {
+			final CellInstance cell = cells.get( i );
+			if (null == cell) continue;
+			add( "column", Integer.toString( i ) );
+			if (cell instanceof CellWithLazilyParsedExpression) {
+				final LazyExpressionParser parser = ((CellWithLazilyParsedExpression) cell).getExpressionParser();
+				add( "parser", parser.getClass().getName() );
+				if (parser instanceof LazySpreadsheetExpressionParser) {
+					add( "format", String.valueOf( ((LazySpreadsheetExpressionParser) parser).getFormat() ) );
+				}
+				add( "source", parser.getSource() );
+				add( "value", String.valueOf( cell.getValue() ) );
+			}
+			else if (cell instanceof CellWithSharedExpression) {
+				add( "shared", ((CellWithSharedExpression) cell).getBaseExpression().getCellIndex().toString() );
+				add( "value", String.valueOf( cell.getValue() ) );
+			}
+			else {
+				// Constants, errors, and expressions built in code; none of them needs parsing.
+				add( "cell", cell.toYaml() );
+			}
+		}
+	}
+
+
+	private void addEnvironment( Environment _env )
+	{
+		add( "locale", _env.locale().toString() );
+		add( "timeZone", _env.timeZone().getID() );
+		add( "charset", _env.charset().name() );
+		add( "decimalSeparator", String.valueOf( _env.decimalFormatSymbols().getDecimalSeparator() ) );
+		add( "groupingSeparator", String.valueOf( _env.decimalFormatSymbols().getGroupingSeparator() ) );
+		add( "minusSign", String.valueOf( _env.decimalFormatSymbols().getMinusSign() ) );
+	}
+
+
+	private void addSection( SectionBinding _section ) throws IOException
+	{
+		add( "section", _section.toString() );
+		add( "orientation", String.valueOf( _section.getOrientation() ) );
+		addClass( _section.getInputClass() );
+		addClass( _section.getOutputClass() );
+		if (_section instanceof SubSectionBinding) {
+			add( "implements", String.valueOf( ((SubSectionBinding) _section).getCallToImplement() ) );
+		}
+		for (SubSectionBinding sub : _section.getSections()) {
+			addSection( sub );
+		}
+	}
+
+
+	private void addBindings( String _kind, Iterable<? extends ElementBinding> _bindings )
+	{
+		final Set<String> sorted = New.sortedSet();
+		for (ElementBinding binding : _bindings) {
+			sorted.add( binding.toString() );
+		}
+		for (String binding : sorted) {
+			add( _kind, binding );
+		}
+	}
+
+
+	private void addConfig( SpreadsheetToEngineCompiler.Config _config ) throws IOException
+	{
+		final Field[] fields = _config.getClass().getFields();
+		Arrays.sort( fields, new Comparator<Field>()
+		{
+			public int compare( Field _a, Field _b )
+			{
+				return _a.getName().compareTo( _b.getName() );
+			}
+		} );
+		for (Field field : fields) {
+			if (Modifier.isStatic( field.getModifiers() )) continue;
+			final String name = field.getName();
+			// These do not affect the compiled engine.
+			if (name.equals( "binding" ) || name.equals( "parentClassLoader" ) || name.equals( "compileExecutor" )) continue;
+			final Object value;
+			try {
+				value = field.get( _config );
+			}
+			catch (IllegalAccessException e) {
+				throw new IllegalStateException( e );
+			}
+			if (value instanceof Class) {
+				addClass( (Class) value );
+			}
+			else if (value instanceof Object[]) {
+				for (Object elt : (Object[]) value) {
+					add( name, String.valueOf( elt ) );
+				}
+			}
+			else {
+				add( name, String.valueOf( value ) );
+			}
+		}
+	}
+
+
+	/**
+	 * Adds the bytecode of the given class and its superclasses, so changes to bound classes
+	 * invalidate cached engines.
+	 */
+	private void addClass( Class _class ) throws IOException
+	{
+		final List<Class> classes = New.list();
+		Class cls = _class;
+		while (null != cls && Object.class != cls) {
+			classes.add( cls );
+			for (Class intf : cls.getInterfaces()) {
+				classes.add( intf );
+			}
+			cls = cls.getSuperclass();
+		}
+		for (Class c : classes) {
+			add( "class", c.getName() );
+			final String resource = "/" + c.getName().replace( '.', '/' ) + ".class";
+			final InputStream stream = c.getResourceAsStream( resource );
+			if (null != stream) {
+				try {
+					final byte[] buffer = new byte[ 4096 ];
+					int read;
+					while ((read = stream.read( buffer )) > 0) {
+						this.digest.update( buffer, 0, read );
+					}
+				}
+				finally {
+					stream.close();
+				}
+			}
+		}
+	}
+
+
+	private void add( String _name, String _value )
+	{
+		update( _name );
+		update( _value );
+	}
+
+	private void update( String _value )
+	{
+		try {
+			final byte[] bytes = _value.getBytes( "UTF-8" );
+			this.digest.update( Integer.toString( bytes.length ).getBytes( "UTF-8" ) );
+			this.digest.update( (byte) ':' );
+			this.digest.update( bytes );
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException( e );
+		}
+	}
+
+
+	private String toHex()
+	{
+		final byte[] hash = this.digest.digest();
+		final StringBuilder result = new StringBuilder( hash.length * 2 );
+		for (byte b : hash) {
+			result.append( Character.forDigit( (b >> 4) & 0xf, 16 ) );
+			result.append( Character.forDigit( b & 0xf, 16 ) );
+		}
+		return result.toString();
+	}
+
+}
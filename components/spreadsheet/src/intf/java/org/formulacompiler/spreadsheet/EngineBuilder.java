@@ -26,10 +26,12 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
 
 import org.formulacompiler.compiler.CallFrame;
 import org.formulacompiler.compiler.CompilerException;
 import org.formulacompiler.compiler.FormulaCompiler;
+import org.formulacompiler.compiler.MethodSizeListener;
 import org.formulacompiler.compiler.NumericType;
 import org.formulacompiler.compiler.SaveableEngine;
 import org.formulacompiler.runtime.Computation;
@@ -464,6 +466,351 @@ public interface EngineBuilder
 	void setComputationListenerEnabled( boolean _enabled );
 
 
+	/**
+	 * Controls whether AFC should compile exact-match lookups (MATCH with match type 0, and the
+	 * LOOKUP, HLOOKUP and VLOOKUP functions based on it) to use a hashed index instead of a linear
+	 * scan.
+	 *
+	 * @return {@code true} if exact-match lookups will use a hashed index. The default is
+	 *         {@code false}.
+	 * @see SpreadsheetToEngineCompiler.Config#hashedLookupEnabled
+	 */
+	boolean getHashedLookupEnabled();
+
+	/**
+	 * Controls whether AFC should compile exact-match lookups (MATCH with match type 0, and the
+	 * LOOKUP, HLOOKUP and VLOOKUP functions based on it) to use a hashed index instead of a linear
+	 * scan. Worthwhile for large lookup ranges that are consulted often. Constant ranges are
+	 * indexed once per engine, ranges containing inputs once per computation.
+	 *
+	 * @param _enabled if {@code true} then exact-match lookups will use a hashed index. The default
+	 *           is {@code false}.
+	 * @see SpreadsheetToEngineCompiler.Config#hashedLookupEnabled
+	 */
+	void setHashedLookupEnabled( boolean _enabled );
+
+
+	/**
+	 * Controls whether the compiled computation factory implements
+	 * {@link org.formulacompiler.runtime.BatchComputationFactory}.
+	 *
+	 * @return {@code true} if the factory supports batch computation. The default is {@code false}.
+	 * @see SpreadsheetToEngineCompiler.Config#batchComputationEnabled
+	 */
+	boolean getBatchComputationEnabled();
+
+	/**
+	 * Controls whether the compiled computation factory implements
+	 * {@link org.formulacompiler.runtime.BatchComputationFactory}, which computes many rows of input
+	 * values given column-wise in arrays using a single reused computation. Only supported for
+	 * spreadsheets without repeating sections whose inputs are bound to parameterless methods of the
+	 * input type.
+	 *
+	 * @param _enabled if {@code true} then the factory supports batch computation. The default is
+	 *          {@code false}.
+	 * @see SpreadsheetToEngineCompiler.Config#batchComputationEnabled
+	 */
+	void setBatchComputationEnabled( boolean _enabled );
+
+
+	/**
+	 * Returns the minimum number of repeating section elements at which aggregations over them are
+	 * split across several threads.
+	 *
+	 * @return the threshold; {@code 0} if parallel folds are disabled, which is the default.
+	 * @see SpreadsheetToEngineCompiler.Config#parallelFoldThreshold
+	 */
+	int getParallelFoldThreshold();
+
+	/**
+	 * Sets the minimum number of repeating section elements at which aggregations like {@code SUM},
+	 * {@code PRODUCT}, {@code MIN}, or {@code MAX} over them are split into chunks which are folded
+	 * concurrently by a shared pool of daemon threads. The partial results are then combined in the
+	 * calling thread. Only aggregations whose elements neither reference outer sections nor use
+	 * volatile functions like {@code NOW()} are folded in parallel, and only if computation listeners
+	 * and cell profiling are disabled. Input getters of the repeating sections are then called
+	 * concurrently, so they must be thread-safe.
+	 *
+	 * @param _threshold is the minimum number of section elements; {@code 0} disables parallel folds,
+	 *          which is the default.
+	 * @see SpreadsheetToEngineCompiler.Config#parallelFoldThreshold
+	 */
+	void setParallelFoldThreshold( int _threshold );
+
+
+	/**
+	 * Returns the executor used to parse the expressions of a loaded spreadsheet concurrently, if any.
+	 * 
+	 * @see SpreadsheetToEngineCompiler.Config#compileExecutor
+	 */
+	Executor getCompileExecutor();
+
+	/**
+	 * Sets an executor on which {@link #compile()} parses the expressions of a loaded spreadsheet
+	 * concurrently. Parsing is the largest part of compiling large loaded spreadsheets. The compiled
+	 * engine does not depend on this setting. The executor is not shut down by the builder.
+	 * 
+	 * @param _executor is the executor to use; {@code null} parses on the compiling thread (the
+	 *           default).
+	 * 
+	 * @see SpreadsheetToEngineCompiler.Config#compileExecutor
+	 */
+	void setCompileExecutor( Executor _executor );
+
+
+	/**
+	 * Returns the bytecode size in bytes above which the compiler splits generated methods.
+	 *
+	 * @return the limit; {@code 0} if methods are not split.
+	 * @see SpreadsheetToEngineCompiler.Config#methodSizeLimit
+	 */
+	int getMethodSizeLimit();
+
+	/**
+	 * Sets the bytecode size in bytes above which the compiler splits generated methods. Large cell
+	 * expressions are then compiled into several smaller methods, so the JVM can still compile them
+	 * to native code. HotSpot, for example, only interprets methods of more than 8000 bytes of
+	 * bytecode. The compiler estimates sizes from the expressions, so some methods may still exceed
+	 * the limit. These are reported to the {@link #setMethodSizeListener(MethodSizeListener) method
+	 * size listener}, if any.
+	 *
+	 * @param _limit is the limit in bytes; {@code 0} disables splitting. The default is {@code 8000}.
+	 * @see SpreadsheetToEngineCompiler.Config#methodSizeLimit
+	 */
+	void setMethodSizeLimit( int _limit );
+
+
+	/**
+	 * Returns the listener that is told about generated methods exceeding the method size limit, if any.
+	 *
+	 * @see SpreadsheetToEngineCompiler.Config#methodSizeListener
+	 */
+	MethodSizeListener getMethodSizeListener();
+
+	/**
+	 * Sets a listener that is told about every generated method whose bytecode still exceeds the
+	 * {@link #setMethodSizeLimit(int) method size limit} after splitting. Engines are not cached while
+	 * such a listener is set.
+	 *
+	 * @param _listener is the listener; may be {@code null}.
+	 * @see SpreadsheetToEngineCompiler.Config#methodSizeListener
+	 */
+	void setMethodSizeListener( MethodSizeListener _listener );
+
+
+	/**
+	 * Controls whether the compiled computations count cell evaluations and computations.
+	 *
+	 * @return {@code true} if computations will implement
+	 *         {@link org.formulacompiler.runtime.ProfiledComputation}. The default is {@code false}.
+	 * @see SpreadsheetToEngineCompiler.Config#cellProfilingEnabled
+	 */
+	boolean getCellProfilingEnabled();
+
+	/**
+	 * Controls whether the compiled computations count cell evaluations and computations.
+	 *
+	 * @param _enabled {@code true} to make computations implement
+	 *          {@link org.formulacompiler.runtime.ProfiledComputation}.
+	 * @see SpreadsheetToEngineCompiler.Config#cellProfilingEnabled
+	 */
+	void setCellProfilingEnabled( boolean _enabled );
+
+
+	/**
+	 * Controls whether profiled computations also accumulate the time spent computing each cell.
+	 *
+	 * @return {@code true} if cell computation times will be measured. The default is {@code false}.
+	 * @see SpreadsheetToEngineCompiler.Config#cellTimingEnabled
+	 */
+	boolean getCellTimingEnabled();
+
+	/**
+	 * Controls whether profiled computations also accumulate the time spent computing each cell.
+	 * Implies {@link #setCellProfilingEnabled(boolean)}.
+	 *
+	 * @param _enabled {@code true} to measure cell computation times.
+	 * @see SpreadsheetToEngineCompiler.Config#cellTimingEnabled
+	 */
+	void setCellTimingEnabled( boolean _enabled );
+
+
+	/**
+	 * Controls whether resetting a computation starts a new cache epoch instead of clearing a flag
+	 * per cached cell.
+	 *
+	 * @return {@code true} if computations use epoch caching. The default is {@code false}.
+	 * @see SpreadsheetToEngineCompiler.Config#epochCachingEnabled
+	 */
+	boolean getEpochCachingEnabled();
+
+	/**
+	 * Controls whether resetting a computation starts a new cache epoch instead of clearing a flag
+	 * per cached cell.
+	 *
+	 * @param _enabled {@code true} to make computations use epoch caching.
+	 * @see SpreadsheetToEngineCompiler.Config#epochCachingEnabled
+	 */
+	void setEpochCachingEnabled( boolean _enabled );
+
+
+	/**
+	 * Controls whether the compiled computation factory implements
+	 * {@link org.formulacompiler.runtime.PooledComputationFactory}.
+	 *
+	 * @return {@code true} if the factory pools computations. The default is {@code false}.
+	 * @see SpreadsheetToEngineCompiler.Config#computationPoolingEnabled
+	 */
+	boolean getComputationPoolingEnabled();
+
+	/**
+	 * Controls whether the compiled computation factory implements
+	 * {@link org.formulacompiler.runtime.PooledComputationFactory}.
+	 *
+	 * @param _enabled {@code true} to make the factory pool computations.
+	 * @see SpreadsheetToEngineCompiler.Config#computationPoolingEnabled
+	 */
+	void setComputationPoolingEnabled( boolean _enabled );
+
+
+	/**
+	 * Controls whether AFC hoists subexpressions repeated across cells into intermediate values of
+	 * their own.
+	 *
+	 * @return {@code true} if repeated subexpressions will be hoisted. The default is {@code false}.
+	 * @see SpreadsheetToEngineCompiler.Config#commonSubExpressionEliminationEnabled
+	 */
+	boolean getCommonSubExpressionEliminationEnabled();
+
+	/**
+	 * Controls whether AFC hoists subexpressions repeated across cells into intermediate values of
+	 * their own. This pays off mainly with {@link #setFullCaching(boolean)}, where each such value is
+	 * then computed just once per computation.
+	 *
+	 * @param _enabled {@code true} to hoist repeated subexpressions.
+	 * @see SpreadsheetToEngineCompiler.Config#commonSubExpressionEliminationEnabled
+	 */
+	void setCommonSubExpressionEliminationEnabled( boolean _enabled );
+
+
+	/**
+	 * Tells whether engines using a scaled {@link java.math.BigDecimal} numeric type compute with
+	 * scaled longs while the values fit.
+	 *
+	 * @return {@code true} if the scaled long fast path is enabled. The default is {@code false}.
+	 * @see SpreadsheetToEngineCompiler.Config#scaledLongFastPathEnabled
+	 */
+	boolean getScaledLongFastPathEnabled();
+
+	/**
+	 * Makes engines using a scaled {@link java.math.BigDecimal} numeric type compute with scaled longs
+	 * while the values fit, falling back to {@link java.math.BigDecimal} when an operation overflows.
+	 * Results are unchanged. Models the fast path cannot handle exactly are compiled as usual.
+	 *
+	 * @param _enabled {@code true} to enable the scaled long fast path.
+	 * @see SpreadsheetToEngineCompiler.Config#scaledLongFastPathEnabled
+	 */
+	void setScaledLongFastPathEnabled( boolean _enabled );
+
+
+	/**
+	 * Tells whether database functions with an equality criterion on a table column use a hashed index
+	 * over that column.
+	 *
+	 * @return whether database indexing is enabled.
+	 * @see SpreadsheetToEngineCompiler.Config#databaseIndexingEnabled
+	 */
+	boolean getDatabaseIndexingEnabled();
+
+	/**
+	 * Makes database functions like {@code DSUM} with an equality criterion on a table column look up the
+	 * matching rows in a hashed index over that column instead of testing every row.
+	 *
+	 * @param _enabled whether to enable database indexing.
+	 * @see SpreadsheetToEngineCompiler.Config#databaseIndexingEnabled
+	 */
+	void setDatabaseIndexingEnabled( boolean _enabled );
+
+
+	/**
+	 * Tells whether sums and counts over tables with a single equality criterion are computed for all keys
+	 * in one pass.
+	 *
+	 * @return whether database aggregate caching is enabled.
+	 * @see SpreadsheetToEngineCompiler.Config#databaseAggregateCachingEnabled
+	 */
+	boolean getDatabaseAggregateCachingEnabled();
+
+	/**
+	 * Makes {@code SUMIF}, {@code COUNTIF}, {@code DSUM} and {@code DCOUNT} with a single equality
+	 * criterion share their sums or counts per key, so repeated keys become lookups.
+	 *
+	 * @param _enabled whether to enable database aggregate caching.
+	 * @see SpreadsheetToEngineCompiler.Config#databaseAggregateCachingEnabled
+	 */
+	void setDatabaseAggregateCachingEnabled( boolean _enabled );
+
+
+	/**
+	 * Tells whether the compiled engine interprets computations while it is compiled in the background.
+	 *
+	 * @return whether tiered compilation is enabled.
+	 * @see SpreadsheetToEngineCompiler.Config#tieredCompilationEnabled
+	 */
+	boolean getTieredCompilationEnabled();
+
+	/**
+	 * Makes {@link #compile()} return right after optimizing the model, with an engine that interprets
+	 * computations until it has been compiled to byte code in the background. So {@link #compile()} no
+	 * longer reports errors of the byte code compiler; use
+	 * {@link #awaitCompiledEngine(SaveableEngine)} to get them.
+	 *
+	 * @param _enabled whether to enable tiered compilation.
+	 * @see SpreadsheetToEngineCompiler.Config#tieredCompilationEnabled
+	 */
+	void setTieredCompilationEnabled( boolean _enabled );
+
+
+	/**
+	 * Returns how many values of expensive cells the computation factories of the compiled engine keep
+	 * across computations.
+	 *
+	 * @return the memo cache size; 0 if memoization is disabled.
+	 * @see SpreadsheetToEngineCompiler.Config#memoCacheSize
+	 */
+	int getMemoCacheSize();
+
+	/**
+	 * Makes the computation factories of the compiled engine keep the values of expensive cells across
+	 * computations, keyed by the values of the inputs they depend on.
+	 *
+	 * @param _size is the maximum number of values kept per computation factory; 0 disables
+	 *           memoization.
+	 * @see SpreadsheetToEngineCompiler.Config#memoCacheSize
+	 */
+	void setMemoCacheSize( int _size );
+
+	/**
+	 * Returns the cells to memoize, if designated.
+	 *
+	 * @return the cells; {@code null} if expensive cells are memoized.
+	 * @see SpreadsheetToEngineCompiler.Config#memoCells
+	 */
+	Spreadsheet.Cell[] getMemoCells();
+
+	/**
+	 * Designates the cells whose values the computation factories keep if
+	 * {@link #setMemoCacheSize(int) memoization} is enabled, instead of cells with expensive
+	 * expressions. Get them by name using {@link Spreadsheet#getCell(String)}, or by address using
+	 * {@link Spreadsheet#getCellA1(String)}.
+	 *
+	 * @param _cells are the cells to memoize; {@code null} memoizes cells with expensive expressions
+	 *           (the default).
+	 * @see SpreadsheetToEngineCompiler.Config#memoCells
+	 */
+	void setMemoCells( Spreadsheet.Cell... _cells );
+
+
 	/**
 	 * Returns a listener that receives notifications about events during compilation process, if any.
 	 *
@@ -479,6 +826,27 @@ public interface EngineBuilder
 	void setConstantExpressionOptimizationListener( ConstantExpressionOptimizationListener _listener );
 
 
+	/**
+	 * Returns the persistent cache of compiled engines used by {@link #compile()}, if any.
+	 * 
+	 * @see #setEngineCache(EngineCache)
+	 */
+	EngineCache getEngineCache();
+
+	/**
+	 * Sets a persistent cache of compiled engines. If set, {@link #compile()} returns the engine
+	 * cached for the same spreadsheet, bindings, options, and compiler version, if there is one, and
+	 * caches newly compiled engines otherwise. Engines compiled with a
+	 * {@link #setConstantExpressionOptimizationListener(ConstantExpressionOptimizationListener)
+	 * constant expression optimization listener} are never cached.
+	 * 
+	 * @param _cache is the cache to use; {@code null} disables caching (the default).
+	 * 
+	 * @see SpreadsheetCompiler#newEngineCache(File)
+	 */
+	void setEngineCache( EngineCache _cache );
+
+
 	/**
 	 * Compiles an executable computation engine from the inputs to this builder. In particular, you
 	 * must have loaded a spreadsheet, set the input and output types, or the factory type, and bound
@@ -487,6 +855,12 @@ public interface EngineBuilder
 	 * <p>
 	 * See the <a target="_top" href="{@docRoot}/../tutorial/basics.htm">tutorial</a> for details.
 	 * 
+	 * <p>
+	 * With {@link #setTieredCompilationEnabled(boolean) tiered compilation}, this returns before the
+	 * model has been compiled to byte code, so it no longer validates the model fully. Errors of the
+	 * byte code compiler, like unsupported functions, are then reported by
+	 * {@link #awaitCompiledEngine(SaveableEngine)}.
+	 * 
 	 * @return the compiled engine, ready to be used immediately, or saved to persistent storage for
 	 *         later use.
 	 * 
@@ -503,6 +877,20 @@ public interface EngineBuilder
 	 */
 	public SaveableEngine compile() throws CompilerException, EngineException;
 
+	/**
+	 * Waits until an engine returned by {@link #compile()} has been compiled to byte code, and returns
+	 * the compiled engine. This only waits for engines compiled in the background, as with
+	 * {@link #setTieredCompilationEnabled(boolean) tiered compilation}; other engines are returned as
+	 * they are.
+	 * 
+	 * @param _engine is the engine returned by {@link #compile()}.
+	 * @return the compiled engine.
+	 * 
+	 * @throws CompilerException if the background compilation failed.
+	 * @throws EngineException
+	 */
+	public SaveableEngine awaitCompiledEngine( SaveableEngine _engine ) throws CompilerException, EngineException;
+
 
 	/**
 	 * Factory interface for
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.spreadsheet;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.formulacompiler.compiler.SaveableEngine;
+import org.formulacompiler.runtime.EngineException;
+
+
+/**
+ * Persistent cache of compiled engines in a local directory. When an {@link EngineBuilder} has an
+ * engine cache, {@link EngineBuilder#compile()} first looks up an engine compiled earlier from the
+ * same spreadsheet content, bindings, options, and compiler version, and only compiles if there is
+ * none. Cached engines are stored as .jar files like {@link SaveableEngine#saveTo(java.io.OutputStream)}
+ * writes them. When the files exceed the cache's maximum size, the least recently used ones are
+ * deleted.
+ * <p>
+ * A cache can be shared by several engine builders and threads.
+ * <p>
+ * <em>This interface is an API only. Do not implement it yourself.</em>
+ * 
+ * @see SpreadsheetCompiler#newEngineCache(EngineCache.Config)
+ * @see EngineBuilder#setEngineCache(EngineCache)
+ */
+public interface EngineCache
+{
+
+	/**
+	 * Configuration data for new instances of {@link EngineCache}.
+	 */
+	public static class Config
+	{
+
+		/**
+		 * The directory holding the cached engines. It is created if it does not exist.
+		 */
+		public File directory;
+
+		/**
+		 * The maximum total size of the cached engine files, in bytes.
+		 */
+		public long maximumSize = 64L * 1024 * 1024;
+
+		/**
+		 * Validates the configuration.
+		 * 
+		 * @throws IllegalArgumentException
+		 */
+		public void validate()
+		{
+			if (this.directory == null) throw new IllegalArgumentException( "directory is null" );
+			if (this.maximumSize < 0) throw new IllegalArgumentException( "maximumSize is negative" );
+		}
+
+	}
+
+
+	/**
+	 * Returns the engine cached under the given key, or {@code null} if there is none. An entry which
+	 * cannot be loaded, for instance because it is truncated, is deleted and treated as missing.
+	 * Counts as a hit or a miss.
+	 * 
+	 * @param _key is the key computed by the engine builder.
+	 * @param _parentClassLoader is the parent class loader for the loaded engine.
+	 */
+	SaveableEngine get( String _key, ClassLoader _parentClassLoader ) throws IOException, EngineException;
+
+	/**
+	 * Stores an engine under the given key, then deletes the least recently used engines if the cache
+	 * exceeds its maximum size.
+	 */
+	void put( String _key, SaveableEngine _engine ) throws IOException;
+
+	/**
+	 * Deletes all cached engines.
+	 */
+	void clear() throws IOException;
+
+
+	/**
+	 * Returns the number of calls to {@link #get(String, ClassLoader)} which returned an engine.
+	 */
+	long getHitCount();
+
+	/**
+	 * Returns the number of calls to {@link #get(String, ClassLoader)} which returned {@code null}.
+	 */
+	long getMissCount();
+
+
+	/**
+	 * Factory interface for
+	 * {@link org.formulacompiler.runtime.ImplementationLocator#getInstance(Class)}.
+	 */
+	public static interface Factory
+	{
+		/**
+		 * Factory method.
+		 */
+		EngineCache newInstance( Config _config );
+	}
+
+}
@@ -82,7 +82,7 @@ public class SpreadsheetCompiler extends FormulaCompiler
 	public static Spreadsheet loadSpreadsheet( File _file ) throws FileNotFoundException, IOException,
 			SpreadsheetException
 	{
-		return loadSpreadsheet( _file.getName(), new FileInputStream( _file ) );
+		return loadSpreadsheet( _file, null );
 	}
 
 	/**
@@ -99,7 +99,8 @@ public class SpreadsheetCompiler extends FormulaCompiler
 	public static Spreadsheet loadSpreadsheet( File _file, SpreadsheetLoader.Config _config )
 			throws FileNotFoundException, IOException, SpreadsheetException
 	{
-		return loadSpreadsheet( _file.getName(), new FileInputStream( _file ), _config );
+		final SpreadsheetLoader.Config cfg = (_config == null) ? new SpreadsheetLoader.Config() : _config;
+		return LOADER_FACTORY.newInstance( cfg ).loadFrom( _file );
 	}
 
 	/**
@@ -222,6 +223,39 @@ public class SpreadsheetCompiler extends FormulaCompiler
 			.getInstance( SpreadsheetSaver.Factory.class );
 
 
+	/**
+	 * Returns a new persistent cache of compiled engines in the given directory.
+	 * 
+	 * @param _directory see {@link org.formulacompiler.spreadsheet.EngineCache.Config#directory}.
+	 * @return the new instance.
+	 * 
+	 * @see EngineBuilder#setEngineCache(EngineCache)
+	 */
+	public static EngineCache newEngineCache( File _directory )
+	{
+		final EngineCache.Config cfg = new EngineCache.Config();
+		cfg.directory = _directory;
+		return newEngineCache( cfg );
+	}
+
+	/**
+	 * Returns a new persistent cache of compiled engines.
+	 * 
+	 * @param _config contains the configuration for the new instance.
+	 * @return the new instance.
+	 * 
+	 * @see EngineBuilder#setEngineCache(EngineCache)
+	 */
+	public static EngineCache newEngineCache( EngineCache.Config _config )
+	{
+		_config.validate();
+		return ENGINE_CACHE_FACTORY.newInstance( _config );
+	}
+
+	private static final EngineCache.Factory ENGINE_CACHE_FACTORY = ImplementationLocator
+			.getInstance( EngineCache.Factory.class );
+
+
 	/**
 	 * Returns a new instance of a spreadsheet binder, which is used to associate input and output
 	 * cells of a spreadsheet with Java methods.
@@ -22,6 +22,7 @@
 
 package org.formulacompiler.spreadsheet;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -50,6 +51,15 @@ public interface SpreadsheetLoader
 		 */
 		public boolean loadAllCellValues = false;
 
+		/**
+		 * Makes loaders which support it read the file as a stream of records and push its cells
+		 * straight into the spreadsheet model, without first building the file format's own object
+		 * model of the whole workbook. This needs considerably less memory for large files. When a
+		 * loader meets content its streaming path does not handle, it quietly falls back to the
+		 * regular load. Currently only the .xls loader streams.
+		 */
+		public boolean streamingEnabled = false;
+
 		/**
 		 * Validates the configuration.
 		 * 
@@ -77,6 +87,19 @@ public interface SpreadsheetLoader
 	public Spreadsheet loadFrom( String _originalFileName, InputStream _stream ) throws IOException,
 			SpreadsheetException;
 
+	/**
+	 * Loads a spreadsheet file into an AFC spreadsheet model. The loader to use is determined by the
+	 * file name, as for {@link #loadFrom(String, InputStream)}. Loaders for zipped formats like
+	 * .xlsx access the file randomly and only read the parts of it they need, so this uses less
+	 * memory than loading from a stream.
+	 * 
+	 * @param _file is the spreadsheet file.
+	 * @return The spreadsheet model loaded from the file.
+	 * @throws IOException when there is any proplem accessing the file. May also throw runtime
+	 *            exceptions when there are problems in file.
+	 */
+	public Spreadsheet loadFrom( File _file ) throws IOException, SpreadsheetException;
+
 
 	/**
 	 * Factory interface for
@@ -23,9 +23,11 @@
 package org.formulacompiler.spreadsheet;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
 
 import org.formulacompiler.compiler.CompilerException;
 import org.formulacompiler.compiler.FormulaCompiler;
+import org.formulacompiler.compiler.MethodSizeListener;
 import org.formulacompiler.compiler.NumericType;
 import org.formulacompiler.compiler.SaveableEngine;
 import org.formulacompiler.compiler.Validation;
@@ -114,6 +116,143 @@ public interface SpreadsheetToEngineCompiler
 		 */
 		public boolean computationListenerEnabled = false;
 
+		/**
+		 * Controls whether exact-match lookups (MATCH with match type 0, and the LOOKUP, HLOOKUP and
+		 * VLOOKUP functions based on it) use a hashed index instead of a linear scan. The index is
+		 * built once per engine for constant ranges, and once per computation for ranges containing
+		 * inputs.
+		 */
+		public boolean hashedLookupEnabled = false;
+
+		/**
+		 * Controls whether the compiled computation factory implements
+		 * {@link org.formulacompiler.runtime.BatchComputationFactory}.
+		 */
+		public boolean batchComputationEnabled = false;
+
+		/**
+		 * Minimum number of repeating section elements at which aggregations over them are folded
+		 * concurrently; {@code 0} disables parallel folds.
+		 */
+		public int parallelFoldThreshold = 0;
+
+		/**
+		 * Executor on which the expressions of a loaded spreadsheet are parsed concurrently before
+		 * compilation; {@code null} parses them on the compiling thread, as they are needed. The
+		 * compiled engine is the same either way.
+		 */
+		public Executor compileExecutor = null;
+
+		/**
+		 * Bytecode size in bytes above which generated methods are split into several smaller ones;
+		 * {@code 0} disables splitting.
+		 */
+		public int methodSizeLimit = 8000;
+
+		/**
+		 * Is told about generated methods exceeding {@link #methodSizeLimit}.
+		 */
+		public MethodSizeListener methodSizeListener = null;
+
+		/**
+		 * Controls whether the compiled computations count, per cell, how often the cell was
+		 * evaluated and how often its value actually had to be computed. Profiled computations implement
+		 * {@link org.formulacompiler.runtime.ProfiledComputation}.
+		 */
+		public boolean cellProfilingEnabled = false;
+
+		/**
+		 * Controls whether profiled computations also accumulate the time spent computing each cell.
+		 * Implies {@link #cellProfilingEnabled}. Reading the clock is not free, so expect timed engines
+		 * to run noticeably slower.
+		 */
+		public boolean cellTimingEnabled = false;
+
+		/**
+		 * Controls how {@link org.formulacompiler.runtime.Resettable#reset()} invalidates the cached
+		 * values of a fully caching computation. Normally, it clears a flag per cached cell. With epoch
+		 * caching, each cached value records the epoch it was computed in, and {@code reset()} just starts
+		 * a new epoch. This makes resetting cost independent of the number of cached cells, at the expense
+		 * of a {@code long} instead of a {@code boolean} per cached cell.
+		 */
+		public boolean epochCachingEnabled = false;
+
+		/**
+		 * Controls whether the compiled computation factory implements
+		 * {@link org.formulacompiler.runtime.PooledComputationFactory}, which reuses released computations
+		 * instead of allocating new ones. Requires an output class without a constructor taking the inputs.
+		 */
+		public boolean computationPoolingEnabled = false;
+
+		/**
+		 * Controls whether AFC hoists subexpressions repeated across cells, like {@code $B$2*(1+$C$3)^2}
+		 * in several formulas, into intermediate values of their own. With {@link #fullCaching}, each
+		 * such value is then computed just once per computation.
+		 */
+		public boolean commonSubExpressionEliminationEnabled = false;
+
+		/**
+		 * Makes engines using a scaled {@link java.math.BigDecimal} numeric type with {@code ROUND_HALF_UP}
+		 * compute with scaled {@code long} values as long as they fit, falling back to {@link java.math.BigDecimal}
+		 * only when an operation overflows. Results are the same as without the fast path. Only scales from 1
+		 * to 18 and models without repeating sections using basic arithmetic, comparisons, {@code IF},
+		 * logical functions, and sums qualify; other models are compiled as usual.
+		 */
+		public boolean scaledLongFastPathEnabled = false;
+
+		/**
+		 * Makes database functions like {@code DSUM} with an equality criterion on a table column look up the
+		 * matching rows in a hashed index over that column instead of testing every row. The index is built
+		 * once per computation (once per engine for constant columns) and shared by all database functions
+		 * over the same table column. Only tables in the function's own section, and without repeating
+		 * sections, are indexed; other database functions still test every row.
+		 */
+		public boolean databaseIndexingEnabled = false;
+
+		/**
+		 * Makes {@code SUMIF}, {@code COUNTIF}, {@code DSUM} and {@code DCOUNT} with a single equality
+		 * criterion share their sums or counts per key, grouping the rows by a hashed index over the
+		 * criterion's column (see {@link #databaseIndexingEnabled}). The sum or count for a key is
+		 * computed at most once per computation, from the rows with that key only, and shared by all
+		 * functions over the same columns, so repeated keys become lookups. Other database functions over
+		 * indexable tables use the index.
+		 */
+		public boolean databaseAggregateCachingEnabled = false;
+
+		/**
+		 * Makes the compiler return right after optimizing the model, with an engine that interprets
+		 * computations until it has been compiled to byte code on a background thread. New computations are
+		 * then made by the compiled engine. Outputs the interpreter cannot compute, like ones depending on
+		 * the current time or raising errors, wait for the compiled engine, as does saving the engine.
+		 * Errors of the byte code compiler, like unsupported functions, are not reported by the compiler,
+		 * but by {@link EngineBuilder#awaitCompiledEngine(SaveableEngine)}, and new computations of an
+		 * engine that failed to compile throw an {@link IllegalStateException}. The model is compiled
+		 * right away as usual if it has sections, if the output type is not an interface, if inputs or
+		 * outputs are not numbers or strings, if the numeric type is based on {@code long}, or if a
+		 * factory type, computation listeners, profiling, batch computation, computation pooling or
+		 * memoization are requested.
+		 */
+		public boolean tieredCompilationEnabled = false;
+
+		/**
+		 * Number of values of expensive cells each computation factory keeps across the computations it
+		 * makes, keyed by the values of the input cells they depend on. When the cache is full, the least
+		 * recently used values are dropped. Cells qualify if they are among {@link #memoCells}, or by
+		 * default if they call {@code IRR}, {@code XIRR} or {@code RATE}, or fold or reference at least
+		 * 100 values; and if their value is determined by input cells of the root section alone.
+		 * Factories then implement
+		 * {@link org.formulacompiler.runtime.MemoizingComputationFactory}, which reports hits and misses.
+		 * Zero, the default, disables memoization, as do computation listeners.
+		 */
+		public int memoCacheSize = 0;
+
+		/**
+		 * The cells to memoize if {@link #memoCacheSize} is set. Cells whose value is not determined by
+		 * input cells of the root section alone, or which no output depends on, are not memoized.
+		 * {@code null}, the default, memoizes cells with expensive expressions.
+		 */
+		public Spreadsheet.Cell[] memoCells = null;
+
 		/**
 		 * Allows to receive notifications about events during compilation process.
 		 */
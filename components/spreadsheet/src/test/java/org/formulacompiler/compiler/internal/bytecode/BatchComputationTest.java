@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.compiler.internal.bytecode;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.Operator;
+import org.formulacompiler.runtime.BatchComputationFactory;
+import org.formulacompiler.runtime.ColumnarBatch;
+import org.formulacompiler.runtime.ComputationFactory;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.Spreadsheet;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.spreadsheet.SpreadsheetBinder.Section;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder.CellRef;
+
+import junit.framework.TestCase;
+
+
+public class BatchComputationTest extends TestCase
+{
+
+	public void testInputInterface() throws Exception
+	{
+		assertBatch( newFactory( Input.class ) );
+	}
+
+	public void testInputClass() throws Exception
+	{
+		assertBatch( newFactory( InputClass.class ) );
+	}
+
+	public void testMatchesSingleComputations() throws Exception
+	{
+		final ComputationFactory factory = newFactory( Input.class );
+		final double[] as = { 1, 2, 3, -4 };
+		final String[] bs = { "x", "yy", "", "zzzz" };
+		final double[] sums = new double[ as.length ];
+		final String[] texts = new String[ as.length ];
+		((BatchComputationFactory) factory).computeBatch( new ColumnarBatch( as.length ).setInputColumn( "getA", as )
+				.setInputColumn( "getB", bs ).setOutputColumn( "getSum", sums ).setOutputColumn( "getText", texts ) );
+		for (int i = 0; i < as.length; i++) {
+			final InputClass input = new InputClass();
+			input.a = as[ i ];
+			input.b = bs[ i ];
+			final Output output = (Output) factory.newComputation( input );
+			assertEquals( output.getSum(), sums[ i ], 0 );
+			assertEquals( output.getText(), texts[ i ] );
+		}
+	}
+
+	public void testMissingInputColumn() throws Exception
+	{
+		final BatchComputationFactory factory = (BatchComputationFactory) newFactory( Input.class );
+		try {
+			factory.computeBatch( new ColumnarBatch( 1 ).setInputColumn( "getA", new double[ 1 ] ) );
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			assertEquals( "No input column given for getB().", e.getMessage() );
+		}
+	}
+
+	public void testFinalInputClassIsRejected() throws Exception
+	{
+		try {
+			newFactory( FinalInputClass.class );
+			fail();
+		}
+		catch (CompilerException.BatchNotSupported e) {
+			// expected
+		}
+	}
+
+
+	private void assertBatch( ComputationFactory _factory )
+	{
+		final int n = 1000;
+		final double[] as = new double[ n ];
+		final String[] bs = new String[ n ];
+		for (int i = 0; i < n; i++) {
+			as[ i ] = i;
+			bs[ i ] = Integer.toString( i );
+		}
+		final double[] sums = new double[ n ];
+		final String[] texts = new String[ n ];
+		final ColumnarBatch batch = new ColumnarBatch( n );
+		batch.setInputColumn( "getA", as ).setInputColumn( "getB", bs );
+		batch.setOutputColumn( "getSum", sums ).setOutputColumn( "getText", texts );
+		((BatchComputationFactory) _factory).computeBatch( batch );
+		for (int i = 0; i < n; i++) {
+			assertEquals( i * 2 + i * 2 * 3, sums[ i ], 0 );
+			assertEquals( Integer.toString( i ) + Integer.toString( i ), texts[ i ] );
+		}
+	}
+
+
+	private ComputationFactory newFactory( Class _inputClass ) throws Exception
+	{
+		final SpreadsheetBuilder bld = SpreadsheetCompiler.newSpreadsheetBuilder();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "InputA" );
+		final CellRef a = bld.currentCell();
+		bld.newCell( bld.cst( "b" ) );
+		bld.nameCell( "InputB" );
+		final CellRef b = bld.currentCell();
+		bld.newCell( bld.op( Operator.TIMES, bld.ref( a ), bld.ref( bld.cst( 2 ) ) ) );
+		final CellRef c = bld.currentCell();
+		bld.newCell( bld.op( Operator.PLUS, bld.ref( c ), bld.op( Operator.TIMES, bld.ref( c ),
+				bld.ref( bld.cst( 3 ) ) ) ) );
+		bld.nameCell( "OutputSum" );
+		bld.newCell( bld.op( Operator.CONCAT, bld.ref( b ), bld.ref( b ) ) );
+		bld.nameCell( "OutputText" );
+
+		final Spreadsheet sht = bld.getSpreadsheet();
+		final EngineBuilder cmp = SpreadsheetCompiler.newEngineBuilder();
+		cmp.setSpreadsheet( sht );
+		cmp.setInputClass( _inputClass );
+		cmp.setOutputClass( Output.class );
+		cmp.setFullCaching( true );
+		cmp.setBatchComputationEnabled( true );
+
+		final Section root = cmp.getRootBinder();
+		root.defineInputCell( sht.getCell( "InputA" ), "getA" );
+		root.defineInputCell( sht.getCell( "InputB" ), "getB" );
+		root.defineOutputCell( sht.getCell( "OutputSum" ), "getSum" );
+		root.defineOutputCell( sht.getCell( "OutputText" ), "getText" );
+
+		return cmp.compile().getComputationFactory();
+	}
+
+
+	public static interface Input
+	{
+		double getA();
+		String getB();
+	}
+
+	public static class InputClass implements Input
+	{
+		double a;
+		String b;
+
+		public double getA()
+		{
+			return this.a;
+		}
+
+		public String getB()
+		{
+			return this.b;
+		}
+	}
+
+	public static final class FinalInputClass implements Input
+	{
+		public double getA()
+		{
+			return 0;
+		}
+
+		public String getB()
+		{
+			return null;
+		}
+	}
+
+	public static interface Output
+	{
+		double getSum();
+		String getText();
+	}
+
+}
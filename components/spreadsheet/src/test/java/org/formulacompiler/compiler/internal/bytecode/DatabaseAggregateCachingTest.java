@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import org.formulacompiler.compiler.NumericType;
+import org.formulacompiler.runtime.NotAvailableException;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.tests.utils.TestWorkbookBuilder;
+import org.formulacompiler.tests.utils.TestWorkbookBuilder.DatabaseInput;
+
+import junit.framework.TestCase;
+
+
+public class DatabaseAggregateCachingTest extends TestCase
+{
+	private static final int ROWS = 300;
+	private static final String[] NAMES = { "a", "b", "c", "B" };
+	private static final int ROWS_PER_KEY = ROWS / 10;
+
+
+	public void testComputesAmountsPerFoldByDefault() throws Exception
+	{
+		final DatabaseInput input = new DatabaseInput( 1, 3, "b" );
+		final Output output = newOutput( SpreadsheetCompiler.DOUBLE, false, input );
+		output.getSumIfByKey();
+		output.getSumIfByThree();
+		assertEquals( 2 * ROWS_PER_KEY, input.getScaleReads() );
+	}
+
+	public void testSharedByFoldsOverSameColumns() throws Exception
+	{
+		final DatabaseInput input = new DatabaseInput( 1, 3, "b" );
+		final Output output = newOutput( SpreadsheetCompiler.DOUBLE, true, input );
+		output.getSumIfByKey();
+		output.getSumIfByThree();
+		output.getCountIfByKey();
+		output.getCountByKey();
+		assertEquals( ROWS_PER_KEY, input.getScaleReads() );
+		assertEquals( ROWS, input.getOffsetReads() );
+	}
+
+	public void testFoldsOnlyTheGroupsLookedUp() throws Exception
+	{
+		final DatabaseInput input = new DatabaseInput( 1, 3, "b" );
+		final Output output = newOutput( SpreadsheetCompiler.DOUBLE, true, input );
+		output.getSumIfByMissingKey();
+		assertEquals( 0, input.getScaleReads() );
+		// Matches both "b" and "B".
+		output.getSumIfByName();
+		assertEquals( 2 * ROWS / NAMES.length, input.getScaleReads() );
+	}
+
+	public void testDoubles() throws Exception
+	{
+		assertSameAsScan( SpreadsheetCompiler.DOUBLE );
+	}
+
+	public void testScaledLongs() throws Exception
+	{
+		assertSameAsScan( SpreadsheetCompiler.LONG_SCALE4 );
+	}
+
+	public void testBigDecimals() throws Exception
+	{
+		assertSameAsScan( SpreadsheetCompiler.BIGDECIMAL128 );
+	}
+
+	public void testErrorsInOtherGroupsAreNotRaised() throws Exception
+	{
+		// Row 5 has key 5.
+		final DatabaseInput input = new DatabaseInput( 1, 3, "b" );
+		final Output cached = newOutput( SpreadsheetCompiler.DOUBLE, true, input, 5 );
+		final Output scanned = newOutput( SpreadsheetCompiler.DOUBLE, false, input, 5 );
+		assertEquals( scanned.getSumIfByKey(), cached.getSumIfByKey(), 0 );
+		assertEquals( scanned.getSumIfByThree(), cached.getSumIfByThree(), 0 );
+		assertEquals( scanned.getCountByKey(), cached.getCountByKey(), 0 );
+
+		final Output matching = newOutput( SpreadsheetCompiler.DOUBLE, true, new DatabaseInput( 1, 5, "b" ), 5 );
+		assertEquals( scanned.getSumIfByThree(), matching.getSumIfByThree(), 0 );
+		try {
+			matching.getSumIfByKey();
+			fail( "Error in matching row not raised" );
+		}
+		catch (NotAvailableException e) {
+			// expected
+		}
+	}
+
+
+	private void assertSameAsScan( NumericType _numericType ) throws Exception
+	{
+		for (DatabaseInput input : DatabaseInput.newSamples()) {
+			final Output cached = newOutput( _numericType, true, input );
+			final Output scanned = newOutput( _numericType, false, input );
+			final String msg = input.toString();
+			assertEquals( msg, scanned.getSumIfByKey(), cached.getSumIfByKey(), 0 );
+			assertEquals( msg, scanned.getSumIfByThree(), cached.getSumIfByThree(), 0 );
+			assertEquals( msg, scanned.getSumIfByMissingKey(), cached.getSumIfByMissingKey(), 0 );
+			assertEquals( msg, scanned.getCountIfByKey(), cached.getCountIfByKey(), 0 );
+			assertEquals( msg, scanned.getCountIfByName(), cached.getCountIfByName(), 0 );
+			assertEquals( msg, scanned.getSumIfByName(), cached.getSumIfByName(), 0 );
+			assertEquals( msg, scanned.getCountByKey(), cached.getCountByKey(), 0 );
+			assertEquals( msg, scanned.getMaxByKey(), cached.getMaxByKey(), 0 );
+		}
+	}
+
+
+	private Output newOutput( NumericType _numericType, boolean _cached, DatabaseInput _input ) throws Exception
+	{
+		return newOutput( _numericType, _cached, _input, 0 );
+	}
+
+	/**
+	 * @param _errorRow is the 1-based table row whose amount is {@code NA()}, or 0 for none.
+	 */
+	private Output newOutput( NumericType _numericType, boolean _cached, DatabaseInput _input, int _errorRow )
+			throws Exception
+	{
+		final TestWorkbookBuilder b = TestWorkbookBuilder.newDatabase( ROWS, NAMES, _errorRow );
+		final int last = ROWS + 2;
+		final String table = "A2:C" + last;
+		final String keys = "A3:A" + last;
+		final String names = "B3:B" + last;
+		final String amounts = "C3:C" + last;
+
+		b.newRow().constant( "Key" );
+		final int critRow = b.getRowNumber();
+		b.newRow().formula( "B1" );
+		final String key = "A" + critRow + ":A" + (critRow + 1);
+
+		b.newRow();
+		b.formula( "SUMIF(" + keys + ",B1," + amounts + ")" ).name( "SumIfByKey" );
+		b.formula( "SUMIF(" + keys + ",3," + amounts + ")" ).name( "SumIfByThree" );
+		b.formula( "SUMIF(" + keys + ",42," + amounts + ")" ).name( "SumIfByMissingKey" );
+		b.formula( "COUNTIF(" + keys + ",B1)" ).name( "CountIfByKey" );
+		b.formula( "COUNTIF(" + names + ",C1)" ).name( "CountIfByName" );
+		b.formula( "SUMIF(" + names + ",\"b\"," + amounts + ")" ).name( "SumIfByName" );
+		b.formula( "DCOUNT(" + table + ",\"Amount\"," + key + ")" ).name( "CountByKey" );
+		// Not a sum or count, so it uses the index only.
+		b.formula( "DMAX(" + table + ",\"Amount\"," + key + ")" ).name( "MaxByKey" );
+
+		final EngineBuilder cmp = b.newEngineBuilder( DatabaseInput.class, Output.class );
+		cmp.setNumericType( _numericType );
+		if (_cached) cmp.setDatabaseAggregateCachingEnabled( true );
+		return (Output) cmp.compile().getComputationFactory().newComputation( _input );
+	}
+
+
+	public static interface Output
+	{
+		double getSumIfByKey();
+		double getSumIfByThree();
+		double getSumIfByMissingKey();
+		double getCountIfByKey();
+		double getCountIfByName();
+		double getSumIfByName();
+		double getCountByKey();
+		double getMaxByKey();
+	}
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import org.formulacompiler.compiler.NumericType;
+import org.formulacompiler.runtime.NotAvailableException;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.tests.utils.TestWorkbookBuilder;
+import org.formulacompiler.tests.utils.TestWorkbookBuilder.DatabaseInput;
+
+import junit.framework.TestCase;
+
+
+public class DatabaseIndexingTest extends TestCase
+{
+	private static final int ROWS = 300;
+	private static final String[] NAMES = { "a", "b", "c", "B" };
+
+
+	public void testScansKeysOncePerFoldByDefault() throws Exception
+	{
+		final DatabaseInput input = new DatabaseInput( 1, 3, "b" );
+		final Output output = newOutput( SpreadsheetCompiler.DOUBLE, false, input );
+		output.getSumByKey();
+		output.getSumIfByKey();
+		assertEquals( 2 * ROWS, input.getOffsetReads() );
+	}
+
+	public void testComputesKeysOnceForAllFolds() throws Exception
+	{
+		final DatabaseInput input = new DatabaseInput( 1, 3, "b" );
+		final Output output = newOutput( SpreadsheetCompiler.DOUBLE, true, input );
+		output.getSumByKey();
+		output.getSumIfByKey();
+		output.getSumByKeyAndName();
+		output.getAverageByKey();
+		assertEquals( ROWS, input.getOffsetReads() );
+	}
+
+	public void testComputesAmountsOfMatchingRowsOnly() throws Exception
+	{
+		final DatabaseInput input = new DatabaseInput( 1, 3, "b" );
+		final Output output = newOutput( SpreadsheetCompiler.DOUBLE, true, input );
+		output.getSumByKey();
+		assertEquals( ROWS / 10, input.getScaleReads() );
+	}
+
+	public void testDoubles() throws Exception
+	{
+		assertSameAsScan( SpreadsheetCompiler.DOUBLE );
+	}
+
+	public void testScaledLongs() throws Exception
+	{
+		assertSameAsScan( SpreadsheetCompiler.LONG_SCALE4 );
+	}
+
+	public void testBigDecimals() throws Exception
+	{
+		assertSameAsScan( SpreadsheetCompiler.BIGDECIMAL128 );
+	}
+
+	public void testErrorsInRowsNotMatchedAreNotRaised() throws Exception
+	{
+		// Row 5 has key 5.
+		final DatabaseInput input = new DatabaseInput( 1, 3, "b" );
+		final Output indexed = newOutput( SpreadsheetCompiler.DOUBLE, true, input, 5 );
+		final Output scanned = newOutput( SpreadsheetCompiler.DOUBLE, false, input, 5 );
+		assertEquals( scanned.getSumByKey(), indexed.getSumByKey(), 0 );
+		assertEquals( scanned.getSumIfByKey(), indexed.getSumIfByKey(), 0 );
+
+		final Output matching = newOutput( SpreadsheetCompiler.DOUBLE, true, new DatabaseInput( 1, 5, "b" ), 5 );
+		try {
+			matching.getSumIfByKey();
+			fail( "Error in matching row not raised" );
+		}
+		catch (NotAvailableException e) {
+			// expected
+		}
+	}
+
+
+	private void assertSameAsScan( NumericType _numericType ) throws Exception
+	{
+		for (DatabaseInput input : DatabaseInput.newSamples()) {
+			final Output indexed = newOutput( _numericType, true, input );
+			final Output scanned = newOutput( _numericType, false, input );
+			final String msg = input.toString();
+			assertEquals( msg, scanned.getSumByKey(), indexed.getSumByKey(), 0 );
+			assertEquals( msg, scanned.getSumByKeyAndName(), indexed.getSumByKeyAndName(), 0 );
+			assertEquals( msg, scanned.getCountByName(), indexed.getCountByName(), 0 );
+			assertEquals( msg, averageByKey( scanned ), averageByKey( indexed ), 1e-9 );
+			assertEquals( msg, scanned.getSumAboveKey(), indexed.getSumAboveKey(), 0 );
+			assertEquals( msg, scanned.getSumIfByKey(), indexed.getSumIfByKey(), 0 );
+			assertEquals( msg, scanned.getSumIfByName(), indexed.getSumIfByName(), 0 );
+		}
+	}
+
+	private double averageByKey( Output _output )
+	{
+		try {
+			return _output.getAverageByKey();
+		}
+		catch (ArithmeticException e) {
+			// No matching rows, which only the double engine reports as NaN.
+			return Double.NaN;
+		}
+	}
+
+
+	private Output newOutput( NumericType _numericType, boolean _indexed, DatabaseInput _input ) throws Exception
+	{
+		return newOutput( _numericType, _indexed, _input, 0 );
+	}
+
+	/**
+	 * @param _errorRow is the 1-based table row whose amount is {@code NA()}, or 0 for none.
+	 */
+	private Output newOutput( NumericType _numericType, boolean _indexed, DatabaseInput _input, int _errorRow )
+			throws Exception
+	{
+		final TestWorkbookBuilder b = TestWorkbookBuilder.newDatabase( ROWS, NAMES, _errorRow );
+		final int last = ROWS + 2;
+		final String table = "A2:C" + last;
+
+		b.newRow().constant( "Key" ).constant( "Name" ).constant( "Key" ).constant( "Name" );
+		final int critRow = b.getRowNumber();
+		b.newRow().formula( "B1" ).formula( "C1" ).formula( "\">\"&B1" ).constant( "=b" );
+		final String key = "A" + critRow + ":A" + (critRow + 1);
+		final String keyAndName = "A" + critRow + ":B" + (critRow + 1);
+		final String name = "B" + critRow + ":B" + (critRow + 1);
+		final String aboveKeyAndName = "C" + critRow + ":D" + (critRow + 1);
+
+		b.newRow();
+		b.formula( "DSUM(" + table + ",\"Amount\"," + key + ")" ).name( "SumByKey" );
+		b.formula( "DSUM(" + table + ",3," + keyAndName + ")" ).name( "SumByKeyAndName" );
+		b.formula( "DCOUNT(" + table + ",\"Amount\"," + name + ")" ).name( "CountByName" );
+		b.formula( "DAVERAGE(" + table + ",\"Amount\"," + key + ")" ).name( "AverageByKey" );
+		b.formula( "DSUM(" + table + ",\"Amount\"," + aboveKeyAndName + ")" ).name( "SumAboveKey" );
+
+		// SUMIF tables of the same size over different ranges must not share their indexes.
+		b.formula( "SUMIF(A3:A" + last + ",B1,C3:C" + last + ")" ).name( "SumIfByKey" );
+		b.formula( "SUMIF(B3:B" + last + ",C1,C3:C" + last + ")" ).name( "SumIfByName" );
+
+		final EngineBuilder cmp = b.newEngineBuilder( DatabaseInput.class, Output.class );
+		cmp.setNumericType( _numericType );
+		if (_indexed) cmp.setDatabaseIndexingEnabled( true );
+		return (Output) cmp.compile().getComputationFactory().newComputation( _input );
+	}
+
+
+	public static interface Output
+	{
+		double getSumByKey();
+		double getSumByKeyAndName();
+		double getCountByName();
+		double getAverageByKey();
+		double getSumAboveKey();
+		double getSumIfByKey();
+		double getSumIfByName();
+	}
+
+}
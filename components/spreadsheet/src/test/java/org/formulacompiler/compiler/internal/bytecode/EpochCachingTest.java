@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.lang.reflect.Field;
+
+import org.formulacompiler.spreadsheet.EngineBuilder;
+
+
+/**
+ * Runs the reset tests against engines that invalidate cached values by starting a new epoch.
+ */
+public class EpochCachingTest extends IncrementalResetTest
+{
+
+	@Override
+	protected void configure( EngineBuilder _builder )
+	{
+		_builder.setEpochCachingEnabled( true );
+	}
+
+
+	public void testRootUsesEpoch() throws Exception
+	{
+		final Class computationClass = newOutput( new Input() ).getClass();
+		assertNotNull( computationClass.getDeclaredField( ByteCodeEngineCompiler.EPOCH_MEMBER_NAME ) );
+		for (Field field : computationClass.getDeclaredFields()) {
+			assertFalse( field.getName(), field.getName().startsWith( "h$" ) );
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import org.formulacompiler.compiler.NumericType;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.tests.utils.TestWorkbookBuilder;
+
+import junit.framework.TestCase;
+
+
+public class FoldLoopTest extends TestCase
+{
+
+
+	public void testBelowThreshold() throws Exception
+	{
+		assertFolds( FoldLoopCompiler.LOOP_THRESHOLD - 1, SpreadsheetCompiler.DOUBLE );
+	}
+
+	public void testAtThreshold() throws Exception
+	{
+		assertFolds( FoldLoopCompiler.LOOP_THRESHOLD, SpreadsheetCompiler.DOUBLE );
+	}
+
+	public void testPartialChunk() throws Exception
+	{
+		assertFolds( FoldLoopCompiler.ELEMENTS_PER_METHOD * 3 + 7, SpreadsheetCompiler.DOUBLE );
+	}
+
+	public void testScaledLongs() throws Exception
+	{
+		assertFolds( 500, SpreadsheetCompiler.LONG_SCALE4 );
+	}
+
+	public void testBigDecimals() throws Exception
+	{
+		assertFolds( 500, SpreadsheetCompiler.BIGDECIMAL128 );
+	}
+
+	public void testRangeTooLargeToUnroll() throws Exception
+	{
+		assertFolds( 5000, SpreadsheetCompiler.DOUBLE );
+	}
+
+
+	private void assertFolds( int _size, NumericType _numericType ) throws Exception
+	{
+		final Output output = newOutput( _size, _numericType );
+		double sum = 0, sumSq = 0, min = Double.MAX_VALUE;
+		for (int i = 1; i <= _size; i++) {
+			final double v = TestWorkbookBuilder.value( i ) * Input.SCALE;
+			sum += v;
+			sumSq += v * v;
+			min = Math.min( min, v );
+		}
+		final double mean = sum / _size;
+		final double var = (sumSq - _size * mean * mean) / (_size - 1);
+		final double eps = 1e-6 * sumSq;
+
+		assertEquals( sum, output.getSum(), 1e-9 * Math.abs( sum ) );
+		assertEquals( min, output.getMin(), 0 );
+		assertEquals( mean, output.getAverage(), 1e-9 * Math.abs( sum ) );
+		assertEquals( var, output.getVar(), eps );
+		assertEquals( var * (_size - 1) / _size, output.getCovar(), eps );
+		assertEquals( sum + sum, output.getSumWithInput(), 1e-9 * Math.abs( sum ) );
+	}
+
+
+	private Output newOutput( int _size, NumericType _numericType ) throws Exception
+	{
+		final TestWorkbookBuilder b = new TestWorkbookBuilder();
+		b.newRow().constant( 1.0 ).name( "Scale" );
+		for (int i = 1; i <= _size; i++) {
+			b.newRow().constant( (double) TestWorkbookBuilder.value( i ) ).formula( "A" + (i + 1) + "*$A$1" );
+		}
+
+		// Ranges are parsed from formulas so vector functions like COVAR see them as arrays.
+		final String range = "B2:B" + (_size + 1);
+		b.newRow();
+		b.formula( "SUM(" + range + ")" ).name( "Sum" );
+		b.formula( "MIN(" + range + ")" ).name( "Min" );
+		b.formula( "AVERAGE(" + range + ")" ).name( "Average" );
+		b.formula( "VAR(" + range + ")" ).name( "Var" );
+		b.formula( "COVAR(" + range + "," + range + ")" ).name( "Covar" );
+		b.formula( "SUM(" + range + ",0*$A$1," + range + ")" ).name( "SumWithInput" );
+
+		final EngineBuilder cmp = b.newEngineBuilder( Input.class, Output.class );
+		cmp.setNumericType( _numericType );
+		return (Output) cmp.compile().getComputationFactory().newComputation( new Input() );
+	}
+
+
+	public static final class Input
+	{
+		static final double SCALE = 3;
+
+		public double getScale()
+		{
+			return SCALE;
+		}
+	}
+
+	public static interface Output
+	{
+		double getSum();
+		double getMin();
+		double getAverage();
+		double getVar();
+		double getCovar();
+		double getSumWithInput();
+	}
+
+}
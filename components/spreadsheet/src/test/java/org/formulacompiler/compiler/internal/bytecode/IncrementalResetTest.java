@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.compiler.internal.bytecode;
+
+import org.formulacompiler.compiler.FormulaCompiler;
+import org.formulacompiler.compiler.Function;
+import org.formulacompiler.compiler.Operator;
+import org.formulacompiler.runtime.IncrementallyResettable;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.Orientation;
+import org.formulacompiler.spreadsheet.Spreadsheet;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.spreadsheet.SpreadsheetBinder.Section;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder.CellRef;
+
+import junit.framework.TestCase;
+
+
+public class IncrementalResetTest extends TestCase
+{
+
+	public void testResetOfSingleInput() throws Exception
+	{
+		final Input input = new Input();
+		final Output output = newOutput( input );
+
+		assertEquals( 2 * 1 + 1, output.getD() );
+		assertEquals( 2 * 1 * 3, output.getE() );
+		assertAccesses( 1, 1, input );
+
+		input.b = 5;
+		output.reset( "getB" );
+		assertEquals( 2 * 1 + 5, output.getD() );
+		assertEquals( 2 * 1 * 3, output.getE() );
+		assertAccesses( 1, 2, input );
+
+		input.a = 2;
+		output.reset( "getA" );
+		assertEquals( 2 * 2 + 5, output.getD() );
+		assertEquals( 2 * 2 * 3, output.getE() );
+		assertAccesses( 2, 2, input );
+	}
+
+	public void testResetOfUnknownInputResetsAll() throws Exception
+	{
+		final Input input = new Input();
+		final Output output = newOutput( input );
+
+		assertEquals( 2 * 1 + 1, output.getD() );
+		input.a = 3;
+		input.b = 4;
+		output.reset( "getUnknown" );
+		assertEquals( 2 * 3 + 4, output.getD() );
+		assertAccesses( 2, 2, input );
+	}
+
+	public void testResetOfSectionInput() throws Exception
+	{
+		final Input input = new Input();
+		final Output output = newOutput( input );
+
+		assertEquals( 2 * 1 + 1 + 2, output.getTotal() );
+		assertAccesses( 1, 0, input );
+
+		input.details[ 1 ].value = 10;
+		output.reset( "getA" );
+		assertEquals( 2 * 1 + 1 + 2, output.getTotal() );
+
+		output.reset( "getValue" );
+		assertEquals( 2 * 1 + 1 + 10, output.getTotal() );
+		assertAccesses( 2, 0, input );
+
+		input.details = new DetailInput[] { new DetailInput( 7 ) };
+		output.reset( "getDetails" );
+		assertEquals( 2 * 1 + 7, output.getTotal() );
+		assertAccesses( 2, 0, input );
+	}
+
+
+	public void testFullReset() throws Exception
+	{
+		final Input input = new Input();
+		final Output output = newOutput( input );
+
+		assertEquals( 2 * 1 + 1, output.getD() );
+		for (int i = 2; i <= 4; i++) {
+			input.a = i;
+			input.b = i;
+			output.reset();
+			assertEquals( 2 * i + i, output.getD() );
+			assertEquals( 2 * i * 3, output.getE() );
+		}
+		assertAccesses( 4, 4, input );
+	}
+
+
+	private void assertAccesses( int _a, int _b, Input _input )
+	{
+		assertEquals( "accesses to a", _a, _input.accessesToA );
+		assertEquals( "accesses to b", _b, _input.accessesToB );
+	}
+
+
+	protected Output newOutput( Input _input ) throws Exception
+	{
+		final SpreadsheetBuilder bld = SpreadsheetCompiler.newSpreadsheetBuilder();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "InputA" );
+		final CellRef a = bld.currentCell();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "InputB" );
+		final CellRef b = bld.currentCell();
+		bld.newCell( bld.op( Operator.TIMES, bld.ref( a ), bld.ref( bld.cst( 2 ) ) ) );
+		final CellRef c = bld.currentCell();
+		bld.newCell( bld.op( Operator.PLUS, bld.ref( c ), bld.ref( b ) ) );
+		bld.nameCell( "OutputD" );
+		bld.newCell( bld.op( Operator.TIMES, bld.ref( c ), bld.ref( bld.cst( 3 ) ) ) );
+		bld.nameCell( "OutputE" );
+		bld.newRow();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "DetailValue" );
+		final CellRef det = bld.currentCell();
+		bld.nameRange( bld.range( det, det ), "Details" );
+		bld.newRow();
+		bld.newCell( bld.op( Operator.PLUS, bld.ref( c ), bld.fun( Function.SUM, bld.ref( det ) ) ) );
+		bld.nameCell( "Total" );
+
+		final Spreadsheet sht = bld.getSpreadsheet();
+		final EngineBuilder cmp = SpreadsheetCompiler.newEngineBuilder();
+		cmp.setSpreadsheet( sht );
+		cmp.setInputClass( Input.class );
+		cmp.setOutputClass( Output.class );
+		cmp.setNumericType( SpreadsheetCompiler.LONG );
+		cmp.setFullCaching( true );
+		configure( cmp );
+
+		final Section root = cmp.getRootBinder();
+		root.defineInputCell( sht.getCell( "InputA" ), "getA" );
+		root.defineInputCell( sht.getCell( "InputB" ), "getB" );
+		root.defineOutputCell( sht.getCell( "OutputD" ), "getD" );
+		root.defineOutputCell( sht.getCell( "OutputE" ), "getE" );
+		root.defineOutputCell( sht.getCell( "Total" ), "getTotal" );
+		final Section details = root.defineRepeatingSection( sht.getRange( "Details" ), Orientation.VERTICAL,
+				FormulaCompiler.newCallFrame( Input.class.getMethod( "getDetails" ) ), DetailInput.class, null, null );
+		details.defineInputCell( sht.getCell( "DetailValue" ), "getValue" );
+
+		return (Output) cmp.compile().getComputationFactory().newComputation( _input );
+	}
+
+
+	protected void configure( EngineBuilder _builder )
+	{
+		// Default settings.
+	}
+
+
+	public static class Input
+	{
+		long a = 1;
+		long b = 1;
+		DetailInput[] details = { new DetailInput( 1 ), new DetailInput( 2 ) };
+		int accessesToA;
+		int accessesToB;
+
+		public long getA()
+		{
+			this.accessesToA++;
+			return this.a;
+		}
+
+		public long getB()
+		{
+			this.accessesToB++;
+			return this.b;
+		}
+
+		public DetailInput[] getDetails()
+		{
+			return this.details;
+		}
+	}
+
+	public static class DetailInput
+	{
+		long value;
+
+		public DetailInput( long _value )
+		{
+			this.value = _value;
+		}
+
+		public long getValue()
+		{
+			return this.value;
+		}
+	}
+
+	public static interface Output extends IncrementallyResettable
+	{
+		long getD();
+		long getE();
+		long getTotal();
+	}
+
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.formulacompiler.compiler.Function;
+import org.formulacompiler.compiler.NumericType;
+import org.formulacompiler.compiler.Operator;
+import org.formulacompiler.runtime.ComputationFactory;
+import org.formulacompiler.runtime.MemoizingComputationFactory;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.Spreadsheet;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.spreadsheet.SpreadsheetBinder.Section;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder.CellRef;
+
+import junit.framework.TestCase;
+
+
+public class MemoizationTest extends TestCase
+{
+	private static final int RANGE_SIZE = 100;
+	private static final double RANGE_SUM = RANGE_SIZE * (RANGE_SIZE + 1) / 2;
+
+
+	public void testNotMemoizingByDefault() throws Exception
+	{
+		assertFalse( newFactory( Output.class, SpreadsheetCompiler.DOUBLE, 0, false ) instanceof MemoizingComputationFactory );
+	}
+
+	public void testReusesValuesForRepeatedInputs() throws Exception
+	{
+		final MemoizingComputationFactory factory = (MemoizingComputationFactory) newFactory( RateOutput.class,
+				SpreadsheetCompiler.DOUBLE, 100, false );
+		final ComputationFactory plain = newFactory( RateOutput.class, SpreadsheetCompiler.DOUBLE, 0, false );
+
+		final RateOutput first = (RateOutput) factory.newComputation( new Input( 150, 1 ) );
+		final RateOutput expected = (RateOutput) plain.newComputation( new Input( 150, 1 ) );
+		assertEquals( 150 * RANGE_SUM, first.getTotal() );
+		assertEquals( expected.getRate(), first.getRate() );
+		assertEquals( 151.0, first.getSimple() );
+		assertEquals( 0, factory.getMemoHits() );
+		assertEquals( 2, factory.getMemoMisses() );
+
+		// The inputs the cells do not depend on are not part of the key.
+		final RateOutput second = (RateOutput) factory.newComputation( new Input( 150, 2 ) );
+		assertEquals( 150 * RANGE_SUM, second.getTotal() );
+		assertEquals( expected.getRate(), second.getRate() );
+		assertEquals( 152.0, second.getSimple() );
+		assertEquals( 2, factory.getMemoHits() );
+		assertEquals( 2, factory.getMemoMisses() );
+
+		final RateOutput third = (RateOutput) factory.newComputation( new Input( 200, 1 ) );
+		assertEquals( 200 * RANGE_SUM, third.getTotal() );
+		assertEquals( ((RateOutput) plain.newComputation( new Input( 200, 1 ) )).getRate(), third.getRate() );
+		assertEquals( 2, factory.getMemoHits() );
+		assertEquals( 4, factory.getMemoMisses() );
+	}
+
+	public void testMemoizesDesignatedCellsOnly() throws Exception
+	{
+		final MemoizingComputationFactory factory = (MemoizingComputationFactory) newFactory( Output.class,
+				SpreadsheetCompiler.DOUBLE, 10, false, "Simple" );
+		final double[] bs = { 1, 1, 2 };
+		for (double b : bs) {
+			final Output output = (Output) factory.newComputation( new Input( 1.5, b ) );
+			assertEquals( 1.5 + b, output.getSimple() );
+			assertEquals( 1.5 * RANGE_SUM, output.getTotal() );
+		}
+		// Only the cheap cell is memoized, not the expensive sum.
+		assertEquals( 1, factory.getMemoHits() );
+		assertEquals( 2, factory.getMemoMisses() );
+	}
+
+	public void testEvictsLeastRecentlyUsedValues() throws Exception
+	{
+		final MemoizingComputationFactory factory = (MemoizingComputationFactory) newFactory( Output.class,
+				SpreadsheetCompiler.DOUBLE, 2, false );
+		final double[] as = { 1, 2, 1, 3, 2, 1 };
+		for (double a : as) {
+			assertEquals( a * RANGE_SUM, ((Output) factory.newComputation( new Input( a, 0 ) )).getTotal() );
+		}
+		// 1 and 2 miss, 1 hits, 3 misses and drops 2, 2 misses and drops 1, 1 misses.
+		assertEquals( 1, factory.getMemoHits() );
+		assertEquals( 5, factory.getMemoMisses() );
+	}
+
+	public void testNumericTypes() throws Exception
+	{
+		assertMemoized( SpreadsheetCompiler.BIGDECIMAL128, false );
+		assertMemoized( SpreadsheetCompiler.LONG_SCALE4, false );
+		assertMemoized( SpreadsheetCompiler.BIGDECIMAL_SCALE8, true );
+	}
+
+	private void assertMemoized( NumericType _type, boolean _fastPath ) throws Exception
+	{
+		final MemoizingComputationFactory factory = (MemoizingComputationFactory) newFactory( Output.class, _type, 10,
+				_fastPath );
+		for (int i = 0; i < 3; i++) {
+			final Output output = (Output) factory.newComputation( new Input( 1.5, i ) );
+			assertEquals( _type.toString(), 1.5 * RANGE_SUM, output.getTotal() );
+			assertEquals( _type.toString(), 1.5 + i, output.getSimple() );
+		}
+		assertEquals( 2, factory.getMemoHits() );
+		assertEquals( 1, factory.getMemoMisses() );
+	}
+
+	public void testConcurrentComputations() throws Exception
+	{
+		final MemoizingComputationFactory factory = (MemoizingComputationFactory) newFactory( Output.class,
+				SpreadsheetCompiler.DOUBLE, 3, false );
+		final int nThreads = 4;
+		final int nComputations = 200;
+		final AtomicInteger failures = new AtomicInteger();
+		final Thread[] threads = new Thread[ nThreads ];
+		for (int t = 0; t < nThreads; t++) {
+			threads[ t ] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < nComputations; i++) {
+						final double a = i % 5;
+						final Output output = (Output) factory.newComputation( new Input( a, 0 ) );
+						if (output.getTotal() != a * RANGE_SUM) {
+							failures.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads[ t ].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals( 0, failures.get() );
+		assertEquals( nThreads * nComputations, factory.getMemoHits() + factory.getMemoMisses() );
+	}
+
+
+	private ComputationFactory newFactory( Class _outputClass, NumericType _type, int _memoCacheSize,
+			boolean _fastPath ) throws Exception
+	{
+		return newFactory( _outputClass, _type, _memoCacheSize, _fastPath, null );
+	}
+
+	private ComputationFactory newFactory( Class _outputClass, NumericType _type, int _memoCacheSize,
+			boolean _fastPath, String _memoCell ) throws Exception
+	{
+		final SpreadsheetBuilder bld = SpreadsheetCompiler.newSpreadsheetBuilder();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "A" );
+		final CellRef a = bld.currentCell();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "B" );
+		final CellRef b = bld.currentCell();
+		bld.newRow();
+		bld.newCell( bld.op( Operator.PLUS, bld.ref( a ), bld.ref( b ) ) );
+		bld.nameCell( "Simple" );
+		if (RateOutput.class == _outputClass) {
+			bld.newCell( bld.fun( Function.RATE, bld.ref( bld.cst( 10 ) ), bld.op( Operator.MINUS, bld.ref( bld.cst( 0 ) ),
+					bld.ref( a ) ), bld.ref( bld.cst( 1000 ) ) ) );
+			bld.nameCell( "Rate" );
+		}
+
+		// A range of cells A * k, for k = 1..n, which is expensive to sum up.
+		bld.newRow();
+		bld.newCell( bld.ref( a ) );
+		final CellRef first = bld.currentCell();
+		CellRef last = first;
+		for (int k = 2; k <= RANGE_SIZE; k++) {
+			bld.newRow();
+			bld.newCell( bld.op( Operator.TIMES, bld.ref( a ), bld.ref( bld.cst( k ) ) ) );
+			last = bld.currentCell();
+		}
+		bld.newRow();
+		bld.newCell( bld.fun( Function.SUM, bld.ref( bld.range( first, last ) ) ) );
+		bld.nameCell( "Total" );
+
+		final Spreadsheet sht = bld.getSpreadsheet();
+		final EngineBuilder cmp = SpreadsheetCompiler.newEngineBuilder();
+		cmp.setSpreadsheet( sht );
+		cmp.setInputClass( Input.class );
+		cmp.setOutputClass( _outputClass );
+		cmp.setNumericType( _type );
+		cmp.setFullCaching( true );
+		cmp.setScaledLongFastPathEnabled( _fastPath );
+		cmp.setMemoCacheSize( _memoCacheSize );
+		if (null != _memoCell) {
+			cmp.setMemoCells( sht.getCell( _memoCell ) );
+		}
+
+		final Section root = cmp.getRootBinder();
+		root.defineInputCell( sht.getCell( "A" ), "getA" );
+		root.defineInputCell( sht.getCell( "B" ), "getB" );
+		root.defineOutputCell( sht.getCell( "Simple" ), "getSimple" );
+		root.defineOutputCell( sht.getCell( "Total" ), "getTotal" );
+		if (RateOutput.class == _outputClass) {
+			root.defineOutputCell( sht.getCell( "Rate" ), "getRate" );
+		}
+
+		return cmp.compile().getComputationFactory();
+	}
+
+
+	public static class Input
+	{
+		private final double a;
+		private final double b;
+
+		public Input( double _a, double _b )
+		{
+			this.a = _a;
+			this.b = _b;
+		}
+
+		public double getA()
+		{
+			return this.a;
+		}
+
+		public double getB()
+		{
+			return this.b;
+		}
+	}
+
+	public static interface Output
+	{
+		double getSimple();
+		double getTotal();
+	}
+
+	public static interface RateOutput extends Output
+	{
+		double getRate();
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.util.List;
+
+import org.formulacompiler.compiler.MethodSizeListener;
+import org.formulacompiler.runtime.New;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.tests.utils.TestWorkbookBuilder;
+
+import junit.framework.TestCase;
+
+
+public class MethodSplitTest extends TestCase
+{
+	private final List<String> reports = New.list();
+	private final MethodSizeListener listener = new MethodSizeListener()
+	{
+
+		public void methodTooLarge( String _className, String _methodName, int _codeSize, int _limit )
+		{
+			assertTrue( _codeSize > _limit );
+			MethodSplitTest.this.reports.add( _className + "." + _methodName );
+		}
+
+	};
+
+
+	public void testLongExpressionIsSplit() throws Exception
+	{
+		// The intermediate cells are inlined. Unsplit, the result would compile to a method of about 24KB.
+		assertEquals( expectedSum( 40, 50 ), compute( 40, 50, 8000 ), 0 );
+		assertEquals( "Methods exceeding the limit", 0, this.reports.size() );
+	}
+
+	public void testSplittingCanBeDisabled() throws Exception
+	{
+		assertEquals( expectedSum( 20, 50 ), compute( 20, 50, 0 ), 0 );
+		assertEquals( 0, this.reports.size() );
+	}
+
+	public void testUnsplittableMethodIsReported() throws Exception
+	{
+		// The elements of the aggregation are plain cell references, which are never split off.
+		final StringBuilder b = new StringBuilder( "SUM($A$1" );
+		for (int i = 1; i < 60; i++) {
+			b.append( ",$A$1" );
+		}
+		b.append( ")" );
+		assertEquals( Input.VALUE * 60, compute( new String[ 0 ], b.toString(), 64 ), 0 );
+		assertEquals( 1, this.reports.size() );
+	}
+
+
+	private double expectedSum( int _rows, int _terms )
+	{
+		final int n = _rows * _terms;
+		return Input.VALUE * n * (n + 1) / 2;
+	}
+
+	/**
+	 * Sums {@code A1*k} for k from 1 to {@code _rows * _terms}, computing {@code _terms} of them
+	 * per intermediate cell.
+	 */
+	private double compute( int _rows, int _terms, int _methodSizeLimit ) throws Exception
+	{
+		final String[] intermediates = new String[ _rows ];
+		final StringBuilder result = new StringBuilder();
+		int k = 1;
+		for (int iRow = 0; iRow < _rows; iRow++) {
+			final StringBuilder b = new StringBuilder();
+			for (int iTerm = 0; iTerm < _terms; iTerm++) {
+				if (iTerm > 0) b.append( '+' );
+				b.append( "$A$1*" ).append( k++ );
+			}
+			intermediates[ iRow ] = b.toString();
+			if (iRow > 0) result.append( '+' );
+			result.append( "A" ).append( iRow + 2 );
+		}
+		return compute( intermediates, result.toString(), _methodSizeLimit );
+	}
+
+	private double compute( String[] _intermediates, String _result, int _methodSizeLimit ) throws Exception
+	{
+		final TestWorkbookBuilder b = new TestWorkbookBuilder();
+		b.newRow().constant( 1.0 ).name( "Input" );
+		for (String intermediate : _intermediates) {
+			b.newRow().formula( intermediate );
+		}
+		b.newRow().formula( _result ).name( "Result" );
+
+		final EngineBuilder eb = b.newEngineBuilder( Input.class, Output.class );
+		eb.setMethodSizeLimit( _methodSizeLimit );
+		eb.setMethodSizeListener( this.listener );
+		return ((Output) eb.compile().getComputationFactory().newComputation( new Input() )).getResult();
+	}
+
+
+	public static final class Input
+	{
+		static final double VALUE = 2;
+
+		public double getInput()
+		{
+			return VALUE;
+		}
+	}
+
+	public static interface Output
+	{
+		double getResult();
+	}
+
+}
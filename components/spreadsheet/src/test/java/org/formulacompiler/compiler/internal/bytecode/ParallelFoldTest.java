@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.formulacompiler.compiler.FormulaCompiler;
+import org.formulacompiler.compiler.Function;
+import org.formulacompiler.compiler.NumericType;
+import org.formulacompiler.compiler.Operator;
+import org.formulacompiler.runtime.ComputationProfile;
+import org.formulacompiler.runtime.New;
+import org.formulacompiler.runtime.ProfiledComputation;
+import org.formulacompiler.runtime.internal.RangeFolder;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.Orientation;
+import org.formulacompiler.spreadsheet.Spreadsheet;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.spreadsheet.SpreadsheetBinder.Section;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder.CellRef;
+import org.formulacompiler.tests.utils.TestWorkbookBuilder;
+
+import junit.framework.TestCase;
+
+
+public class ParallelFoldTest extends TestCase
+{
+	private static final int THRESHOLD = 16;
+
+
+	public void testLargeSection() throws Exception
+	{
+		assertSameAsSequential( 10000 );
+	}
+
+	public void testLargeSectionWithScaledLongs() throws Exception
+	{
+		assertSameAsSequential( 10000, SpreadsheetCompiler.LONG );
+	}
+
+	public void testLargeSectionWithBigDecimals() throws Exception
+	{
+		assertSameAsSequential( 10000, SpreadsheetCompiler.BIGDECIMAL128 );
+	}
+
+	public void testSmallSection() throws Exception
+	{
+		assertSameAsSequential( THRESHOLD - 1 );
+	}
+
+	public void testSectionAtThreshold() throws Exception
+	{
+		assertSameAsSequential( THRESHOLD );
+	}
+
+	public void testEmptySection() throws Exception
+	{
+		final Output output = newOutput( THRESHOLD, new Input( 0 ) );
+		assertEquals( 0.0, output.getSum(), 0 );
+		assertEquals( 0.0, output.getMin(), 0 );
+		assertEquals( 0.0, output.getMax(), 0 );
+	}
+
+	public void testFoldsConcurrently() throws Exception
+	{
+		final Input input = new Input( 10000 );
+		final Output output = newOutput( THRESHOLD, input );
+		assertTrue( output instanceof RangeFolder );
+		output.getSum();
+		if (Runtime.getRuntime().availableProcessors() > 1) {
+			assertTrue( input.threadNames.size() > 1 );
+		}
+	}
+
+	public void testOuterReferencesAreFoldedSequentially() throws Exception
+	{
+		final Input input = new Input( 10000 );
+		final Output output = newOutput( THRESHOLD, input );
+		output.getScaledSum();
+		assertEquals( Collections.singleton( Thread.currentThread().getName() ), input.threadNames );
+	}
+
+
+	public void testProfiledFoldsAreSequential() throws Exception
+	{
+		final int size = 10000;
+		final Input input = new Input( size );
+		final Output output = newOutput( THRESHOLD, input, SpreadsheetCompiler.DOUBLE, true );
+		assertFalse( output instanceof RangeFolder );
+		assertEquals( newOutput( 0, new Input( size ) ).getSum(), output.getSum(), 0 );
+		assertEquals( Collections.singleton( Thread.currentThread().getName() ), input.threadNames );
+
+		// No counts are lost.
+		final ComputationProfile profile = ((ProfiledComputation) output).getProfile();
+		final int value = profile.indexOf( "Sheet1!A2" );
+		assertTrue( value >= 0 );
+		assertEquals( size, profile.getEvaluations( value ) );
+	}
+
+
+	private void assertSameAsSequential( int _size ) throws Exception
+	{
+		assertSameAsSequential( _size, SpreadsheetCompiler.DOUBLE );
+	}
+
+	private void assertSameAsSequential( int _size, NumericType _numericType ) throws Exception
+	{
+		final Output expected = newOutput( 0, new Input( _size ), _numericType );
+		final Output actual = newOutput( THRESHOLD, new Input( _size ), _numericType );
+		assertEquals( expected.getSum(), actual.getSum(), 0 );
+		assertEquals( expected.getMin(), actual.getMin(), 0 );
+		assertEquals( expected.getMax(), actual.getMax(), 0 );
+		assertEquals( expected.getScaledSum(), actual.getScaledSum(), 0 );
+	}
+
+
+	private Output newOutput( int _threshold, Input _input ) throws Exception
+	{
+		return newOutput( _threshold, _input, SpreadsheetCompiler.DOUBLE );
+	}
+
+	private Output newOutput( int _threshold, Input _input, NumericType _numericType ) throws Exception
+	{
+		return newOutput( _threshold, _input, _numericType, false );
+	}
+
+	private Output newOutput( int _threshold, Input _input, NumericType _numericType, boolean _profiled )
+			throws Exception
+	{
+		final SpreadsheetBuilder bld = SpreadsheetCompiler.newSpreadsheetBuilder();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "Scale" );
+		final CellRef scale = bld.currentCell();
+
+		bld.newRow();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "DetailValue" );
+		final CellRef value = bld.currentCell();
+		bld.newCell( bld.op( Operator.TIMES, bld.ref( value ), bld.ref( bld.cst( 2 ) ) ) );
+		final CellRef twice = bld.currentCell();
+		bld.newCell( bld.op( Operator.TIMES, bld.ref( value ), bld.ref( scale ) ) );
+		final CellRef scaled = bld.currentCell();
+		bld.nameRange( bld.range( value, scaled ), "Details" );
+
+		bld.newRow();
+		bld.newCell( bld.fun( Function.SUM, bld.ref( twice ) ) );
+		bld.nameCell( "OutputSum" );
+		bld.newCell( bld.fun( Function.MIN, bld.ref( value ) ) );
+		bld.nameCell( "OutputMin" );
+		bld.newCell( bld.fun( Function.MAX, bld.ref( value ) ) );
+		bld.nameCell( "OutputMax" );
+		bld.newCell( bld.fun( Function.SUM, bld.ref( scaled ) ) );
+		bld.nameCell( "OutputScaledSum" );
+
+		final Spreadsheet sht = bld.getSpreadsheet();
+		final EngineBuilder cmp = SpreadsheetCompiler.newEngineBuilder();
+		cmp.setSpreadsheet( sht );
+		cmp.setInputClass( Input.class );
+		cmp.setOutputClass( Output.class );
+		cmp.setNumericType( _numericType );
+		cmp.setParallelFoldThreshold( _threshold );
+		cmp.setCellProfilingEnabled( _profiled );
+
+		final Section root = cmp.getRootBinder();
+		root.defineInputCell( sht.getCell( "Scale" ), "getScale" );
+		final Section details = root.defineRepeatingSection( sht.getRange( "Details" ), Orientation.VERTICAL,
+				FormulaCompiler.newCallFrame( Input.class.getMethod( "getDetails" ) ), Detail.class, null, null );
+		details.defineInputCell( sht.getCell( "DetailValue" ), "getValue" );
+		root.defineOutputCell( sht.getCell( "OutputSum" ), "getSum" );
+		root.defineOutputCell( sht.getCell( "OutputMin" ), "getMin" );
+		root.defineOutputCell( sht.getCell( "OutputMax" ), "getMax" );
+		root.defineOutputCell( sht.getCell( "OutputScaledSum" ), "getScaledSum" );
+
+		return (Output) cmp.compile().getComputationFactory().newComputation( _input );
+	}
+
+
+	public static final class Input
+	{
+		final Set<String> threadNames = Collections.synchronizedSet( New.<String> set() );
+		private final Detail[] details;
+
+		public Input( int _size )
+		{
+			this.details = new Detail[ _size ];
+			for (int i = 0; i < _size; i++) {
+				// Values vary in sign so MIN and MAX depend on all elements.
+				this.details[ i ] = new Detail( this, TestWorkbookBuilder.value( i ) );
+			}
+		}
+
+		public double getScale()
+		{
+			return 3;
+		}
+
+		public Detail[] getDetails()
+		{
+			return this.details;
+		}
+	}
+
+	public static final class Detail
+	{
+		private final Input input;
+		private final double value;
+
+		Detail( Input _input, double _value )
+		{
+			this.input = _input;
+			this.value = _value;
+		}
+
+		public double getValue()
+		{
+			this.input.threadNames.add( Thread.currentThread().getName() );
+			return this.value;
+		}
+	}
+
+	public static interface Output
+	{
+		double getSum();
+		double getMin();
+		double getMax();
+		double getScaledSum();
+	}
+
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.Function;
+import org.formulacompiler.compiler.NumericType;
+import org.formulacompiler.compiler.Operator;
+import org.formulacompiler.runtime.ComputationFactory;
+import org.formulacompiler.runtime.New;
+import org.formulacompiler.runtime.ParallelComputation;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.Spreadsheet;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.spreadsheet.SpreadsheetBinder.Section;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder.CellRef;
+
+import junit.framework.TestCase;
+
+
+public class ParallelOutputsTest extends TestCase
+{
+	private static final int RANGE_SIZE = 50;
+	private static final double RANGE_SUM = RANGE_SIZE * (RANGE_SIZE + 1) / 2;
+
+	private ExecutorService pool;
+
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		this.pool = Executors.newFixedThreadPool( 4 );
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		this.pool.shutdownNow();
+		super.tearDown();
+	}
+
+
+	public void testComputesAllOutputs() throws Exception
+	{
+		final ComputationFactory factory = newFactory( SpreadsheetCompiler.DOUBLE, true, false );
+		final CountingExecutor executor = new CountingExecutor( this.pool );
+		for (int i = 0; i < 20; i++) {
+			final Input input = new Input( 3 + i, 4 );
+			final Output output = (Output) factory.newComputation( input );
+			output.computeAll( executor );
+
+			// Inputs are read once, and only by the calling thread.
+			assertEquals( 2, input.reads.get() );
+			assertEquals( 0, input.foreignReads.get() );
+			assertOutputs( output, 3 + i, 4 );
+			assertEquals( 2, input.reads.get() );
+		}
+		assertTrue( executor.tasks.get() > 0 );
+	}
+
+	public void testComputesAllOutputsWithoutRunningTasks() throws Exception
+	{
+		final ComputationFactory factory = newFactory( SpreadsheetCompiler.DOUBLE, true, false );
+
+		final List<Runnable> neverRun = New.list();
+		final Input idle = new Input( 3, 4 );
+		final Output idleOutput = (Output) factory.newComputation( idle );
+		idleOutput.computeAll( new Executor()
+		{
+			public void execute( Runnable _task )
+			{
+				neverRun.add( _task );
+			}
+		} );
+		assertFalse( neverRun.isEmpty() );
+		assertOutputs( idleOutput, 3, 4 );
+		assertEquals( 2, idle.reads.get() );
+
+		final Input rejected = new Input( 5, 6 );
+		final Output rejectedOutput = (Output) factory.newComputation( rejected );
+		rejectedOutput.computeAll( new Executor()
+		{
+			public void execute( Runnable _task )
+			{
+				throw new RejectedExecutionException();
+			}
+		} );
+		assertOutputs( rejectedOutput, 5, 6 );
+		assertEquals( 2, rejected.reads.get() );
+	}
+
+	public void testErrorsAreRaisedByOutputs() throws Exception
+	{
+		final ComputationFactory factory = newFactory( SpreadsheetCompiler.DOUBLE, true, false );
+		final Input input = new Input( 3, Double.NaN );
+		final Output output = (Output) factory.newComputation( input );
+		output.computeAll( this.pool );
+		assertEquals( 3 * RANGE_SUM, output.getTotal() );
+		try {
+			output.getShared();
+			fail( "Error expected" );
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	public void testRequiresFullCaching() throws Exception
+	{
+		try {
+			newFactory( SpreadsheetCompiler.DOUBLE, false, false );
+			fail();
+		}
+		catch (CompilerException.ParallelComputationNotSupported e) {
+			assertTrue( e.getMessage(), e.getMessage().contains( "full caching is not enabled" ) );
+		}
+	}
+
+	public void testNumericTypes() throws Exception
+	{
+		assertComputesAll( SpreadsheetCompiler.BIGDECIMAL128, false );
+		assertComputesAll( SpreadsheetCompiler.LONG_SCALE4, false );
+		assertComputesAll( SpreadsheetCompiler.BIGDECIMAL_SCALE8, true );
+	}
+
+	private void assertComputesAll( NumericType _type, boolean _fastPath ) throws Exception
+	{
+		final ComputationFactory factory = newFactory( _type, true, _fastPath );
+		final Input input = new Input( 1.5, 2 );
+		final Output output = (Output) factory.newComputation( input );
+		output.computeAll( this.pool );
+		assertEquals( _type.toString(), 0, input.foreignReads.get() );
+		assertOutputs( output, 1.5, 2 );
+	}
+
+
+	private void assertOutputs( Output _output, double _a, double _b )
+	{
+		final double shared = _a * _b;
+		assertEquals( shared + _a, _output.getShared() );
+		assertEquals( shared * 2, _output.getDoubled() );
+		assertEquals( _b + 1, _output.getOther() );
+		assertEquals( _a * RANGE_SUM, _output.getTotal() );
+		assertEquals( _b * 2, _output.getStamped() );
+	}
+
+
+	private ComputationFactory newFactory( NumericType _type, boolean _caching, boolean _fastPath ) throws Exception
+	{
+		final SpreadsheetBuilder bld = SpreadsheetCompiler.newSpreadsheetBuilder();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "A" );
+		final CellRef a = bld.currentCell();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "B" );
+		final CellRef b = bld.currentCell();
+
+		// A value needed by two outputs.
+		bld.newRow();
+		bld.newCell( bld.op( Operator.TIMES, bld.ref( a ), bld.ref( b ) ) );
+		final CellRef shared = bld.currentCell();
+		bld.newCell( bld.op( Operator.PLUS, bld.ref( shared ), bld.ref( a ) ) );
+		bld.nameCell( "Shared" );
+		bld.newCell( bld.op( Operator.TIMES, bld.ref( shared ), bld.ref( bld.cst( 2 ) ) ) );
+		bld.nameCell( "Doubled" );
+		bld.newCell( bld.op( Operator.PLUS, bld.ref( b ), bld.ref( bld.cst( 1 ) ) ) );
+		bld.nameCell( "Other" );
+
+		// A volatile function, which captures the time of the computation lazily.
+		bld.newCell( bld.op( Operator.PLUS, bld.op( Operator.TIMES, bld.fun( Function.NOW ), bld.ref( bld.cst( 0 ) ) ),
+				bld.op( Operator.TIMES, bld.ref( b ), bld.ref( bld.cst( 2 ) ) ) ) );
+		bld.nameCell( "Stamped" );
+
+		// A range of cells A * k, for k = 1..n, needed by one output only.
+		bld.newRow();
+		bld.newCell( bld.ref( a ) );
+		final CellRef first = bld.currentCell();
+		CellRef last = first;
+		for (int k = 2; k <= RANGE_SIZE; k++) {
+			bld.newRow();
+			bld.newCell( bld.op( Operator.TIMES, bld.ref( a ), bld.ref( bld.cst( k ) ) ) );
+			last = bld.currentCell();
+		}
+		bld.newRow();
+		bld.newCell( bld.fun( Function.SUM, bld.ref( bld.range( first, last ) ) ) );
+		bld.nameCell( "Total" );
+
+		final Spreadsheet sht = bld.getSpreadsheet();
+		final EngineBuilder cmp = SpreadsheetCompiler.newEngineBuilder();
+		cmp.setSpreadsheet( sht );
+		cmp.setInputClass( Input.class );
+		cmp.setOutputClass( Output.class );
+		cmp.setNumericType( _type );
+		cmp.setFullCaching( _caching );
+		cmp.setScaledLongFastPathEnabled( _fastPath );
+
+		final Section root = cmp.getRootBinder();
+		root.defineInputCell( sht.getCell( "A" ), "getA" );
+		root.defineInputCell( sht.getCell( "B" ), "getB" );
+		root.defineOutputCell( sht.getCell( "Shared" ), "getShared" );
+		root.defineOutputCell( sht.getCell( "Doubled" ), "getDoubled" );
+		root.defineOutputCell( sht.getCell( "Other" ), "getOther" );
+		root.defineOutputCell( sht.getCell( "Stamped" ), "getStamped" );
+		root.defineOutputCell( sht.getCell( "Total" ), "getTotal" );
+
+		return cmp.compile().getComputationFactory();
+	}
+
+
+	private static final class CountingExecutor implements Executor
+	{
+		final Executor executor;
+		final AtomicInteger tasks = new AtomicInteger();
+
+		CountingExecutor( Executor _executor )
+		{
+			super();
+			this.executor = _executor;
+		}
+
+		public void execute( final Runnable _task )
+		{
+			this.executor.execute( new Runnable()
+			{
+				public void run()
+				{
+					CountingExecutor.this.tasks.incrementAndGet();
+					_task.run();
+				}
+			} );
+		}
+	}
+
+
+	public static class Input
+	{
+		private final double a;
+		private final double b;
+		private final Thread owner = Thread.currentThread();
+		final AtomicInteger reads = new AtomicInteger();
+		final AtomicInteger foreignReads = new AtomicInteger();
+
+		public Input( double _a, double _b )
+		{
+			this.a = _a;
+			this.b = _b;
+		}
+
+		public double getA()
+		{
+			read();
+			return this.a;
+		}
+
+		/**
+		 * Fails for {@code NaN}.
+		 */
+		public double getB()
+		{
+			read();
+			if (Double.isNaN( this.b )) throw new IllegalStateException( "B is not available" );
+			return this.b;
+		}
+
+		private void read()
+		{
+			this.reads.incrementAndGet();
+			if (Thread.currentThread() != this.owner) {
+				this.foreignReads.incrementAndGet();
+			}
+		}
+	}
+
+	public static interface Output extends ParallelComputation
+	{
+		double getShared();
+		double getDoubled();
+		double getOther();
+		double getStamped();
+		double getTotal();
+	}
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.lang.ref.WeakReference;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.FormulaCompiler;
+import org.formulacompiler.compiler.Function;
+import org.formulacompiler.compiler.Operator;
+import org.formulacompiler.runtime.Computation;
+import org.formulacompiler.runtime.ComputationFactory;
+import org.formulacompiler.runtime.PooledComputationFactory;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.Orientation;
+import org.formulacompiler.spreadsheet.Spreadsheet;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.spreadsheet.SpreadsheetBinder.Section;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder.CellRef;
+
+import junit.framework.TestCase;
+
+
+public class PoolingTest extends TestCase
+{
+
+	public void testNotPooledByDefault() throws Exception
+	{
+		assertFalse( newFactory( Output.class, false ) instanceof PooledComputationFactory );
+	}
+
+	public void testReusesReleasedComputations() throws Exception
+	{
+		final PooledComputationFactory factory = (PooledComputationFactory) newFactory( Output.class, true );
+
+		final Output first = (Output) factory.newComputation( new Input( 1, 2, 3 ) );
+		assertEquals( 2 * 1 + 2 + 3, first.getTotal() );
+		assertEquals( 0, factory.getPoolHits() );
+		assertEquals( 1, factory.getPoolMisses() );
+
+		factory.releaseComputation( (Computation) first );
+		final Output second = (Output) factory.newComputation( new Input( 10, 20 ) );
+		assertSame( first, second );
+		assertEquals( 2 * 10 + 20, second.getTotal() );
+		assertEquals( 1, factory.getPoolHits() );
+		assertEquals( 1, factory.getPoolMisses() );
+
+		final Output third = (Output) factory.newComputation( new Input( 5 ) );
+		assertNotSame( second, third );
+		assertEquals( 2 * 5, third.getTotal() );
+		assertEquals( 2 * 10 + 20, second.getTotal() );
+		assertEquals( 2, factory.getPoolMisses() );
+	}
+
+	public void testPoolsArePerThread() throws Exception
+	{
+		final PooledComputationFactory factory = (PooledComputationFactory) newFactory( Output.class, true );
+		final Computation released = factory.newComputation( new Input( 1 ) );
+		factory.releaseComputation( released );
+
+		final Computation[] other = new Computation[ 1 ];
+		final Thread thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				other[ 0 ] = factory.newComputation( new Input( 2 ) );
+			}
+		};
+		thread.start();
+		thread.join();
+		assertNotSame( released, other[ 0 ] );
+		assertSame( released, factory.newComputation( new Input( 3 ) ) );
+	}
+
+	public void testDoubleReleaseIsIgnored() throws Exception
+	{
+		final PooledComputationFactory factory = (PooledComputationFactory) newFactory( Output.class, true );
+		final Computation released = factory.newComputation( new Input( 1 ) );
+		factory.releaseComputation( released );
+		factory.releaseComputation( released );
+
+		final Output first = (Output) factory.newComputation( new Input( 2 ) );
+		final Output second = (Output) factory.newComputation( new Input( 3 ) );
+		assertSame( released, first );
+		assertNotSame( first, second );
+		assertEquals( 2 * 2, first.getTotal() );
+		assertEquals( 2 * 3, second.getTotal() );
+		assertEquals( 1, factory.getPoolHits() );
+	}
+
+	public void testPoolsDoNotKeepEngineAlive() throws Exception
+	{
+		PooledComputationFactory factory = (PooledComputationFactory) newFactory( Output.class, true );
+		Computation released = factory.newComputation( new Input( 1 ) );
+		factory.releaseComputation( released );
+		final WeakReference<ClassLoader> loader = new WeakReference<ClassLoader>( released.getClass().getClassLoader() );
+		released = null;
+		factory = null;
+
+		for (int i = 0; i < 20 && null != loader.get(); i++) {
+			System.gc();
+			Thread.sleep( 10 );
+		}
+		assertNull( loader.get() );
+	}
+
+	public void testOutputWithInputsConstructor() throws Exception
+	{
+		try {
+			newFactory( OutputWithInputs.class, true );
+			fail();
+		}
+		catch (CompilerException.PoolingNotSupported e) {
+			assertTrue( e.getMessage(), e.getMessage().contains( "constructor receiving the inputs" ) );
+		}
+	}
+
+
+	private ComputationFactory newFactory( Class _outputClass, boolean _pooled ) throws Exception
+	{
+		final SpreadsheetBuilder bld = SpreadsheetCompiler.newSpreadsheetBuilder();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "InputA" );
+		final CellRef a = bld.currentCell();
+		bld.newRow();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "DetailValue" );
+		final CellRef det = bld.currentCell();
+		bld.nameRange( bld.range( det, det ), "Details" );
+		bld.newRow();
+		bld.newCell( bld.op( Operator.PLUS, bld.op( Operator.TIMES, bld.ref( a ), bld.ref( bld.cst( 2 ) ) ), bld.fun(
+				Function.SUM, bld.ref( det ) ) ) );
+		bld.nameCell( "Total" );
+
+		final Spreadsheet sht = bld.getSpreadsheet();
+		final EngineBuilder cmp = SpreadsheetCompiler.newEngineBuilder();
+		cmp.setSpreadsheet( sht );
+		cmp.setInputClass( Input.class );
+		cmp.setOutputClass( _outputClass );
+		cmp.setNumericType( SpreadsheetCompiler.LONG );
+		cmp.setFullCaching( true );
+		cmp.setComputationPoolingEnabled( _pooled );
+
+		final Section root = cmp.getRootBinder();
+		root.defineInputCell( sht.getCell( "InputA" ), "getA" );
+		root.defineOutputCell( sht.getCell( "Total" ), "getTotal" );
+		final Section details = root.defineRepeatingSection( sht.getRange( "Details" ), Orientation.VERTICAL,
+				FormulaCompiler.newCallFrame( Input.class.getMethod( "getDetails" ) ), DetailInput.class, null, null );
+		details.defineInputCell( sht.getCell( "DetailValue" ), "getValue" );
+
+		return cmp.compile().getComputationFactory();
+	}
+
+
+	public static class Input
+	{
+		private final long a;
+		private final DetailInput[] details;
+
+		public Input( long _a, long... _details )
+		{
+			this.a = _a;
+			this.details = new DetailInput[ _details.length ];
+			for (int i = 0; i < _details.length; i++) {
+				this.details[ i ] = new DetailInput( _details[ i ] );
+			}
+		}
+
+		public long getA()
+		{
+			return this.a;
+		}
+
+		public DetailInput[] getDetails()
+		{
+			return this.details;
+		}
+	}
+
+	public static class DetailInput
+	{
+		private final long value;
+
+		public DetailInput( long _value )
+		{
+			this.value = _value;
+		}
+
+		public long getValue()
+		{
+			return this.value;
+		}
+	}
+
+	public static interface Output
+	{
+		long getTotal();
+	}
+
+	public static abstract class OutputWithInputs
+	{
+		public OutputWithInputs( Input _inputs )
+		{
+			super();
+		}
+
+		public abstract long getTotal();
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import org.formulacompiler.runtime.ComputationProfile;
+import org.formulacompiler.runtime.ProfiledComputation;
+import org.formulacompiler.runtime.Resettable;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.tests.utils.TestWorkbookBuilder;
+
+import junit.framework.TestCase;
+
+
+public class ProfilingTest extends TestCase
+{
+
+
+	public void testNotProfiledByDefault() throws Exception
+	{
+		final Output output = newOutput( false, false, false );
+		assertFalse( output instanceof ProfiledComputation );
+		assertEquals( 12.0, output.getResult() );
+	}
+
+	public void testUncached() throws Exception
+	{
+		final Output output = newOutput( true, false, false );
+		assertEquals( 0, profileOf( output ).getEvaluations( 0 ) );
+
+		output.getResult();
+		output.getResult();
+		output.getOther();
+
+		final ComputationProfile profile = profileOf( output );
+		assertEquals( 4, profile.getCellCount() );
+		assertFalse( profile.isTimed() );
+		assertCounts( profile, "Sheet1!C1", 2, 2 );
+		assertCounts( profile, "Sheet1!B1", 5, 5 );
+		assertCounts( profile, "Sheet1!A1", 5, 5 );
+		assertCounts( profile, "Sheet1!D1", 1, 1 );
+	}
+
+	public void testCached() throws Exception
+	{
+		final Output output = newOutput( true, false, true );
+		output.getResult();
+		output.getResult();
+		output.getOther();
+
+		final ComputationProfile profile = profileOf( output );
+		assertCounts( profile, "Sheet1!C1", 2, 1 );
+		assertCounts( profile, "Sheet1!B1", 3, 1 );
+		assertCounts( profile, "Sheet1!A1", 1, 1 );
+		assertEquals( 2.0 / 3.0, profile.getCacheHitRatio( profile.indexOf( "Sheet1!B1" ) ), 1e-9 );
+
+		// Counters survive a reset.
+		output.reset();
+		output.getResult();
+		final ComputationProfile afterReset = profileOf( output );
+		assertCounts( afterReset, "Sheet1!C1", 3, 2 );
+		assertCounts( afterReset, "Sheet1!B1", 5, 2 );
+
+		final ComputationProfile sum = profile.plus( afterReset );
+		assertCounts( sum, "Sheet1!B1", 8, 3 );
+	}
+
+	public void testTimed() throws Exception
+	{
+		final Output output = newOutput( false, true, true );
+		assertTrue( output instanceof ProfiledComputation );
+		assertEquals( 12.0, output.getResult() );
+
+		final ComputationProfile profile = profileOf( output );
+		assertTrue( profile.isTimed() );
+		assertCounts( profile, "Sheet1!B1", 2, 1 );
+		assertTrue( profile.getNanos( profile.indexOf( "Sheet1!C1" ) ) >= profile.getNanos( profile
+				.indexOf( "Sheet1!B1" ) ) );
+		assertEquals( 0, profile.getNanos( profile.indexOf( "Sheet1!D1" ) ) );
+	}
+
+
+	private static ComputationProfile profileOf( Output _output )
+	{
+		return ((ProfiledComputation) _output).getProfile();
+	}
+
+	private static void assertCounts( ComputationProfile _profile, String _cellName, long _evaluations,
+			long _computations )
+	{
+		final int cell = _profile.indexOf( _cellName );
+		assertTrue( _cellName, cell >= 0 );
+		assertEquals( _cellName, _evaluations, _profile.getEvaluations( cell ) );
+		assertEquals( _cellName, _computations, _profile.getComputations( cell ) );
+	}
+
+
+	private Output newOutput( boolean _profiled, boolean _timed, boolean _cached ) throws Exception
+	{
+		final TestWorkbookBuilder b = new TestWorkbookBuilder();
+		b.newRow().constant( 1.0 ).name( "Scale" );
+		b.formula( "A1*2" );
+		b.formula( "B1+B1" ).name( "Result" );
+		b.formula( "B1*3" ).name( "Other" );
+
+		final EngineBuilder cmp = b.newEngineBuilder( Input.class, Output.class );
+		cmp.setFullCaching( _cached );
+		cmp.setCellProfilingEnabled( _profiled );
+		cmp.setCellTimingEnabled( _timed );
+		return (Output) cmp.compile().getComputationFactory().newComputation( new Input() );
+	}
+
+
+	public static final class Input
+	{
+		public double getScale()
+		{
+			return 3;
+		}
+	}
+
+	public static interface Output extends Resettable
+	{
+		double getResult();
+		double getOther();
+	}
+
+}
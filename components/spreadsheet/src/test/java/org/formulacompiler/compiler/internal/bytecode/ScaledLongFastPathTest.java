@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.bytecode;
+
+import java.math.BigDecimal;
+
+import org.formulacompiler.compiler.FormulaCompiler;
+import org.formulacompiler.compiler.Function;
+import org.formulacompiler.compiler.Operator;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.Spreadsheet;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.spreadsheet.SpreadsheetBinder.Section;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder.CellRef;
+
+import junit.framework.TestCase;
+
+
+public class ScaledLongFastPathTest extends TestCase
+{
+	private static final String[] VALUES = { "0", "1", "-1", "2.5", "3", "-7.125", "0.0001", "12345.6789",
+			"-0.00005", "99999999.9999" };
+
+
+	public void testNotUsedByDefault() throws Exception
+	{
+		assertFalse( isFastPath( newComputation( Function.IF, false, "1", "2" ) ) );
+	}
+
+	public void testSameResultsAsBigDecimal() throws Exception
+	{
+		for (String a : VALUES) {
+			for (String b : VALUES) {
+				final Output fast = newComputation( Function.IF, true, a, b );
+				final Output exact = newComputation( Function.IF, false, a, b );
+				assertTrue( isFastPath( fast ) );
+				final String msg = a + ", " + b;
+				assertEquals( msg, exact.getSum(), fast.getSum() );
+				assertEquals( msg, exact.getProduct(), fast.getProduct() );
+				if (0 != new BigDecimal( b ).signum()) {
+					assertEquals( msg, exact.getQuotient(), fast.getQuotient() );
+				}
+				assertEquals( msg, exact.getDistance(), fast.getDistance() );
+				assertEquals( msg, exact.isGreater(), fast.isGreater() );
+			}
+		}
+	}
+
+	public void testFallsBackOnOverflow() throws Exception
+	{
+		final Output fast = newComputation( Function.IF, true, "1000000000000", "1000000000000" );
+		assertTrue( isFastPath( fast ) );
+		assertEquals( new BigDecimal( "2000000000000.0000" ), fast.getSum() );
+		assertEquals( new BigDecimal( "1000000000000000000000000.0000" ), fast.getProduct() );
+		assertEquals( new BigDecimal( "1.0000" ), fast.getQuotient() );
+	}
+
+	public void testFallsBackOnLargeInputs() throws Exception
+	{
+		final Output fast = newComputation( Function.IF, true, "1000000000000000", "-2" );
+		assertEquals( new BigDecimal( "999999999999998.0000" ), fast.getSum() );
+		assertEquals( new BigDecimal( "1000000000000002.0000" ), fast.getDistance() );
+		assertTrue( fast.isGreater() );
+	}
+
+	public void testDivisionByZero() throws Exception
+	{
+		final Output fast = newComputation( Function.IF, true, "1", "0" );
+		final Output exact = newComputation( Function.IF, false, "1", "0" );
+		assertEquals( exact.getSum(), fast.getSum() );
+		try {
+			fast.getQuotient();
+			fail();
+		}
+		catch (ArithmeticException e) {
+			// expected, just like the BigDecimal engine
+		}
+	}
+
+	public void testUnsupportedModelCompilesNormally() throws Exception
+	{
+		final Output output = newComputation( Function.ROUND, true, "2.5", "0" );
+		assertFalse( isFastPath( output ) );
+		assertEquals( new BigDecimal( "3.0000" ), output.getDistance() );
+	}
+
+
+	private boolean isFastPath( Output _output )
+	{
+		try {
+			_output.getClass().getDeclaredField( ScaledLongFastPath.EXACT_MEMBER_NAME );
+			return true;
+		}
+		catch (NoSuchFieldException e) {
+			return false;
+		}
+	}
+
+	private Output newComputation( Function _distance, boolean _fastPath, String _a, String _b ) throws Exception
+	{
+		final SpreadsheetBuilder bld = SpreadsheetCompiler.newSpreadsheetBuilder();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "A" );
+		final CellRef a = bld.currentCell();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "B" );
+		final CellRef b = bld.currentCell();
+		bld.newRow();
+		bld.newCell( bld.op( Operator.PLUS, bld.ref( a ), bld.ref( b ) ) );
+		bld.nameCell( "Sum" );
+		bld.newCell( bld.op( Operator.TIMES, bld.ref( a ), bld.ref( b ) ) );
+		bld.nameCell( "Product" );
+		bld.newCell( bld.op( Operator.DIV, bld.ref( a ), bld.ref( b ) ) );
+		bld.nameCell( "Quotient" );
+		bld.newCell( bld.op( Operator.GREATER, bld.ref( a ), bld.ref( b ) ) );
+		bld.nameCell( "Greater" );
+		final CellRef greater = bld.currentCell();
+		if (Function.ROUND == _distance) {
+			bld.newCell( bld.fun( Function.ROUND, bld.ref( a ), bld.ref( b ) ) );
+		}
+		else {
+			bld.newCell( bld.fun( Function.IF, bld.ref( greater ), bld.op( Operator.MINUS, bld.ref( a ), bld.ref( b ) ),
+					bld.op( Operator.MINUS, bld.ref( b ), bld.ref( a ) ) ) );
+		}
+		bld.nameCell( "Distance" );
+
+		final Spreadsheet sht = bld.getSpreadsheet();
+		final EngineBuilder cmp = SpreadsheetCompiler.newEngineBuilder();
+		cmp.setSpreadsheet( sht );
+		cmp.setInputClass( Input.class );
+		cmp.setOutputClass( Output.class );
+		cmp.setNumericType( FormulaCompiler.getNumericType( BigDecimal.class, 4, BigDecimal.ROUND_HALF_UP ) );
+		cmp.setScaledLongFastPathEnabled( _fastPath );
+
+		final Section root = cmp.getRootBinder();
+		root.defineInputCell( sht.getCell( "A" ), "getA" );
+		root.defineInputCell( sht.getCell( "B" ), "getB" );
+		root.defineOutputCell( sht.getCell( "Sum" ), "getSum" );
+		root.defineOutputCell( sht.getCell( "Product" ), "getProduct" );
+		root.defineOutputCell( sht.getCell( "Quotient" ), "getQuotient" );
+		root.defineOutputCell( sht.getCell( "Greater" ), "isGreater" );
+		root.defineOutputCell( sht.getCell( "Distance" ), "getDistance" );
+
+		return (Output) cmp.compile().getComputationFactory().newComputation(
+				new Input( new BigDecimal( _a ), new BigDecimal( _b ) ) );
+	}
+
+
+	public static class Input
+	{
+		private final BigDecimal a;
+		private final BigDecimal b;
+
+		public Input( BigDecimal _a, BigDecimal _b )
+		{
+			this.a = _a;
+			this.b = _b;
+		}
+
+		public BigDecimal getA()
+		{
+			return this.a;
+		}
+
+		public BigDecimal getB()
+		{
+			return this.b;
+		}
+	}
+
+	public static interface Output
+	{
+		BigDecimal getSum();
+		BigDecimal getProduct();
+		BigDecimal getQuotient();
+		boolean isGreater();
+		BigDecimal getDistance();
+	}
+
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.compiler.internal.engine;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.Function;
+import org.formulacompiler.compiler.NumericType;
+import org.formulacompiler.compiler.Operator;
+import org.formulacompiler.compiler.SaveableEngine;
+import org.formulacompiler.runtime.Computation;
+import org.formulacompiler.runtime.Engine;
+import org.formulacompiler.runtime.Resettable;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.Spreadsheet;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.spreadsheet.SpreadsheetBinder.Section;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder.CellRef;
+
+import junit.framework.TestCase;
+
+
+public class TieredEngineTest extends TestCase
+{
+
+	public void testNotTieredByDefault() throws Exception
+	{
+		assertFalse( newEngine( Output.class, SpreadsheetCompiler.DOUBLE, false, null ) instanceof TieredEngine );
+	}
+
+	public void testNotTieredForOutputClass() throws Exception
+	{
+		assertFalse( newEngine( AbstractOutput.class, SpreadsheetCompiler.DOUBLE, true, null ) instanceof TieredEngine );
+	}
+
+	public void testDoubles() throws Exception
+	{
+		assertInterpretedUntilCompiled( SpreadsheetCompiler.DOUBLE );
+	}
+
+	public void testBigDecimals() throws Exception
+	{
+		assertInterpretedUntilCompiled( SpreadsheetCompiler.BIGDECIMAL128 );
+	}
+
+	private void assertInterpretedUntilCompiled( NumericType _type ) throws Exception
+	{
+		final Engine plain = newEngine( Output.class, _type, false, null );
+		final GatedClassLoader gate = new GatedClassLoader();
+		final TieredEngine tiered = (TieredEngine) newEngine( Output.class, _type, true, gate );
+		assertFalse( tiered.isCompiled() );
+
+		final Input[] inputs = { new Input( 2, 4, "abc" ), new Input( 1, 0, "" ), new Input( -3.5, 0.25, "x" ) };
+		final Output[] interpreted = new Output[ inputs.length ];
+		for (int i = 0; i < inputs.length; i++) {
+			interpreted[ i ] = (Output) tiered.getComputationFactory().newComputation( inputs[ i ] );
+			assertTrue( Proxy.isProxyClass( interpreted[ i ].getClass() ) );
+			assertTrue( interpreted[ i ] instanceof Computation );
+			final Output expected = (Output) plain.getComputationFactory().newComputation( inputs[ i ] );
+			assertEquals( expected.getTotal(), interpreted[ i ].getTotal() );
+			assertEquals( expected.getRatio(), interpreted[ i ].getRatio() );
+			assertEquals( expected.getGreeting(), interpreted[ i ].getGreeting() );
+		}
+		assertFalse( tiered.isCompiled() );
+
+		// Outputs the interpreter cannot compute wait for the compiled engine.
+		gate.open();
+		for (int i = 0; i < inputs.length; i++) {
+			final Output expected = (Output) plain.getComputationFactory().newComputation( inputs[ i ] );
+			assertEquals( expected.getDated(), interpreted[ i ].getDated() );
+			assertEquals( expected.getTotal(), interpreted[ i ].getTotal() );
+		}
+		tiered.getCompiledEngine();
+		assertTrue( tiered.isCompiled() );
+
+		final Output compiled = (Output) tiered.getComputationFactory().newComputation( inputs[ 0 ] );
+		assertFalse( Proxy.isProxyClass( compiled.getClass() ) );
+		assertEquals( interpreted[ 0 ].getTotal(), compiled.getTotal() );
+		assertEquals( interpreted[ 0 ].getGreeting(), compiled.getGreeting() );
+	}
+
+	public void testResetDropsCachedValues() throws Exception
+	{
+		assertReadsChangedInputs( true );
+	}
+
+	public void testUncachedReadsInputsAgain() throws Exception
+	{
+		assertReadsChangedInputs( false );
+	}
+
+	/**
+	 * Interpreted and compiled computations must see changed inputs alike, so results do not depend
+	 * on whether the background compilation has finished yet.
+	 */
+	private void assertReadsChangedInputs( boolean _caching ) throws Exception
+	{
+		final GatedClassLoader gate = new GatedClassLoader();
+		final TieredEngine tiered = (TieredEngine) newEngine( ResettableOutput.class, SpreadsheetCompiler.DOUBLE, true,
+				_caching, gate );
+		try {
+			final Input input = new Input( 2, 4, "abc" );
+			final Output output = (Output) tiered.getComputationFactory().newComputation( input );
+			assertTrue( Proxy.isProxyClass( output.getClass() ) );
+			assertReadsChangedInputs( output, input, _caching );
+		}
+		finally {
+			gate.open();
+		}
+		tiered.getCompiledEngine();
+		final Input input = new Input( 2, 4, "abc" );
+		final Output compiled = (Output) tiered.getComputationFactory().newComputation( input );
+		assertFalse( Proxy.isProxyClass( compiled.getClass() ) );
+		assertReadsChangedInputs( compiled, input, _caching );
+	}
+
+	private void assertReadsChangedInputs( Output _output, Input _input, boolean _caching )
+	{
+		assertEquals( 2 * 4 + 2 + 3 + 1.0, _output.getTotal() );
+		_input.amount = 10;
+		if (_caching) {
+			assertEquals( 2 * 4 + 2 + 3 + 1.0, _output.getTotal() );
+			((Resettable) _output).reset();
+		}
+		assertEquals( 10 * 4 + 10 + 3 + 1.0, _output.getTotal() );
+	}
+
+	public void testCompilerErrorsAreReportedByBuilder() throws Exception
+	{
+		try {
+			newUnsupportedBuilder( false ).compile();
+			fail( "Unsupported function not reported" );
+		}
+		catch (CompilerException.UnsupportedExpression e) {
+			// expected
+		}
+
+		final EngineBuilder builder = newUnsupportedBuilder( true );
+		final SaveableEngine engine = builder.compile();
+		assertTrue( engine instanceof TieredEngine );
+		try {
+			builder.awaitCompiledEngine( engine );
+			fail( "Unsupported function not reported" );
+		}
+		catch (CompilerException.UnsupportedExpression e) {
+			// expected
+		}
+		assertTrue( ((TieredEngine) engine).isFailed() );
+		try {
+			engine.getComputationFactory().newComputation( new Input( 1, 1, "a" ) );
+			fail( "Computation made by engine that failed to compile" );
+		}
+		catch (IllegalStateException e) {
+			assertTrue( e.getCause() instanceof CompilerException.UnsupportedExpression );
+		}
+	}
+
+	private EngineBuilder newUnsupportedBuilder( boolean _tiered ) throws Exception
+	{
+		final SpreadsheetBuilder bld = SpreadsheetCompiler.newSpreadsheetBuilder();
+		bld.newCell( bld.cst( "" ) );
+		bld.nameCell( "Name" );
+		final CellRef name = bld.currentCell();
+		bld.newCell( bld.fun( Function.ASC, bld.ref( name ) ) );
+		bld.nameCell( "Result" );
+
+		final Spreadsheet sht = bld.getSpreadsheet();
+		final EngineBuilder cmp = SpreadsheetCompiler.newEngineBuilder();
+		cmp.setSpreadsheet( sht );
+		cmp.setInputClass( Input.class );
+		cmp.setOutputClass( UnsupportedOutput.class );
+		cmp.setTieredCompilationEnabled( _tiered );
+		final Section root = cmp.getRootBinder();
+		root.defineInputCell( sht.getCell( "Name" ), "getName" );
+		root.defineOutputCell( sht.getCell( "Result" ), "getResult" );
+		return cmp;
+	}
+
+
+	private Engine newEngine( Class _outputClass, NumericType _type, boolean _tiered, ClassLoader _parent )
+			throws Exception
+	{
+		return newEngine( _outputClass, _type, _tiered, false, _parent );
+	}
+
+	private Engine newEngine( Class _outputClass, NumericType _type, boolean _tiered, boolean _caching,
+			ClassLoader _parent ) throws Exception
+	{
+		final SpreadsheetBuilder bld = SpreadsheetCompiler.newSpreadsheetBuilder();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "Amount" );
+		final CellRef amount = bld.currentCell();
+		bld.newCell( bld.cst( 1 ) );
+		bld.nameCell( "Rate" );
+		final CellRef rate = bld.currentCell();
+		bld.newCell( bld.cst( "" ) );
+		bld.nameCell( "Name" );
+		final CellRef name = bld.currentCell();
+		bld.newCell( bld.cst( 3 ) );
+		final CellRef three = bld.currentCell();
+		bld.newRow();
+		bld.newCell( bld.op( Operator.PLUS, bld.op( Operator.TIMES, bld.ref( amount ), bld.ref( rate ) ), bld.fun(
+				Function.SUM, bld.ref( amount ), bld.ref( three ), bld.ref( bld.cst( 1 ) ) ) ) );
+		bld.nameCell( "Total" );
+		bld.newCell( bld.fun( Function.IF, bld.op( Operator.GREATER, bld.ref( rate ), bld.ref( bld.cst( 0 ) ) ), bld.op(
+				Operator.DIV, bld.ref( amount ), bld.ref( rate ) ), bld.ref( bld.cst( 0 ) ) ) );
+		bld.nameCell( "Ratio" );
+		bld.newCell( bld.op( Operator.CONCAT, bld.ref( bld.cst( "Hello " ) ), bld.fun( Function.UPPER, bld.ref( name ) ) ) );
+		bld.nameCell( "Greeting" );
+		bld.newCell( bld.op( Operator.PLUS, bld.op( Operator.TIMES, bld.fun( Function.TODAY ), bld.ref( bld.cst( 0 ) ) ),
+				bld.ref( amount ) ) );
+		bld.nameCell( "Dated" );
+
+		final Spreadsheet sht = bld.getSpreadsheet();
+		final EngineBuilder cmp = SpreadsheetCompiler.newEngineBuilder();
+		cmp.setSpreadsheet( sht );
+		cmp.setInputClass( Input.class );
+		cmp.setOutputClass( _outputClass );
+		cmp.setNumericType( _type );
+		cmp.setTieredCompilationEnabled( _tiered );
+		cmp.setFullCaching( _caching );
+		if (_parent != null) {
+			cmp.setParentClassLoaderForEngine( _parent );
+		}
+
+		final Section root = cmp.getRootBinder();
+		root.defineInputCell( sht.getCell( "Amount" ), "getAmount" );
+		root.defineInputCell( sht.getCell( "Rate" ), "getRate" );
+		root.defineInputCell( sht.getCell( "Name" ), "getName" );
+		root.defineOutputCell( sht.getCell( "Total" ), "getTotal" );
+		root.defineOutputCell( sht.getCell( "Ratio" ), "getRatio" );
+		root.defineOutputCell( sht.getCell( "Greeting" ), "getGreeting" );
+		root.defineOutputCell( sht.getCell( "Dated" ), "getDated" );
+
+		return cmp.compile();
+	}
+
+
+	/**
+	 * Holds back the background compilation until opened, so the tests can rely on the engine still
+	 * being interpreted.
+	 */
+	private static final class GatedClassLoader extends ClassLoader
+	{
+		private final CountDownLatch latch = new CountDownLatch( 1 );
+
+		GatedClassLoader()
+		{
+			super( TieredEngineTest.class.getClassLoader() );
+		}
+
+		void open()
+		{
+			this.latch.countDown();
+		}
+
+		@Override
+		protected synchronized Class<?> loadClass( String _name, boolean _resolve ) throws ClassNotFoundException
+		{
+			try {
+				if (!this.latch.await( 60, TimeUnit.SECONDS )) {
+					throw new ClassNotFoundException( _name + " (gate never opened)" );
+				}
+			}
+			catch (InterruptedException e) {
+				throw new ClassNotFoundException( _name, e );
+			}
+			return super.loadClass( _name, _resolve );
+		}
+	}
+
+
+	public static class Input
+	{
+		double amount;
+		private final double rate;
+		private final String name;
+
+		public Input( double _amount, double _rate, String _name )
+		{
+			this.amount = _amount;
+			this.rate = _rate;
+			this.name = _name;
+		}
+
+		public double getAmount()
+		{
+			return this.amount;
+		}
+
+		public double getRate()
+		{
+			return this.rate;
+		}
+
+		public String getName()
+		{
+			return this.name;
+		}
+	}
+
+	public static interface Output
+	{
+		double getTotal();
+		double getRatio();
+		String getGreeting();
+		double getDated();
+	}
+
+	public static interface UnsupportedOutput
+	{
+		double getResult();
+	}
+
+	public static interface ResettableOutput extends Output, Resettable
+	{
+		// adds reset()
+	}
+
+	public static abstract class AbstractOutput implements Output
+	{
+		// not interpretable
+	}
+
+}
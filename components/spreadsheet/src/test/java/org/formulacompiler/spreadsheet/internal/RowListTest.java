@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.spreadsheet.internal;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.formulacompiler.runtime.ComputationMode;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RowListTest
+{
+	private static final int MANY = 1000000;
+
+	@Test
+	public void testRepeatedRowsAreCopiedOnAccess()
+	{
+		final SheetImpl sheet = newSheet();
+		final RowImpl template = new RowImpl( sheet );
+		new CellWithConstant( template, 1.0 );
+		template.addEmptyCells( 1 );
+		new CellWithConstant( template, "x" );
+		sheet.repeatLastRow( MANY );
+
+		final List<RowImpl> rows = sheet.getRowList();
+		assertEquals( MANY + 1, rows.size() );
+		final RowImpl row = rows.get( MANY / 2 );
+		assertSame( row, rows.get( MANY / 2 ) );
+		assertEquals( MANY / 2, row.getRowIndex() );
+		assertEquals( 3, row.getCellList().size() );
+		assertNotSame( template.getCellList().get( 0 ), row.getCellList().get( 0 ) );
+		assertEquals( 1.0, row.getCellList().get( 0 ).getConstantValue() );
+		assertNull( row.getCellList().get( 1 ) );
+		assertEquals( "x", row.getCellList().get( 2 ).getConstantValue() );
+		assertEquals( new CellIndex( sheet.getSpreadsheet(), 0, 2, MANY / 2 ), row.getCellList().get( 2 )
+				.getCellIndex() );
+	}
+
+	@Test
+	public void testEmptyRowsAreCreatedOnAccess()
+	{
+		final SheetImpl sheet = newSheet();
+		sheet.addEmptyRows( MANY );
+		final RowImpl last = new RowImpl( sheet );
+		new CellWithConstant( last, 2.0 );
+
+		final List<RowImpl> rows = sheet.getRowList();
+		assertEquals( MANY + 1, rows.size() );
+		assertSame( last, rows.get( MANY ) );
+		assertEquals( 0, rows.get( 17 ).getCellList().size() );
+		assertEquals( 17, rows.get( 17 ).getRowIndex() );
+	}
+
+	@Test
+	public void testRangeOnlyCreatesAddressedRows()
+	{
+		final SheetImpl sheet = newSheet();
+		final RowImpl template = new RowImpl( sheet );
+		new CellWithConstant( template, 3.0 );
+		sheet.repeatLastRow( MANY );
+
+		final CellRange range = CellRange.getCellRange( new CellIndex( sheet.getSpreadsheet(), 0, 0, 10 ),
+				new CellIndex( sheet.getSpreadsheet(), 0, 0, 12 ) );
+		int count = 0;
+		for (CellInstance cell : range.getCellInstances()) {
+			assertEquals( 3.0, cell.getConstantValue() );
+			count++;
+		}
+		assertEquals( 3, count );
+	}
+
+	@Test
+	public void testTrimDropsTrailingEmptyRows()
+	{
+		final SheetImpl sheet = newSheet();
+		final RowImpl first = new RowImpl( sheet );
+		new CellWithConstant( first, 4.0 );
+		sheet.repeatLastRow( 2 );
+		sheet.addEmptyRows( MANY );
+		new RowImpl( sheet );
+		sheet.addEmptyRows( MANY );
+
+		((SpreadsheetImpl) sheet.getSpreadsheet()).trim();
+		final List<RowImpl> rows = sheet.getRowList();
+		assertEquals( 3, rows.size() );
+		assertEquals( 4.0, rows.get( 2 ).getCellList().get( 0 ).getConstantValue() );
+	}
+
+	@Test
+	public void testConcurrentReadsCreateEachRowOnce() throws Exception
+	{
+		final SheetImpl sheet = newSheet();
+		final RowImpl template = new RowImpl( sheet );
+		new CellWithConstant( template, 5.0 );
+		final int n = 16383; // n + 1 is a power of two, so every odd stride visits all rows.
+		sheet.repeatLastRow( n );
+
+		final List<RowImpl> rows = sheet.getRowList();
+		final int nThreads = 8;
+		final RowImpl[][] seen = new RowImpl[ nThreads ][ n + 1 ];
+		final Throwable[] errors = new Throwable[ nThreads ];
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final Thread[] threads = new Thread[ nThreads ];
+		for (int t = 0; t < nThreads; t++) {
+			final int thread = t;
+			threads[ t ] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try {
+						start.await();
+						// Each thread walks the rows with a different stride, so they race on different rows.
+						final int stride = 2 * thread + 1;
+						for (int i = 0; i <= n; i++) {
+							final int index = (int) ((long) i * stride % (n + 1));
+							seen[ thread ][ index ] = rows.get( index );
+						}
+					}
+					catch (Throwable e) {
+						errors[ thread ] = e;
+					}
+				}
+			};
+			threads[ t ].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		for (int t = 0; t < nThreads; t++) {
+			if (null != errors[ t ]) throw new AssertionError( errors[ t ] );
+		}
+		for (int i = 0; i <= n; i++) {
+			final RowImpl row = rows.get( i );
+			assertEquals( i, row.getRowIndex() );
+			assertEquals( 5.0, row.getCellList().get( 0 ).getConstantValue() );
+			for (int t = 0; t < nThreads; t++) {
+				assertSame( row, seen[ t ][ i ] );
+			}
+		}
+	}
+
+
+	private static SheetImpl newSheet()
+	{
+		return new SheetImpl( new SpreadsheetImpl( ComputationMode.EXCEL ) );
+	}
+
+}
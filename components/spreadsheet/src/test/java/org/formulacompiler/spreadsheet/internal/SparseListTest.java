@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.spreadsheet.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SparseListTest
+{
+	@Test
+	public void testAppend()
+	{
+		final List<String> list = newList( "a", null, null, "d", null );
+		assertEquals( 5, list.size() );
+		assertEquals( Arrays.asList( "a", null, null, "d", null ), list );
+		assertEquals( "d", list.get( 3 ) );
+		assertNull( list.get( 4 ) );
+	}
+
+	@Test
+	public void testSet()
+	{
+		final List<String> list = newList( "a", null, "c" );
+		assertNull( list.set( 1, "b" ) );
+		assertEquals( "c", list.set( 2, null ) );
+		assertEquals( Arrays.asList( "a", "b", null ), list );
+	}
+
+	@Test
+	public void testRemove()
+	{
+		final List<String> list = newList( "a", null, "c", null );
+		assertNull( list.remove( 3 ) );
+		assertNull( list.remove( 1 ) );
+		assertEquals( Arrays.asList( "a", "c" ), list );
+		assertEquals( "a", list.remove( 0 ) );
+		assertEquals( Arrays.asList( "c" ), list );
+	}
+
+	@Test
+	public void testSubList()
+	{
+		final List<String> list = newList( null, "b", null, "d", "e" );
+		assertEquals( Arrays.asList( "b", null, "d" ), list.subList( 1, 4 ) );
+	}
+
+	@Test( expected = IndexOutOfBoundsException.class )
+	public void testOutOfBounds()
+	{
+		newList( "a", null ).get( 2 );
+	}
+
+	@Test
+	public void testManyElements()
+	{
+		final SparseList<Integer> list = new SparseList<Integer>();
+		for (int i = 0; i < 1000; i++) {
+			list.add( (i % 7 == 0) ? i : null );
+		}
+		list.trimToSize();
+		for (int i = 999; i >= 0; i--) {
+			assertEquals( (i % 7 == 0) ? Integer.valueOf( i ) : null, list.get( i ) );
+		}
+	}
+
+
+	private static SparseList<String> newList( String... _elements )
+	{
+		final SparseList<String> result = new SparseList<String>();
+		for (String element : _elements) {
+			result.add( element );
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.spreadsheet.internal.compiler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.formulacompiler.compiler.SaveableEngine;
+import org.formulacompiler.compiler.internal.expressions.parser.CellRefFormat;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.spreadsheet.internal.CellIndex;
+import org.formulacompiler.spreadsheet.internal.CellWithConstant;
+import org.formulacompiler.spreadsheet.internal.CellWithLazilyParsedExpression;
+import org.formulacompiler.spreadsheet.internal.RowImpl;
+import org.formulacompiler.spreadsheet.internal.SheetImpl;
+import org.formulacompiler.spreadsheet.internal.SpreadsheetImpl;
+import org.formulacompiler.spreadsheet.internal.parser.LazySpreadsheetExpressionParser;
+
+import junit.framework.TestCase;
+
+public class ParallelExpressionParserTest extends TestCase
+{
+	private static final int ROWS = 2000;
+
+
+	// DO NOT REFORMAT BELOW THIS LINE
+	public static class Inputs {
+		public double input() { return 2.0; }
+	}
+
+	public static class Outputs {
+		public double output() { return 0.0; }
+	}
+	// DO NOT REFORMAT ABOVE THIS LINE
+
+
+	public void testParallelCompileMatchesSequential() throws Exception
+	{
+		final double expected = compute( compile( null ) );
+		final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		try {
+			assertEquals( expected, compute( compile( executor ) ), 0.0001 );
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+
+	public void testUnreferencedParseErrorIsIgnored() throws Exception
+	{
+		final ExecutorService executor = Executors.newFixedThreadPool( 2 );
+		try {
+			final SpreadsheetImpl workbook = newWorkbook();
+			final RowImpl row = new RowImpl( workbook.getSheetList().get( 0 ) );
+			new CellWithLazilyParsedExpression( row, lazy( "A1+*" ) );
+			new ParallelExpressionParser( executor ).parseAll( workbook );
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+
+	private SaveableEngine compile( ExecutorService _executor ) throws Exception
+	{
+		final EngineBuilder eb = SpreadsheetCompiler.newEngineBuilder();
+		eb.setSpreadsheet( newWorkbook() );
+		eb.setInputClass( Inputs.class );
+		eb.setOutputClass( Outputs.class );
+		eb.bindAllByName();
+		eb.setCompileExecutor( _executor );
+		return eb.compile();
+	}
+
+	private double compute( SaveableEngine _engine )
+	{
+		return ((Outputs) _engine.getComputationFactory().newComputation( new Inputs() )).output();
+	}
+
+	private SpreadsheetImpl newWorkbook()
+	{
+		final SpreadsheetImpl workbook = new SpreadsheetImpl();
+		final SheetImpl sheet = new SheetImpl( workbook );
+		final RowImpl first = new RowImpl( sheet );
+		new CellWithConstant( first, 1.0 );
+		workbook.defineModelRangeName( "INPUT", new CellIndex( workbook, 0, 0, 0 ) );
+		for (int i = 2; i <= ROWS; i++) {
+			final RowImpl row = new RowImpl( sheet );
+			new CellWithConstant( row, (double) i );
+			new CellWithLazilyParsedExpression( row, lazy( "A" + i + "*$A$1+" + i ) );
+		}
+		final RowImpl last = new RowImpl( sheet );
+		new CellWithLazilyParsedExpression( last, lazy( "SUM(B2:B" + ROWS + ")+MAX(A2:A" + ROWS + ")" ) );
+		workbook.defineModelRangeName( "OUTPUT", new CellIndex( workbook, 0, 0, ROWS ) );
+		return workbook;
+	}
+
+	private LazySpreadsheetExpressionParser lazy( String _expression )
+	{
+		return new LazySpreadsheetExpressionParser( _expression, CellRefFormat.A1 );
+	}
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.formulacompiler.spreadsheet.internal.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.NumericType;
+import org.formulacompiler.compiler.Operator;
+import org.formulacompiler.compiler.SaveableEngine;
+import org.formulacompiler.compiler.internal.expressions.ExpressionNode;
+import org.formulacompiler.compiler.internal.expressions.parser.CellRefFormat;
+import org.formulacompiler.runtime.ComputationMode;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.EngineCache;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder.CellRef;
+import org.formulacompiler.spreadsheet.internal.CellIndex;
+import org.formulacompiler.spreadsheet.internal.CellWithConstant;
+import org.formulacompiler.spreadsheet.internal.CellWithLazilyParsedExpression;
+import org.formulacompiler.spreadsheet.internal.LazyExpressionParser;
+import org.formulacompiler.spreadsheet.internal.RowImpl;
+import org.formulacompiler.spreadsheet.internal.SheetImpl;
+import org.formulacompiler.spreadsheet.internal.SpreadsheetImpl;
+import org.formulacompiler.spreadsheet.internal.builder.SpreadsheetBuilderImpl;
+import org.formulacompiler.spreadsheet.internal.parser.LazySpreadsheetExpressionParser;
+
+import junit.framework.TestCase;
+
+public class EngineCacheTest extends TestCase
+{
+	private static final double EPS = 0.0001;
+	private static final File DIR = new File( "temp/test/enginecache" );
+
+
+	// DO NOT REFORMAT BELOW THIS LINE
+	public static class Inputs {
+		public double input() { return 10.0; }
+	}
+
+	public static class Outputs {
+		public double output() { return 0.0; }
+	}
+	// DO NOT REFORMAT ABOVE THIS LINE
+
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		newCache( Long.MAX_VALUE ).clear();
+	}
+
+
+	public void testHitAfterMiss() throws Exception
+	{
+		final EngineCache cache = newCache( Long.MAX_VALUE );
+
+		final SaveableEngine compiled = compile( cache, 2, SpreadsheetCompiler.DOUBLE );
+		assertEquals( 0, cache.getHitCount() );
+		assertEquals( 1, cache.getMissCount() );
+		assertEquals( 1, cachedFiles().length );
+
+		final SaveableEngine cached = compile( cache, 2, SpreadsheetCompiler.DOUBLE );
+		assertEquals( 1, cache.getHitCount() );
+		assertEquals( 1, cache.getMissCount() );
+		assertNotSame( compiled, cached );
+		assertEquals( 20.0, compute( compiled ), EPS );
+		assertEquals( 20.0, compute( cached ), EPS );
+	}
+
+
+	public void testChangedSpreadsheetMisses() throws Exception
+	{
+		final EngineCache cache = newCache( Long.MAX_VALUE );
+		compile( cache, 2, SpreadsheetCompiler.DOUBLE );
+		assertEquals( 30.0, compute( compile( cache, 3, SpreadsheetCompiler.DOUBLE ) ), EPS );
+		assertEquals( 0, cache.getHitCount() );
+		assertEquals( 2, cache.getMissCount() );
+		assertEquals( 2, cachedFiles().length );
+	}
+
+
+	public void testChangedOptionMisses() throws Exception
+	{
+		final EngineCache cache = newCache( Long.MAX_VALUE );
+		compile( cache, 2, SpreadsheetCompiler.DOUBLE );
+		compile( cache, 2, SpreadsheetCompiler.BIGDECIMAL128 );
+		assertEquals( 0, cache.getHitCount() );
+		assertEquals( 2, cache.getMissCount() );
+	}
+
+
+	public void testEvictsLeastRecentlyUsed() throws Exception
+	{
+		compile( newCache( Long.MAX_VALUE ), 2, SpreadsheetCompiler.DOUBLE );
+		final File[] files = cachedFiles();
+		assertEquals( 1, files.length );
+		final File first = files[ 0 ];
+		first.setLastModified( first.lastModified() - 10000 );
+
+		final EngineCache cache = newCache( first.length() + first.length() / 2 );
+		compile( cache, 3, SpreadsheetCompiler.DOUBLE );
+		assertEquals( 1, cachedFiles().length );
+		assertFalse( first.exists() );
+	}
+
+
+	public void testCorruptEntryIsRecompiled() throws Exception
+	{
+		compile( newCache( Long.MAX_VALUE ), 2, SpreadsheetCompiler.DOUBLE );
+		final File[] files = cachedFiles();
+		assertEquals( 1, files.length );
+		final OutputStream garbage = new FileOutputStream( files[ 0 ] );
+		try {
+			garbage.write( "not an engine".getBytes( "UTF-8" ) );
+		}
+		finally {
+			garbage.close();
+		}
+
+		final EngineCache cache = newCache( Long.MAX_VALUE );
+		assertEquals( 20.0, compute( compile( cache, 2, SpreadsheetCompiler.DOUBLE ) ), EPS );
+		assertEquals( 0, cache.getHitCount() );
+		assertEquals( 1, cache.getMissCount() );
+		assertTrue( files[ 0 ].length() > "not an engine".length() );
+
+		assertEquals( 20.0, compute( compile( cache, 2, SpreadsheetCompiler.DOUBLE ) ), EPS );
+		assertEquals( 1, cache.getHitCount() );
+	}
+
+
+	public void testHitDoesNotParse() throws Exception
+	{
+		final EngineCache cache = newCache( Long.MAX_VALUE );
+		final CountingParser first = new CountingParser();
+		assertEquals( 20.0, compute( compileLazy( cache, first ) ), EPS );
+		assertEquals( 1, first.parsed );
+
+		final CountingParser second = new CountingParser();
+		assertEquals( 20.0, compute( compileLazy( cache, second ) ), EPS );
+		assertEquals( 1, cache.getHitCount() );
+		assertEquals( 0, second.parsed );
+	}
+
+
+	private EngineCache newCache( long _maximumSize )
+	{
+		final EngineCache.Config cfg = new EngineCache.Config();
+		cfg.directory = DIR;
+		cfg.maximumSize = _maximumSize;
+		return SpreadsheetCompiler.newEngineCache( cfg );
+	}
+
+	private File[] cachedFiles()
+	{
+		return DIR.listFiles();
+	}
+
+	private SaveableEngine compile( EngineCache _cache, int _factor, NumericType _numericType ) throws Exception
+	{
+		final SpreadsheetBuilderImpl b = new SpreadsheetBuilderImpl();
+		b.newCell( b.cst( 1 ) ).nameCell( "INPUT" );
+		final CellRef input = b.currentCell();
+		b.newCell( b.cst( _factor ) );
+		final CellRef factor = b.currentCell();
+		b.newCell( b.op( Operator.TIMES, b.ref( input ), b.ref( factor ) ) ).nameCell( "OUTPUT" );
+
+		final EngineBuilder eb = SpreadsheetCompiler.newEngineBuilder();
+		eb.setSpreadsheet( b.getSpreadsheet() );
+		eb.setInputClass( Inputs.class );
+		eb.setOutputClass( Outputs.class );
+		eb.setNumericType( _numericType );
+		eb.bindAllByName();
+		eb.setEngineCache( _cache );
+		return eb.compile();
+	}
+
+	/**
+	 * Compiles a sheet whose output formula is parsed lazily by the given parser, as loaders do, and
+	 * which ends in a long run of repeated rows.
+	 */
+	private SaveableEngine compileLazy( EngineCache _cache, LazyExpressionParser _parser ) throws Exception
+	{
+		final SpreadsheetImpl spreadsheet = new SpreadsheetImpl( ComputationMode.EXCEL );
+		final SheetImpl sheet = new SheetImpl( spreadsheet );
+		final RowImpl row = new RowImpl( sheet );
+		new CellWithConstant( row, 10.0 );
+		new CellWithLazilyParsedExpression( row, _parser );
+		sheet.repeatLastRow( 1000000 );
+		spreadsheet.defineModelRangeName( "INPUT", new CellIndex( spreadsheet, 0, 0, 0 ) );
+		spreadsheet.defineModelRangeName( "OUTPUT", new CellIndex( spreadsheet, 0, 1, 0 ) );
+
+		final EngineBuilder eb = SpreadsheetCompiler.newEngineBuilder();
+		eb.setSpreadsheet( spreadsheet );
+		eb.setInputClass( Inputs.class );
+		eb.setOutputClass( Outputs.class );
+		eb.bindAllByName();
+		eb.setEngineCache( _cache );
+		return eb.compile();
+	}
+
+	private static final class CountingParser implements LazyExpressionParser
+	{
+		private final LazyExpressionParser parser = new LazySpreadsheetExpressionParser( "RC[-1]*2",
+				CellRefFormat.R1C1 );
+		int parsed;
+
+		public ExpressionNode parseExpression( CellIndex _cell ) throws CompilerException
+		{
+			this.parsed++;
+			return this.parser.parseExpression( _cell );
+		}
+
+		public String getSource()
+		{
+			return this.parser.getSource();
+		}
+	}
+
+	private double compute( SaveableEngine _engine )
+	{
+		return ((Outputs) _engine.getComputationFactory().newComputation( new Inputs() )).output();
+	}
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.tests.utils;
+
+import org.formulacompiler.compiler.CompilerException;
+import org.formulacompiler.compiler.internal.expressions.parser.CellRefFormat;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.spreadsheet.internal.CellIndex;
+import org.formulacompiler.spreadsheet.internal.CellWithConstant;
+import org.formulacompiler.spreadsheet.internal.CellWithLazilyParsedExpression;
+import org.formulacompiler.spreadsheet.internal.RowImpl;
+import org.formulacompiler.spreadsheet.internal.SheetImpl;
+import org.formulacompiler.spreadsheet.internal.SpreadsheetImpl;
+import org.formulacompiler.spreadsheet.internal.parser.LazySpreadsheetExpressionParser;
+
+
+/**
+ * Builds a single sheet row by row. Formulas are given in A1 notation and parsed only when the
+ * engine is compiled, so tests can quickly set up sheets with thousands of cells.
+ */
+public class TestWorkbookBuilder
+{
+	private final SpreadsheetImpl workbook = new SpreadsheetImpl();
+	private final SheetImpl sheet = new SheetImpl( this.workbook );
+	private RowImpl row;
+	private int rowIndex = -1;
+	private int colIndex = -1;
+
+
+	/**
+	 * Returns pseudo-random values between -500 and 512 which vary in sign, so folds like MIN depend
+	 * on all of them.
+	 */
+	public static int value( int _row )
+	{
+		return ((_row * 7919) % 1013) - 500;
+	}
+
+
+	/**
+	 * Starts a sheet whose first row holds the inputs {@code Scale}, {@code Key}, {@code Name}, and
+	 * {@code Offset} (see {@link DatabaseInput}), followed by a table with the columns {@code Key},
+	 * {@code Name}, and {@code Amount} in {@code A2:C(_rows + 2)}. Row {@code i} of the table has the
+	 * key {@code i % 10 + Offset}, the name {@code _names[ i % _names.length ]}, and the amount
+	 * {@code value( i ) * Scale}.
+	 * 
+	 * @param _errorRow is the 1-based table row whose amount is {@code NA()}, or 0 for none.
+	 */
+	public static TestWorkbookBuilder newDatabase( int _rows, String[] _names, int _errorRow )
+	{
+		final TestWorkbookBuilder b = new TestWorkbookBuilder();
+		b.newRow();
+		b.constant( 1.0 ).name( "Scale" );
+		b.constant( 1.0 ).name( "Key" );
+		b.constant( "a" ).name( "Name" );
+		b.constant( 0.0 ).name( "Offset" );
+
+		b.newRow().constant( "Key" ).constant( "Name" ).constant( "Amount" );
+		for (int i = 1; i <= _rows; i++) {
+			b.newRow();
+			b.formula( (i % 10) + "+$D$1" );
+			b.constant( _names[ i % _names.length ] );
+			b.formula( i == _errorRow ? "NA()" : value( i ) + "*$A$1" );
+		}
+		return b;
+	}
+
+
+	public SpreadsheetImpl getWorkbook()
+	{
+		return this.workbook;
+	}
+
+	/**
+	 * Returns the 1-based number of the current row, as used in A1 references.
+	 */
+	public int getRowNumber()
+	{
+		return this.rowIndex + 1;
+	}
+
+	public TestWorkbookBuilder newRow()
+	{
+		this.row = new RowImpl( this.sheet );
+		this.rowIndex++;
+		this.colIndex = -1;
+		return this;
+	}
+
+	public TestWorkbookBuilder constant( Object _value )
+	{
+		new CellWithConstant( this.row, _value );
+		this.colIndex++;
+		return this;
+	}
+
+	public TestWorkbookBuilder formula( String _expression )
+	{
+		new CellWithLazilyParsedExpression( this.row, new LazySpreadsheetExpressionParser( _expression,
+				CellRefFormat.A1 ) );
+		this.colIndex++;
+		return this;
+	}
+
+	/**
+	 * Names the cell added last.
+	 */
+	public TestWorkbookBuilder name( String _name )
+	{
+		this.workbook.defineModelRangeName( _name, new CellIndex( this.workbook, 0, this.colIndex, this.rowIndex ) );
+		return this;
+	}
+
+	/**
+	 * Returns a builder for this sheet with all cells bound by name.
+	 */
+	public EngineBuilder newEngineBuilder( Class _inputClass, Class _outputClass ) throws CompilerException
+	{
+		final EngineBuilder b = SpreadsheetCompiler.newEngineBuilder();
+		b.setSpreadsheet( this.workbook );
+		b.setInputClass( _inputClass );
+		b.setOutputClass( _outputClass );
+		b.bindAllByName();
+		return b;
+	}
+
+
+	/**
+	 * Input for sheets started by {@link TestWorkbookBuilder#newDatabase(int, String[], int)}. It
+	 * counts how often an engine reads the scale, which every amount depends on, and the key offset,
+	 * which every key depends on. So the counts tell how many amounts and keys were computed.
+	 */
+	public static final class DatabaseInput
+	{
+		private final double scale;
+		private final double key;
+		private final String name;
+		private int scaleReads;
+		private int offsetReads;
+
+		public DatabaseInput( double _scale, double _key, String _name )
+		{
+			this.scale = _scale;
+			this.key = _key;
+			this.name = _name;
+		}
+
+		/**
+		 * Returns inputs covering present and missing keys, and names matching only when compared
+		 * case-insensitively.
+		 */
+		public static DatabaseInput[] newSamples()
+		{
+			return new DatabaseInput[] { new DatabaseInput( 1, 3, "b" ), new DatabaseInput( 2, 0, "a" ),
+					new DatabaseInput( 1, 7, "B" ), new DatabaseInput( 1, 42, "b" ), new DatabaseInput( 1, 4, "x" ),
+					new DatabaseInput( -1, 9, "C" ) };
+		}
+
+		public double getScale()
+		{
+			this.scaleReads++;
+			return this.scale;
+		}
+
+		public double getKey()
+		{
+			return this.key;
+		}
+
+		public String getName()
+		{
+			return this.name;
+		}
+
+		public double getOffset()
+		{
+			this.offsetReads++;
+			return 0;
+		}
+
+		public int getScaleReads()
+		{
+			return this.scaleReads;
+		}
+
+		public int getOffsetReads()
+		{
+			return this.offsetReads;
+		}
+
+		@Override
+		public String toString()
+		{
+			return this.scale + ", " + this.key + ", " + this.name;
+		}
+	}
+
+}
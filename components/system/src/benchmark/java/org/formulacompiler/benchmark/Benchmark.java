@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.benchmark;
+
+
+/**
+ * A single measured operation. The runner calls {@link #setUp()} once, then {@link #run()} many
+ * times during warm-up and measurement, then {@link #tearDown()}. Implementations return a value
+ * derived from each run so the JIT cannot discard the measured work.
+ */
+public abstract class Benchmark
+{
+	private final String name;
+	private final String params;
+
+
+	protected Benchmark( String _name, String _params )
+	{
+		super();
+		this.name = _name;
+		this.params = _params;
+	}
+
+
+	public String getName()
+	{
+		return this.name;
+	}
+
+	public String getParams()
+	{
+		return this.params;
+	}
+
+
+	public void setUp() throws Exception
+	{
+		// Nothing by default.
+	}
+
+	public abstract Object run() throws Exception;
+
+	public void tearDown() throws Exception
+	{
+		// Nothing by default.
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return this.name + "[" + this.params + "]";
+	}
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.formulacompiler.runtime.New;
+
+
+/**
+ * Runs the AFC benchmarks and writes the results as CSV, one line per benchmark, so that runs can
+ * be compared mechanically. Each benchmark is warmed up, then measured over several iterations of a
+ * fixed minimum duration. The reported figures are nanoseconds per operation.
+ * <p>
+ * Arguments: an optional regular expression selecting benchmarks by name. System properties:
+ * {@code benchmark.warmup} (warm-up iterations, default 5), {@code benchmark.iterations}
+ * (measured iterations, default 10), {@code benchmark.time} (minimum milliseconds per iteration,
+ * default 500), {@code benchmark.results} (CSV file, default
+ * {@code temp/benchmark/results.csv}), and {@code benchmark.data} (directory of the reference
+ * workbooks, default {@code src/test-reference/data/org/formulacompiler/tests/reference}).
+ */
+public final class BenchmarkRunner
+{
+	static final String CSV_HEADER = "benchmark,params,unit,iterations,mean,stddev,min,max";
+
+	private final int warmupIterations;
+	private final int measuredIterations;
+	private final long iterationNanos;
+	private volatile int sink;
+
+
+	public BenchmarkRunner( int _warmupIterations, int _measuredIterations, long _iterationMillis )
+	{
+		super();
+		this.warmupIterations = _warmupIterations;
+		this.measuredIterations = _measuredIterations;
+		this.iterationNanos = _iterationMillis * 1000000L;
+	}
+
+
+	public static void main( String[] _args ) throws Exception
+	{
+		final Pattern filter = Pattern.compile( _args.length > 0 ? _args[ 0 ] : ".*" );
+		final BenchmarkRunner runner = new BenchmarkRunner( Integer.getInteger( "benchmark.warmup", 5 ), Integer
+				.getInteger( "benchmark.iterations", 10 ), Integer.getInteger( "benchmark.time", 500 ) );
+		final File data = new File( System.getProperty( "benchmark.data",
+				"src/test-reference/data/org/formulacompiler/tests/reference" ) );
+		final File results = new File( System.getProperty( "benchmark.results", "temp/benchmark/results.csv" ) );
+
+		final List<Benchmark> all = New.list();
+		all.addAll( EngineBenchmarks.all() );
+		all.addAll( CompilerBenchmarks.all() );
+		all.addAll( LoaderBenchmarks.all( data ) );
+
+		results.getAbsoluteFile().getParentFile().mkdirs();
+		final PrintWriter out = new PrintWriter( new FileWriter( results ) );
+		try {
+			out.println( CSV_HEADER );
+			for (Benchmark benchmark : all) {
+				if (filter.matcher( benchmark.getName() ).find()) {
+					final Result result = runner.measure( benchmark );
+					System.out.println( result.toDisplayString() );
+					out.println( result.toCsv() );
+					out.flush();
+				}
+			}
+		}
+		finally {
+			out.close();
+		}
+		System.out.println( "Results written to " + results );
+	}
+
+
+	public Result measure( Benchmark _benchmark ) throws Exception
+	{
+		_benchmark.setUp();
+		try {
+			for (int i = 0; i < this.warmupIterations; i++) {
+				iteration( _benchmark );
+			}
+			final double[] nanosPerOp = new double[ this.measuredIterations ];
+			for (int i = 0; i < this.measuredIterations; i++) {
+				nanosPerOp[ i ] = iteration( _benchmark );
+			}
+			return new Result( _benchmark, nanosPerOp );
+		}
+		finally {
+			_benchmark.tearDown();
+		}
+	}
+
+
+	private double iteration( Benchmark _benchmark ) throws Exception
+	{
+		int hash = 0;
+		long ops = 0;
+		final long start = System.nanoTime();
+		long elapsed;
+		do {
+			final Object result = _benchmark.run();
+			if (null != result) hash ^= result.hashCode();
+			ops++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < this.iterationNanos);
+		this.sink ^= hash;
+		return (double) elapsed / ops;
+	}
+
+
+	/**
+	 * Nanoseconds per operation of the measured iterations of one benchmark.
+	 */
+	public static final class Result
+	{
+		private final Benchmark benchmark;
+		private final double mean;
+		private final double stddev;
+		private final double min;
+		private final double max;
+		private final int iterations;
+
+		Result( Benchmark _benchmark, double[] _nanosPerOp )
+		{
+			this.benchmark = _benchmark;
+			this.iterations = _nanosPerOp.length;
+			double sum = 0, min = Double.MAX_VALUE, max = 0;
+			for (double v : _nanosPerOp) {
+				sum += v;
+				if (v < min) min = v;
+				if (v > max) max = v;
+			}
+			this.mean = sum / this.iterations;
+			double squares = 0;
+			for (double v : _nanosPerOp) {
+				squares += (v - this.mean) * (v - this.mean);
+			}
+			this.stddev = this.iterations > 1 ? Math.sqrt( squares / (this.iterations - 1) ) : 0;
+			this.min = min;
+			this.max = max;
+		}
+
+		public double getMean()
+		{
+			return this.mean;
+		}
+
+		public String toCsv()
+		{
+			return String.format( Locale.ENGLISH, "%s,%s,ns/op,%d,%.1f,%.1f,%.1f,%.1f", this.benchmark.getName(),
+					this.benchmark.getParams(), this.iterations, this.mean, this.stddev, this.min, this.max );
+		}
+
+		public String toDisplayString()
+		{
+			return String.format( Locale.ENGLISH, "%-50s %16.1f ns/op (+- %.1f)", this.benchmark, this.mean, this.stddev );
+		}
+	}
+
+}
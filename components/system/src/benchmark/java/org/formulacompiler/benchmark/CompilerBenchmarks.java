@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.benchmark;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.formulacompiler.runtime.New;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.Spreadsheet;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+
+
+/**
+ * Measures {@link EngineBuilder#compile()} on the generated workbook, both built in memory and
+ * loaded from each supported file format. Loaded spreadsheets keep the expressions they parsed, so
+ * the file variants load the file anew for every compilation.
+ * <p>
+ * To split compile time into its phases, each format is also measured loading only, compiling a
+ * loaded spreadsheet whose expressions are already parsed, and compiling with
+ * {@link EngineBuilder#setCompileExecutor(Executor)}. So parsing costs
+ * {@code compile - load - parsed}, and model building and bytecode generation cost {@code parsed}.
+ */
+final class CompilerBenchmarks
+{
+	static final int ROWS = 1000;
+	private static final String[] EXTENSIONS = { ".xls", ".xlsx", ".ods" };
+
+
+	private CompilerBenchmarks()
+	{
+		// Static only.
+	}
+
+
+	static List<Benchmark> all()
+	{
+		final List<Benchmark> result = New.list();
+		result.add( new CompileBuilt() );
+		for (String extension : EXTENSIONS) {
+			result.add( new LoadOnly( extension ) );
+			result.add( new CompileLoaded( extension, false ) );
+			result.add( new CompileLoaded( extension, true ) );
+			result.add( new CompileParsed( extension ) );
+		}
+		return result;
+	}
+
+
+	private static EngineBuilder newEngineBuilder( Spreadsheet _spreadsheet ) throws Exception
+	{
+		final EngineBuilder eb = SpreadsheetCompiler.newEngineBuilder();
+		eb.setSpreadsheet( _spreadsheet );
+		eb.setInputClass( GeneratedWorkbook.Inputs.class );
+		eb.setOutputClass( GeneratedWorkbook.Outputs.class );
+		eb.bindAllByName();
+		return eb;
+	}
+
+
+	private static final class CompileBuilt extends Benchmark
+	{
+		private Spreadsheet spreadsheet;
+
+		CompileBuilt()
+		{
+			super( "compiler.compile", "built" );
+		}
+
+		@Override
+		public void setUp()
+		{
+			this.spreadsheet = GeneratedWorkbook.build( ROWS );
+		}
+
+		@Override
+		public Object run() throws Exception
+		{
+			return newEngineBuilder( this.spreadsheet ).compile();
+		}
+	}
+
+
+	private static abstract class FileBenchmark extends Benchmark
+	{
+		private final String extension;
+		protected File file;
+
+		FileBenchmark( String _name, String _extension, String _variant )
+		{
+			super( _name, _extension.substring( 1 ) + _variant );
+			this.extension = _extension;
+		}
+
+		@Override
+		public void setUp() throws Exception
+		{
+			this.file = File.createTempFile( "afc-benchmark", this.extension );
+			SpreadsheetCompiler.saveSpreadsheet( GeneratedWorkbook.build( ROWS ), this.file, null );
+		}
+
+		@Override
+		public void tearDown() throws Exception
+		{
+			this.file.delete();
+		}
+	}
+
+
+	private static final class LoadOnly extends FileBenchmark
+	{
+
+		LoadOnly( String _extension )
+		{
+			super( "compiler.load", _extension, "" );
+		}
+
+		@Override
+		public Object run() throws Exception
+		{
+			return SpreadsheetCompiler.loadSpreadsheet( this.file );
+		}
+	}
+
+
+	private static final class CompileLoaded extends FileBenchmark
+	{
+		private final boolean parallel;
+		private ExecutorService executor;
+
+		CompileLoaded( String _extension, boolean _parallel )
+		{
+			super( "compiler.compile", _extension, _parallel ? ",parallel" : "" );
+			this.parallel = _parallel;
+		}
+
+		@Override
+		public void setUp() throws Exception
+		{
+			super.setUp();
+			if (this.parallel) {
+				this.executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+			}
+		}
+
+		@Override
+		public Object run() throws Exception
+		{
+			final EngineBuilder eb = newEngineBuilder( SpreadsheetCompiler.loadSpreadsheet( this.file ) );
+			eb.setCompileExecutor( this.executor );
+			return eb.compile();
+		}
+
+		@Override
+		public void tearDown() throws Exception
+		{
+			if (null != this.executor) {
+				this.executor.shutdown();
+			}
+			super.tearDown();
+		}
+	}
+
+
+	private static final class CompileParsed extends FileBenchmark
+	{
+		private Spreadsheet spreadsheet;
+
+		CompileParsed( String _extension )
+		{
+			super( "compiler.compile", _extension, ",parsed" );
+		}
+
+		@Override
+		public void setUp() throws Exception
+		{
+			super.setUp();
+			this.spreadsheet = SpreadsheetCompiler.loadSpreadsheet( this.file );
+			// Parses all the expressions the compiler needs.
+			newEngineBuilder( this.spreadsheet ).compile();
+		}
+
+		@Override
+		public Object run() throws Exception
+		{
+			return newEngineBuilder( this.spreadsheet ).compile();
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.benchmark;
+
+import java.util.List;
+
+import org.formulacompiler.compiler.NumericType;
+import org.formulacompiler.compiler.SaveableEngine;
+import org.formulacompiler.runtime.ComputationFactory;
+import org.formulacompiler.runtime.New;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+
+
+/**
+ * Measures compiled engines: repeated evaluation of one computation, a new computation per
+ * evaluation, and reset cycles of a caching computation. Each runs for double, scaled long, and
+ * {@code BigDecimal} arithmetic, so regressions in the generated code of any numeric type show up.
+ */
+final class EngineBenchmarks
+{
+	static final int ROWS = 200;
+
+	private static final NumericType[] TYPES = { SpreadsheetCompiler.DOUBLE, SpreadsheetCompiler.LONG_SCALE4,
+			SpreadsheetCompiler.BIGDECIMAL128 };
+	private static final String[] TYPE_NAMES = { "double", "long4", "bigdecimal128" };
+
+
+	private EngineBenchmarks()
+	{
+		// Static only.
+	}
+
+
+	static List<Benchmark> all()
+	{
+		final List<Benchmark> result = New.list();
+		for (int i = 0; i < TYPES.length; i++) {
+			result.add( new Evaluate( TYPES[ i ], TYPE_NAMES[ i ] ) );
+			result.add( new NewComputation( TYPES[ i ], TYPE_NAMES[ i ] ) );
+			result.add( new Reset( TYPES[ i ], TYPE_NAMES[ i ] ) );
+		}
+		return result;
+	}
+
+
+	private static abstract class EngineBenchmark extends Benchmark
+	{
+		private final NumericType numericType;
+		private final boolean caching;
+		protected final GeneratedWorkbook.Inputs inputs = new GeneratedWorkbook.Inputs();
+		protected ComputationFactory factory;
+
+		EngineBenchmark( String _name, NumericType _numericType, String _typeName, boolean _caching )
+		{
+			super( _name, _typeName );
+			this.numericType = _numericType;
+			this.caching = _caching;
+		}
+
+		@Override
+		public void setUp() throws Exception
+		{
+			final SaveableEngine engine = GeneratedWorkbook.compile( GeneratedWorkbook.build( ROWS ),
+					this.numericType, this.caching );
+			this.factory = engine.getComputationFactory();
+		}
+
+		protected GeneratedWorkbook.Outputs newComputation()
+		{
+			return (GeneratedWorkbook.Outputs) this.factory.newComputation( this.inputs );
+		}
+	}
+
+
+	/**
+	 * Evaluates the output of a single non-caching computation over and over.
+	 */
+	private static final class Evaluate extends EngineBenchmark
+	{
+		private GeneratedWorkbook.Outputs computation;
+
+		Evaluate( NumericType _numericType, String _typeName )
+		{
+			super( "engine.evaluate", _numericType, _typeName, false );
+		}
+
+		@Override
+		public void setUp() throws Exception
+		{
+			super.setUp();
+			this.computation = newComputation();
+		}
+
+		@Override
+		public Object run()
+		{
+			return this.computation.result();
+		}
+	}
+
+
+	/**
+	 * Creates a new computation for every evaluation, as most applications do.
+	 */
+	private static final class NewComputation extends EngineBenchmark
+	{
+
+		NewComputation( NumericType _numericType, String _typeName )
+		{
+			super( "engine.newComputation", _numericType, _typeName, false );
+		}
+
+		@Override
+		public Object run()
+		{
+			return newComputation().result();
+		}
+	}
+
+
+	/**
+	 * Resets a single caching computation before every evaluation.
+	 */
+	private static final class Reset extends EngineBenchmark
+	{
+		private GeneratedWorkbook.Outputs computation;
+
+		Reset( NumericType _numericType, String _typeName )
+		{
+			super( "engine.reset", _numericType, _typeName, true );
+		}
+
+		@Override
+		public void setUp() throws Exception
+		{
+			super.setUp();
+			this.computation = newComputation();
+		}
+
+		@Override
+		public Object run()
+		{
+			this.computation.reset();
+			return this.computation.result();
+		}
+	}
+
+}
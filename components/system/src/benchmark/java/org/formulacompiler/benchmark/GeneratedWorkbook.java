@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.benchmark;
+
+import org.formulacompiler.compiler.Function;
+import org.formulacompiler.compiler.NumericType;
+import org.formulacompiler.compiler.Operator;
+import org.formulacompiler.compiler.SaveableEngine;
+import org.formulacompiler.runtime.Resettable;
+import org.formulacompiler.spreadsheet.EngineBuilder;
+import org.formulacompiler.spreadsheet.Spreadsheet;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.spreadsheet.SpreadsheetBuilder.CellRef;
+
+
+/**
+ * Builds the synthetic workbook most benchmarks use. Each row holds a constant, an arithmetic
+ * formula over it and the input, and a conditional. A final cell aggregates the conditionals with
+ * {@code SUM} and {@code MAX}. The rows are independent, so the size of the workbook scales the
+ * work linearly.
+ */
+final class GeneratedWorkbook
+{
+
+	private GeneratedWorkbook()
+	{
+		// Static only.
+	}
+
+
+	// DO NOT REFORMAT BELOW THIS LINE
+	public static class Inputs {
+		public double input() { return 1.5; }
+	}
+
+	public static interface Outputs extends Resettable {
+		double result();
+	}
+	// DO NOT REFORMAT ABOVE THIS LINE
+
+
+	static Spreadsheet build( int _rows )
+	{
+		final SpreadsheetBuilder b = SpreadsheetCompiler.newSpreadsheetBuilder();
+		b.newCell( b.cst( 1 ) );
+		b.nameCell( "input" );
+		final CellRef input = b.currentCell();
+		CellRef first = null, last = null;
+		for (int i = 0; i < _rows; i++) {
+			b.newRow();
+			b.newCell( b.cst( i ) );
+			final CellRef c = b.currentCell();
+			b.newCell( b.op( Operator.PLUS, b.op( Operator.TIMES, b.ref( c ), b.ref( input ) ), b.ref( b.cst( i * 3 ) ) ) );
+			final CellRef f = b.currentCell();
+			b.newCell( b.fun( Function.IF, b.op( Operator.GREATER, b.ref( f ), b.ref( b.cst( 100 ) ) ), b.op(
+					Operator.MINUS, b.ref( f ), b.ref( input ) ), b.ref( f ) ) );
+			last = b.currentCell();
+			if (null == first) first = last;
+		}
+		b.newRow();
+		b.newCell( b.op( Operator.PLUS, b.fun( Function.SUM, b.ref( b.range( first, last ) ) ), b.fun( Function.MAX, b
+				.ref( b.range( first, last ) ) ) ) );
+		b.nameCell( "result" );
+		return b.getSpreadsheet();
+	}
+
+
+	static SaveableEngine compile( Spreadsheet _spreadsheet, NumericType _numericType, boolean _caching )
+			throws Exception
+	{
+		final EngineBuilder eb = SpreadsheetCompiler.newEngineBuilder();
+		eb.setSpreadsheet( _spreadsheet );
+		eb.setNumericType( _numericType );
+		eb.setFullCaching( _caching );
+		eb.setInputClass( Inputs.class );
+		eb.setOutputClass( Outputs.class );
+		eb.bindAllByName();
+		return eb.compile();
+	}
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import org.formulacompiler.runtime.New;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+
+
+/**
+ * Measures the spreadsheet loaders on the reference test workbooks. One operation loads every
+ * reference workbook of a format, once from its file and once from a stream.
+ */
+final class LoaderBenchmarks
+{
+	private static final String[] EXTENSIONS = { ".xls", ".xlsx", ".ods" };
+
+
+	private LoaderBenchmarks()
+	{
+		// Static only.
+	}
+
+
+	static List<Benchmark> all( File _dataDir )
+	{
+		final List<Benchmark> result = New.list();
+		for (String extension : EXTENSIONS) {
+			result.add( new LoadFiles( _dataDir, extension ) );
+			result.add( new LoadStreams( _dataDir, extension ) );
+		}
+		return result;
+	}
+
+
+	private static abstract class LoadBenchmark extends Benchmark
+	{
+		private final File dataDir;
+		private final String extension;
+		protected final List<File> files = New.list();
+
+		LoadBenchmark( String _name, File _dataDir, String _extension )
+		{
+			super( _name, _extension.substring( 1 ) );
+			this.dataDir = _dataDir;
+			this.extension = _extension;
+		}
+
+		@Override
+		public void setUp() throws Exception
+		{
+			final File[] candidates = this.dataDir.listFiles();
+			if (null == candidates) {
+				throw new IllegalStateException( "No reference workbooks found in " + this.dataDir.getAbsolutePath() );
+			}
+			for (File candidate : candidates) {
+				if (candidate.getName().endsWith( this.extension )) {
+					this.files.add( candidate );
+				}
+			}
+		}
+	}
+
+
+	private static final class LoadFiles extends LoadBenchmark
+	{
+
+		LoadFiles( File _dataDir, String _extension )
+		{
+			super( "loader.file", _dataDir, _extension );
+		}
+
+		@Override
+		public Object run() throws Exception
+		{
+			int sheets = 0;
+			for (File file : this.files) {
+				sheets += SpreadsheetCompiler.loadSpreadsheet( file ).getSheets().length;
+			}
+			return sheets;
+		}
+	}
+
+
+	private static final class LoadStreams extends LoadBenchmark
+	{
+
+		LoadStreams( File _dataDir, String _extension )
+		{
+			super( "loader.stream", _dataDir, _extension );
+		}
+
+		@Override
+		public Object run() throws Exception
+		{
+			int sheets = 0;
+			for (File file : this.files) {
+				final InputStream stream = new FileInputStream( file );
+				try {
+					sheets += SpreadsheetCompiler.loadSpreadsheet( file.getName(), stream ).getSheets().length;
+				}
+				finally {
+					stream.close();
+				}
+			}
+			return sheets;
+		}
+	}
+
+}
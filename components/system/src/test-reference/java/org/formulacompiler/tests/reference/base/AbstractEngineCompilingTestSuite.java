@@ -51,6 +51,7 @@ public abstract class AbstractEngineCompilingTestSuite extends AbstractContextTe
 		eb.setOutputClass( Outputs.class );
 
 		eb.setFullCaching( cx().getExplicitCaching() );
+		eb.setHashedLookupEnabled( cx().getHashedLookup() );
 		eb.setNumericType( cx().getNumericType() );
 		eb.setCompileTimeConfig( cx().getComputationConfig() );
 
@@ -232,6 +232,18 @@ abstract class AbstractSuiteSetup
 					}
 				}.init(), cx );
 			}
+
+			// Checks exact-match lookups against the hashed index, too.
+			Context cx = new Context( _parentCx );
+			cx.setHashedLookup( true );
+			addTest( _parent, new PassthroughContextTestSuite( cx )
+			{
+				@Override
+				protected String getOwnName()
+				{
+					return "With hashed lookup";
+				}
+			}.init(), cx );
 		}
 
 	}
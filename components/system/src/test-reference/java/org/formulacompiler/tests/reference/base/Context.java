@@ -51,6 +51,7 @@ public final class Context
 
 	private BindingType numberBindingType;
 	private Boolean explicitCaching;
+	private Boolean hashedLookup;
 	private Documenter documenter;
 
 	private SpreadsheetInfo ss;
@@ -140,6 +141,18 @@ public final class Context
 	}
 
 
+	public boolean getHashedLookup()
+	{
+		return this.hashedLookup != null ? this.hashedLookup : this.parent == null ? false : this.parent
+				.getHashedLookup();
+	}
+
+	public void setHashedLookup( Boolean _value )
+	{
+		this.hashedLookup = _value;
+	}
+
+
 	public BindingType getNumberBindingType()
 	{
 		return this.numberBindingType != null ? this.numberBindingType : this.parent == null ? BindingType.DOUBLE
@@ -488,6 +501,7 @@ public final class Context
 		BindingType type = getNumberBindingType();
 		if (type != null) s.append( ", type:" ).append( type.name() );
 		if (getExplicitCaching()) s.append( ", caching" );
+		if (getHashedLookup()) s.append( ", hashed lookup" );
 		Config config = getComputationConfig();
 		if (config != null) s.append( ", config:" ).append( config.toString() );
 		return s.toString();
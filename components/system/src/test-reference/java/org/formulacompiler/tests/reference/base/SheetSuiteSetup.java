@@ -211,7 +211,8 @@ public abstract class SheetSuiteSetup extends AbstractSuiteSetup
 			{
 				// Only verify this once, not again for every type.
 				// LATER Might have to change when loaders use numeric type.
-				if (_cx.getNumberBindingType() == BindingType.DOUBLE && !_cx.getExplicitCaching()) {
+				if (_cx.getNumberBindingType() == BindingType.DOUBLE && !_cx.getExplicitCaching()
+						&& !_cx.getHashedLookup()) {
 					final int checkingCol = _cx.getRowSetup().checkingCol();
 					if (checkingCol >= 0) {
 						if (_rowTestSetup != null) {
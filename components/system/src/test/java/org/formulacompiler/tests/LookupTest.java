@@ -200,12 +200,24 @@ public class LookupTest
 			System.out.println( "Failed to decompile: " + e.getMessage() );
 		}
 
-		ComputationFactory factory = engine.getComputationFactory();
-		Outputs computation = (Outputs) factory.newComputation( inputs );
-		for (int i = 0; i < expected.size(); i++) {
-			final double want = expected.get( i );
-			final double have = computation.get( i );
-			assertEquals( expected.name( i ), want, have, 0.00001 );
+		assertEngine( engine, inputs, expected );
+
+		// A/B against the hashed exact-match index.
+		builder.setHashedLookupEnabled( true );
+		assertEngine( builder.compile(), inputs, expected );
+	}
+
+	private void assertEngine( SaveableEngine _engine, Inputs _inputs, Inputs _expected ) throws Exception
+	{
+		ComputationFactory factory = _engine.getComputationFactory();
+		Outputs computation = (Outputs) factory.newComputation( _inputs );
+		for (int pass = 0; pass < 2; pass++) {
+			for (int i = 0; i < _expected.size(); i++) {
+				final double want = _expected.get( i );
+				final double have = computation.get( i );
+				assertEquals( _expected.name( i ), want, have, 0.00001 );
+			}
+			computation.reset();
 		}
 	}
 
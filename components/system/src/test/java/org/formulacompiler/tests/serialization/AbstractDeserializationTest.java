@@ -22,6 +22,15 @@
 
 package org.formulacompiler.tests.serialization;
 
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import org.formulacompiler.runtime.Engine;
+import org.formulacompiler.runtime.EngineLoader;
+import org.formulacompiler.runtime.FormulaRuntime;
+import org.formulacompiler.runtime.internal.bytecode.ByteCodeEngine;
+
 
 public abstract class AbstractDeserializationTest extends AbstractTestBase
 {
@@ -31,4 +40,22 @@ public abstract class AbstractDeserializationTest extends AbstractTestBase
 		deserializeAndTest();
 	}
 
+	public void testLazyDeserialization() throws Exception
+	{
+		final EngineLoader.Config config = new EngineLoader.Config();
+		config.lazyClassDefinition = true;
+		config.retainClassBytes = false;
+		final InputStream inStream = new BufferedInputStream( new FileInputStream( getEngineFile() ) );
+		final Engine engine = FormulaRuntime.loadEngine( config, inStream );
+
+		computeAndTestResult( engine );
+		try {
+			((ByteCodeEngine) engine).getClassNamesAndBytes();
+			fail();
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2006-2009 by Abacus Research AG, Switzerland.
+ * All rights reserved.
+ *
+ * This file is part of the Abacus Formula Compiler (AFC).
+ *
+ * For commercial licensing, please contact sales(at)formulacompiler.com.
+ *
+ * AFC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AFC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AFC.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.formulacompiler.tests.spreadsheet;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+
+import org.formulacompiler.compiler.internal.Yamlizable;
+import org.formulacompiler.runtime.New;
+import org.formulacompiler.spreadsheet.Spreadsheet;
+import org.formulacompiler.spreadsheet.SpreadsheetCompiler;
+import org.formulacompiler.spreadsheet.SpreadsheetLoader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class StreamingLoadTest
+{
+	private static final File[] DATA_DIRS = { new File( "src/test/data" ), new File( "src/test-reference/data" ) };
+
+
+	@Test
+	public void testStreamingLoadMatchesObjectModel() throws Exception
+	{
+		final List<File> files = New.list();
+		for (File dir : DATA_DIRS) {
+			collectXlsFiles( dir, files );
+		}
+		// The reference workbooks contain shared formulas and named ranges.
+		assertTrue( files.size() > 50 );
+		for (File file : files) {
+			assertStreamingLoadMatches( file );
+		}
+	}
+
+
+	@Test
+	public void testGlobalTimeSettingsFallBackToObjectModel() throws Exception
+	{
+		// Defines the GlobalTimeFormat and GlobalTimeZoneName names, which the streaming load leaves to
+		// the object model.
+		final File file = new File( "src/test/data/org/formulacompiler/tutorials/TimeZones.xls" );
+		final Spreadsheet streamed = assertStreamingLoadMatches( file );
+
+		// Cells in the global time format are loaded as global times, not as local dates.
+		final Object value = streamed.getCell( "GlobalTimeFormat" ).getConstantValue();
+		assertTrue( String.valueOf( value ), value instanceof Date );
+		assertEquals( SpreadsheetCompiler.loadSpreadsheet( file ).getCell( "GlobalTimeFormat" ).getConstantValue(),
+				value );
+	}
+
+
+	private static Spreadsheet assertStreamingLoadMatches( File _file ) throws Exception
+	{
+		final SpreadsheetLoader.Config config = new SpreadsheetLoader.Config();
+		config.loadAllCellValues = true;
+		final Spreadsheet regular = SpreadsheetCompiler.loadSpreadsheet( _file, config );
+		config.streamingEnabled = true;
+		final Spreadsheet streamed = SpreadsheetCompiler.loadSpreadsheet( _file, config );
+		assertEquals( _file.getPath(), yamlOf( regular ), yamlOf( streamed ) );
+		return streamed;
+	}
+
+	/**
+	 * Returns the YAML of the given spreadsheet, or the error rendering it, as some test workbooks
+	 * contain deliberately invalid expressions.
+	 */
+	private static String yamlOf( Spreadsheet _spreadsheet )
+	{
+		try {
+			return ((Yamlizable) _spreadsheet).toYaml();
+		}
+		catch (RuntimeException e) {
+			return e.toString();
+		}
+	}
+
+	private static void collectXlsFiles( File _dir, List<File> _files )
+	{
+		final File[] children = _dir.listFiles();
+		if (null == children) return;
+		for (File child : children) {
+			if (child.isDirectory()) {
+				collectXlsFiles( child, _files );
+			}
+			else if (child.getName().endsWith( ".xls" )) {
+				_files.add( child );
+			}
+		}
+	}
+
+}